@@ -0,0 +1,95 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.service.EntityVersions;
+
+import java.io.IOException;
+import java.util.function.Supplier;
+
+/**
+ * Кеш готовых JSON-ответов горячих GET-запросов. Ответ хранится байтами вместе с версией данных
+ * из {@link EntityVersions}, из которой же строится {@code ETag}: совпавший {@code If-None-Match} получает 304,
+ * а ответ той же версии пишется в поток ответа без обращения к сервису и без сериализации. {@code ETag} и 304
+ * отдаются только для существующего ресурса — когда ответ его версии уже построен, — поэтому запрос
+ * отсутствующей сущности получает 404 и с {@code If-None-Match: *}.
+ * Версия читается до построения ответа, поэтому изменение, случившееся во время построения, лишь сделает
+ * сохранённый ответ устаревшим для следующего запроса.
+ */
+@Component
+public class CachedResponses {
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final ObjectMapper objectMapper;
+    private final EntityVersions versions;
+    private final Cache<String, Entry> cache;
+
+    @Autowired
+    public CachedResponses(ObjectMapper objectMapper, EntityVersions versions, MeterRegistry registry,
+                           @Value("${filmorate.response-cache.maximum-bytes:67108864}") long maximumBytes) {
+        this.objectMapper = objectMapper;
+        this.versions = versions;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumBytes)
+                .<String, Entry>weigher((key, entry) -> ENTRY_OVERHEAD + 2 * key.length() + entry.body().length)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, "responses");
+    }
+
+    /**
+     * Отвечает JSON-представлением результата {@code body} для данных версии {@code version}.
+     *
+     * @param key     запрос вместе со всеми параметрами, влияющими на ответ
+     * @param version текущая версия данных ответа
+     * @param body    построение ответа через сервис — только если в кеше нет ответа этой версии
+     */
+    public void send(String key, long version, Supplier<?> body,
+                     HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Entry entry = cache.getIfPresent(key);
+        if (entry == null || entry.version() != version) {
+            // для отсутствующей сущности сервис бросит исключение раньше, чем клиент получит ETag или 304
+            Entry built = new Entry(version, objectMapper.writeValueAsBytes(body.get()));
+            cache.asMap().merge(key, built, (present, fresh) -> present.version() > fresh.version() ? present : fresh);
+            entry = built;
+        }
+        String etag = "\"" + Long.toHexString(versions.epoch()) + "-" + Long.toHexString(version) + "\"";
+        response.setHeader(HttpHeaders.ETAG, etag);
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(entry.body().length);
+        response.getOutputStream().write(entry.body());
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag) || tag.equals("*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private record Entry(long version, byte[] body) {
+    }
+}
@@ -1,21 +1,40 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.BatchResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.EntityVersions;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collection;
+import java.util.List;
 
 @RestController
 @RequestMapping("/films")
 public class FilmController {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+
     private final FilmService filmService;
+    private final NdjsonStreamer ndjsonStreamer;
+    private final CachedResponses cachedResponses;
+    private final EntityVersions versions;
 
     @Autowired
-    public FilmController(FilmService filmService) {
+    public FilmController(FilmService filmService, NdjsonStreamer ndjsonStreamer, CachedResponses cachedResponses,
+                          EntityVersions versions) {
         this.filmService = filmService;
+        this.ndjsonStreamer = ndjsonStreamer;
+        this.cachedResponses = cachedResponses;
+        this.versions = versions;
     }
 
     @PostMapping
@@ -23,18 +42,51 @@ public class FilmController {
         return filmService.create(film);
     }
 
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<BatchResult> createAll(@RequestBody List<Film> films) {
+        return filmService.createAll(films.iterator());
+    }
+
+    @PostMapping(value = "/batch", consumes = NdjsonStreamer.MEDIA_TYPE)
+    public List<BatchResult> createAll(InputStream body) throws IOException {
+        return filmService.createAll(ndjsonStreamer.read(body, Film.class));
+    }
+
     @PutMapping
-    public Film update(@Valid @RequestBody Film film) {
-        return filmService.update(film);
+    public Film update(@Valid @RequestBody Film film,
+                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return filmService.update(film, IfMatch.version(ifMatch, film.getVersion()));
+    }
+
+    @GetMapping("/search")
+    public List<Film> search(@RequestParam String query,
+                             @RequestParam(defaultValue = "title,description") String by,
+                             @RequestParam(defaultValue = "20") int limit) {
+        return filmService.search(query, by, limit);
     }
 
     @GetMapping("/{id}")
-    public Film findById(@PathVariable("id") Long filmId) {
-        return filmService.findById(filmId);
+    public void findById(@PathVariable("id") Long filmId,
+                         HttpServletRequest request, HttpServletResponse response) throws IOException {
+        cachedResponses.send("film:" + filmId, versions.film(filmId), () -> filmService.findById(filmId),
+                request, response);
+    }
+
+    /**
+     * Без параметров возвращает все фильмы. С {@code limit} или {@code after} — страницу по ключу:
+     * следующая страница запрашивается с {@code after}, равным id последнего элемента предыдущей.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public Collection<Film> getFilms(@RequestParam(required = false) Integer limit,
+                                    @RequestParam(required = false) Long after) {
+        if (limit == null && after == null) {
+            return filmService.getFilms();
+        }
+        return filmService.getFilms(after == null ? 0 : after, limit == null ? DEFAULT_PAGE_SIZE : limit);
     }
 
-    @GetMapping
-    public Collection<Film> getFilms() {
-        return filmService.getFilms();
+    @GetMapping(produces = NdjsonStreamer.MEDIA_TYPE)
+    public StreamingResponseBody streamFilms(@RequestParam(defaultValue = "0") long after) {
+        return ndjsonStreamer.<Film>stream(action -> filmService.forEachFilm(after, action));
     }
 }
\ No newline at end of file
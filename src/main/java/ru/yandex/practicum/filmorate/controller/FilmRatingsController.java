@@ -1,36 +1,89 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import ru.yandex.practicum.filmorate.model.BatchResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.service.EntityVersions;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.IngestPipeline;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/films")
 public class FilmRatingsController {
     private final FilmService filmService;
+    private final NdjsonStreamer ndjsonStreamer;
+    private final CachedResponses cachedResponses;
+    private final EntityVersions versions;
+    private final Optional<IngestPipeline> pipeline;
 
     @Autowired
-    public FilmRatingsController(FilmService filmService) {
+    public FilmRatingsController(FilmService filmService, NdjsonStreamer ndjsonStreamer,
+                                 CachedResponses cachedResponses, EntityVersions versions,
+                                 Optional<IngestPipeline> pipeline) {
         this.filmService = filmService;
+        this.ndjsonStreamer = ndjsonStreamer;
+        this.cachedResponses = cachedResponses;
+        this.versions = versions;
+        this.pipeline = pipeline;
     }
 
     @PutMapping("/{id}/like/{userId}")
-    public void addLike(@PathVariable("id") Long filmId,
-                        @PathVariable Long userId) {
+    public ResponseEntity<Void> addLike(@PathVariable("id") Long filmId,
+                                        @PathVariable Long userId) {
+        if (pipeline.isPresent()) {
+            return WriteTokens.accepted(pipeline.get().likeAdded(filmId, userId));
+        }
         filmService.addLike(filmId, userId);
+        return ResponseEntity.ok().build();
     }
 
     @DeleteMapping("/{id}/like/{userId}")
-    public void deleteLike(@PathVariable("id") Long filmId,
-                           @PathVariable Long userId) {
+    public ResponseEntity<Void> deleteLike(@PathVariable("id") Long filmId,
+                                           @PathVariable Long userId) {
+        if (pipeline.isPresent()) {
+            return WriteTokens.accepted(pipeline.get().likeDeleted(filmId, userId));
+        }
         filmService.deleteLike(filmId, userId);
+        return ResponseEntity.ok().build();
+    }
+
+    @PostMapping(value = "/likes/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<BatchResult> addLikes(@RequestBody List<Like> likes) {
+        return filmService.addLikes(likes.iterator());
+    }
+
+    @PostMapping(value = "/likes/batch", consumes = NdjsonStreamer.MEDIA_TYPE)
+    public List<BatchResult> addLikes(InputStream body) throws IOException {
+        return filmService.addLikes(ndjsonStreamer.read(body, Like.class));
     }
 
     @GetMapping("/popular")
-    public List<Film> topFilms(@RequestParam(defaultValue = "10") int count) {
-        return filmService.getTopFilms(count);
+    public void topFilms(@RequestParam(defaultValue = "10") int count,
+                         @RequestParam(required = false) Integer genreId,
+                         @RequestParam(required = false) MpaRating mpa,
+                         @RequestParam(required = false) Integer year,
+                         HttpServletRequest request, HttpServletResponse response) throws IOException {
+        cachedResponses.send("popular:" + count + ":" + genreId + ":" + mpa + ":" + year, versions.catalog(),
+                () -> filmService.getTopFilms(count, genreId, mpa, year), request, response);
+    }
+
+    @GetMapping("/trending")
+    public void trendingFilms(@RequestParam(defaultValue = "24h") String window,
+                              @RequestParam(defaultValue = "10") int count,
+                              HttpServletRequest request, HttpServletResponse response) throws IOException {
+        cachedResponses.send("trending:" + window + ":" + count, versions.trending(),
+                () -> filmService.getTrendingFilms(window, count), request, response);
     }
 }
\ No newline at end of file
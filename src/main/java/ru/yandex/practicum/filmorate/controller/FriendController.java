@@ -1,38 +1,61 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.EntityVersions;
+import ru.yandex.practicum.filmorate.service.IngestPipeline;
 import ru.yandex.practicum.filmorate.service.UserService;
 
-import java.util.Collection;
+import java.io.IOException;
 import java.util.List;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/users/{id}/friends")
 public class FriendController {
     private final UserService userService;
+    private final CachedResponses cachedResponses;
+    private final EntityVersions versions;
+    private final Optional<IngestPipeline> pipeline;
 
     @Autowired
-    public FriendController(UserService userService) {
+    public FriendController(UserService userService, CachedResponses cachedResponses, EntityVersions versions,
+                            Optional<IngestPipeline> pipeline) {
         this.userService = userService;
+        this.cachedResponses = cachedResponses;
+        this.versions = versions;
+        this.pipeline = pipeline;
     }
 
     @PutMapping("/{friendId}")
-    public void addFriend(@PathVariable("id") Long userId,
-                          @PathVariable Long friendId) {
+    public ResponseEntity<Void> addFriend(@PathVariable("id") Long userId,
+                                          @PathVariable Long friendId) {
+        if (pipeline.isPresent()) {
+            return WriteTokens.accepted(pipeline.get().friendAdded(userId, friendId));
+        }
         userService.addFriend(userId, friendId);
+        return ResponseEntity.ok().build();
     }
 
     @DeleteMapping("/{friendId}")
-    public void deleteFriend(@PathVariable("id") Long userId,
-                             @PathVariable Long friendId) {
+    public ResponseEntity<Void> deleteFriend(@PathVariable("id") Long userId,
+                                             @PathVariable Long friendId) {
+        if (pipeline.isPresent()) {
+            return WriteTokens.accepted(pipeline.get().friendDeleted(userId, friendId));
+        }
         userService.deleteFriend(userId, friendId);
+        return ResponseEntity.ok().build();
     }
 
     @GetMapping
-    public Collection<User> getFriends(@PathVariable("id") Long userId) {
-        return userService.getFriends(userId);
+    public void getFriends(@PathVariable("id") Long userId,
+                           HttpServletRequest request, HttpServletResponse response) throws IOException {
+        cachedResponses.send("friends:" + userId, versions.friends(userId), () -> userService.getFriends(userId),
+                request, response);
     }
 
     @GetMapping("/common/{otherId}")
@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+/**
+ * Ожидаемая версия сущности для условного обновления. Заголовок {@code If-Match} содержит версию сущности
+ * ({@code "3"} или {@code 3}) и важнее поля {@code version} в теле; {@code *} и отсутствие заголовка означают
+ * версию из тела, а без неё обновление безусловно.
+ */
+final class IfMatch {
+    private IfMatch() {
+    }
+
+    static Long version(String header, Long bodyVersion) {
+        if (header == null || header.isBlank() || header.trim().equals("*")) {
+            return bodyVersion;
+        }
+        String tag = header.trim();
+        if (tag.length() > 1 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            tag = tag.substring(1, tag.length() - 1);
+        }
+        try {
+            return Long.parseLong(tag);
+        } catch (NumberFormatException e) {
+            throw new ValidationException("Заголовок If-Match должен содержать версию сущности: " + header);
+        }
+    }
+}
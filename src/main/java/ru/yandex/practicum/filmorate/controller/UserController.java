@@ -2,20 +2,32 @@ package ru.yandex.practicum.filmorate.controller;
 
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.UserService;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collection;
+import java.util.List;
 
 @RestController
 @RequestMapping("/users")
 public class UserController {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+
     private final UserService userService;
+    private final NdjsonStreamer ndjsonStreamer;
 
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, NdjsonStreamer ndjsonStreamer) {
         this.userService = userService;
+        this.ndjsonStreamer = ndjsonStreamer;
     }
 
     @PostMapping
@@ -23,9 +35,35 @@ public class UserController {
         return userService.create(user);
     }
 
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<BatchResult> createAll(@RequestBody List<User> users) {
+        return userService.createAll(users.iterator());
+    }
+
+    @PostMapping(value = "/batch", consumes = NdjsonStreamer.MEDIA_TYPE)
+    public List<BatchResult> createAll(InputStream body) throws IOException {
+        return userService.createAll(ndjsonStreamer.read(body, User.class));
+    }
+
+    @PostMapping(value = "/friends/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<BatchResult> addFriends(@RequestBody List<Friendship> friendships) {
+        return userService.addFriends(friendships.iterator());
+    }
+
+    @PostMapping(value = "/friends/batch", consumes = NdjsonStreamer.MEDIA_TYPE)
+    public List<BatchResult> addFriends(InputStream body) throws IOException {
+        return userService.addFriends(ndjsonStreamer.read(body, Friendship.class));
+    }
+
     @PutMapping
-    public User update(@Valid @RequestBody User user) {
-        return userService.update(user);
+    public User update(@Valid @RequestBody User user,
+                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return userService.update(user, IfMatch.version(ifMatch, user.getVersion()));
+    }
+
+    @DeleteMapping("/{id}")
+    public void delete(@PathVariable("id") Long userId) {
+        userService.delete(userId);
     }
 
     @GetMapping("/{id}")
@@ -33,8 +71,27 @@ public class UserController {
         return userService.findById(userId);
     }
 
-    @GetMapping
-    public Collection<User> getUsers() {
-        return userService.getUsers();
+    @GetMapping("/{id}/recommendations")
+    public List<User> getRecommendations(@PathVariable("id") Long userId,
+                                         @RequestParam(defaultValue = "10") int limit) {
+        return userService.getRecommendations(userId, limit);
+    }
+
+    /**
+     * Без параметров возвращает все пользователей. С {@code limit} или {@code after} — страницу по ключу:
+     * следующая страница запрашивается с {@code after}, равным id последнего элемента предыдущей.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public Collection<User> getUsers(@RequestParam(required = false) Integer limit,
+                                    @RequestParam(required = false) Long after) {
+        if (limit == null && after == null) {
+            return userService.getUsers();
+        }
+        return userService.getUsers(after == null ? 0 : after, limit == null ? DEFAULT_PAGE_SIZE : limit);
+    }
+
+    @GetMapping(produces = NdjsonStreamer.MEDIA_TYPE)
+    public StreamingResponseBody streamUsers(@RequestParam(defaultValue = "0") long after) {
+        return ndjsonStreamer.<User>stream(action -> userService.forEachUser(after, action));
     }
 }
\ No newline at end of file
@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmService;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/users/{id}")
+public class UserFilmsController {
+    private final FilmService filmService;
+
+    @Autowired
+    public UserFilmsController(FilmService filmService) {
+        this.filmService = filmService;
+    }
+
+    @GetMapping("/likes")
+    public List<Film> getLikedFilms(@PathVariable("id") Long userId,
+                                    @RequestParam(defaultValue = "100") int limit,
+                                    @RequestParam(defaultValue = "0") long after) {
+        return filmService.getLikedFilms(userId, after, limit);
+    }
+
+    @GetMapping("/recommended-films")
+    public List<Film> getRecommendedFilms(@PathVariable("id") Long userId,
+                                          @RequestParam(defaultValue = "10") int limit) {
+        return filmService.getRecommendedFilms(userId, limit);
+    }
+}
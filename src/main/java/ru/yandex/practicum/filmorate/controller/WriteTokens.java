@@ -0,0 +1,55 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ru.yandex.practicum.filmorate.exception.OverloadedException;
+import ru.yandex.practicum.filmorate.service.IngestPipeline;
+
+import java.time.Duration;
+
+/**
+ * Чтение своих записей при асинхронном приёме изменений. Принятое изменение возвращает {@code 202 Accepted}
+ * с токеном в заголовке {@value #HEADER}; чтение с этим заголовком ждёт, пока применятся все изменения
+ * пользователя вплоть до изменения с токеном, и только потом выполняется.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.ingest.async.enabled", havingValue = "true")
+public class WriteTokens implements HandlerInterceptor, WebMvcConfigurer {
+    static final String HEADER = "X-Write-Token";
+
+    private final IngestPipeline pipeline;
+    private final Duration readTimeout;
+
+    public WriteTokens(IngestPipeline pipeline,
+                       @Value("${filmorate.ingest.async.read-timeout:2s}") Duration readTimeout) {
+        this.pipeline = pipeline;
+        this.readTimeout = readTimeout;
+    }
+
+    static ResponseEntity<Void> accepted(String token) {
+        return ResponseEntity.accepted().header(HEADER, token).build();
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(this);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        String token = request.getHeader(HEADER);
+        if (token != null && HttpMethod.GET.matches(request.getMethod())
+                && !pipeline.awaitApplied(token.trim(), readTimeout)) {
+            throw new OverloadedException("Изменения с токеном " + token + " ещё не применены");
+        }
+        return true;
+    }
+}
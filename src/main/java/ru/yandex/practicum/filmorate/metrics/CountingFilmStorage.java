@@ -0,0 +1,147 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmGenre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Хранилище фильмов, считающее операции делегата. Чтение по id и размеры хранилища не считаются:
+ * топ фильмов и списки читают сущности по одной, и счётчик на каждую стоил бы заметную долю самого чтения.
+ */
+public class CountingFilmStorage implements FilmStorage {
+    private static final String STORAGE = "films";
+
+    private final FilmStorage delegate;
+    private final StorageOperation create;
+    private final StorageOperation createAll;
+    private final StorageOperation update;
+    private final StorageOperation getFilms;
+    private final StorageOperation findAllById;
+    private final StorageOperation existingIds;
+    private final StorageOperation getTopFilms;
+    private final StorageOperation addLike;
+    private final StorageOperation deleteLike;
+    private final StorageOperation addLikes;
+    private final StorageOperation likedFilms;
+    private final StorageOperation deleteLikesOf;
+
+    public CountingFilmStorage(FilmStorage delegate, MeterRegistry registry) {
+        this.delegate = delegate;
+        create = new StorageOperation(registry, STORAGE, "create");
+        createAll = new StorageOperation(registry, STORAGE, "createAll");
+        update = new StorageOperation(registry, STORAGE, "update");
+        getFilms = new StorageOperation(registry, STORAGE, "getFilms");
+        findAllById = new StorageOperation(registry, STORAGE, "findAllById");
+        existingIds = new StorageOperation(registry, STORAGE, "existingIds");
+        getTopFilms = new StorageOperation(registry, STORAGE, "getTopFilms");
+        addLike = new StorageOperation(registry, STORAGE, "addLike");
+        deleteLike = new StorageOperation(registry, STORAGE, "deleteLike");
+        addLikes = new StorageOperation(registry, STORAGE, "addLikes");
+        likedFilms = new StorageOperation(registry, STORAGE, "likedFilms");
+        deleteLikesOf = new StorageOperation(registry, STORAGE, "deleteLikesOf");
+    }
+
+    @Override
+    public Film create(Film film) {
+        return create.record(() -> delegate.create(film));
+    }
+
+    @Override
+    public Optional<Film> update(Film film, long expectedVersion) {
+        return update.record(() -> delegate.update(film, expectedVersion));
+    }
+
+    @Override
+    public List<Film> createAll(List<Film> films) {
+        return createAll.record(() -> delegate.createAll(films));
+    }
+
+    @Override
+    public Collection<Film> getFilms() {
+        return getFilms.record(delegate::getFilms);
+    }
+
+    @Override
+    public List<Film> getFilms(long afterId, int limit) {
+        return getFilms.record(() -> delegate.getFilms(afterId, limit));
+    }
+
+    @Override
+    public Optional<Film> findById(Long filmId) {
+        return delegate.findById(filmId);
+    }
+
+    @Override
+    public List<Film> findAllById(long[] filmIds) {
+        return findAllById.record(() -> delegate.findAllById(filmIds));
+    }
+
+    @Override
+    public Set<Long> existingIds(Collection<Long> filmIds) {
+        return existingIds.record(() -> delegate.existingIds(filmIds));
+    }
+
+    @Override
+    public List<Film> getTopFilms(int count) {
+        return getTopFilms.record(() -> delegate.getTopFilms(count));
+    }
+
+    @Override
+    public List<Film> getTopFilms(int count, FilmGenre genre, MpaRating mpa, Integer year) {
+        return getTopFilms.record(() -> delegate.getTopFilms(count, genre, mpa, year));
+    }
+
+    @Override
+    public void forEachLikeCount(ObjIntConsumer<Long> action) {
+        delegate.forEachLikeCount(action);
+    }
+
+    @Override
+    public boolean addLike(Long filmId, Long userId) {
+        return addLike.record(() -> delegate.addLike(filmId, userId));
+    }
+
+    @Override
+    public boolean deleteLike(Long filmId, Long userId) {
+        return deleteLike.record(() -> delegate.deleteLike(filmId, userId));
+    }
+
+    @Override
+    public boolean[] addLikes(List<Like> likes) {
+        return addLikes.record(() -> delegate.addLikes(likes));
+    }
+
+    @Override
+    public long[] likedFilms(long userId) {
+        return likedFilms.record(() -> delegate.likedFilms(userId));
+    }
+
+    @Override
+    public long[] likedFilms(long userId, long afterId, int limit) {
+        return likedFilms.record(() -> delegate.likedFilms(userId, afterId, limit));
+    }
+
+    @Override
+    public int deleteLikesOf(long userId) {
+        return deleteLikesOf.record(() -> delegate.deleteLikesOf(userId));
+    }
+
+    @Override
+    public long count() {
+        return delegate.count();
+    }
+
+    @Override
+    public long likeCount() {
+        return delegate.likeCount();
+    }
+}
@@ -0,0 +1,114 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Хранилище пользователей, считающее операции делегата. Чтение по id и размеры хранилища не считаются.
+ */
+public class CountingUserStorage implements UserStorage {
+    private static final String STORAGE = "users";
+
+    private final UserStorage delegate;
+    private final StorageOperation create;
+    private final StorageOperation createAll;
+    private final StorageOperation update;
+    private final StorageOperation getUsers;
+    private final StorageOperation findAllById;
+    private final StorageOperation existingIds;
+    private final StorageOperation delete;
+    private final StorageOperation addFriend;
+    private final StorageOperation deleteFriend;
+    private final StorageOperation addFriends;
+
+    public CountingUserStorage(UserStorage delegate, MeterRegistry registry) {
+        this.delegate = delegate;
+        create = new StorageOperation(registry, STORAGE, "create");
+        createAll = new StorageOperation(registry, STORAGE, "createAll");
+        update = new StorageOperation(registry, STORAGE, "update");
+        getUsers = new StorageOperation(registry, STORAGE, "getUsers");
+        findAllById = new StorageOperation(registry, STORAGE, "findAllById");
+        existingIds = new StorageOperation(registry, STORAGE, "existingIds");
+        delete = new StorageOperation(registry, STORAGE, "delete");
+        addFriend = new StorageOperation(registry, STORAGE, "addFriend");
+        deleteFriend = new StorageOperation(registry, STORAGE, "deleteFriend");
+        addFriends = new StorageOperation(registry, STORAGE, "addFriends");
+    }
+
+    @Override
+    public User create(User user) {
+        return create.record(() -> delegate.create(user));
+    }
+
+    @Override
+    public Optional<User> update(User user, long expectedVersion) {
+        return update.record(() -> delegate.update(user, expectedVersion));
+    }
+
+    @Override
+    public List<User> createAll(List<User> users) {
+        return createAll.record(() -> delegate.createAll(users));
+    }
+
+    @Override
+    public Collection<User> getUsers() {
+        return getUsers.record(delegate::getUsers);
+    }
+
+    @Override
+    public List<User> getUsers(long afterId, int limit) {
+        return getUsers.record(() -> delegate.getUsers(afterId, limit));
+    }
+
+    @Override
+    public Optional<User> findById(Long userId) {
+        return delegate.findById(userId);
+    }
+
+    @Override
+    public List<User> findAllById(long[] userIds) {
+        return findAllById.record(() -> delegate.findAllById(userIds));
+    }
+
+    @Override
+    public Set<Long> existingIds(Collection<Long> userIds) {
+        return existingIds.record(() -> delegate.existingIds(userIds));
+    }
+
+    @Override
+    public boolean delete(Long userId) {
+        return delete.record(() -> delegate.delete(userId));
+    }
+
+    @Override
+    public boolean addFriend(Long userId, Long friendId) {
+        return addFriend.record(() -> delegate.addFriend(userId, friendId));
+    }
+
+    @Override
+    public boolean deleteFriend(Long userId, Long friendId) {
+        return deleteFriend.record(() -> delegate.deleteFriend(userId, friendId));
+    }
+
+    @Override
+    public boolean[] addFriends(List<Friendship> friendships) {
+        return addFriends.record(() -> delegate.addFriends(friendships));
+    }
+
+    @Override
+    public long count() {
+        return delegate.count();
+    }
+
+    @Override
+    public long friendEdgeCount() {
+        return delegate.friendEdgeCount();
+    }
+}
@@ -0,0 +1,83 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.config.AopConfigUtils;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Role;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+/**
+ * Метрики сервиса. Таймеры методов сервисов ({@code @Timed}) и счётчики операций хранилищ (обёртки над хранилищами)
+ * отключаются свойством {@code filmorate.metrics.enabled=false}. Размеры хранилищ считаются только при чтении
+ * метрик, поэтому датчики остаются всегда.
+ */
+@Configuration
+public class MetricsConfiguration {
+
+    /**
+     * Замораживает прокси: цепочка перехватчиков каждого метода собирается при создании прокси,
+     * а не ищется в общем кеше при каждом вызове.
+     */
+    @Bean
+    public static BeanFactoryPostProcessor frozenProxies() {
+        return beanFactory -> {
+            if (beanFactory.containsBeanDefinition(AopConfigUtils.AUTO_PROXY_CREATOR_BEAN_NAME)) {
+                beanFactory.getBeanDefinition(AopConfigUtils.AUTO_PROXY_CREATOR_BEAN_NAME)
+                        .getPropertyValues().add("frozen", true);
+            }
+        };
+    }
+
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    @ConditionalOnProperty(name = "filmorate.metrics.enabled", havingValue = "true", matchIfMissing = true)
+    public static Advisor serviceTimersAdvisor(ObjectProvider<MeterRegistry> registry) {
+        return new DefaultPointcutAdvisor(AnnotationMatchingPointcut.forClassAnnotation(Timed.class),
+                new ServiceTimersInterceptor(registry));
+    }
+
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "filmorate.metrics.enabled", havingValue = "true", matchIfMissing = true)
+    public CountingFilmStorage countingFilmStorage(FilmStorage filmStorage, MeterRegistry registry) {
+        return new CountingFilmStorage(filmStorage, registry);
+    }
+
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "filmorate.metrics.enabled", havingValue = "true", matchIfMissing = true)
+    public CountingUserStorage countingUserStorage(UserStorage userStorage, MeterRegistry registry) {
+        return new CountingUserStorage(userStorage, registry);
+    }
+
+    @Bean
+    public MeterBinder storageGauges(FilmStorage filmStorage, UserStorage userStorage) {
+        return registry -> {
+            Gauge.builder("filmorate.films", filmStorage, FilmStorage::count)
+                    .description("Число фильмов")
+                    .register(registry);
+            Gauge.builder("filmorate.users", userStorage, UserStorage::count)
+                    .description("Число пользователей")
+                    .register(registry);
+            Gauge.builder("filmorate.likes", filmStorage, FilmStorage::likeCount)
+                    .description("Число лайков всех фильмов")
+                    .register(registry);
+            Gauge.builder("filmorate.friends.edges", userStorage, UserStorage::friendEdgeCount)
+                    .description("Число записей в списках друзей")
+                    .register(registry);
+        };
+    }
+}
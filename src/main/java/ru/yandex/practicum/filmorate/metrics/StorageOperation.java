@@ -0,0 +1,47 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Счётчики одной операции хранилища по исходу: {@code ok}, {@code rejected} (операция вернула {@code false}
+ * или пустой {@link Optional}, например лайк уже стоял или версия не совпала) и {@code error}.
+ */
+final class StorageOperation {
+    static final String METRIC = "filmorate.storage.operations";
+
+    private final Counter ok;
+    private final Counter rejected;
+    private final Counter error;
+
+    StorageOperation(MeterRegistry registry, String storage, String operation) {
+        ok = counter(registry, storage, operation, "ok");
+        rejected = counter(registry, storage, operation, "rejected");
+        error = counter(registry, storage, operation, "error");
+    }
+
+    <T> T record(Supplier<T> call) {
+        T result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            error.increment();
+            throw e;
+        }
+        boolean rejectedResult = Boolean.FALSE.equals(result) || Optional.empty().equals(result);
+        (rejectedResult ? rejected : ok).increment();
+        return result;
+    }
+
+    private static Counter counter(MeterRegistry registry, String storage, String operation, String result) {
+        return Counter.builder(METRIC)
+                .description("Операции хранилищ")
+                .tag("storage", storage)
+                .tag("operation", operation)
+                .tag("result", result)
+                .register(registry);
+    }
+}
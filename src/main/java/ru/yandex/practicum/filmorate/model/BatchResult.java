@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Результат обработки одного элемента пакетного запроса: порядковый номер элемента в запросе,
+ * id созданной сущности или описание ошибки.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchResult(int index, Long id, String error) {
+
+    public static BatchResult ok(int index, Long id) {
+        return new BatchResult(index, id, null);
+    }
+
+    public static BatchResult failed(int index, String error) {
+        return new BatchResult(index, null, error);
+    }
+}
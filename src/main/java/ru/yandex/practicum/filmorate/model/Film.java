@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Positive;
 import jakarta.validation.constraints.Size;
@@ -8,10 +9,10 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.experimental.FieldDefaults;
+import ru.yandex.practicum.filmorate.util.SortedLongSet;
 import ru.yandex.practicum.filmorate.validation.ReleaseDateValid;
 
 import java.time.LocalDate;
-import java.util.HashSet;
 import java.util.Set;
 
 @Data
@@ -21,6 +22,11 @@ import java.util.Set;
 public class Film {
     Long id;
 
+    /**
+     * Версия полей фильма: растёт при каждом обновлении, лайки её не меняют.
+     */
+    Long version;
+
     @NotBlank(message = "Название не должно быть пустым")
     String name;
 
@@ -37,5 +43,9 @@ public class Film {
 
     MpaRating mpaRating;
 
-    final Set<Long> movieRating = new HashSet<>();
+    /**
+     * Лайки меняются только запросами лайков, из тела запроса не читаются.
+     */
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    final SortedLongSet movieRating = new SortedLongSet();
 }
\ No newline at end of file
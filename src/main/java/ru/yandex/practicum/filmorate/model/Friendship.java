@@ -0,0 +1,7 @@
+package ru.yandex.practicum.filmorate.model;
+
+import jakarta.validation.constraints.NotNull;
+
+public record Friendship(@NotNull(message = "Не указан пользователь") Long userId,
+                         @NotNull(message = "Не указан друг") Long friendId) {
+}
@@ -0,0 +1,7 @@
+package ru.yandex.practicum.filmorate.model;
+
+import jakarta.validation.constraints.NotNull;
+
+public record Like(@NotNull(message = "Не указан фильм") Long filmId,
+                   @NotNull(message = "Не указан пользователь") Long userId) {
+}
@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.PastOrPresent;
@@ -9,10 +10,9 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.experimental.FieldDefaults;
+import ru.yandex.practicum.filmorate.util.SortedLongSet;
 
 import java.time.LocalDate;
-import java.util.HashSet;
-import java.util.Set;
 
 @Getter
 @Setter
@@ -20,6 +20,11 @@ import java.util.Set;
 public class User {
     Long id;
 
+    /**
+     * Версия полей пользователя: растёт при каждом обновлении, дружбы её не меняют.
+     */
+    Long version;
+
     @NotBlank(message = "Email не должен быть пустым")
     @Email(message = "Некорректный формат email")
     String email;
@@ -33,13 +38,18 @@ public class User {
     @PastOrPresent(message = "Дата рождения не может быть в будущем")
     LocalDate birthday;
 
-    final Set<Long> friends = new HashSet<>();
+    /**
+     * Друзья меняются только запросами дружбы, из тела запроса не читаются.
+     */
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    final SortedLongSet friends = new SortedLongSet();
 
     FriendshipStatus friendshipStatus = FriendshipStatus.PENDING;
 
     @Builder(toBuilder = true)
-    public User(Long id, String email, String login, String name, LocalDate birthday) {
+    public User(Long id, Long version, String email, String login, String name, LocalDate birthday) {
         this.id = id;
+        this.version = version;
         this.email = email;
         this.login = login;
         this.name = name;
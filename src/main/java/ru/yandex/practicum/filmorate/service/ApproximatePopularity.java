@@ -0,0 +1,198 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.util.CountMinSketch;
+import ru.yandex.practicum.filmorate.util.SpaceSaving;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * Приблизительный топ популярных фильмов для потока лайков, при котором точные счётчики обходятся слишком дорого.
+ * Хранилище в этом режиме не ведёт общий индекс популярности — только индексы срезов для топа с фильтрами.
+ * <p>
+ * Лайки пишутся в одну из {@code shards} сводок {@link SpaceSaving}, каждая под своей блокировкой: писатель
+ * начинает со случайной сводки и занимает первую свободную, так что потоки почти не ждут друг друга.
+ * При чтении сводки складываются {@link SpaceSaving#merge} в одну, и её кандидаты ранжируются по меньшей
+ * из двух верхних оценок — сводки и общего {@link CountMinSketch}, в который пишут без блокировок.
+ * <p>
+ * Память не зависит от числа фильмов: набросок занимает {@code 8 * e / epsilon * ln(1 / delta)} байт, каждая
+ * сводка — около {@value SpaceSaving#BYTES_PER_COUNTER} байт на каждый из {@code capacity} отслеживаемых фильмов.
+ * Фильм, которому принадлежит больше {@code 1 / capacity} всех лайков, в топ попадает гарантированно, поэтому
+ * топ длиннее {@code capacity} не отдаётся. Если фильмов с лайками меньше запрошенного, топ дополняется
+ * фильмами без лайков по возрастанию id, как и точный. При старте сводки заполняются числами лайков
+ * из хранилища — после инициализации всех синглтонов, то есть уже после восстановления из журнала;
+ * фильмы из снимка при этом не загружаются в память. Лайки удалённых пользователей не вычитаются,
+ * и их фильмы остаются оценёнными сверху.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.popularity.approximate.enabled", havingValue = "true")
+public class ApproximatePopularity implements SmartInitializingSingleton {
+    private final FilmStorage filmStorage;
+    private final CountMinSketch sketch;
+    private final int capacity;
+    private final SpaceSaving[] summaries;
+    private final ReentrantLock[] locks;
+
+    public ApproximatePopularity(FilmStorage filmStorage, MeterRegistry registry,
+                                 @Value("${filmorate.popularity.approximate.epsilon:0.0001}") double epsilon,
+                                 @Value("${filmorate.popularity.approximate.delta:0.01}") double delta,
+                                 @Value("${filmorate.popularity.approximate.capacity:1024}") int capacity,
+                                 @Value("${filmorate.popularity.approximate.shards:8}") int shards) {
+        this.filmStorage = filmStorage;
+        this.sketch = new CountMinSketch(epsilon, delta);
+        this.capacity = capacity;
+        this.summaries = new SpaceSaving[shards];
+        this.locks = new ReentrantLock[shards];
+        for (int i = 0; i < shards; i++) {
+            summaries[i] = new SpaceSaving(capacity);
+            locks[i] = new ReentrantLock();
+        }
+        Gauge.builder("filmorate.popularity.approximate.bytes", this, ApproximatePopularity::bytes)
+                .description("Оценка памяти наброска и сводок приблизительного топа")
+                .register(registry);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        seed();
+    }
+
+    private void seed() {
+        long[] films = new long[1];
+        filmStorage.forEachLikeCount((filmId, likes) -> {
+            add(filmId, likes);
+            films[0]++;
+        });
+        log.info("Приблизительный топ заполнен по {} фильмам с лайками, лайков: {}", films[0], sketch.total());
+    }
+
+    void liked(long filmId) {
+        add(filmId, 1);
+    }
+
+    /**
+     * Лайки фильма могли попасть в разные сводки, поэтому снятый лайк вычитается из первой сводки,
+     * где фильм отслеживается.
+     */
+    void unliked(long filmId) {
+        sketch.add(filmId, -1);
+        for (int i = 0; i < summaries.length; i++) {
+            locks[i].lock();
+            try {
+                if (summaries[i].contains(filmId)) {
+                    summaries[i].subtract(filmId, 1);
+                    return;
+                }
+            } finally {
+                locks[i].unlock();
+            }
+        }
+    }
+
+    private void add(long filmId, long likes) {
+        sketch.add(filmId, likes);
+        int shard = ThreadLocalRandom.current().nextInt(summaries.length);
+        for (int i = 0; i < summaries.length; i++) {
+            int probe = (shard + i) % summaries.length;
+            if (locks[probe].tryLock()) {
+                try {
+                    summaries[probe].add(filmId, likes);
+                    return;
+                } finally {
+                    locks[probe].unlock();
+                }
+            }
+        }
+        locks[shard].lock();
+        try {
+            summaries[shard].add(filmId, likes);
+        } finally {
+            locks[shard].unlock();
+        }
+    }
+
+    /**
+     * Id фильмов с наибольшей оценкой числа лайков: кандидаты сложенных сводок ранжируются по меньшей из оценок
+     * сводки и наброска, при равенстве — по id; недостающие места занимают фильмы без лайков по возрастанию id.
+     * При {@code count} меньше единицы топ пуст, как и точный.
+     *
+     * @throws ValidationException если запрошено больше фильмов, чем отслеживает сводка
+     */
+    long[] top(int count) {
+        if (count < 1) {
+            return new long[0];
+        }
+        if (count > capacity) {
+            throw new ValidationException("Приблизительный топ содержит не больше " + capacity + " фильмов");
+        }
+        SpaceSaving merged = new SpaceSaving(capacity);
+        for (int i = 0; i < summaries.length; i++) {
+            locks[i].lock();
+            try {
+                merged.merge(summaries[i]);
+            } finally {
+                locks[i].unlock();
+            }
+        }
+        long[] liked = merged.counters().stream()
+                .map(counter -> new SpaceSaving.Counter(counter.item(),
+                        Math.min(counter.count(), sketch.estimate(counter.item())), counter.error()))
+                .filter(counter -> counter.count() > 0)
+                .sorted(Comparator.comparingLong(SpaceSaving.Counter::count).reversed()
+                        .thenComparingLong(SpaceSaving.Counter::item))
+                .limit(count)
+                .mapToLong(SpaceSaving.Counter::item)
+                .toArray();
+        return liked.length < count ? withZeroLikes(liked, count) : liked;
+    }
+
+    long bytes() {
+        long bytes = sketch.bytes();
+        for (int i = 0; i < summaries.length; i++) {
+            locks[i].lock();
+            try {
+                bytes += summaries[i].bytes();
+            } finally {
+                locks[i].unlock();
+            }
+        }
+        return bytes;
+    }
+
+    private long[] withZeroLikes(long[] liked, int count) {
+        Set<Long> taken = LongStream.of(liked).boxed().collect(Collectors.toSet());
+        long[] top = Arrays.copyOf(liked, count);
+        int size = liked.length;
+        long afterId = 0;
+        while (size < count) {
+            List<Film> page = filmStorage.getFilms(afterId, count);
+            for (Film film : page) {
+                if (size < count && taken.add(film.getId())) {
+                    top[size++] = film.getId();
+                }
+            }
+            if (page.size() < count) {
+                break;
+            }
+            afterId = page.get(page.size() - 1).getId();
+        }
+        return Arrays.copyOf(top, size);
+    }
+}
@@ -0,0 +1,80 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Пакетная обработка элементов: каждый элемент проверяется валидатором, а прошедшие проверку
+ * передаются в хранилище частями по {@link #CHUNK_SIZE}. Входной поток читается по мере обработки,
+ * поэтому в памяти одновременно находится только одна часть.
+ */
+final class BatchImport {
+    static final int CHUNK_SIZE = 5_000;
+
+    private BatchImport() {
+    }
+
+    /**
+     * @param writer сохраняет часть и возвращает результаты по её элементам; индекс результата — позиция в части
+     */
+    static <T> List<BatchResult> run(Iterator<T> items, Validator validator, ChunkWriter<T> writer) {
+        List<BatchResult> results = new ArrayList<>();
+        List<T> chunk = new ArrayList<>(CHUNK_SIZE);
+        int[] indices = new int[CHUNK_SIZE];
+        int index = 0;
+        while (items.hasNext()) {
+            T item = items.next();
+            String error = validate(validator, item);
+            if (error != null) {
+                results.add(BatchResult.failed(index, error));
+            } else {
+                results.add(null);
+                indices[chunk.size()] = index;
+                chunk.add(item);
+                if (chunk.size() == CHUNK_SIZE) {
+                    flush(chunk, indices, writer, results);
+                }
+            }
+            index++;
+        }
+        flush(chunk, indices, writer, results);
+        return results;
+    }
+
+    private static <T> void flush(List<T> chunk, int[] indices, ChunkWriter<T> writer, List<BatchResult> results) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        for (BatchResult result : writer.write(chunk)) {
+            int index = indices[result.index()];
+            results.set(index, new BatchResult(index, result.id(), result.error()));
+        }
+        chunk.clear();
+    }
+
+    private static String validate(Validator validator, Object item) {
+        if (item == null) {
+            return "Пустой элемент";
+        }
+        Set<ConstraintViolation<Object>> violations = validator.validate(item);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    @FunctionalInterface
+    interface ChunkWriter<T> {
+        List<BatchResult> write(List<T> chunk);
+    }
+}
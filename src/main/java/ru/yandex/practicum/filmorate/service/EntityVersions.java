@@ -0,0 +1,94 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Счётчики версий читаемых данных: сервисы увеличивают их после каждого изменения, а кеш ответов сравнивает
+ * с ними сохранённые версии, не обращаясь к сервисам. Версии фильмов и списков друзей хранятся в полосах
+ * по id: изменение одного фильма меняет версию всех фильмов его полосы, что лишь изредка сбрасывает
+ * чужие ответы, зато память не зависит от числа сущностей. Версии только растут, поэтому сумма двух версий
+ * тоже меняется при изменении любой из них.
+ */
+@Component
+public class EntityVersions {
+    private static final int STRIPES = 1 << 16;
+
+    private final long epoch = ThreadLocalRandom.current().nextLong() >>> 1;
+    private final AtomicLongArray films = new AtomicLongArray(STRIPES);
+    private final AtomicLongArray friends = new AtomicLongArray(STRIPES);
+    private final AtomicLong catalog = new AtomicLong();
+    private final AtomicLong profiles = new AtomicLong();
+    private final AtomicLong trends = new AtomicLong();
+
+    /**
+     * Случайное число, выбранное при старте: версии начинаются заново после перезапуска,
+     * и клиентские ETag прошлого запуска не должны с ними совпасть.
+     */
+    public long epoch() {
+        return epoch;
+    }
+
+    /**
+     * Версия фильма вместе с его лайками.
+     */
+    public long film(long filmId) {
+        return films.get(stripe(filmId));
+    }
+
+    /**
+     * Версия каталога: меняется при любом изменении фильмов и лайков.
+     */
+    public long catalog() {
+        return catalog.get();
+    }
+
+    /**
+     * Версия трендов: меняется и при изменении лайков, и когда лайки выходят из окон трендов со временем.
+     */
+    public long trending() {
+        return catalog.get() + trends.get();
+    }
+
+    /**
+     * Версия списка друзей пользователя вместе с данными самих друзей.
+     */
+    public long friends(long userId) {
+        return friends.get(stripe(userId)) + profiles.get();
+    }
+
+    void filmChanged(long filmId) {
+        films.incrementAndGet(stripe(filmId));
+        catalog.incrementAndGet();
+    }
+
+    void filmsChanged(long[] filmIds) {
+        for (long filmId : filmIds) {
+            films.incrementAndGet(stripe(filmId));
+        }
+        catalog.incrementAndGet();
+    }
+
+    void trendsRolled() {
+        trends.incrementAndGet();
+    }
+
+    void friendsChanged(long userId, long friendId) {
+        friends.incrementAndGet(stripe(userId));
+        friends.incrementAndGet(stripe(friendId));
+    }
+
+    /**
+     * Изменились данные пользователя, которые могут входить в чужие списки друзей.
+     */
+    void profileChanged() {
+        profiles.incrementAndGet();
+    }
+
+    private static int stripe(long id) {
+        return (int) (id ^ id >>> 32) & (STRIPES - 1);
+    }
+}
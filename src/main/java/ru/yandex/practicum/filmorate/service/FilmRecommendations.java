@@ -0,0 +1,198 @@
+package ru.yandex.practicum.filmorate.service;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Рекомендации фильмов коллаборативной фильтрацией по матрице лайков.
+ * <ol>
+ *     <li>Для каждого понравившегося пользователю фильма берутся лайкнувшие его — так считается число общих лайков
+ *     с каждым другим пользователем. Фильмы делятся между задачами fork/join, каждая сортирует собранные id
+ *     и считает серии, результаты сливаются попарно.</li>
+ *     <li>{@value #NEIGHBOURS} пользователей с наибольшим числом общих лайков становятся соседями.</li>
+ *     <li>Фильм, который пользователь ещё не лайкал, получает сумму общих лайков соседей, лайкнувших его.</li>
+ * </ol>
+ * Фильмы с более чем {@value #MAX_FILM_LIKERS} лайками на первом шаге пропускаются: их любят все, о вкусе они
+ * почти ничего не говорят, а обход их лайков стоил бы больше всего остального. Весь подсчёт ограничен 200 мс:
+ * по истечении времени задачи возвращают то, что успели посчитать.
+ * <p>
+ * Задачи выполняются в собственном пуле по числу ядер, а не в общем: листья читают фильмы из хранилища,
+ * и в профиле {@code jdbc} это блокирующий ввод-вывод, который занял бы потоки параллельных стримов
+ * и асинхронных задач всего приложения.
+ */
+final class FilmRecommendations {
+    static final int MAX_LIMIT = 100;
+    private static final int NEIGHBOURS = 50;
+    private static final int MAX_FILM_LIKERS = 100_000;
+    private static final int LEAF_FILMS = 16;
+    private static final long TIME_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+    private static final Comparator<Scored> WORST_FIRST = Comparator.comparingLong(Scored::score)
+            .thenComparing(Comparator.comparingLong(Scored::id).reversed());
+
+    private final FilmStorage filmStorage;
+    private final ForkJoinPool pool;
+
+    FilmRecommendations(FilmStorage filmStorage) {
+        this.filmStorage = filmStorage;
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("film-recommendations-" + thread.getPoolIndex());
+            return thread;
+        }, null, false, 0, parallelism, 1, forkJoinPool -> true, 60, TimeUnit.SECONDS);
+    }
+
+    void stop() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Id рекомендованных фильмов, лучшие первыми, не более {@code limit}.
+     */
+    long[] recommend(long userId, int limit) {
+        long deadline = System.nanoTime() + TIME_BUDGET_NANOS;
+        long[] liked = filmStorage.likedFilms(userId);
+        if (liked.length == 0) {
+            return new long[0];
+        }
+        Overlap overlap = pool.invoke(new OverlapTask(liked, 0, liked.length, deadline));
+
+        PriorityQueue<Scored> neighbours = new PriorityQueue<>(NEIGHBOURS + 1, WORST_FIRST);
+        for (int i = 0; i < overlap.users().length; i++) {
+            if (overlap.users()[i] != userId) {
+                offer(neighbours, NEIGHBOURS, new Scored(overlap.users()[i], overlap.counts()[i]));
+            }
+        }
+
+        Map<Long, Long> scores = new HashMap<>();
+        for (Scored neighbour : neighbours) {
+            if (System.nanoTime() > deadline && !scores.isEmpty()) {
+                break;
+            }
+            for (long filmId : filmStorage.likedFilms(neighbour.id())) {
+                if (Arrays.binarySearch(liked, filmId) < 0) {
+                    scores.merge(filmId, neighbour.score(), Long::sum);
+                }
+            }
+        }
+
+        PriorityQueue<Scored> top = new PriorityQueue<>(limit + 1, WORST_FIRST);
+        scores.forEach((filmId, score) -> offer(top, limit, new Scored(filmId, score)));
+        long[] ranking = new long[top.size()];
+        for (int i = ranking.length - 1; i >= 0; i--) {
+            ranking[i] = top.poll().id();
+        }
+        return ranking;
+    }
+
+    private static void offer(PriorityQueue<Scored> top, int limit, Scored candidate) {
+        if (top.size() < limit || WORST_FIRST.compare(candidate, top.peek()) > 0) {
+            top.add(candidate);
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+    }
+
+    /**
+     * Число общих лайков по пользователям: {@code users} по возрастанию, {@code counts} — в тех же позициях.
+     */
+    private record Overlap(long[] users, int[] counts) {
+        static final Overlap EMPTY = new Overlap(new long[0], new int[0]);
+
+        static Overlap count(long[] likers, int size) {
+            Arrays.sort(likers, 0, size);
+            long[] users = new long[size];
+            int[] counts = new int[size];
+            int distinct = 0;
+            for (int start = 0, end; start < size; start = end) {
+                end = start + 1;
+                while (end < size && likers[end] == likers[start]) {
+                    end++;
+                }
+                users[distinct] = likers[start];
+                counts[distinct++] = end - start;
+            }
+            return new Overlap(Arrays.copyOf(users, distinct), Arrays.copyOf(counts, distinct));
+        }
+
+        Overlap merge(Overlap other) {
+            long[] mergedUsers = new long[users.length + other.users.length];
+            int[] mergedCounts = new int[mergedUsers.length];
+            int size = 0;
+            int left = 0;
+            int right = 0;
+            while (left < users.length || right < other.users.length) {
+                long next = Math.min(left < users.length ? users[left] : Long.MAX_VALUE,
+                        right < other.users.length ? other.users[right] : Long.MAX_VALUE);
+                int count = 0;
+                if (left < users.length && users[left] == next) {
+                    count += counts[left++];
+                }
+                if (right < other.users.length && other.users[right] == next) {
+                    count += other.counts[right++];
+                }
+                mergedUsers[size] = next;
+                mergedCounts[size++] = count;
+            }
+            return new Overlap(Arrays.copyOf(mergedUsers, size), Arrays.copyOf(mergedCounts, size));
+        }
+    }
+
+    private final class OverlapTask extends RecursiveTask<Overlap> {
+        private final long[] films;
+        private final int from;
+        private final int to;
+        private final long deadline;
+
+        OverlapTask(long[] films, int from, int to, long deadline) {
+            this.films = films;
+            this.from = from;
+            this.to = to;
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected Overlap compute() {
+            if (to - from > LEAF_FILMS) {
+                int middle = (from + to) >>> 1;
+                OverlapTask left = new OverlapTask(films, from, middle, deadline);
+                left.fork();
+                Overlap right = new OverlapTask(films, middle, to, deadline).compute();
+                return left.join().merge(right);
+            }
+            if (System.nanoTime() > deadline) {
+                return Overlap.EMPTY;
+            }
+            long[] likers = new long[0];
+            int size = 0;
+            for (Film film : filmStorage.findAllById(Arrays.copyOfRange(films, from, to))) {
+                int likes = film.getMovieRating().size();
+                if (likes > MAX_FILM_LIKERS) {
+                    continue;
+                }
+                long[] filmLikers = film.getMovieRating().toLongArray();
+                if (size + filmLikers.length > likers.length) {
+                    likers = Arrays.copyOf(likers, Math.max(size + filmLikers.length, 2 * likers.length));
+                }
+                System.arraycopy(filmLikers, 0, likers, size, filmLikers.length);
+                size += filmLikers.length;
+            }
+            return Overlap.count(likers, size);
+        }
+    }
+
+    private record Scored(long id, long score) {
+    }
+}
@@ -0,0 +1,455 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.LockStripes;
+import ru.yandex.practicum.filmorate.util.SortedLongSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Полнотекстовый поиск фильмов по обратному индексу «слово → id фильмов» отдельно для названия и описания.
+ * <p>
+ * Текст режется на слова из букв и цифр любого алфавита, приводится к нижнему регистру, «ё» заменяется на «е».
+ * Слово запроса длиной от {@value #MIN_PREFIX} символов совпадает и с началом слов фильма — так «матр» находит
+ * «Матрицу», а «фильм» — «фильмы», без отдельного стемминга. Фильм должен содержать все слова запроса.
+ * <p>
+ * Текстовая релевантность — сумма по словам запроса веса поля, умноженного на IDF слова; совпадение по началу
+ * весит вдвое меньше точного. Лучшие {@value #CANDIDATES} кандидатов загружаются из хранилища, сверяются с текущим
+ * текстом фильма и переранжируются с учётом лайков: {@code score * (1 + 0.1 * ln(1 + likes))}.
+ * <p>
+ * Индекс строится при первом поиске постраничным проходом по хранилищу, затем обновляется сервисом при создании
+ * и изменении фильмов. Списки id хранятся в {@link SortedLongSet} — около 8 байт на вхождение слова в фильм.
+ */
+@Slf4j
+final class FilmSearch {
+    static final int MAX_LIMIT = 100;
+    private static final int MIN_PREFIX = 2;
+    private static final int MAX_EXPANSIONS = 64;
+    private static final int MAX_QUERY_WORDS = 8;
+    private static final int MAX_WORD_LENGTH = 32;
+    private static final int CANDIDATES = 200;
+    private static final int BUILD_PAGE_SIZE = 1000;
+    private static final float PREFIX_WEIGHT = 0.5f;
+    private static final double LIKE_WEIGHT = 0.1;
+
+    enum Field {
+        TITLE(2, Film::getName),
+        DESCRIPTION(1, Film::getDescription);
+
+        private final float weight;
+        private final Function<Film, String> text;
+
+        Field(float weight, Function<Film, String> text) {
+            this.weight = weight;
+            this.text = text;
+        }
+    }
+
+    private final FilmStorage filmStorage;
+    private final Map<Field, Postings> postings = new EnumMap<>(Field.class);
+    private final LockStripes locks = new LockStripes();
+    private final ReadWriteLock buildLock = new ReentrantReadWriteLock();
+    private final AtomicLong documents = new AtomicLong();
+    private volatile boolean built;
+
+    FilmSearch(FilmStorage filmStorage) {
+        this.filmStorage = filmStorage;
+        for (Field field : Field.values()) {
+            postings.put(field, new Postings());
+        }
+    }
+
+    /**
+     * Добавляет в индекс только что созданные фильмы.
+     */
+    void added(List<Film> films) {
+        whenBuilt(() -> {
+            for (Film film : films) {
+                locks.withLock(film.getId(), () -> {
+                    index(film);
+                    return film;
+                });
+                documents.incrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Переиндексирует изменённый фильм: убирает слова прежней версии, которых нет в текущей, и добавляет текущие.
+     * Текущая версия перечитывается из хранилища под блокировкой фильма, поэтому при одновременных изменениях
+     * последним применяется самое свежее состояние.
+     */
+    void updated(Film previous) {
+        whenBuilt(() -> locks.withLock(previous.getId(), () -> {
+            Film current = filmStorage.findById(previous.getId()).orElse(null);
+            for (Field field : Field.values()) {
+                Set<String> stale = words(previous, field);
+                if (current != null) {
+                    stale.removeAll(words(current, field));
+                }
+                for (String word : stale) {
+                    postings.get(field).remove(word, previous.getId());
+                }
+            }
+            if (current != null) {
+                index(current);
+            }
+            return current;
+        }));
+    }
+
+    /**
+     * Лучшие по релевантности и лайкам фильмы, в которых встречаются все слова запроса, не более {@code limit}.
+     */
+    List<Film> search(String query, Set<Field> fields, int limit) {
+        ensureBuilt();
+        List<String> words = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (words.isEmpty()) {
+            return List.of();
+        }
+        words = words.subList(0, Math.min(words.size(), MAX_QUERY_WORDS));
+
+        List<List<Posting>> lists = new ArrayList<>(words.size());
+        for (String word : words) {
+            lists.add(postingsOf(word, fields));
+        }
+        lists.sort(Comparator.comparingLong(FilmSearch::estimate));
+
+        Matches matches = null;
+        for (List<Posting> wordPostings : lists) {
+            matches = matches == null ? Matches.union(wordPostings) : matches.intersect(wordPostings);
+            if (matches.size() == 0) {
+                return List.of();
+            }
+        }
+        return rank(matches.best(CANDIDATES), words, fields, limit);
+    }
+
+    private static List<String> tokenize(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean letter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                String word = text.substring(start, Math.min(i, start + MAX_WORD_LENGTH));
+                words.add(word.toLowerCase(Locale.ROOT).replace('ё', 'е'));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    private List<Film> rank(Scored[] candidates, List<String> words, Set<Field> fields, int limit) {
+        long[] ids = new long[candidates.length];
+        Map<Long, Double> textScores = new HashMap<>(candidates.length * 2);
+        for (int i = 0; i < candidates.length; i++) {
+            ids[i] = candidates[i].filmId();
+            textScores.put(ids[i], candidates[i].score());
+        }
+        List<Scored> ranked = new ArrayList<>(candidates.length);
+        Map<Long, Film> films = new HashMap<>(candidates.length * 2);
+        for (Film film : filmStorage.findAllById(ids)) {
+            // индекс может отставать от параллельного изменения фильма — сверяемся с текущим текстом
+            if (matchesAll(film, words, fields)) {
+                double likes = Math.log1p(film.getMovieRating().size());
+                ranked.add(new Scored(film.getId(), textScores.get(film.getId()) * (1 + LIKE_WEIGHT * likes)));
+                films.put(film.getId(), film);
+            }
+        }
+        ranked.sort(Scored.BEST_FIRST);
+        return ranked.stream().limit(limit).map(scored -> films.get(scored.filmId())).toList();
+    }
+
+    private static boolean matchesAll(Film film, List<String> words, Set<Field> fields) {
+        Set<String> filmWords = new HashSet<>();
+        for (Field field : fields) {
+            filmWords.addAll(words(film, field));
+        }
+        for (String word : words) {
+            boolean found = filmWords.contains(word);
+            if (!found && word.length() >= MIN_PREFIX) {
+                found = filmWords.stream().anyMatch(filmWord -> filmWord.startsWith(word));
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<Posting> postingsOf(String word, Set<Field> fields) {
+        double total = Math.max(1, documents.get());
+        List<Posting> result = new ArrayList<>();
+        for (Field field : fields) {
+            Postings fieldPostings = postings.get(field);
+            for (String term : fieldPostings.expand(word, word.length() >= MIN_PREFIX)) {
+                SortedLongSet films = fieldPostings.films(term);
+                if (films == null || films.isEmpty()) {
+                    continue;
+                }
+                float idf = (float) Math.log(1 + total / films.size());
+                float weight = field.weight * idf * (term.equals(word) ? 1 : PREFIX_WEIGHT);
+                result.add(new Posting(films, weight));
+            }
+        }
+        return result;
+    }
+
+    private static long estimate(List<Posting> wordPostings) {
+        long size = 0;
+        for (Posting posting : wordPostings) {
+            size += posting.films().size();
+        }
+        return size;
+    }
+
+    private void index(Film film) {
+        for (Field field : Field.values()) {
+            for (String word : words(film, field)) {
+                postings.get(field).add(word, film.getId());
+            }
+        }
+    }
+
+    private static Set<String> words(Film film, Field field) {
+        return new HashSet<>(tokenize(field.text.apply(film)));
+    }
+
+    private void whenBuilt(Runnable change) {
+        buildLock.readLock().lock();
+        try {
+            // до построения изменения не нужны: построение прочитает фильмы из хранилища
+            if (built) {
+                change.run();
+            }
+        } finally {
+            buildLock.readLock().unlock();
+        }
+    }
+
+    private void ensureBuilt() {
+        if (built) {
+            return;
+        }
+        buildLock.writeLock().lock();
+        try {
+            if (built) {
+                return;
+            }
+            long started = System.nanoTime();
+            List<Film> page = filmStorage.getFilms(0, BUILD_PAGE_SIZE);
+            while (!page.isEmpty()) {
+                page.forEach(this::index);
+                documents.addAndGet(page.size());
+                if (page.size() < BUILD_PAGE_SIZE) {
+                    break;
+                }
+                page = filmStorage.getFilms(page.get(page.size() - 1).getId(), BUILD_PAGE_SIZE);
+            }
+            built = true;
+            log.info("Поисковый индекс построен: фильмов {}, за {} мс", documents.get(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } finally {
+            buildLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Слова одного поля. Список id слова меняется внутри {@code compute}, поэтому одновременное удаление
+     * последнего id и добавление нового не теряют вхождение. Отсортированное множество слов нужно для поиска
+     * по началу слова.
+     */
+    private static final class Postings {
+        private final Map<String, SortedLongSet> films = new ConcurrentHashMap<>();
+        private final NavigableSet<String> words = new ConcurrentSkipListSet<>();
+
+        void add(String word, long filmId) {
+            films.compute(word, (key, ids) -> {
+                SortedLongSet updated = ids;
+                if (updated == null) {
+                    updated = new SortedLongSet();
+                    words.add(word);
+                }
+                updated.add(filmId);
+                return updated;
+            });
+        }
+
+        void remove(String word, long filmId) {
+            films.computeIfPresent(word, (key, ids) -> {
+                ids.remove(filmId);
+                if (ids.isEmpty()) {
+                    words.remove(word);
+                    return null;
+                }
+                return ids;
+            });
+        }
+
+        SortedLongSet films(String word) {
+            return films.get(word);
+        }
+
+        List<String> expand(String word, boolean prefix) {
+            if (!prefix) {
+                return films.containsKey(word) ? List.of(word) : List.of();
+            }
+            List<String> expanded = new ArrayList<>();
+            for (String candidate : words.tailSet(word)) {
+                if (!candidate.startsWith(word) || expanded.size() == MAX_EXPANSIONS) {
+                    break;
+                }
+                expanded.add(candidate);
+            }
+            return expanded;
+        }
+    }
+
+    private record Posting(SortedLongSet films, float weight) {
+    }
+
+    /**
+     * Найденные фильмы по возрастанию id и их текстовая релевантность в тех же позициях.
+     */
+    private record Matches(long[] ids, float[] scores, int size) {
+
+        /**
+         * Фильмы хотя бы из одного списка; вес фильма — наибольший из весов содержащих его списков.
+         */
+        static Matches union(List<Posting> wordPostings) {
+            PriorityQueue<Cursor> cursors = new PriorityQueue<>(Math.max(1, wordPostings.size()),
+                    Comparator.comparingLong(Cursor::current));
+            long total = 0;
+            for (Posting posting : wordPostings) {
+                long[] films = posting.films().toLongArray();
+                if (films.length > 0) {
+                    cursors.add(new Cursor(films, posting.weight()));
+                    total += films.length;
+                }
+            }
+            long[] ids = new long[(int) total];
+            float[] scores = new float[ids.length];
+            int size = 0;
+            while (!cursors.isEmpty()) {
+                Cursor cursor = cursors.poll();
+                long filmId = cursor.current();
+                if (size > 0 && ids[size - 1] == filmId) {
+                    scores[size - 1] = Math.max(scores[size - 1], cursor.weight);
+                } else {
+                    ids[size] = filmId;
+                    scores[size++] = cursor.weight;
+                }
+                if (cursor.advance()) {
+                    cursors.add(cursor);
+                }
+            }
+            return new Matches(ids, scores, size);
+        }
+
+        /**
+         * Оставляет фильмы, которые есть и в списках следующего слова, и прибавляет его вес. Когда найденных
+         * мало, каждый проверяется поиском в списках, иначе списки слова объединяются и пересекаются слиянием.
+         */
+        Matches intersect(List<Posting> wordPostings) {
+            long[] keptIds = new long[size];
+            float[] keptScores = new float[size];
+            int kept = 0;
+            if ((long) size * wordPostings.size() < estimate(wordPostings)) {
+                for (int i = 0; i < size; i++) {
+                    float best = 0;
+                    for (Posting posting : wordPostings) {
+                        if (posting.weight() > best && posting.films().contains(ids[i])) {
+                            best = posting.weight();
+                        }
+                    }
+                    if (best > 0) {
+                        keptIds[kept] = ids[i];
+                        keptScores[kept++] = scores[i] + best;
+                    }
+                }
+            } else {
+                Matches other = union(wordPostings);
+                for (int left = 0, right = 0; left < size && right < other.size; ) {
+                    if (ids[left] < other.ids[right]) {
+                        left++;
+                    } else if (ids[left] > other.ids[right]) {
+                        right++;
+                    } else {
+                        keptIds[kept] = ids[left];
+                        keptScores[kept++] = scores[left++] + other.scores[right++];
+                    }
+                }
+            }
+            return new Matches(keptIds, keptScores, kept);
+        }
+
+        /**
+         * Не более {@code count} фильмов с наибольшей релевантностью, лучшие первыми.
+         */
+        Scored[] best(int count) {
+            PriorityQueue<Scored> top = new PriorityQueue<>(count + 1, Scored.BEST_FIRST.reversed());
+            for (int i = 0; i < size; i++) {
+                Scored candidate = new Scored(ids[i], scores[i]);
+                if (top.size() < count || Scored.BEST_FIRST.compare(candidate, top.peek()) < 0) {
+                    top.add(candidate);
+                    if (top.size() > count) {
+                        top.poll();
+                    }
+                }
+            }
+            Scored[] best = top.toArray(new Scored[0]);
+            Arrays.sort(best, Scored.BEST_FIRST);
+            return best;
+        }
+    }
+
+    private static final class Cursor {
+        private final long[] films;
+        private final float weight;
+        private int position;
+
+        Cursor(long[] films, float weight) {
+            this.films = films;
+            this.weight = weight;
+        }
+
+        long current() {
+            return films[position];
+        }
+
+        boolean advance() {
+            return ++position < films.length;
+        }
+    }
+
+    private record Scored(long filmId, double score) {
+        static final Comparator<Scored> BEST_FIRST = Comparator.comparingDouble(Scored::score).reversed()
+                .thenComparingLong(Scored::filmId);
+    }
+}
@@ -1,47 +1,123 @@
 package ru.yandex.practicum.filmorate.service;
 
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.Validator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.ConflictException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmGenre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.MpaRating;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
 
+import java.time.Clock;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
+@Timed(value = "filmorate.service", histogram = true)
 public class FilmService {
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int STREAM_PAGE_SIZE = 500;
+
     private final UserService userService;
     private final FilmStorage filmStorage;
+    private final Validator validator;
+    private final EntityVersions versions;
+    private final FilmRecommendations recommendations;
+    private final FilmSearch search;
+    private final FilmTrends trends;
+    private final ApproximatePopularity approximatePopularity;
+
+    public FilmService(UserService userService, FilmStorage filmStorage, Validator validator, EntityVersions versions) {
+        this(userService, filmStorage, validator, versions, Optional.empty());
+    }
 
+    /**
+     * {@code approximatePopularity} есть, только если включён приблизительный топ: тогда топ без фильтров
+     * читается из него, а не из индекса хранилища.
+     */
     @Autowired
-    public FilmService(UserService userService, FilmStorage filmStorage) {
+    public FilmService(UserService userService, FilmStorage filmStorage, Validator validator, EntityVersions versions,
+                       Optional<ApproximatePopularity> approximatePopularity) {
         this.userService = userService;
         this.filmStorage = filmStorage;
+        this.validator = validator;
+        this.versions = versions;
+        this.recommendations = new FilmRecommendations(filmStorage);
+        this.search = new FilmSearch(filmStorage);
+        this.trends = new FilmTrends(versions, Clock.systemUTC());
+        this.approximatePopularity = approximatePopularity.orElse(null);
     }
 
-    public Film create(Film film) {
-        film = film.toBuilder()
-                .id(getNextId())
-                .build();
+    @PostConstruct
+    void startTrends() {
+        trends.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        trends.stop();
+        recommendations.stop();
+    }
 
-        filmStorage.create(film);
+    public Film create(Film film) {
+        film = filmStorage.create(film);
+        search.added(List.of(film));
+        versions.filmChanged(film.getId());
         log.info("Добавлен новый фильм \"{}\" c id {}", film.getName(), film.getId());
         return film;
     }
 
+    public List<BatchResult> createAll(Iterator<Film> films) {
+        return BatchImport.run(films, validator, chunk -> {
+            List<Film> created = filmStorage.createAll(chunk);
+            search.added(created);
+            versions.filmsChanged(created.stream().mapToLong(Film::getId).toArray());
+            log.info("Пакетно добавлено фильмов: {}", created.size());
+            List<BatchResult> results = new ArrayList<>(created.size());
+            for (int i = 0; i < created.size(); i++) {
+                results.add(BatchResult.ok(i, created.get(i).getId()));
+            }
+            return results;
+        });
+    }
+
     public Film update(Film film) {
-        Film oldFilm = findFilmById(film.getId());
+        return update(film, null);
+    }
 
-        film.getMovieRating().addAll(oldFilm.getMovieRating());
+    /**
+     * Обновляет фильм, если его версия равна {@code expectedVersion}; без ожидаемой версии обновляет безусловно.
+     * Лайки фильма сохраняются и версию не меняют.
+     */
+    public Film update(Film film, Long expectedVersion) {
+        Film previous = findFilmById(film.getId());
 
-        filmStorage.update(film);
-        log.info("Фильм c id {} обновлен", film.getId());
-        return film;
+        Film updated = filmStorage.update(film, expectedVersion == null ? FilmStorage.ANY_VERSION : expectedVersion)
+                .orElseThrow(() -> new ConflictException("Фильм с id " + film.getId()
+                        + " изменён: ожидалась версия " + expectedVersion));
+        search.updated(previous);
+        versions.filmChanged(film.getId());
+        log.info("Фильм c id {} обновлен до версии {}", film.getId(), updated.getVersion());
+        return updated;
     }
 
     public Film findById(Long filmId) {
@@ -53,38 +129,194 @@ public class FilmService {
         return filmStorage.getFilms();
     }
 
+    public List<Film> getFilms(long afterId, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        return filmStorage.getFilms(afterId, limit);
+    }
+
+    /**
+     * Обходит все фильмы с id больше {@code afterId}, запрашивая их у хранилища страницами.
+     */
+    public void forEachFilm(long afterId, Consumer<Film> action) {
+        List<Film> page = filmStorage.getFilms(afterId, STREAM_PAGE_SIZE);
+        while (!page.isEmpty()) {
+            page.forEach(action);
+            if (page.size() < STREAM_PAGE_SIZE) {
+                return;
+            }
+            page = filmStorage.getFilms(page.get(page.size() - 1).getId(), STREAM_PAGE_SIZE);
+        }
+    }
+
     public void addLike(Long filmId, Long userId) {
         Film film = findFilmById(filmId);
         User user = userService.findById(userId);
 
-        if (film.getMovieRating().contains(userId)) {
+        if (!filmStorage.addLike(filmId, userId)) {
             throw new IllegalArgumentException("Пользователь уже ставил лайк этому фильму");
         }
-
-        film.getMovieRating().add(userId);
+        if (!userService.exists(userId)) {
+            // пользователя начали удалять после проверки, и лайк мог не попасть под снятие его лайков
+            filmStorage.deleteLike(filmId, userId);
+            throw new NotFoundException("Пользователь с id = " + userId + " не найден");
+        }
+        trends.liked(filmId);
+        if (approximatePopularity != null) {
+            approximatePopularity.liked(filmId);
+        }
+        versions.filmChanged(filmId);
         log.info("Пользователь {} поставил лайк фильму \"{}\"", user.getName(), film.getName());
     }
 
+    public List<BatchResult> addLikes(Iterator<Like> likes) {
+        return BatchImport.run(likes, validator, chunk -> {
+            Set<Long> films = filmStorage.existingIds(chunk.stream().map(Like::filmId).collect(Collectors.toSet()));
+            Set<Long> users = userService.existingIds(chunk.stream().map(Like::userId).collect(Collectors.toSet()));
+
+            List<BatchResult> results = new ArrayList<>(chunk.size());
+            List<Like> valid = new ArrayList<>(chunk.size());
+            List<Integer> positions = new ArrayList<>(chunk.size());
+            for (int i = 0; i < chunk.size(); i++) {
+                Like like = chunk.get(i);
+                if (!films.contains(like.filmId())) {
+                    results.add(BatchResult.failed(i, "Фильм с id = " + like.filmId() + " не найден"));
+                } else if (!users.contains(like.userId())) {
+                    results.add(BatchResult.failed(i, "Пользователь с id = " + like.userId() + " не найден"));
+                } else {
+                    valid.add(like);
+                    positions.add(i);
+                }
+            }
+
+            boolean[] added = filmStorage.addLikes(valid);
+            Set<Long> remaining = userService.existingIds(users);
+            versions.filmsChanged(valid.stream().mapToLong(Like::filmId).distinct().toArray());
+            for (int i = 0; i < added.length; i++) {
+                Like like = valid.get(i);
+                if (added[i] && !remaining.contains(like.userId())) {
+                    // как и в addLike: пользователя начали удалять после проверки
+                    filmStorage.deleteLike(like.filmId(), like.userId());
+                    results.add(BatchResult.failed(positions.get(i),
+                            "Пользователь с id = " + like.userId() + " не найден"));
+                    continue;
+                }
+                if (added[i]) {
+                    trends.liked(valid.get(i).filmId());
+                    if (approximatePopularity != null) {
+                        approximatePopularity.liked(valid.get(i).filmId());
+                    }
+                }
+                results.add(added[i]
+                        ? BatchResult.ok(positions.get(i), null)
+                        : BatchResult.failed(positions.get(i), "Пользователь уже ставил лайк этому фильму"));
+            }
+            log.info("Пакетно добавлено лайков: {} из {}", valid.size(), chunk.size());
+            return results;
+        });
+    }
+
     public void deleteLike(Long filmId, Long userId) {
         Film film = findFilmById(filmId);
         User user = userService.findById(userId);
 
-        film.getMovieRating().remove(userId);
+        if (filmStorage.deleteLike(filmId, userId)) {
+            trends.unliked(filmId);
+            if (approximatePopularity != null) {
+                approximatePopularity.unliked(filmId);
+            }
+            versions.filmChanged(filmId);
+        }
         log.info("Пользователь {} удалил лайк фильму \"{}\"", user.getName(), film.getName());
     }
 
     public List<Film> getTopFilms(int count) {
+        if (approximatePopularity != null) {
+            return filmStorage.findAllById(approximatePopularity.top(count));
+        }
         return filmStorage.getTopFilms(count);
     }
 
-    private Film findFilmById(Long filmId) {
-        return filmStorage.findById(filmId)
-                .orElseThrow(() -> new NotFoundException("Фильм с id = " + filmId + " не найден"));
+    /**
+     * Топ популярных фильмов с фильтрами по жанру, возрастному рейтингу и году выхода; {@code null} — без фильтра.
+     * Id жанров совпадают с таблицей {@code genres}: от 1 в порядке {@link FilmGenre}.
+     */
+    public List<Film> getTopFilms(int count, Integer genreId, MpaRating mpa, Integer year) {
+        if (genreId == null && mpa == null && year == null) {
+            return getTopFilms(count);
+        }
+        FilmGenre genre = null;
+        if (genreId != null) {
+            if (genreId < 1 || genreId > FilmGenre.values().length) {
+                throw new NotFoundException("Жанр с id = " + genreId + " не найден");
+            }
+            genre = FilmGenre.values()[genreId - 1];
+        }
+        return filmStorage.getTopFilms(count, genre, mpa, year);
     }
 
-    private final AtomicLong idGenerator = new AtomicLong(0);
+    /**
+     * Фильмы с наибольшим приростом лайков за окно {@code 1h}, {@code 24h} или {@code 7d}.
+     */
+    public List<Film> getTrendingFilms(String window, int count) {
+        FilmTrends.Window trendWindow = FilmTrends.Window.of(window);
+        if (trendWindow == null) {
+            throw new ValidationException("Окно трендов должно быть 1h, 24h или 7d, а не " + window);
+        }
+        if (count < 1 || count > FilmTrends.MAX_LIMIT) {
+            throw new ValidationException("Число фильмов должно быть от 1 до " + FilmTrends.MAX_LIMIT);
+        }
+        return filmStorage.findAllById(trends.top(trendWindow, count).stream().mapToLong(Long::longValue).toArray());
+    }
 
-    private long getNextId() {
-        return idGenerator.incrementAndGet();
+    /**
+     * Поиск по словам в названии и (или) описании, {@code by} — поля через запятую: {@code title}, {@code description}.
+     */
+    public List<Film> search(String query, String by, int limit) {
+        if (query == null || query.isBlank()) {
+            throw new ValidationException("Поисковый запрос не должен быть пустым");
+        }
+        if (limit < 1 || limit > FilmSearch.MAX_LIMIT) {
+            throw new ValidationException("Число результатов должно быть от 1 до " + FilmSearch.MAX_LIMIT);
+        }
+        Set<FilmSearch.Field> fields = EnumSet.noneOf(FilmSearch.Field.class);
+        for (String field : by.split(",")) {
+            switch (field.trim().toLowerCase(Locale.ROOT)) {
+                case "title" -> fields.add(FilmSearch.Field.TITLE);
+                case "description" -> fields.add(FilmSearch.Field.DESCRIPTION);
+                default -> throw new ValidationException("Искать можно по title и description, а не по " + field);
+            }
+        }
+        return search.search(query, fields, limit);
+    }
+
+    /**
+     * Страница понравившихся пользователю фильмов по возрастанию id, начиная после {@code afterId}.
+     */
+    public List<Film> getLikedFilms(Long userId, long afterId, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        userService.findById(userId);
+
+        return filmStorage.findAllById(filmStorage.likedFilms(userId, afterId, limit));
+    }
+
+    /**
+     * Фильмы, которые понравились пользователям с похожими лайками, но ещё не понравились этому пользователю.
+     */
+    public List<Film> getRecommendedFilms(Long userId, int limit) {
+        if (limit < 1 || limit > FilmRecommendations.MAX_LIMIT) {
+            throw new ValidationException("Число рекомендаций должно быть от 1 до " + FilmRecommendations.MAX_LIMIT);
+        }
+        userService.findById(userId);
+
+        return filmStorage.findAllById(recommendations.recommend(userId, limit));
+    }
+
+    private Film findFilmById(Long filmId) {
+        return filmStorage.findById(filmId)
+                .orElseThrow(() -> new NotFoundException("Фильм с id = " + filmId + " не найден"));
     }
 }
\ No newline at end of file
@@ -0,0 +1,158 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.filmorate.storage.LockStripes;
+import ru.yandex.practicum.filmorate.storage.PopularityIndex;
+import ru.yandex.practicum.filmorate.util.TrendCounter;
+
+import java.time.Clock;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+
+/**
+ * Фильмы, набирающие лайки: у каждого фильма с недавними лайками есть {@link TrendCounter} со скользящими окнами
+ * часа, суток и недели, а по каждому окну поддерживается {@link PopularityIndex}, так что топ читается
+ * за O(K) без обхода фильмов. Удалённый лайк вычитается из текущих корзин, поэтому окно показывает прирост
+ * лайков за период; фильмы без прироста в рейтинг окна не попадают.
+ * <p>
+ * Раз в минуту фоновый компактор сдвигает окна всех счётчиков, обновляет индексы и выбрасывает пустые счётчики.
+ * Лайки удалённых пользователей остаются в счётчиках, пока не выйдут из окон.
+ */
+@Slf4j
+final class FilmTrends {
+    static final int MAX_LIMIT = 100;
+    private static final int CACHED_TOP_SIZE = 10;
+    private static final long MINUTE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    enum Window {
+        HOUR("1h", TrendCounter::lastHour),
+        DAY("24h", TrendCounter::lastDay),
+        WEEK("7d", TrendCounter::lastWeek);
+
+        private final String name;
+        private final ToIntFunction<TrendCounter> likes;
+
+        Window(String name, ToIntFunction<TrendCounter> likes) {
+            this.name = name;
+            this.likes = likes;
+        }
+
+        static Window of(String name) {
+            for (Window window : values()) {
+                if (window.name.equals(name)) {
+                    return window;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final Map<Long, TrendCounter> counters = new ConcurrentHashMap<>();
+    private final Map<Window, PopularityIndex> rankings = new EnumMap<>(Window.class);
+    private final LockStripes locks = new LockStripes();
+    private final EntityVersions versions;
+    private final Clock clock;
+    private ScheduledExecutorService compactor;
+
+    FilmTrends(EntityVersions versions, Clock clock) {
+        this.versions = versions;
+        this.clock = clock;
+        for (Window window : Window.values()) {
+            rankings.put(window, new PopularityIndex(CACHED_TOP_SIZE));
+        }
+    }
+
+    void start() {
+        compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "trends-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(this::compactQuietly, MINUTE_MILLIS, MINUTE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    void stop() {
+        if (compactor != null) {
+            compactor.shutdownNow();
+        }
+    }
+
+    void liked(long filmId) {
+        changed(filmId, 1);
+    }
+
+    void unliked(long filmId) {
+        changed(filmId, -1);
+    }
+
+    private void changed(long filmId, int delta) {
+        long now = minute();
+        locks.withLock(filmId, () -> {
+            TrendCounter counter = counters.computeIfAbsent(filmId, id -> new TrendCounter(now));
+            counter.add(now, delta);
+            reindex(filmId, counter);
+            return counter;
+        });
+    }
+
+    /**
+     * Id фильмов с наибольшим приростом лайков за окно.
+     */
+    List<Long> top(Window window, int count) {
+        return rankings.get(window).top(count);
+    }
+
+    /**
+     * Сдвигает окна всех счётчиков к текущей минуте. Если хоть одно окно изменилось, версия трендов растёт,
+     * и кешированные ответы перестают совпадать.
+     */
+    void compact() {
+        long now = minute();
+        boolean[] rolled = new boolean[1];
+        for (Long filmId : counters.keySet()) {
+            locks.withLock(filmId, () -> {
+                TrendCounter counter = counters.get(filmId);
+                if (counter != null && counter.roll(now)) {
+                    rolled[0] = true;
+                    reindex(filmId, counter);
+                }
+                if (counter != null && counter.isEmpty()) {
+                    counters.remove(filmId);
+                }
+                return counter;
+            });
+        }
+        if (rolled[0]) {
+            versions.trendsRolled();
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (RuntimeException e) {
+            log.error("Не удалось сдвинуть окна трендов", e);
+        }
+    }
+
+    private void reindex(long filmId, TrendCounter counter) {
+        for (Window window : Window.values()) {
+            int likes = window.likes.applyAsInt(counter);
+            if (likes > 0) {
+                rankings.get(window).update(filmId, likes);
+            } else {
+                rankings.get(window).remove(filmId);
+            }
+        }
+    }
+
+    private long minute() {
+        return clock.millis() / MINUTE_MILLIS;
+    }
+}
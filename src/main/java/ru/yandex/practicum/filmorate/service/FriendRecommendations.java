@@ -0,0 +1,159 @@
+package ru.yandex.practicum.filmorate.service;
+
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.util.SortedLongSet;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Рекомендации друзей: друзья друзей, ранжированные по числу общих друзей, при равенстве — по id.
+ * <p>
+ * Обход второго уровня ограничен {@value #EDGE_BUDGET} рёбрами и 100 мс по времени:
+ * у пользователя-хаба ранжирование строится по той части друзей, что успела обойтись.
+ * Достигнутые id собираются в массив и сортируются, так что общие друзья считаются подсчётом серий,
+ * а лучшие кандидаты отбираются кучей размера {@code limit}.
+ * <p>
+ * Ранжирование пользователей с {@value #HEAVY_USER_FRIENDS} и более друзьями кешируется на {@value #MAX_LIMIT}
+ * позиций. Дружба {@code u — v} меняет рекомендации только у {@code u}, {@code v} и их друзей,
+ * поэтому из кеша удаляются только они.
+ */
+final class FriendRecommendations {
+    static final int MAX_LIMIT = 100;
+    static final int HEAVY_USER_FRIENDS = 500;
+    private static final int EDGE_BUDGET = 2_000_000;
+    private static final long TIME_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int FRIEND_BATCH = 256;
+    private static final Comparator<Candidate> WORST_FIRST = Comparator.comparingInt(Candidate::mutualFriends)
+            .thenComparing(Comparator.comparingLong(Candidate::userId).reversed());
+
+    private final UserStorage userStorage;
+    private final Map<Long, long[]> cache = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    FriendRecommendations(UserStorage userStorage) {
+        this.userStorage = userStorage;
+    }
+
+    /**
+     * Id рекомендованных пользователей, лучшие первыми, не более {@code limit}.
+     */
+    long[] recommend(User user, int limit) {
+        if (user.getFriends().size() < HEAVY_USER_FRIENDS) {
+            return rank(user, limit);
+        }
+        long[] ranking = cache.get(user.getId());
+        if (ranking == null) {
+            long before = generation.get();
+            ranking = rank(user, MAX_LIMIT);
+            cache.put(user.getId(), ranking);
+            if (generation.get() != before) {
+                // дружба изменилась во время подсчёта — ранжирование могло устареть
+                cache.remove(user.getId(), ranking);
+            }
+        }
+        return ranking.length > limit ? Arrays.copyOf(ranking, limit) : ranking;
+    }
+
+    /**
+     * Сбрасывает кеш у пользователей, чьё окружение изменила дружба {@code user — friend}.
+     */
+    void friendshipChanged(User user, User friend) {
+        generation.incrementAndGet();
+        if (cache.isEmpty()) {
+            return;
+        }
+        cache.remove(user.getId());
+        cache.remove(friend.getId());
+        evictFriendsOf(user.getFriends());
+        evictFriendsOf(friend.getFriends());
+    }
+
+    /**
+     * Сбрасывает весь кеш — после пакетного импорта дружб дешевле пересчитать, чем искать затронутых.
+     */
+    void friendshipsChanged() {
+        generation.incrementAndGet();
+        cache.clear();
+    }
+
+    private void evictFriendsOf(SortedLongSet friends) {
+        if (cache.size() < friends.size()) {
+            cache.keySet().removeIf(friends::contains);
+        } else {
+            for (long friendId : friends.toLongArray()) {
+                cache.remove(friendId);
+            }
+        }
+    }
+
+    private long[] rank(User user, int limit) {
+        long[] friends = user.getFriends().toLongArray();
+        long[] reached = reachSecondDegree(friends);
+        Arrays.sort(reached);
+
+        PriorityQueue<Candidate> top = new PriorityQueue<>(limit + 1, WORST_FIRST);
+        int friend = 0;
+        for (int start = 0, end; start < reached.length; start = end) {
+            long candidate = reached[start];
+            end = start + 1;
+            while (end < reached.length && reached[end] == candidate) {
+                end++;
+            }
+            while (friend < friends.length && friends[friend] < candidate) {
+                friend++;
+            }
+            if (candidate == user.getId() || friend < friends.length && friends[friend] == candidate) {
+                continue;
+            }
+            int mutualFriends = end - start;
+            // кандидаты идут по возрастанию id, поэтому при равном счёте новый всегда хуже уже отобранных
+            if (top.size() < limit || mutualFriends > top.peek().mutualFriends()) {
+                top.add(new Candidate(candidate, mutualFriends));
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+        }
+
+        long[] ranking = new long[top.size()];
+        for (int i = ranking.length - 1; i >= 0; i--) {
+            ranking[i] = top.poll().userId();
+        }
+        return ranking;
+    }
+
+    private long[] reachSecondDegree(long[] friends) {
+        long deadline = System.nanoTime() + TIME_BUDGET_NANOS;
+        long[] reached = new long[(int) Math.min(EDGE_BUDGET, friends.length * 16L + 16)];
+        int size = 0;
+        for (int from = 0; from < friends.length && size < EDGE_BUDGET; from += FRIEND_BATCH) {
+            if (from > 0 && System.nanoTime() > deadline) {
+                break;
+            }
+            List<User> batch = userStorage.findAllById(
+                    Arrays.copyOfRange(friends, from, Math.min(friends.length, from + FRIEND_BATCH)));
+            for (User friend : batch) {
+                long[] secondDegree = friend.getFriends().toLongArray();
+                int copied = Math.min(secondDegree.length, EDGE_BUDGET - size);
+                if (size + copied > reached.length) {
+                    long capacity = Math.max(size + copied, 2L * reached.length);
+                    reached = Arrays.copyOf(reached, (int) Math.min(EDGE_BUDGET, capacity));
+                }
+                System.arraycopy(secondDegree, 0, reached, size, copied);
+                size += copied;
+            }
+        }
+        return Arrays.copyOf(reached, size);
+    }
+
+    private record Candidate(long userId, int mutualFriends) {
+    }
+}
@@ -0,0 +1,301 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.OverloadedException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.Like;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Асинхронный приём лайков и дружб. Запрос проверяет, что фильм и пользователи существуют, кладёт изменение
+ * в кольцевой буфер своей очереди и сразу получает токен записи. У каждой очереди один поток, который забирает
+ * изменения пачками и применяет подряд идущие однотипные изменения одним пакетным вызовом сервиса: лайки одного
+ * фильма из пачки ставятся под одной блокировкой, а индекс популярности обновляется один раз на фильм.
+ * <p>
+ * Лайки распределяются по очередям по id фильма, поэтому лайки «вирусного» фильма применяет один поток и запросы
+ * не толкаются на его блокировке. Дружбы распределяются по меньшему id пары, так что встречные изменения одной
+ * дружбы применяются в порядке приёма. Повторный лайк или уже существующая дружба в этом режиме не ошибка
+ * запроса: такое изменение просто ничего не меняет.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.ingest.async.enabled", havingValue = "true")
+public class IngestPipeline {
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final FilmService filmService;
+    private final UserService userService;
+    private final int batchSize;
+    private final Shard[] shards;
+    private final WriteProgress progress = new WriteProgress();
+    private volatile boolean accepting;
+    private volatile boolean running;
+
+    public IngestPipeline(FilmService filmService, UserService userService, MeterRegistry registry,
+                          @Value("${filmorate.ingest.async.shards:4}") int shards,
+                          @Value("${filmorate.ingest.async.buffer-size:65536}") int bufferSize,
+                          @Value("${filmorate.ingest.async.batch-size:1024}") int batchSize) {
+        this.filmService = filmService;
+        this.userService = userService;
+        this.batchSize = batchSize;
+        this.shards = new Shard[shards];
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new Shard(i, new IngestRing(bufferSize));
+        }
+        Gauge.builder("filmorate.ingest.backlog", this, IngestPipeline::backlog)
+                .description("Принятые, но ещё не применённые лайки и дружбы")
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        accepting = true;
+        for (Shard shard : shards) {
+            shard.worker = new Thread(shard::run, "ingest-" + shard.number);
+            shard.worker.setDaemon(true);
+            shard.worker.start();
+        }
+    }
+
+    /**
+     * Останавливает потоки очередей, дождавшись применения уже принятых изменений. Сначала закрывается приём
+     * и дожидаются запросы, уже прошедшие проверку, — только после этого потоки очередей могут выйти,
+     * разобрав буферы до конца.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        accepting = false;
+        for (Shard shard : shards) {
+            while (shard.enqueuing.get() > 0) {
+                Thread.onSpinWait();
+            }
+        }
+        running = false;
+        for (Shard shard : shards) {
+            LockSupport.unpark(shard.worker);
+        }
+        for (Shard shard : shards) {
+            shard.worker.join();
+        }
+    }
+
+    /**
+     * @return токен записи пользователя {@code userId}
+     */
+    public String likeAdded(long filmId, long userId) {
+        checkLike(filmId, userId);
+        return enqueue(Kind.LIKE_ADDED, filmId, userId, userId, filmId);
+    }
+
+    public String likeDeleted(long filmId, long userId) {
+        checkLike(filmId, userId);
+        return enqueue(Kind.LIKE_DELETED, filmId, userId, userId, filmId);
+    }
+
+    public String friendAdded(long userId, long friendId) {
+        checkFriendship(userId, friendId, "Нельзя добавить самого себя в друзья");
+        return enqueue(Kind.FRIEND_ADDED, userId, friendId, userId, Math.min(userId, friendId));
+    }
+
+    public String friendDeleted(long userId, long friendId) {
+        checkFriendship(userId, friendId, "Нельзя удалить самого себя из друзей");
+        return enqueue(Kind.FRIEND_DELETED, userId, friendId, userId, Math.min(userId, friendId));
+    }
+
+    /**
+     * Ждёт, пока будут применены все изменения владельца токена, принятые не позже изменения с этим токеном.
+     *
+     * @return {@code false}, если время ожидания истекло
+     */
+    public boolean awaitApplied(String token, Duration timeout) {
+        int separator = token.indexOf(':');
+        long userId;
+        long sequence;
+        try {
+            userId = Long.parseLong(token.substring(0, Math.max(separator, 0)));
+            sequence = Long.parseLong(token.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            throw new ValidationException("Некорректный токен записи: " + token);
+        }
+        try {
+            return progress.await(userId, sequence, timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    long backlog() {
+        return Arrays.stream(shards).mapToLong(shard -> shard.ring.backlog()).sum();
+    }
+
+    private void checkLike(long filmId, long userId) {
+        filmService.findById(filmId);
+        userService.findById(userId);
+    }
+
+    private void checkFriendship(long userId, long friendId, String selfMessage) {
+        if (userId == friendId) {
+            throw new ValidationException(selfMessage);
+        }
+        userService.findById(userId);
+        userService.findById(friendId);
+    }
+
+    private String enqueue(Kind kind, long first, long second, long userId, long routingId) {
+        Shard shard = shards[Math.floorMod(Long.hashCode(routingId * 0x9E3779B97F4A7C15L), shards.length)];
+        shard.enqueuing.incrementAndGet();
+        try {
+            if (!accepting) {
+                throw new OverloadedException("Приём изменений остановлен");
+            }
+            return offer(shard, kind, first, second, userId);
+        } finally {
+            shard.enqueuing.decrementAndGet();
+        }
+    }
+
+    private String offer(Shard shard, Kind kind, long first, long second, long userId) {
+        long sequence = progress.issue(userId);
+        boolean accepted = shard.ring.offer(mutation -> {
+            mutation.kind = kind;
+            mutation.first = first;
+            mutation.second = second;
+            mutation.userId = userId;
+            mutation.sequence = sequence;
+        });
+        if (!accepted) {
+            progress.applied(userId, sequence);
+            throw new OverloadedException("Очередь изменений переполнена, повторите запрос позже");
+        }
+        if (shard.idle) {
+            LockSupport.unpark(shard.worker);
+        }
+        return userId + ":" + sequence;
+    }
+
+    enum Kind {
+        LIKE_ADDED,
+        LIKE_DELETED,
+        FRIEND_ADDED,
+        FRIEND_DELETED
+    }
+
+    /**
+     * Ячейка кольцевого буфера; поля перезаписываются при каждом новом изменении.
+     */
+    static final class Mutation {
+        Kind kind;
+        long first;
+        long second;
+        long userId;
+        long sequence;
+    }
+
+    private record Accepted(Kind kind, long first, long second, long userId, long sequence) {
+    }
+
+    private final class Shard {
+        final int number;
+        final IngestRing ring;
+        final List<Accepted> batch = new ArrayList<>();
+        /**
+         * Запросы, которые прошли проверку открытого приёма и ещё кладут изменение в буфер.
+         */
+        final AtomicInteger enqueuing = new AtomicInteger();
+        Thread worker;
+        volatile boolean idle;
+
+        Shard(int number, IngestRing ring) {
+            this.number = number;
+            this.ring = ring;
+        }
+
+        void run() {
+            while (running || !ring.isEmpty()) {
+                int drained = ring.drain(batchSize, mutation -> batch.add(new Accepted(mutation.kind,
+                        mutation.first, mutation.second, mutation.userId, mutation.sequence)));
+                if (drained > 0) {
+                    apply();
+                    continue;
+                }
+                idle = true;
+                if (ring.isEmpty() && running) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                idle = false;
+            }
+        }
+
+        /**
+         * Применяет пачку по порядку, объединяя подряд идущие добавления лайков и дружб в пакетные вызовы.
+         */
+        private void apply() {
+            int from = 0;
+            while (from < batch.size()) {
+                Kind kind = batch.get(from).kind();
+                int to = from + 1;
+                while (to < batch.size() && batch.get(to).kind() == kind) {
+                    to++;
+                }
+                List<Accepted> run = batch.subList(from, to);
+                try {
+                    applyRun(kind, run);
+                } catch (RuntimeException e) {
+                    log.warn("Не удалось применить {} изменений {}: {}", run.size(), kind, e.getMessage());
+                }
+                from = to;
+            }
+            batch.forEach(accepted -> progress.applied(accepted.userId(), accepted.sequence()));
+            batch.clear();
+            progress.signal();
+        }
+
+        private void applyRun(Kind kind, List<Accepted> run) {
+            switch (kind) {
+                case LIKE_ADDED -> logRejected(kind, filmService.addLikes(run.stream()
+                        .map(accepted -> new Like(accepted.first(), accepted.second())).iterator()));
+                case FRIEND_ADDED -> logRejected(kind, userService.applyFriends(run.stream()
+                        .map(accepted -> new Friendship(accepted.first(), accepted.second())).iterator()));
+                case LIKE_DELETED -> run.forEach(accepted -> applyOne(kind, accepted,
+                        () -> filmService.deleteLike(accepted.first(), accepted.second())));
+                case FRIEND_DELETED -> run.forEach(accepted -> applyOne(kind, accepted,
+                        () -> userService.deleteFriend(accepted.first(), accepted.second())));
+            }
+        }
+
+        private void applyOne(Kind kind, Accepted accepted, Runnable change) {
+            try {
+                change.run();
+            } catch (RuntimeException e) {
+                log.debug("Изменение {} {} -> {} не применено: {}", kind, accepted.first(), accepted.second(),
+                        e.getMessage());
+            }
+        }
+
+        private void logRejected(Kind kind, List<BatchResult> results) {
+            long rejected = results.stream().map(BatchResult::error).filter(Objects::nonNull).count();
+            if (rejected > 0) {
+                log.debug("Изменений {} без эффекта: {} из {}", kind, rejected, results.size());
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package ru.yandex.practicum.filmorate.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Ограниченный кольцевой буфер изменений со многими писателями и одним читателем, как в Disruptor: события
+ * лежат в заранее созданных ячейках, писатель захватывает номер CAS-ом, заполняет ячейку и публикует номер,
+ * а читатель забирает подряд опубликованные ячейки пачкой и освобождает их, когда перепишет себе события.
+ */
+final class IngestRing {
+    private final IngestPipeline.Mutation[] slots;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private final AtomicLong consumed = new AtomicLong(-1);
+
+    IngestRing(int minCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(2, minCapacity) - 1) << 1;
+        slots = new IngestPipeline.Mutation[capacity];
+        published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new IngestPipeline.Mutation();
+            published.set(i, -1);
+        }
+        mask = capacity - 1;
+    }
+
+    /**
+     * Записывает событие в следующую свободную ячейку.
+     *
+     * @return {@code false}, если буфер заполнен и читатель ещё не освободил ни одной ячейки
+     */
+    boolean offer(Consumer<IngestPipeline.Mutation> writer) {
+        long sequence;
+        do {
+            long last = claimed.get();
+            sequence = last + 1;
+            if (sequence - consumed.get() > slots.length) {
+                return false;
+            }
+            if (claimed.compareAndSet(last, sequence)) {
+                break;
+            }
+        } while (true);
+        int index = (int) sequence & mask;
+        writer.accept(slots[index]);
+        published.set(index, sequence);
+        return true;
+    }
+
+    /**
+     * Передаёт читателю до {@code maxBatch} подряд опубликованных событий и освобождает их ячейки: после возврата
+     * ячейки перезаписываются, поэтому читатель должен скопировать нужные поля. Вызывается только из потока-читателя.
+     *
+     * @return количество обработанных событий
+     */
+    int drain(int maxBatch, Consumer<IngestPipeline.Mutation> reader) {
+        long next = consumed.get() + 1;
+        long end = next;
+        while (end - next < maxBatch && published.get((int) end & mask) == end) {
+            end++;
+        }
+        for (long sequence = next; sequence < end; sequence++) {
+            reader.accept(slots[(int) sequence & mask]);
+        }
+        consumed.set(end - 1);
+        return (int) (end - next);
+    }
+
+    boolean isEmpty() {
+        long next = consumed.get() + 1;
+        return published.get((int) next & mask) != next;
+    }
+
+    long backlog() {
+        return claimed.get() - consumed.get();
+    }
+}
@@ -1,46 +1,131 @@
 package ru.yandex.practicum.filmorate.service;
 
+import io.micrometer.core.annotation.Timed;
+import jakarta.validation.Validator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.ConflictException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Optional;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
+@Timed(value = "filmorate.service", histogram = true)
 public class UserService {
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int STREAM_PAGE_SIZE = 500;
+
     private final UserStorage userStorage;
+    private final FilmStorage filmStorage;
+    private final Validator validator;
+    private final EntityVersions versions;
+    private final FriendRecommendations recommendations;
+    private final Set<Long> deleting = ConcurrentHashMap.newKeySet();
 
     @Autowired
-    public UserService(UserStorage userStorage) {
+    public UserService(UserStorage userStorage, FilmStorage filmStorage, Validator validator, EntityVersions versions) {
         this.userStorage = userStorage;
+        this.filmStorage = filmStorage;
+        this.validator = validator;
+        this.versions = versions;
+        this.recommendations = new FriendRecommendations(userStorage);
     }
 
     public User create(User user) {
-        user = user.toBuilder()
-                .id(getNextId())
-                .build();
-
-        userStorage.create(user);
+        user = userStorage.create(user);
         log.info("Добавлен новый юзер \"{}\" c id {}", user.getLogin(), user.getId());
         return user;
     }
 
+    public List<BatchResult> createAll(Iterator<User> users) {
+        return BatchImport.run(users, validator, chunk -> {
+            List<User> created = userStorage.createAll(chunk);
+            log.info("Пакетно добавлено пользователей: {}", created.size());
+            List<BatchResult> results = new ArrayList<>(created.size());
+            for (int i = 0; i < created.size(); i++) {
+                results.add(BatchResult.ok(i, created.get(i).getId()));
+            }
+            return results;
+        });
+    }
+
     public User update(User user) {
-        User oldUser = findUserById(user.getId());
+        return update(user, null);
+    }
 
-        user.getFriends().addAll(oldUser.getFriends());
+    /**
+     * Обновляет пользователя, если его версия равна {@code expectedVersion}; без ожидаемой версии обновляет
+     * безусловно. Друзья пользователя сохраняются и версию не меняют. Удаляемый сейчас пользователь, как и
+     * при лайке, считается несуществующим: обновление, успевшее до удаления, снимется вместе с пользователем.
+     */
+    public User update(User user, Long expectedVersion) {
+        findUserById(user.getId());
 
-        userStorage.update(user);
-        log.info("Юзер c id {} обновлен", user.getId());
-        return user;
+        User updated = userStorage.update(user, expectedVersion == null ? UserStorage.ANY_VERSION : expectedVersion)
+                .orElseThrow(() -> new ConflictException("Пользователь с id " + user.getId()
+                        + " изменён: ожидалась версия " + expectedVersion));
+        if (!exists(user.getId())) {
+            throw new NotFoundException("Пользователь с id = " + user.getId() + " не найден");
+        }
+        versions.profileChanged();
+        log.info("Юзер c id {} обновлен до версии {}", user.getId(), updated.getVersion());
+        return updated;
+    }
+
+    /**
+     * Удаляет пользователя вместе с его лайками и дружбами. На время удаления пользователь считается
+     * несуществующим, поэтому новые лайки от него не принимаются. Лайк, проверивший пользователя раньше,
+     * либо попадёт под снятие лайков здесь, либо будет отменён в {@link FilmService}: после записи лайка
+     * пользователь проверяется ещё раз. Лайки снимаются и после удаления пользователя — те, что записали
+     * между первым снятием и удалением. При сбое посередине пользователь останется с частью лайков.
+     */
+    public void delete(Long userId) {
+        findUserById(userId);
+
+        deleting.add(userId);
+        int likes;
+        try {
+            likes = deleteLikesOf(userId);
+            if (userStorage.delete(userId)) {
+                recommendations.friendshipsChanged();
+            }
+            likes += deleteLikesOf(userId);
+        } finally {
+            deleting.remove(userId);
+        }
+        versions.profileChanged();
+        log.info("Юзер c id {} удалён, снято лайков: {}", userId, likes);
+    }
+
+    /**
+     * Существует ли пользователь; удаляемый сейчас пользователь уже не существует.
+     */
+    boolean exists(long userId) {
+        return !deleting.contains(userId) && userStorage.findById(userId).isPresent();
+    }
+
+    /**
+     * Id существующих пользователей из {@code userIds}, кроме удаляемых сейчас.
+     */
+    Set<Long> existingIds(Collection<Long> userIds) {
+        Set<Long> existing = new HashSet<>(userStorage.existingIds(userIds));
+        existing.removeIf(deleting::contains);
+        return existing;
     }
 
     public User findById(Long userId) {
@@ -52,6 +137,27 @@ public class UserService {
         return userStorage.getUsers();
     }
 
+    public List<User> getUsers(long afterId, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        return userStorage.getUsers(afterId, limit);
+    }
+
+    /**
+     * Обходит всех пользователей с id больше {@code afterId}, запрашивая их у хранилища страницами.
+     */
+    public void forEachUser(long afterId, Consumer<User> action) {
+        List<User> page = userStorage.getUsers(afterId, STREAM_PAGE_SIZE);
+        while (!page.isEmpty()) {
+            page.forEach(action);
+            if (page.size() < STREAM_PAGE_SIZE) {
+                return;
+            }
+            page = userStorage.getUsers(page.get(page.size() - 1).getId(), STREAM_PAGE_SIZE);
+        }
+    }
+
     public void addFriend(Long userId, Long friendId) {
         if (userId.equals(friendId)) {
             throw new ValidationException("Нельзя добавить самого себя в друзья");
@@ -60,11 +166,69 @@ public class UserService {
         User user = findUserById(userId);
         User friend = findUserById(friendId);
 
-        user.getFriends().add(friendId);
-        friend.getFriends().add(userId);
+        if (userStorage.addFriend(userId, friendId)) {
+            recommendations.friendshipChanged(user, friend);
+            versions.friendsChanged(userId, friendId);
+        }
         log.info("{} и {} теперь друзья!", user.getName(), friend.getName());
     }
 
+    public List<BatchResult> addFriends(Iterator<Friendship> friendships) {
+        return addFriends(friendships, true);
+    }
+
+    /**
+     * Применяет дружбы из асинхронного приёма. Пакеты там небольшие и идут постоянно, поэтому кеш рекомендаций
+     * сбрасывается только у затронутых пользователей, как при одиночной дружбе, а не целиком.
+     */
+    List<BatchResult> applyFriends(Iterator<Friendship> friendships) {
+        return addFriends(friendships, false);
+    }
+
+    private List<BatchResult> addFriends(Iterator<Friendship> friendships, boolean bulk) {
+        return BatchImport.run(friendships, validator, chunk -> {
+            Set<Long> ids = new HashSet<>();
+            chunk.forEach(friendship -> {
+                ids.add(friendship.userId());
+                ids.add(friendship.friendId());
+            });
+            Set<Long> existing = userStorage.existingIds(ids);
+
+            List<BatchResult> results = new ArrayList<>(chunk.size());
+            List<Friendship> valid = new ArrayList<>(chunk.size());
+            List<Integer> positions = new ArrayList<>(chunk.size());
+            for (int i = 0; i < chunk.size(); i++) {
+                Friendship friendship = chunk.get(i);
+                if (friendship.userId().equals(friendship.friendId())) {
+                    results.add(BatchResult.failed(i, "Нельзя добавить самого себя в друзья"));
+                } else if (!existing.contains(friendship.userId())) {
+                    results.add(BatchResult.failed(i, "Пользователь с id = " + friendship.userId() + " не найден"));
+                } else if (!existing.contains(friendship.friendId())) {
+                    results.add(BatchResult.failed(i, "Пользователь с id = " + friendship.friendId() + " не найден"));
+                } else {
+                    valid.add(friendship);
+                    positions.add(i);
+                }
+            }
+
+            boolean[] added = userStorage.addFriends(valid);
+            if (bulk) {
+                recommendations.friendshipsChanged();
+            }
+            valid.forEach(friendship -> versions.friendsChanged(friendship.userId(), friendship.friendId()));
+            for (int i = 0; i < added.length; i++) {
+                if (added[i] && !bulk) {
+                    friendshipChanged(valid.get(i));
+                }
+                results.add(added[i]
+                        ? BatchResult.ok(positions.get(i), null)
+                        : BatchResult.failed(positions.get(i), "Пользователи уже друзья"));
+            }
+            log.info("Пакетно добавлено дружб: {} из {}", valid.size(), chunk.size());
+            return results;
+        });
+    }
+
     public void deleteFriend(Long userId, Long friendId) {
         if (userId.equals(friendId)) {
             throw new ValidationException("Нельзя удалить самого себя из друзей");
@@ -73,8 +237,10 @@ public class UserService {
         User user = findUserById(userId);
         User friend = findUserById(friendId);
 
-        user.getFriends().remove(friendId);
-        friend.getFriends().remove(userId);
+        if (userStorage.deleteFriend(userId, friendId)) {
+            recommendations.friendshipChanged(user, friend);
+            versions.friendsChanged(userId, friendId);
+        }
         log.info("{} и {} больше не друзья!", user.getName(), friend.getName());
     }
 
@@ -82,30 +248,48 @@ public class UserService {
         User user = findUserById(userId);
         User friend = findUserById(friendId);
 
-        return user.getFriends().stream()
-                .filter(friend.getFriends()::contains)
-                .map(userStorage::findById)
-                .flatMap(Optional::stream)
-                .toList();
+        return userStorage.findAllById(user.getFriends().intersect(friend.getFriends()));
+    }
+
+    /**
+     * Друзья друзей, ранжированные по числу общих друзей с пользователем.
+     */
+    public List<User> getRecommendations(Long userId, int limit) {
+        if (limit < 1 || limit > FriendRecommendations.MAX_LIMIT) {
+            throw new ValidationException("Число рекомендаций должно быть от 1 до " + FriendRecommendations.MAX_LIMIT);
+        }
+        User user = findUserById(userId);
+
+        return userStorage.findAllById(recommendations.recommend(user, limit));
     }
 
     public List<User> getFriends(Long userId) {
         User user = findUserById(userId);
 
-        return user.getFriends().stream()
-                .map(userStorage::findById)
-                .flatMap(Optional::stream)
-                .toList();
+        return userStorage.findAllById(user.getFriends().toLongArray());
     }
 
-    private User findUserById(Long userId) {
-        return userStorage.findById(userId)
-                .orElseThrow(() -> new NotFoundException("Пользователь с id = " + userId + " не найден"));
+    private void friendshipChanged(Friendship friendship) {
+        User user = userStorage.findById(friendship.userId()).orElse(null);
+        User friend = userStorage.findById(friendship.friendId()).orElse(null);
+        if (user == null || friend == null) {
+            // одного из друзей уже удалили вместе с его дружбами — затронутых не найти
+            recommendations.friendshipsChanged();
+        } else {
+            recommendations.friendshipChanged(user, friend);
+        }
     }
 
-    private final AtomicLong idGenerator = new AtomicLong(0);
+    private int deleteLikesOf(long userId) {
+        long[] liked = filmStorage.likedFilms(userId);
+        int likes = filmStorage.deleteLikesOf(userId);
+        versions.filmsChanged(liked);
+        return likes;
+    }
 
-    private long getNextId() {
-        return idGenerator.incrementAndGet();
+    private User findUserById(Long userId) {
+        return userStorage.findById(userId)
+                .filter(user -> !deleting.contains(userId))
+                .orElseThrow(() -> new NotFoundException("Пользователь с id = " + userId + " не найден"));
     }
 }
\ No newline at end of file
@@ -0,0 +1,88 @@
+package ru.yandex.practicum.filmorate.service;
+
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Неприменённые изменения каждого пользователя. Изменению выдаётся номер из общей растущей последовательности,
+ * а пользователь помнит номера своих изменений, которые ещё лежат в очередях. Изменения одного пользователя
+ * попадают в разные очереди и применяются не по порядку, поэтому изменение с номером {@code n} видно, когда
+ * у пользователя не осталось неприменённых номеров не больше {@code n}. Запись о пользователе удаляется вместе
+ * с последним неприменённым номером, так что память зависит от числа пишущих сейчас пользователей.
+ */
+final class WriteProgress {
+    /**
+     * Последовательность начинается с текущего времени, чтобы номера после перезапуска были больше прежних.
+     */
+    private final AtomicLong sequence = new AtomicLong(System.currentTimeMillis() << 20);
+    private final ConcurrentHashMap<Long, TreeSet<Long>> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition applied = lock.newCondition();
+
+    /**
+     * Выдаёт номер изменению пользователя и запоминает его как неприменённое.
+     */
+    long issue(long userId) {
+        long[] issued = new long[1];
+        pending.compute(userId, (id, sequences) -> {
+            TreeSet<Long> updated = sequences == null ? new TreeSet<>() : sequences;
+            issued[0] = sequence.incrementAndGet();
+            updated.add(issued[0]);
+            return updated;
+        });
+        return issued[0];
+    }
+
+    /**
+     * Отмечает изменение применённым. Ожидающих будит {@link #signal()} — один раз на пачку.
+     */
+    void applied(long userId, long issued) {
+        pending.computeIfPresent(userId, (id, sequences) -> {
+            sequences.remove(issued);
+            return sequences.isEmpty() ? null : sequences;
+        });
+    }
+
+    void signal() {
+        lock.lock();
+        try {
+            applied.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ждёт, пока будут применены все изменения пользователя с номерами до {@code issued} включительно.
+     *
+     * @return {@code false}, если время ожидания истекло
+     */
+    boolean await(long userId, long issued, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (!isApplied(userId, issued)) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = applied.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isApplied(long userId, long issued) {
+        boolean[] waiting = new boolean[1];
+        pending.computeIfPresent(userId, (id, sequences) -> {
+            waiting[0] = sequences.first() <= issued;
+            return sequences;
+        });
+        return !waiting[0];
+    }
+}
@@ -0,0 +1,149 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmGenre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Хранилище фильмов, читающее фильмы по id через кеш. Запись в кеш не идёт: изменение фильма или его лайков
+ * удаляет фильм из кеша после того, как делегат завершил запись. Фильмы из кеша общие для всех читателей,
+ * как и в хранилище в памяти, и изменять их нельзя.
+ */
+public class CachingFilmStorage implements FilmStorage {
+    private final FilmStorage delegate;
+    private final EntityCache<Film> films;
+
+    public CachingFilmStorage(FilmStorage delegate, long maximumSize) {
+        this.delegate = delegate;
+        this.films = new EntityCache<>(maximumSize, Film::getId);
+    }
+
+    @Override
+    public Film create(Film film) {
+        return delegate.create(film);
+    }
+
+    @Override
+    public Optional<Film> update(Film film, long expectedVersion) {
+        try {
+            return delegate.update(film, expectedVersion);
+        } finally {
+            films.invalidate(film.getId());
+        }
+    }
+
+    @Override
+    public List<Film> createAll(List<Film> newFilms) {
+        return delegate.createAll(newFilms);
+    }
+
+    @Override
+    public Collection<Film> getFilms() {
+        return delegate.getFilms();
+    }
+
+    @Override
+    public List<Film> getFilms(long afterId, int limit) {
+        return delegate.getFilms(afterId, limit);
+    }
+
+    @Override
+    public Optional<Film> findById(Long filmId) {
+        return films.find(filmId, delegate::findById);
+    }
+
+    @Override
+    public List<Film> findAllById(long[] filmIds) {
+        return films.findAll(filmIds, delegate::findAllById);
+    }
+
+    @Override
+    public Set<Long> existingIds(Collection<Long> filmIds) {
+        return delegate.existingIds(filmIds);
+    }
+
+    @Override
+    public List<Film> getTopFilms(int count) {
+        return delegate.getTopFilms(count);
+    }
+
+    @Override
+    public List<Film> getTopFilms(int count, FilmGenre genre, MpaRating mpa, Integer year) {
+        return delegate.getTopFilms(count, genre, mpa, year);
+    }
+
+    @Override
+    public void forEachLikeCount(ObjIntConsumer<Long> action) {
+        delegate.forEachLikeCount(action);
+    }
+
+    @Override
+    public boolean addLike(Long filmId, Long userId) {
+        try {
+            return delegate.addLike(filmId, userId);
+        } finally {
+            films.invalidate(filmId);
+        }
+    }
+
+    @Override
+    public boolean deleteLike(Long filmId, Long userId) {
+        try {
+            return delegate.deleteLike(filmId, userId);
+        } finally {
+            films.invalidate(filmId);
+        }
+    }
+
+    @Override
+    public boolean[] addLikes(List<Like> likes) {
+        try {
+            return delegate.addLikes(likes);
+        } finally {
+            films.invalidateAll(likes.stream().map(Like::filmId).distinct().toList());
+        }
+    }
+
+    @Override
+    public long[] likedFilms(long userId) {
+        return delegate.likedFilms(userId);
+    }
+
+    @Override
+    public long[] likedFilms(long userId, long afterId, int limit) {
+        return delegate.likedFilms(userId, afterId, limit);
+    }
+
+    @Override
+    public int deleteLikesOf(long userId) {
+        long[] liked = delegate.likedFilms(userId);
+        try {
+            return delegate.deleteLikesOf(userId);
+        } finally {
+            films.invalidateAll(Arrays.stream(liked).boxed().toList());
+        }
+    }
+
+    @Override
+    public long count() {
+        return delegate.count();
+    }
+
+    @Override
+    public long likeCount() {
+        return delegate.likeCount();
+    }
+
+    public Cache<Long, Film> cache() {
+        return films.cache();
+    }
+}
@@ -0,0 +1,123 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище пользователей, читающее пользователей по id через кеш. Изменение пользователя или дружбы удаляет
+ * из кеша обоих её участников, удаление пользователя очищает кеш целиком: он мог быть в списках друзей
+ * любых пользователей. Пользователи из кеша общие для всех читателей, и изменять их нельзя.
+ */
+public class CachingUserStorage implements UserStorage {
+    private final UserStorage delegate;
+    private final EntityCache<User> users;
+
+    public CachingUserStorage(UserStorage delegate, long maximumSize) {
+        this.delegate = delegate;
+        this.users = new EntityCache<>(maximumSize, User::getId);
+    }
+
+    @Override
+    public User create(User user) {
+        return delegate.create(user);
+    }
+
+    @Override
+    public Optional<User> update(User user, long expectedVersion) {
+        try {
+            return delegate.update(user, expectedVersion);
+        } finally {
+            users.invalidate(user.getId());
+        }
+    }
+
+    @Override
+    public List<User> createAll(List<User> newUsers) {
+        return delegate.createAll(newUsers);
+    }
+
+    @Override
+    public Collection<User> getUsers() {
+        return delegate.getUsers();
+    }
+
+    @Override
+    public List<User> getUsers(long afterId, int limit) {
+        return delegate.getUsers(afterId, limit);
+    }
+
+    @Override
+    public Optional<User> findById(Long userId) {
+        return users.find(userId, delegate::findById);
+    }
+
+    @Override
+    public List<User> findAllById(long[] userIds) {
+        return users.findAll(userIds, delegate::findAllById);
+    }
+
+    @Override
+    public Set<Long> existingIds(Collection<Long> userIds) {
+        return delegate.existingIds(userIds);
+    }
+
+    @Override
+    public boolean delete(Long userId) {
+        try {
+            return delegate.delete(userId);
+        } finally {
+            users.invalidateAll();
+        }
+    }
+
+    @Override
+    public boolean addFriend(Long userId, Long friendId) {
+        try {
+            return delegate.addFriend(userId, friendId);
+        } finally {
+            users.invalidateAll(List.of(userId, friendId));
+        }
+    }
+
+    @Override
+    public boolean deleteFriend(Long userId, Long friendId) {
+        try {
+            return delegate.deleteFriend(userId, friendId);
+        } finally {
+            users.invalidateAll(List.of(userId, friendId));
+        }
+    }
+
+    @Override
+    public boolean[] addFriends(List<Friendship> friendships) {
+        try {
+            return delegate.addFriends(friendships);
+        } finally {
+            users.invalidateAll(friendships.stream()
+                    .flatMap(friendship -> Stream.of(friendship.userId(), friendship.friendId()))
+                    .distinct()
+                    .toList());
+        }
+    }
+
+    @Override
+    public long count() {
+        return delegate.count();
+    }
+
+    @Override
+    public long friendEdgeCount() {
+        return delegate.friendEdgeCount();
+    }
+
+    public Cache<Long, User> cache() {
+        return users.cache();
+    }
+}
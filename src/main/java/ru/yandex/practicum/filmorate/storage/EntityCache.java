@@ -0,0 +1,83 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Ограниченный по размеру кеш сущностей по id поверх Caffeine (вытеснение W-TinyLFU). Отсутствующие сущности
+ * не кешируются. Загрузка и удаление одного ключа взаимно исключают друг друга, поэтому удаление после записи
+ * в хранилище не оставит в кеше версию, прочитанную до записи.
+ */
+final class EntityCache<T> {
+    private final Cache<Long, T> cache;
+    private final ToLongFunction<T> idOf;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    EntityCache(long maximumSize, ToLongFunction<T> idOf) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+        this.idOf = idOf;
+    }
+
+    Optional<T> find(long id, LongFunction<Optional<T>> loader) {
+        return Optional.ofNullable(cache.get(id, key -> loader.apply(key).orElse(null)));
+    }
+
+    /**
+     * Сущности в порядке {@code ids}; промахи загружаются одним запросом к хранилищу. Пакетная загрузка не
+     * блокирует ключи, поэтому её результат попадает в кеш, только если за время загрузки ничего не удалялось.
+     */
+    List<T> findAll(long[] ids, Function<long[], List<T>> loader) {
+        Map<Long, T> found = new HashMap<>(cache.getAllPresent(Arrays.stream(ids).boxed().toList()));
+        long[] missing = Arrays.stream(ids).filter(id -> !found.containsKey(id)).distinct().toArray();
+        if (missing.length > 0) {
+            long seen = invalidations.get();
+            for (T entity : loader.apply(missing)) {
+                long id = idOf.applyAsLong(entity);
+                found.put(id, entity);
+                cache.asMap().computeIfAbsent(id, key -> invalidations.get() == seen ? entity : null);
+            }
+        }
+        List<T> ordered = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            T entity = found.get(id);
+            if (entity != null) {
+                ordered.add(entity);
+            }
+        }
+        return ordered;
+    }
+
+    void invalidate(long id) {
+        invalidations.incrementAndGet();
+        cache.invalidate(id);
+    }
+
+    void invalidateAll(Collection<Long> ids) {
+        invalidations.incrementAndGet();
+        cache.invalidateAll(ids);
+    }
+
+    void invalidateAll() {
+        invalidations.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    Cache<Long, T> cache() {
+        return cache;
+    }
+}
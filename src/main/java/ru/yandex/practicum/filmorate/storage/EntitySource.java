@@ -0,0 +1,29 @@
+package ru.yandex.practicum.filmorate.storage;
+
+/**
+ * Неизменяемый упорядоченный по id источник сущностей, которые ещё не загружены в память,
+ * например отображённый в память снимок. Сущность декодируется только при обращении к ней.
+ */
+public interface EntitySource<T> {
+    int size();
+
+    long idAt(int position);
+
+    /**
+     * Количество рёбер сущности (лайков фильма или друзей пользователя), доступное без её декодирования.
+     */
+    int edgesAt(int position);
+
+    /**
+     * Сводка сущности, доступная без её декодирования: для фильма — его срезы {@link FilmFacets},
+     * для остальных сущностей — 0.
+     */
+    long summaryAt(int position);
+
+    /**
+     * @return позиция сущности или отрицательное число, если её нет в источнике
+     */
+    int positionOf(long id);
+
+    T load(int position);
+}
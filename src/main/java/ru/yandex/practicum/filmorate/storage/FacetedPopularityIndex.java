@@ -0,0 +1,133 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmGenre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Индексы популярности по срезам каталога: общий, по каждому жанру, возрастному рейтингу и году выхода.
+ * Фильм лежит в общем индексе и в индексе каждого своего среза, так что лайк обновляет несколько небольших
+ * индексов, а топ по одному срезу читается так же, как общий. При нескольких фильтрах обходится самый
+ * маленький из подходящих индексов, а остальные условия проверяются по наличию фильма в их индексах,
+ * так что сами фильмы не читаются. Срезы фильма передаются упакованными в {@link FilmFacets}.
+ * Общий индекс можно не вести, если топ без фильтров строится вне хранилища.
+ * Изменяется под блокировкой фильма, как и {@link PopularityIndex}.
+ */
+final class FacetedPopularityIndex {
+    private final PopularityIndex all;
+    private final Map<FilmGenre, PopularityIndex> byGenre = new EnumMap<>(FilmGenre.class);
+    private final Map<MpaRating, PopularityIndex> byMpa = new EnumMap<>(MpaRating.class);
+    private final Map<Integer, PopularityIndex> byYear = new ConcurrentHashMap<>();
+    private final int cachedSize;
+
+    /**
+     * @param unfiltered вести ли общий индекс для топа без фильтров
+     */
+    FacetedPopularityIndex(int cachedSize, boolean unfiltered) {
+        this.all = unfiltered ? new PopularityIndex(cachedSize) : null;
+        this.cachedSize = cachedSize;
+        for (FilmGenre genre : FilmGenre.values()) {
+            byGenre.put(genre, new PopularityIndex(cachedSize));
+        }
+        for (MpaRating mpa : MpaRating.values()) {
+            byMpa.put(mpa, new PopularityIndex(cachedSize));
+        }
+    }
+
+    /**
+     * Обновляет число лайков фильма во всех его срезах.
+     */
+    void update(Film film) {
+        update(film.getId(), FilmFacets.of(film), film.getMovieRating().size());
+    }
+
+    void update(long filmId, long facets, int likes) {
+        if (all != null) {
+            all.update(filmId, likes);
+        }
+        forEachFacet(facets, index -> index.update(filmId, likes));
+    }
+
+    /**
+     * Обновляет фильм, у которого могли измениться жанры, рейтинг или дата выхода:
+     * из срезов прежней версии, к которым новая не относится, он убирается.
+     */
+    void replace(Film previous, Film film) {
+        List<PopularityIndex> current = new ArrayList<>();
+        forEachFacet(FilmFacets.of(film), current::add);
+        forEachFacet(FilmFacets.of(previous), index -> {
+            if (!current.contains(index)) {
+                index.remove(film.getId());
+            }
+        });
+        update(film);
+    }
+
+    /**
+     * Убирает фильм из всех его срезов.
+     */
+    void remove(Film film) {
+        if (all != null) {
+            all.remove(film.getId());
+        }
+        forEachFacet(FilmFacets.of(film), index -> index.remove(film.getId()));
+    }
+
+    /**
+     * Id самых популярных фильмов среза; {@code null} в условии означает «любой».
+     */
+    List<Long> top(int count, FilmGenre genre, MpaRating mpa, Integer year) {
+        List<PopularityIndex> candidates = new ArrayList<>(3);
+        if (genre != null) {
+            candidates.add(byGenre.get(genre));
+        }
+        if (mpa != null) {
+            candidates.add(byMpa.get(mpa));
+        }
+        if (year != null) {
+            PopularityIndex index = byYear.get(year);
+            if (index == null) {
+                return List.of();
+            }
+            candidates.add(index);
+        }
+        if (candidates.isEmpty()) {
+            if (all == null) {
+                throw new IllegalStateException("Общий индекс популярности не ведётся: топ без фильтров "
+                        + "строится приблизительно");
+            }
+            return all.top(count);
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0).top(count);
+        }
+        candidates.sort(Comparator.comparingInt(PopularityIndex::size));
+        PopularityIndex smallest = candidates.get(0);
+        List<PopularityIndex> others = candidates.subList(1, candidates.size());
+        return smallest.top(count, filmId -> others.stream().allMatch(index -> index.contains(filmId)));
+    }
+
+    private void forEachFacet(long facets, Consumer<PopularityIndex> action) {
+        for (FilmGenre genre : FilmGenre.values()) {
+            if (FilmFacets.hasGenre(facets, genre)) {
+                action.accept(byGenre.get(genre));
+            }
+        }
+        MpaRating mpa = FilmFacets.mpa(facets);
+        if (mpa != null) {
+            action.accept(byMpa.get(mpa));
+        }
+        Integer year = FilmFacets.year(facets);
+        if (year != null) {
+            action.accept(byYear.computeIfAbsent(year, key -> new PopularityIndex(cachedSize)));
+        }
+    }
+}
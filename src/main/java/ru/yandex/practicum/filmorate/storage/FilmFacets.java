@@ -0,0 +1,50 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmGenre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+
+/**
+ * Срезы фильма для индексов популярности — жанры, возрастной рейтинг и год выхода, упакованные в {@code long}:
+ * биты 0–15 — маска жанров, 16–23 — порядковый номер рейтинга плюс один, бит 24 — есть ли год, 32–63 — год.
+ * Хранятся в индексе снимка, поэтому индексы по срезам строятся при его подключении без декодирования фильмов.
+ */
+public final class FilmFacets {
+    private static final int MPA_SHIFT = 16;
+    private static final long HAS_YEAR = 1L << 24;
+    private static final int YEAR_SHIFT = 32;
+
+    private FilmFacets() {
+    }
+
+    public static long of(Film film) {
+        long facets = 0;
+        if (film.getGenres() != null) {
+            for (FilmGenre genre : film.getGenres()) {
+                if (genre != null) {
+                    facets |= 1L << genre.ordinal();
+                }
+            }
+        }
+        if (film.getMpaRating() != null) {
+            facets |= (long) (film.getMpaRating().ordinal() + 1) << MPA_SHIFT;
+        }
+        if (film.getReleaseDate() != null) {
+            facets |= HAS_YEAR | (long) film.getReleaseDate().getYear() << YEAR_SHIFT;
+        }
+        return facets;
+    }
+
+    static boolean hasGenre(long facets, FilmGenre genre) {
+        return (facets & 1L << genre.ordinal()) != 0;
+    }
+
+    static MpaRating mpa(long facets) {
+        int ordinal = (int) (facets >>> MPA_SHIFT & 0xFF);
+        return ordinal == 0 ? null : MpaRating.values()[ordinal - 1];
+    }
+
+    static Integer year(long facets) {
+        return (facets & HAS_YEAR) == 0 ? null : (int) (facets >> YEAR_SHIFT);
+    }
+}
@@ -1,19 +1,109 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmGenre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.MpaRating;
 
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.ObjIntConsumer;
 
 public interface FilmStorage {
     Film create(Film film);
 
-    Film update(Film film);
+    /**
+     * Версия, с которой {@link #update(Film, long)} обновляет фильм без сравнения.
+     */
+    long ANY_VERSION = -1;
+
+    /**
+     * Обновляет фильм без сравнения версий.
+     */
+    default Film update(Film film) {
+        return update(film, ANY_VERSION).orElseThrow();
+    }
+
+    /**
+     * Обновляет поля фильма, только если его текущая версия равна {@code expectedVersion}, и увеличивает версию.
+     * Лайки фильма берутся из хранилища, а не из переданного объекта.
+     *
+     * @return обновлённый фильм или пустой результат, если фильм уже обновили до другой версии
+     * @throws ru.yandex.practicum.filmorate.exception.NotFoundException если фильма нет
+     */
+    Optional<Film> update(Film film, long expectedVersion);
+
+    /**
+     * Создаёт фильмы одним пакетом.
+     *
+     * @return созданные фильмы с id в том же порядке
+     */
+    List<Film> createAll(List<Film> films);
 
     Collection<Film> getFilms();
 
+    /**
+     * Страница фильмов с id больше {@code afterId} по возрастанию id.
+     */
+    List<Film> getFilms(long afterId, int limit);
+
     Optional<Film> findById(Long filmId);
 
+    /**
+     * Фильмы с указанными id в том же порядке; отсутствующие пропускаются.
+     */
+    List<Film> findAllById(long[] filmIds);
+
+    Set<Long> existingIds(Collection<Long> filmIds);
+
     List<Film> getTopFilms(int count);
-}
\ No newline at end of file
+
+    /**
+     * Самые популярные фильмы среза каталога. Условие, равное {@code null}, не ограничивает выборку.
+     *
+     * @param year год выхода фильма
+     */
+    List<Film> getTopFilms(int count, FilmGenre genre, MpaRating mpa, Integer year);
+
+    /**
+     * Передаёт id и число лайков каждого фильма, у которого есть лайки, не загружая сами фильмы.
+     */
+    void forEachLikeCount(ObjIntConsumer<Long> action);
+
+    boolean addLike(Long filmId, Long userId);
+
+    boolean deleteLike(Long filmId, Long userId);
+
+    /**
+     * Ставит лайки одним пакетом. Фильмы должны существовать.
+     *
+     * @return для каждого лайка — был ли он добавлен (а не стоял уже)
+     */
+    boolean[] addLikes(List<Like> likes);
+
+    /**
+     * Id фильмов, которые понравились пользователю, по возрастанию.
+     */
+    long[] likedFilms(long userId);
+
+    /**
+     * Страница id понравившихся пользователю фильмов: id больше {@code afterId} по возрастанию.
+     */
+    long[] likedFilms(long userId, long afterId, int limit);
+
+    /**
+     * Снимает все лайки пользователя — за время, пропорциональное их числу, а не числу фильмов.
+     *
+     * @return число снятых лайков
+     */
+    int deleteLikesOf(long userId);
+
+    long count();
+
+    /**
+     * Общее число лайков всех фильмов.
+     */
+    long likeCount();
+}
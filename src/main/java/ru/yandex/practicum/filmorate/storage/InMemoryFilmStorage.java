@@ -1,32 +1,209 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmGenre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.MpaRating;
 
 import java.util.*;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.IntStream;
+
+import static ru.yandex.practicum.filmorate.storage.StorageJournal.NO_RECORD;
 
 @Component
+@Profile("!jdbc")
+@ConditionalOnProperty(name = {"filmorate.storage.sharded.enabled", "filmorate.cluster.enabled"},
+        havingValue = "false", matchIfMissing = true)
 public class InMemoryFilmStorage implements FilmStorage {
-    private final Map<Long, Film> films = new HashMap<>();
+    private static final int CACHED_TOP_SIZE = 10;
+
+    private final LazyEntityMap<Film> films = new LazyEntityMap<>();
+    private final FacetedPopularityIndex popularity;
+    private final UserLikesIndex likesByUser = new UserLikesIndex();
+    private final LockStripes locks = new LockStripes();
     private final AtomicLong idGenerator = new AtomicLong(0);
+    private final LongAdder filmCount = new LongAdder();
+    private final LongAdder likeCount = new LongAdder();
+    private final StorageJournal journal;
+
+    public InMemoryFilmStorage(StorageJournal journal) {
+        this(journal, false);
+    }
+
+    /**
+     * @param approximateTop топ без фильтров строится приблизительно вне хранилища: тогда общий индекс
+     *                       популярности не ведётся, а индексы срезов для топа с фильтрами остаются
+     */
+    @Autowired
+    public InMemoryFilmStorage(StorageJournal journal,
+                               @Value("${filmorate.popularity.approximate.enabled:false}") boolean approximateTop) {
+        this.journal = journal;
+        this.popularity = new FacetedPopularityIndex(CACHED_TOP_SIZE, !approximateTop);
+    }
 
     @Override
     public Film create(Film film) {
         long nextId = idGenerator.incrementAndGet();
-        film = film.toBuilder().id(nextId).build();
-        films.put(film.getId(), film);
-        return film;
+        Film created = film.toBuilder().id(nextId).version(1L).build();
+        long position = locks.withLock(nextId, () -> {
+            long recorded = journal.filmSaved(created);
+            films.put(created.getId(), created);
+            popularity.update(created);
+            likesByUser.addAll(created.getId(), created.getMovieRating().toLongArray());
+            filmCount.increment();
+            likeCount.add(created.getMovieRating().size());
+            return recorded;
+        });
+        journal.awaitDurable(position);
+        return created;
     }
 
+    /**
+     * Резервирует диапазон id под весь пакет и ждёт фиксации журнала один раз — по последней записи.
+     */
     @Override
-    public Film update(Film film) {
-        if (!films.containsKey(film.getId())) {
-            throw new IllegalArgumentException("Фильм с id " + film.getId() + " не найден");
+    public List<Film> createAll(List<Film> newFilms) {
+        long firstId = idGenerator.getAndAdd(newFilms.size()) + 1;
+        List<Film> created = new ArrayList<>(newFilms.size());
+        long position = NO_RECORD;
+        for (int i = 0; i < newFilms.size(); i++) {
+            Film film = newFilms.get(i).toBuilder().id(firstId + i).version(1L).build();
+            created.add(film);
+            position = Math.max(position, locks.withLock(film.getId(), () -> {
+                long recorded = journal.filmSaved(film);
+                films.put(film.getId(), film);
+                popularity.update(film);
+                likesByUser.addAll(film.getId(), film.getMovieRating().toLongArray());
+                filmCount.increment();
+                likeCount.add(film.getMovieRating().size());
+                return recorded;
+            }));
         }
-        films.put(film.getId(), film);
-        return film;
+        journal.awaitDurable(position);
+        return created;
+    }
+
+    /**
+     * Сравнивает версию и подменяет фильм под блокировкой его полосы, так что лайк не потеряется между
+     * копированием лайков и подменой. Читатели фильм не блокируют и видят либо старую, либо новую версию целиком.
+     * Лайки берутся из сохранённого фильма: они меняются только своими операциями.
+     *
+     * @throws NotFoundException если фильм уже удалили
+     */
+    @Override
+    public Optional<Film> update(Film film, long expectedVersion) {
+        Film updated = film.toBuilder().build();
+        long position = locks.withLock(film.getId(), () -> {
+            Film oldFilm = films.get(film.getId());
+            if (oldFilm == null) {
+                throw new NotFoundException("Фильм с id = " + film.getId() + " не найден");
+            }
+            if (expectedVersion != ANY_VERSION && oldFilm.getVersion() != expectedVersion) {
+                return NO_RECORD;
+            }
+            updated.setVersion(oldFilm.getVersion() + 1);
+            long recorded = journal.filmSaved(updated);
+            updated.getMovieRating().addAll(oldFilm.getMovieRating());
+            films.put(updated.getId(), updated);
+            popularity.replace(oldFilm, updated);
+            return recorded;
+        });
+        if (position == NO_RECORD) {
+            return Optional.empty();
+        }
+        journal.awaitDurable(position);
+        return Optional.of(updated);
+    }
+
+    /**
+     * Восстанавливает фильм из снимка или журнала вместе с его лайками, сохраняя исходный id.
+     */
+    public void restore(Film film) {
+        locks.withLock(film.getId(), () -> {
+            Film oldFilm = films.get(film.getId());
+            films.put(film.getId(), film);
+            if (oldFilm != null) {
+                film.getMovieRating().addAll(oldFilm.getMovieRating());
+                likeCount.add(-oldFilm.getMovieRating().size());
+                popularity.replace(oldFilm, film);
+            } else {
+                filmCount.increment();
+                popularity.update(film);
+            }
+            likesByUser.addAll(film.getId(), film.getMovieRating().toLongArray());
+            likeCount.add(film.getMovieRating().size());
+            return film;
+        });
+        idGenerator.accumulateAndGet(film.getId(), Math::max);
+    }
+
+    /**
+     * Убирает фильм вместе с лайками без записи в журнал — при переносе фильма на другой узел кластера.
+     */
+    public Optional<Film> remove(long filmId) {
+        return locks.withLock(filmId, () -> {
+            Film film = films.get(filmId);
+            if (film == null) {
+                return Optional.empty();
+            }
+            films.remove(filmId);
+            popularity.remove(film);
+            for (long userId : film.getMovieRating().toLongArray()) {
+                likesByUser.remove(userId, filmId);
+            }
+            filmCount.decrement();
+            likeCount.add(-film.getMovieRating().size());
+            return Optional.of(film);
+        });
+    }
+
+    /**
+     * Подключает снимок, фильмы из которого загружаются в память при первом обращении.
+     * Индексы популярности по срезам строятся сразу по срезам и числу лайков из индекса снимка, без декодирования
+     * фильмов. Обратный индекс лайков читает списки пользователей из раздела лайков снимка по мере обращения.
+     *
+     * @param likes раздел лайков снимка
+     */
+    public void mount(EntitySource<Film> source, EntitySource<long[]> likes) {
+        films.mount(source);
+        IntStream.range(0, source.size()).parallel().forEach(position -> {
+            int edges = source.edgesAt(position);
+            popularity.update(source.idAt(position), source.summaryAt(position), edges);
+            likeCount.add(edges);
+        });
+        likesByUser.mount(likes);
+        filmCount.add(source.size());
+        if (source.size() > 0) {
+            idGenerator.accumulateAndGet(source.idAt(source.size() - 1), Math::max);
+        }
+    }
+
+    /**
+     * Обходит списки понравившихся фильмов по возрастанию id пользователя, не загружая их из снимка в память.
+     */
+    public void forEachUserLikes(BiConsumer<Long, long[]> action) {
+        likesByUser.forEach(action);
+    }
+
+    /**
+     * Обходит все фильмы по возрастанию id, не загружая в память фильмы из подключённого снимка.
+     */
+    public void forEachFilm(Consumer<Film> action) {
+        films.forEachAfter(Long.MIN_VALUE, entity -> {
+            action.accept(entity);
+            return true;
+        });
     }
 
     @Override
@@ -39,11 +216,189 @@ public class InMemoryFilmStorage implements FilmStorage {
         return films.values();
     }
 
+    @Override
+    public List<Film> getFilms(long afterId, int limit) {
+        List<Film> page = new ArrayList<>(limit);
+        films.forEachAfter(afterId, entity -> {
+            page.add(entity);
+            return page.size() < limit;
+        });
+        return page;
+    }
+
+    @Override
+    public List<Film> findAllById(long[] filmIds) {
+        List<Film> found = new ArrayList<>(filmIds.length);
+        for (long filmId : filmIds) {
+            Film film = films.get(filmId);
+            if (film != null) {
+                found.add(film);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public Set<Long> existingIds(Collection<Long> filmIds) {
+        Set<Long> existing = new HashSet<>();
+        for (Long filmId : filmIds) {
+            if (films.get(filmId) != null) {
+                existing.add(filmId);
+            }
+        }
+        return existing;
+    }
+
+    /**
+     * Число лайков фильмов из снимка, которые ещё не загружены, берётся из индекса снимка.
+     */
+    @Override
+    public void forEachLikeCount(ObjIntConsumer<Long> action) {
+        films.forEach(film -> {
+            if (!film.getMovieRating().isEmpty()) {
+                action.accept(film.getId(), film.getMovieRating().size());
+            }
+        }, (source, position) -> {
+            if (source.edgesAt(position) > 0) {
+                action.accept(source.idAt(position), source.edgesAt(position));
+            }
+        });
+    }
+
     @Override
     public List<Film> getTopFilms(int count) {
-        return films.values().stream()
-                .sorted((f1, f2) -> Integer.compare(f2.getMovieRating().size(), f1.getMovieRating().size()))
-                .limit(count)
-                .collect(Collectors.toList());
+        return getTopFilms(count, null, null, null);
+    }
+
+    @Override
+    public List<Film> getTopFilms(int count, FilmGenre genre, MpaRating mpa, Integer year) {
+        return popularity.top(count, genre, mpa, year).stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    @Override
+    public boolean addLike(Long filmId, Long userId) {
+        long position = locks.withLock(filmId, () -> {
+            Film film = films.get(filmId);
+            if (film == null) {
+                return NO_RECORD;
+            }
+            if (!film.getMovieRating().add(userId)) {
+                // при воспроизведении журнала поверх нечёткого снимка раздел лайков мог не успеть получить этот лайк
+                likesByUser.add(userId, filmId);
+                return NO_RECORD;
+            }
+            popularity.update(film);
+            likesByUser.add(userId, filmId);
+            likeCount.increment();
+            return journal.likeAdded(filmId, userId);
+        });
+        journal.awaitDurable(position);
+        return position != NO_RECORD;
+    }
+
+    @Override
+    public boolean deleteLike(Long filmId, Long userId) {
+        long position = unlike(filmId, userId);
+        journal.awaitDurable(position);
+        return position != NO_RECORD;
+    }
+
+    private long unlike(long filmId, long userId) {
+        return locks.withLock(filmId, () -> {
+            Film film = films.get(filmId);
+            if (film == null) {
+                return NO_RECORD;
+            }
+            if (!film.getMovieRating().remove(userId)) {
+                likesByUser.remove(userId, filmId);
+                return NO_RECORD;
+            }
+            popularity.update(film);
+            likesByUser.remove(userId, filmId);
+            likeCount.decrement();
+            return journal.likeDeleted(filmId, userId);
+        });
+    }
+
+    /**
+     * Группирует лайки по фильмам: блокировка берётся и индекс популярности обновляется один раз на фильм.
+     */
+    @Override
+    public boolean[] addLikes(List<Like> likes) {
+        boolean[] added = new boolean[likes.size()];
+        int[] order = IntStream.range(0, likes.size()).boxed()
+                .sorted(Comparator.comparing(i -> likes.get(i).filmId()))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        long position = NO_RECORD;
+        int from = 0;
+        while (from < order.length) {
+            Long filmId = likes.get(order[from]).filmId();
+            int to = from;
+            while (to < order.length && likes.get(order[to]).filmId().equals(filmId)) {
+                to++;
+            }
+            int start = from;
+            int end = to;
+            position = Math.max(position, locks.withLock(filmId, () -> {
+                Film film = films.get(filmId);
+                long recorded = NO_RECORD;
+                if (film == null) {
+                    return recorded;
+                }
+                for (int i = start; i < end; i++) {
+                    Long userId = likes.get(order[i]).userId();
+                    if (film.getMovieRating().add(userId)) {
+                        added[order[i]] = true;
+                        likesByUser.add(userId, filmId);
+                        likeCount.increment();
+                        recorded = journal.likeAdded(filmId, userId);
+                    }
+                }
+                popularity.update(film);
+                return recorded;
+            }));
+            from = to;
+        }
+        journal.awaitDurable(position);
+        return added;
+    }
+
+    @Override
+    public long[] likedFilms(long userId) {
+        return likesByUser.filmsOf(userId);
+    }
+
+    @Override
+    public long[] likedFilms(long userId, long afterId, int limit) {
+        return likesByUser.filmsOf(userId, afterId, limit);
+    }
+
+    @Override
+    public int deleteLikesOf(long userId) {
+        long position = NO_RECORD;
+        int deleted = 0;
+        for (long filmId : likesByUser.filmsOf(userId)) {
+            long recorded = unlike(filmId, userId);
+            if (recorded != NO_RECORD) {
+                deleted++;
+                position = Math.max(position, recorded);
+            }
+        }
+        journal.awaitDurable(position);
+        return deleted;
+    }
+
+    @Override
+    public long count() {
+        return filmCount.sum();
+    }
+
+    @Override
+    public long likeCount() {
+        return likeCount.sum();
     }
-}
\ No newline at end of file
+}
@@ -1,27 +1,161 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static ru.yandex.practicum.filmorate.storage.StorageJournal.NO_RECORD;
 
 @Component
+@Profile("!jdbc")
+@ConditionalOnProperty(name = {"filmorate.storage.sharded.enabled", "filmorate.cluster.enabled"},
+        havingValue = "false", matchIfMissing = true)
 public class InMemoryUserStorage implements UserStorage {
-    private final Map<Long, User> users = new HashMap<>();
+    private final LazyEntityMap<User> users = new LazyEntityMap<>();
+    private final LockStripes locks = new LockStripes();
+    private final AtomicLong idGenerator = new AtomicLong(0);
+    private final LongAdder userCount = new LongAdder();
+    private final LongAdder friendEdgeCount = new LongAdder();
+    private final StorageJournal journal;
+
+    public InMemoryUserStorage(StorageJournal journal) {
+        this.journal = journal;
+    }
 
     @Override
     public User create(User user) {
-        users.put(user.getId(), user);
-        return user;
+        User created = user.toBuilder().id(idGenerator.incrementAndGet()).version(1L).build();
+        long position = locks.withLock(created.getId(), () -> {
+            long recorded = journal.userSaved(created);
+            users.put(created.getId(), created);
+            userCount.increment();
+            friendEdgeCount.add(created.getFriends().size());
+            return recorded;
+        });
+        journal.awaitDurable(position);
+        return created;
     }
 
     @Override
-    public User update(User user) {
-        users.put(user.getId(), user);
-        return user;
+    public List<User> createAll(List<User> newUsers) {
+        long firstId = idGenerator.getAndAdd(newUsers.size()) + 1;
+        List<User> created = new ArrayList<>(newUsers.size());
+        long position = NO_RECORD;
+        for (int i = 0; i < newUsers.size(); i++) {
+            User user = newUsers.get(i).toBuilder().id(firstId + i).version(1L).build();
+            created.add(user);
+            position = Math.max(position, locks.withLock(user.getId(), () -> {
+                long recorded = journal.userSaved(user);
+                users.put(user.getId(), user);
+                userCount.increment();
+                friendEdgeCount.add(user.getFriends().size());
+                return recorded;
+            }));
+        }
+        journal.awaitDurable(position);
+        return created;
+    }
+
+    /**
+     * Сравнивает версию и подменяет пользователя под блокировкой его полосы, как и обновление фильма.
+     * Друзья берутся из сохранённого пользователя: дружбы меняются только своими операциями.
+     *
+     * @throws NotFoundException если пользователя уже удалили
+     */
+    @Override
+    public Optional<User> update(User user, long expectedVersion) {
+        User updated = user.toBuilder().build();
+        long position = locks.withLock(user.getId(), () -> {
+            User oldUser = users.get(user.getId());
+            if (oldUser == null) {
+                throw new NotFoundException("Пользователь с id = " + user.getId() + " не найден");
+            }
+            if (expectedVersion != ANY_VERSION && oldUser.getVersion() != expectedVersion) {
+                return NO_RECORD;
+            }
+            updated.setVersion(oldUser.getVersion() + 1);
+            long recorded = journal.userSaved(updated);
+            updated.getFriends().addAll(oldUser.getFriends());
+            users.put(updated.getId(), updated);
+            return recorded;
+        });
+        if (position == NO_RECORD) {
+            return Optional.empty();
+        }
+        journal.awaitDurable(position);
+        return Optional.of(updated);
+    }
+
+    /**
+     * Восстанавливает пользователя из снимка или журнала вместе с его друзьями, сохраняя исходный id.
+     */
+    public void restore(User user) {
+        locks.withLock(user.getId(), () -> {
+            User oldUser = users.get(user.getId());
+            if (oldUser != null) {
+                user.getFriends().addAll(oldUser.getFriends());
+                friendEdgeCount.add(-oldUser.getFriends().size());
+            } else {
+                userCount.increment();
+            }
+            users.put(user.getId(), user);
+            friendEdgeCount.add(user.getFriends().size());
+            return user;
+        });
+        idGenerator.accumulateAndGet(user.getId(), Math::max);
+    }
+
+    /**
+     * Убирает пользователя вместе с его списком друзей без записи в журнал — при переносе пользователя
+     * на другой узел кластера. Списки друзей других пользователей не меняются.
+     */
+    public Optional<User> remove(long userId) {
+        return locks.withLock(userId, () -> {
+            User user = users.get(userId);
+            if (user == null) {
+                return Optional.empty();
+            }
+            users.remove(userId);
+            userCount.decrement();
+            friendEdgeCount.add(-user.getFriends().size());
+            return Optional.of(user);
+        });
+    }
+
+    /**
+     * Подключает снимок, пользователи из которого загружаются в память при первом обращении.
+     */
+    public void mount(EntitySource<User> source) {
+        users.mount(source);
+        userCount.add(source.size());
+        friendEdgeCount.add(IntStream.range(0, source.size()).parallel().mapToLong(source::edgesAt).sum());
+        if (source.size() > 0) {
+            idGenerator.accumulateAndGet(source.idAt(source.size() - 1), Math::max);
+        }
+    }
+
+    /**
+     * Обходит всех пользователей по возрастанию id, не загружая в память пользователей из подключённого снимка.
+     */
+    public void forEachUser(Consumer<User> action) {
+        users.forEachAfter(Long.MIN_VALUE, entity -> {
+            action.accept(entity);
+            return true;
+        });
     }
 
     @Override
@@ -29,8 +163,207 @@ public class InMemoryUserStorage implements UserStorage {
         return users.values();
     }
 
+    @Override
+    public List<User> getUsers(long afterId, int limit) {
+        List<User> page = new ArrayList<>(limit);
+        users.forEachAfter(afterId, entity -> {
+            page.add(entity);
+            return page.size() < limit;
+        });
+        return page;
+    }
+
     @Override
     public Optional<User> findById(Long userId) {
         return Optional.ofNullable(users.get(userId));
     }
-}
\ No newline at end of file
+
+    @Override
+    public List<User> findAllById(long[] userIds) {
+        List<User> found = new ArrayList<>(userIds.length);
+        for (long userId : userIds) {
+            User user = users.get(userId);
+            if (user != null) {
+                found.add(user);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public Set<Long> existingIds(Collection<Long> userIds) {
+        Set<Long> existing = new HashSet<>();
+        for (Long userId : userIds) {
+            if (users.get(userId) != null) {
+                existing.add(userId);
+            }
+        }
+        return existing;
+    }
+
+    @Override
+    public boolean addFriend(Long userId, Long friendId) {
+        long position = link(userId, friendId);
+        journal.awaitDurable(position);
+        return position != NO_RECORD;
+    }
+
+    @Override
+    public boolean[] addFriends(List<Friendship> friendships) {
+        boolean[] added = new boolean[friendships.size()];
+        long position = NO_RECORD;
+        for (int i = 0; i < friendships.size(); i++) {
+            long recorded = link(friendships.get(i).userId(), friendships.get(i).friendId());
+            added[i] = recorded != NO_RECORD;
+            position = Math.max(position, recorded);
+        }
+        journal.awaitDurable(position);
+        return added;
+    }
+
+    private long link(Long userId, Long friendId) {
+        return locks.withLocks(userId, friendId, () -> {
+            User user = users.get(userId);
+            User friend = users.get(friendId);
+            if (user == null || friend == null) {
+                return NO_RECORD;
+            }
+            int added = (user.getFriends().add(friendId) ? 1 : 0) + (friend.getFriends().add(userId) ? 1 : 0);
+            if (added == 0) {
+                return NO_RECORD;
+            }
+            friendEdgeCount.add(added);
+            return journal.friendAdded(userId, friendId);
+        });
+    }
+
+    @Override
+    public boolean deleteFriend(Long userId, Long friendId) {
+        long position = unlink(userId, friendId);
+        journal.awaitDurable(position);
+        return position != NO_RECORD;
+    }
+
+    private long unlink(long userId, long friendId) {
+        return locks.withLocks(userId, friendId, () -> {
+            User user = users.get(userId);
+            User friend = users.get(friendId);
+            if (user == null || friend == null) {
+                return NO_RECORD;
+            }
+            int removed = (user.getFriends().remove(friendId) ? 1 : 0) + (friend.getFriends().remove(userId) ? 1 : 0);
+            if (removed == 0) {
+                return NO_RECORD;
+            }
+            friendEdgeCount.add(-removed);
+            return journal.friendDeleted(userId, friendId);
+        });
+    }
+
+    /**
+     * Добавляет одну сторону дружбы: друга в список пользователя, без журнала. Вторую сторону секционированное
+     * хранилище добавляет в секции друга, а кластер — на узле друга.
+     *
+     * @return {@code null}, если пользователя нет, иначе — добавилась ли запись
+     */
+    public Boolean addFriendEdge(long userId, long friendId) {
+        return locks.withLock(userId, () -> {
+            User user = users.get(userId);
+            if (user == null) {
+                return null;
+            }
+            boolean added = user.getFriends().add(friendId);
+            if (added) {
+                friendEdgeCount.increment();
+            }
+            return added;
+        });
+    }
+
+    /**
+     * Удаляет одну сторону дружбы, парную к {@link #addFriendEdge}.
+     *
+     * @return {@code null}, если пользователя нет, иначе — удалилась ли запись
+     */
+    public Boolean removeFriendEdge(long userId, long friendId) {
+        return locks.withLock(userId, () -> {
+            User user = users.get(userId);
+            if (user == null) {
+                return null;
+            }
+            boolean removed = user.getFriends().remove(friendId);
+            if (removed) {
+                friendEdgeCount.decrement();
+            }
+            return removed;
+        });
+    }
+
+    /**
+     * Удаляет пользователя вместе с его дружбами; каждая дружба снимается отдельной записью журнала.
+     * Если пока дружбы снимались, пользователя успели добавить в друзья, проход повторяется.
+     */
+    @Override
+    public boolean delete(Long userId) {
+        long position = NO_RECORD;
+        while (true) {
+            User user = users.get(userId);
+            if (user == null) {
+                journal.awaitDurable(position);
+                return false;
+            }
+            for (long friendId : user.getFriends().toLongArray()) {
+                position = Math.max(position, unlink(userId, friendId));
+            }
+            Long deleted = locks.withLock(userId, () -> {
+                User current = users.get(userId);
+                if (current == null || !current.getFriends().isEmpty()) {
+                    return null;
+                }
+                users.remove(userId);
+                userCount.decrement();
+                return journal.userDeleted(userId);
+            });
+            if (deleted != null) {
+                journal.awaitDurable(Math.max(position, deleted));
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Удаляет пользователя, только если у него не осталось друзей: проверка и удаление идут под одной
+     * блокировкой, так что дружба, добавленная с другого узла, не останется висеть на удалённом пользователе.
+     *
+     * @return {@code null}, если друзья есть, иначе — был ли пользователь
+     */
+    public Boolean deleteIfFriendless(long userId) {
+        Long position = locks.withLock(userId, () -> {
+            User user = users.get(userId);
+            if (user == null) {
+                return NO_RECORD;
+            }
+            if (!user.getFriends().isEmpty()) {
+                return null;
+            }
+            users.remove(userId);
+            userCount.decrement();
+            return journal.userDeleted(userId);
+        });
+        if (position == null) {
+            return null;
+        }
+        journal.awaitDurable(position);
+        return position != NO_RECORD;
+    }
+
+    @Override
+    public long count() {
+        return userCount.sum();
+    }
+
+    @Override
+    public long friendEdgeCount() {
+        return friendEdgeCount.sum();
+    }
+}
@@ -0,0 +1,396 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmGenre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+
+import java.sql.BatchUpdateException;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.ObjIntConsumer;
+
+@Component
+@Profile("jdbc")
+public class JdbcFilmStorage implements FilmStorage {
+    private static final String SELECT_FILMS = """
+            SELECT f.id, f.version, f.name, f.description, f.release_date, f.duration, m.name AS mpa
+            FROM films f
+            LEFT JOIN mpa_ratings m ON m.id = f.mpa_rating_id
+            """;
+
+    /**
+     * Проверка и вставка не атомарны при READ COMMITTED: два одинаковых параллельных лайка могут пройти проверку
+     * оба, и тогда второй упадёт на первичном ключе — это значит, что лайк уже стоит.
+     */
+    private static final String INSERT_LIKE = """
+            INSERT INTO likes (film_id, user_id)
+            SELECT :filmId, :userId
+            WHERE NOT EXISTS (SELECT 1 FROM likes WHERE film_id = :filmId AND user_id = :userId)
+            """;
+
+    private static final int ID_BATCH = 1000;
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public JdbcFilmStorage(NamedParameterJdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    @Override
+    @Transactional
+    public Film create(Film film) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.update("""
+                INSERT INTO films (name, description, release_date, duration, mpa_rating_id)
+                VALUES (:name, :description, :releaseDate, :duration,
+                        (SELECT id FROM mpa_ratings WHERE name = :mpa))
+                """, filmParameters(film), keyHolder, new String[]{"id"});
+
+        Film created = film.toBuilder().id(Objects.requireNonNull(keyHolder.getKey()).longValue()).version(1L).build();
+        saveGenres(created);
+        return created;
+    }
+
+    @Override
+    @Transactional
+    public List<Film> createAll(List<Film> films) {
+        if (films.isEmpty()) {
+            return List.of();
+        }
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.batchUpdate("""
+                INSERT INTO films (name, description, release_date, duration, mpa_rating_id)
+                VALUES (:name, :description, :releaseDate, :duration,
+                        (SELECT id FROM mpa_ratings WHERE name = :mpa))
+                """, films.stream().map(this::filmParameters).toArray(MapSqlParameterSource[]::new),
+                keyHolder, new String[]{"id"});
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        List<Film> created = new ArrayList<>(films.size());
+        List<MapSqlParameterSource> genres = new ArrayList<>();
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i).toBuilder().id(((Number) keys.get(i).get("id")).longValue()).version(1L).build();
+            created.add(film);
+            genres.addAll(genreParameters(film));
+        }
+        insertGenres(genres.toArray(MapSqlParameterSource[]::new));
+        return created;
+    }
+
+    @Override
+    @Transactional
+    public Optional<Film> update(Film film, long expectedVersion) {
+        int updated = jdbc.update("""
+                UPDATE films
+                SET name = :name, description = :description, release_date = :releaseDate, duration = :duration,
+                    mpa_rating_id = (SELECT id FROM mpa_ratings WHERE name = :mpa), version = version + 1
+                WHERE id = :id AND (:expected = -1 OR version = :expected)
+                """, filmParameters(film).addValue("expected", expectedVersion));
+        if (updated == 0) {
+            if (jdbc.queryForObject("SELECT COUNT(*) FROM films WHERE id = :id",
+                    Map.of("id", film.getId()), Integer.class) == 0) {
+                throw new NotFoundException("Фильм с id = " + film.getId() + " не найден");
+            }
+            return Optional.empty();
+        }
+
+        Film stored = film.toBuilder()
+                .version(jdbc.queryForObject("SELECT version FROM films WHERE id = :id",
+                        Map.of("id", film.getId()), Long.class))
+                .build();
+        jdbc.update("DELETE FROM film_genres WHERE film_id = :id", Map.of("id", film.getId()));
+        saveGenres(stored);
+        stored.getMovieRating().addAll(loadLikes(List.of(film.getId())).getOrDefault(film.getId(), Set.of()));
+        return Optional.of(stored);
+    }
+
+    @Override
+    public Collection<Film> getFilms() {
+        return withRelations(jdbc.query(SELECT_FILMS + " ORDER BY f.id", this::mapFilm));
+    }
+
+    @Override
+    public List<Film> getFilms(long afterId, int limit) {
+        return withRelations(jdbc.query(SELECT_FILMS + " WHERE f.id > :afterId ORDER BY f.id LIMIT :limit",
+                Map.of("afterId", afterId, "limit", limit), this::mapFilm));
+    }
+
+    @Override
+    public Optional<Film> findById(Long filmId) {
+        List<Film> films = jdbc.query(SELECT_FILMS + " WHERE f.id = :id", Map.of("id", filmId), this::mapFilm);
+        return withRelations(films).stream().findFirst();
+    }
+
+    @Override
+    public List<Film> findAllById(long[] filmIds) {
+        Map<Long, Film> found = new HashMap<>(filmIds.length);
+        for (int from = 0; from < filmIds.length; from += ID_BATCH) {
+            List<Long> ids = Arrays.stream(filmIds, from, Math.min(filmIds.length, from + ID_BATCH)).boxed().toList();
+            withRelations(jdbc.query(SELECT_FILMS + " WHERE f.id IN (:ids)", Map.of("ids", ids), this::mapFilm))
+                    .forEach(film -> found.put(film.getId(), film));
+        }
+        List<Film> ordered = new ArrayList<>(found.size());
+        for (long filmId : filmIds) {
+            Film film = found.get(filmId);
+            if (film != null) {
+                ordered.add(film);
+            }
+        }
+        return ordered;
+    }
+
+    @Override
+    public Set<Long> existingIds(Collection<Long> filmIds) {
+        if (filmIds.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(jdbc.queryForList("SELECT id FROM films WHERE id IN (:ids)",
+                Map.of("ids", filmIds), Long.class));
+    }
+
+    @Override
+    public List<Film> getTopFilms(int count) {
+        return withRelations(jdbc.query(SELECT_FILMS + " ORDER BY f.like_count DESC, f.id LIMIT :count",
+                Map.of("count", count), this::mapFilm));
+    }
+
+    @Override
+    public List<Film> getTopFilms(int count, FilmGenre genre, MpaRating mpa, Integer year) {
+        StringJoiner where = new StringJoiner(" AND ", " WHERE ", "").setEmptyValue("");
+        MapSqlParameterSource parameters = new MapSqlParameterSource("count", count);
+        if (genre != null) {
+            where.add("""
+                    EXISTS (SELECT 1 FROM film_genres fg JOIN genres g ON g.id = fg.genre_id
+                            WHERE fg.film_id = f.id AND g.name = :genre)""");
+            parameters.addValue("genre", genre.name());
+        }
+        if (mpa != null) {
+            where.add("m.name = :mpa");
+            parameters.addValue("mpa", mpa.name());
+        }
+        if (year != null) {
+            where.add("f.release_date >= :yearStart AND f.release_date < :nextYearStart");
+            parameters.addValue("yearStart", Date.valueOf(LocalDate.of(year, 1, 1)))
+                    .addValue("nextYearStart", Date.valueOf(LocalDate.of(year + 1, 1, 1)));
+        }
+        return withRelations(jdbc.query(SELECT_FILMS + where + " ORDER BY f.like_count DESC, f.id LIMIT :count",
+                parameters, this::mapFilm));
+    }
+
+    @Override
+    public void forEachLikeCount(ObjIntConsumer<Long> action) {
+        jdbc.query("SELECT id, like_count FROM films WHERE like_count > 0", Map.of(),
+                (RowCallbackHandler) rs -> action.accept(rs.getLong("id"), rs.getInt("like_count")));
+    }
+
+    @Override
+    @Transactional
+    public boolean addLike(Long filmId, Long userId) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("filmId", filmId)
+                .addValue("userId", userId);
+        int inserted;
+        try {
+            inserted = jdbc.update(INSERT_LIKE, parameters);
+        } catch (DuplicateKeyException e) {
+            // такой же лайк вставили параллельно между проверкой и вставкой
+            return false;
+        }
+        if (inserted == 0) {
+            return false;
+        }
+        jdbc.update("UPDATE films SET like_count = like_count + 1 WHERE id = :filmId", parameters);
+        return true;
+    }
+
+    @Override
+    @Transactional
+    public boolean deleteLike(Long filmId, Long userId) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("filmId", filmId)
+                .addValue("userId", userId);
+        int deleted = jdbc.update("DELETE FROM likes WHERE film_id = :filmId AND user_id = :userId", parameters);
+        if (deleted == 0) {
+            return false;
+        }
+        jdbc.update("UPDATE films SET like_count = like_count - 1 WHERE id = :filmId", parameters);
+        return true;
+    }
+
+    @Override
+    @Transactional
+    public boolean[] addLikes(List<Like> likes) {
+        boolean[] added = new boolean[likes.size()];
+        if (likes.isEmpty()) {
+            return added;
+        }
+        MapSqlParameterSource[] batch = likes.stream()
+                .map(like -> new MapSqlParameterSource()
+                        .addValue("filmId", like.filmId())
+                        .addValue("userId", like.userId()))
+                .toArray(MapSqlParameterSource[]::new);
+        int[] inserted;
+        try {
+            inserted = jdbc.batchUpdate(INSERT_LIKE, batch);
+        } catch (DuplicateKeyException e) {
+            // H2 выполняет пакет до конца и сообщает результат каждой строки: параллельно вставленные лайки
+            // отмечены как невыполненные, остальные уже вставлены в этой транзакции
+            if (!(e.getCause() instanceof BatchUpdateException failed)) {
+                throw e;
+            }
+            inserted = failed.getUpdateCounts();
+        }
+
+        Map<Long, Integer> increments = new HashMap<>();
+        for (int i = 0; i < inserted.length; i++) {
+            added[i] = inserted[i] > 0;
+            if (added[i]) {
+                increments.merge(likes.get(i).filmId(), 1, Integer::sum);
+            }
+        }
+        jdbc.batchUpdate("UPDATE films SET like_count = like_count + :increment WHERE id = :filmId",
+                increments.entrySet().stream()
+                        .map(entry -> new MapSqlParameterSource()
+                                .addValue("filmId", entry.getKey())
+                                .addValue("increment", entry.getValue()))
+                        .toArray(MapSqlParameterSource[]::new));
+        return added;
+    }
+
+    @Override
+    public long[] likedFilms(long userId) {
+        return jdbc.queryForList("SELECT film_id FROM likes WHERE user_id = :userId ORDER BY film_id",
+                Map.of("userId", userId), Long.class).stream().mapToLong(Long::longValue).toArray();
+    }
+
+    @Override
+    public long[] likedFilms(long userId, long afterId, int limit) {
+        return jdbc.queryForList("""
+                        SELECT film_id FROM likes
+                        WHERE user_id = :userId AND film_id > :afterId
+                        ORDER BY film_id LIMIT :limit
+                        """, Map.of("userId", userId, "afterId", afterId, "limit", limit), Long.class)
+                .stream().mapToLong(Long::longValue).toArray();
+    }
+
+    @Override
+    @Transactional
+    public int deleteLikesOf(long userId) {
+        Map<String, Long> parameters = Map.of("userId", userId);
+        jdbc.update("""
+                UPDATE films SET like_count = like_count - 1
+                WHERE id IN (SELECT film_id FROM likes WHERE user_id = :userId)
+                """, parameters);
+        return jdbc.update("DELETE FROM likes WHERE user_id = :userId", parameters);
+    }
+
+    @Override
+    public long count() {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM films", Map.of(), Long.class);
+    }
+
+    @Override
+    public long likeCount() {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM likes", Map.of(), Long.class);
+    }
+
+    private void saveGenres(Film film) {
+        insertGenres(genreParameters(film).toArray(MapSqlParameterSource[]::new));
+    }
+
+    private List<MapSqlParameterSource> genreParameters(Film film) {
+        if (film.getGenres() == null) {
+            return List.of();
+        }
+        return film.getGenres().stream()
+                .map(genre -> new MapSqlParameterSource()
+                        .addValue("filmId", film.getId())
+                        .addValue("genre", genre.name()))
+                .toList();
+    }
+
+    private void insertGenres(MapSqlParameterSource[] batch) {
+        if (batch.length == 0) {
+            return;
+        }
+        jdbc.batchUpdate("""
+                INSERT INTO film_genres (film_id, genre_id)
+                SELECT :filmId, id FROM genres WHERE name = :genre
+                """, batch);
+    }
+
+    private List<Film> withRelations(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+        List<Long> ids = films.stream().map(Film::getId).toList();
+        Map<Long, Set<FilmGenre>> genres = loadGenres(ids);
+        Map<Long, Set<Long>> likes = loadLikes(ids);
+        for (Film film : films) {
+            film.setGenres(genres.getOrDefault(film.getId(), new HashSet<>()));
+            film.getMovieRating().addAll(likes.getOrDefault(film.getId(), Set.of()));
+        }
+        return films;
+    }
+
+    private Map<Long, Set<FilmGenre>> loadGenres(List<Long> filmIds) {
+        Map<Long, Set<FilmGenre>> genres = new HashMap<>();
+        jdbc.query("""
+                SELECT fg.film_id, g.name
+                FROM film_genres fg
+                JOIN genres g ON g.id = fg.genre_id
+                WHERE fg.film_id IN (:ids)
+                """, Map.of("ids", filmIds), (ResultSet rs) -> {
+            genres.computeIfAbsent(rs.getLong("film_id"), id -> EnumSet.noneOf(FilmGenre.class))
+                    .add(FilmGenre.valueOf(rs.getString("name")));
+        });
+        return genres;
+    }
+
+    private Map<Long, Set<Long>> loadLikes(List<Long> filmIds) {
+        Map<Long, Set<Long>> likes = new HashMap<>();
+        jdbc.query("SELECT film_id, user_id FROM likes WHERE film_id IN (:ids)", Map.of("ids", filmIds),
+                (ResultSet rs) -> {
+                    likes.computeIfAbsent(rs.getLong("film_id"), id -> new HashSet<>()).add(rs.getLong("user_id"));
+                });
+        return likes;
+    }
+
+    private MapSqlParameterSource filmParameters(Film film) {
+        return new MapSqlParameterSource()
+                .addValue("id", film.getId())
+                .addValue("name", film.getName())
+                .addValue("description", film.getDescription())
+                .addValue("releaseDate", film.getReleaseDate())
+                .addValue("duration", film.getDuration())
+                .addValue("mpa", film.getMpaRating() == null ? null : film.getMpaRating().name());
+    }
+
+    private Film mapFilm(ResultSet rs, int rowNum) throws SQLException {
+        Date releaseDate = rs.getDate("release_date");
+        String mpa = rs.getString("mpa");
+        return Film.builder()
+                .id(rs.getLong("id"))
+                .version(rs.getLong("version"))
+                .name(rs.getString("name"))
+                .description(rs.getString("description"))
+                .releaseDate(releaseDate == null ? null : releaseDate.toLocalDate())
+                .duration(rs.getInt("duration"))
+                .mpaRating(mpa == null ? null : MpaRating.valueOf(mpa))
+                .build();
+    }
+}
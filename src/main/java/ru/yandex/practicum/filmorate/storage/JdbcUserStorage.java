@@ -0,0 +1,236 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.FriendshipStatus;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+@Component
+@Profile("jdbc")
+public class JdbcUserStorage implements UserStorage {
+    private static final int ID_BATCH = 1000;
+    private static final String SELECT_USERS = "SELECT id, version, email, login, name, birthday FROM users";
+    private static final String INSERT_FRIEND = """
+            INSERT INTO friends (user_id, friend_id, status)
+            SELECT :userId, :friendId, :status
+            WHERE NOT EXISTS (SELECT 1 FROM friends WHERE user_id = :userId AND friend_id = :friendId)
+            """;
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public JdbcUserStorage(NamedParameterJdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    @Override
+    public User create(User user) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.update("""
+                INSERT INTO users (email, login, name, birthday)
+                VALUES (:email, :login, :name, :birthday)
+                """, userParameters(user), keyHolder, new String[]{"id"});
+        return user.toBuilder().id(Objects.requireNonNull(keyHolder.getKey()).longValue()).version(1L).build();
+    }
+
+    @Override
+    @Transactional
+    public List<User> createAll(List<User> users) {
+        if (users.isEmpty()) {
+            return List.of();
+        }
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.batchUpdate("""
+                INSERT INTO users (email, login, name, birthday)
+                VALUES (:email, :login, :name, :birthday)
+                """, users.stream().map(this::userParameters).toArray(MapSqlParameterSource[]::new),
+                keyHolder, new String[]{"id"});
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        List<User> created = new ArrayList<>(users.size());
+        for (int i = 0; i < users.size(); i++) {
+            created.add(users.get(i).toBuilder().id(((Number) keys.get(i).get("id")).longValue()).version(1L).build());
+        }
+        return created;
+    }
+
+    @Override
+    @Transactional
+    public Optional<User> update(User user, long expectedVersion) {
+        int updated = jdbc.update("""
+                UPDATE users
+                SET email = :email, login = :login, name = :name, birthday = :birthday, version = version + 1
+                WHERE id = :id AND (:expected = -1 OR version = :expected)
+                """, userParameters(user).addValue("expected", expectedVersion));
+        if (updated == 0) {
+            if (jdbc.queryForObject("SELECT COUNT(*) FROM users WHERE id = :id",
+                    Map.of("id", user.getId()), Integer.class) == 0) {
+                throw new NotFoundException("Пользователь с id = " + user.getId() + " не найден");
+            }
+            return Optional.empty();
+        }
+        User stored = user.toBuilder()
+                .version(jdbc.queryForObject("SELECT version FROM users WHERE id = :id",
+                        Map.of("id", user.getId()), Long.class))
+                .build();
+        stored.getFriends().addAll(loadFriends(List.of(user.getId())).getOrDefault(user.getId(), Set.of()));
+        return Optional.of(stored);
+    }
+
+    @Override
+    public Collection<User> getUsers() {
+        return withFriends(jdbc.query(SELECT_USERS + " ORDER BY id", this::mapUser));
+    }
+
+    @Override
+    public List<User> getUsers(long afterId, int limit) {
+        return withFriends(jdbc.query(SELECT_USERS + " WHERE id > :afterId ORDER BY id LIMIT :limit",
+                Map.of("afterId", afterId, "limit", limit), this::mapUser));
+    }
+
+    @Override
+    public Optional<User> findById(Long userId) {
+        List<User> users = jdbc.query(SELECT_USERS + " WHERE id = :id", Map.of("id", userId), this::mapUser);
+        return withFriends(users).stream().findFirst();
+    }
+
+    @Override
+    public List<User> findAllById(long[] userIds) {
+        Map<Long, User> found = new HashMap<>(userIds.length);
+        for (int from = 0; from < userIds.length; from += ID_BATCH) {
+            List<Long> ids = Arrays.stream(userIds, from, Math.min(userIds.length, from + ID_BATCH)).boxed().toList();
+            withFriends(jdbc.query(SELECT_USERS + " WHERE id IN (:ids)", Map.of("ids", ids), this::mapUser))
+                    .forEach(user -> found.put(user.getId(), user));
+        }
+        List<User> ordered = new ArrayList<>(found.size());
+        for (long userId : userIds) {
+            User user = found.get(userId);
+            if (user != null) {
+                ordered.add(user);
+            }
+        }
+        return ordered;
+    }
+
+    @Override
+    public Set<Long> existingIds(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(jdbc.queryForList("SELECT id FROM users WHERE id IN (:ids)",
+                Map.of("ids", userIds), Long.class));
+    }
+
+    @Override
+    @Transactional
+    public boolean delete(Long userId) {
+        jdbc.update("DELETE FROM friends WHERE user_id = :id OR friend_id = :id", Map.of("id", userId));
+        return jdbc.update("DELETE FROM users WHERE id = :id", Map.of("id", userId)) > 0;
+    }
+
+    @Override
+    @Transactional
+    public boolean addFriend(Long userId, Long friendId) {
+        int[] inserted = jdbc.batchUpdate(INSERT_FRIEND, friendshipBatch(userId, friendId, FriendshipStatus.CONFIRMED));
+        return Arrays.stream(inserted).anyMatch(count -> count > 0);
+    }
+
+    @Override
+    @Transactional
+    public boolean[] addFriends(List<Friendship> friendships) {
+        boolean[] added = new boolean[friendships.size()];
+        if (friendships.isEmpty()) {
+            return added;
+        }
+        MapSqlParameterSource[] batch = friendships.stream()
+                .flatMap(friendship -> Arrays.stream(friendshipBatch(
+                        friendship.userId(), friendship.friendId(), FriendshipStatus.CONFIRMED)))
+                .toArray(MapSqlParameterSource[]::new);
+        int[] inserted = jdbc.batchUpdate(INSERT_FRIEND, batch);
+        for (int i = 0; i < added.length; i++) {
+            added[i] = inserted[2 * i] > 0 || inserted[2 * i + 1] > 0;
+        }
+        return added;
+    }
+
+    @Override
+    @Transactional
+    public boolean deleteFriend(Long userId, Long friendId) {
+        int[] deleted = jdbc.batchUpdate("DELETE FROM friends WHERE user_id = :userId AND friend_id = :friendId",
+                friendshipBatch(userId, friendId, FriendshipStatus.CONFIRMED));
+        return Arrays.stream(deleted).anyMatch(count -> count > 0);
+    }
+
+    @Override
+    public long count() {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM users", Map.of(), Long.class);
+    }
+
+    @Override
+    public long friendEdgeCount() {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM friends", Map.of(), Long.class);
+    }
+
+    private MapSqlParameterSource[] friendshipBatch(Long userId, Long friendId, FriendshipStatus status) {
+        return new MapSqlParameterSource[]{
+                new MapSqlParameterSource()
+                        .addValue("userId", userId)
+                        .addValue("friendId", friendId)
+                        .addValue("status", status.name()),
+                new MapSqlParameterSource()
+                        .addValue("userId", friendId)
+                        .addValue("friendId", userId)
+                        .addValue("status", status.name())
+        };
+    }
+
+    private List<User> withFriends(List<User> users) {
+        if (users.isEmpty()) {
+            return users;
+        }
+        Map<Long, Set<Long>> friends = loadFriends(users.stream().map(User::getId).toList());
+        users.forEach(user -> user.getFriends().addAll(friends.getOrDefault(user.getId(), Set.of())));
+        return users;
+    }
+
+    private Map<Long, Set<Long>> loadFriends(List<Long> userIds) {
+        Map<Long, Set<Long>> friends = new HashMap<>();
+        jdbc.query("SELECT user_id, friend_id FROM friends WHERE user_id IN (:ids)", Map.of("ids", userIds),
+                (ResultSet rs) -> {
+                    friends.computeIfAbsent(rs.getLong("user_id"), id -> new HashSet<>()).add(rs.getLong("friend_id"));
+                });
+        return friends;
+    }
+
+    private MapSqlParameterSource userParameters(User user) {
+        return new MapSqlParameterSource()
+                .addValue("id", user.getId())
+                .addValue("email", user.getEmail())
+                .addValue("login", user.getLogin())
+                .addValue("name", user.getName())
+                .addValue("birthday", user.getBirthday());
+    }
+
+    private User mapUser(ResultSet rs, int rowNum) throws SQLException {
+        Date birthday = rs.getDate("birthday");
+        return User.builder()
+                .id(rs.getLong("id"))
+                .version(rs.getLong("version"))
+                .email(rs.getString("email"))
+                .login(rs.getString("login"))
+                .name(rs.getString("name"))
+                .birthday(birthday == null ? null : birthday.toLocalDate())
+                .build();
+    }
+}
@@ -0,0 +1,174 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.util.SortedLongSet;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * Сущности хранилища в памяти с ленивой подгрузкой из {@link EntitySource}.
+ * Сущность из источника материализуется при первом обращении по id и дальше живёт только в памяти,
+ * поэтому все изменения видны через {@link #get(long)}, а источник остаётся неизменным.
+ * Точечные чтения идут через хеш-таблицу, а порядок по id для постраничной выдачи держит
+ * отдельный компактный индекс идентификаторов. Удалённые сущности источника помечаются отдельным множеством,
+ * чтобы они не загрузились из него снова.
+ */
+class LazyEntityMap<T> {
+    private static final int SCAN_BATCH = 256;
+
+    private final Map<Long, T> materialized = new ConcurrentHashMap<>();
+    private final SortedLongSet ids = new SortedLongSet();
+    private final SortedLongSet removed = new SortedLongSet();
+    private volatile EntitySource<T> source;
+
+    T get(long id) {
+        T entity = materialized.get(id);
+        EntitySource<T> current = source;
+        if (entity != null || current == null) {
+            return entity;
+        }
+        int position = current.positionOf(id);
+        if (position < 0 || isRemoved(id)) {
+            return null;
+        }
+        T loaded = current.load(position);
+        T existing = materialized.putIfAbsent(id, loaded);
+        if (existing != null) {
+            return existing;
+        }
+        if (isRemoved(id)) {
+            // сущность удалили, пока она загружалась из источника
+            materialized.remove(id, loaded);
+            return null;
+        }
+        ids.add(id);
+        return loaded;
+    }
+
+    void put(long id, T entity) {
+        if (!removed.isEmpty()) {
+            removed.remove(id);
+        }
+        if (materialized.put(id, entity) == null) {
+            ids.add(id);
+        }
+    }
+
+    /**
+     * Удаляет сущность; вызывается под блокировкой сущности, как и {@link #put(long, Object)}.
+     *
+     * @return удалённая сущность или {@code null}, если её не было
+     */
+    T remove(long id) {
+        T entity = get(id);
+        if (entity == null) {
+            return null;
+        }
+        EntitySource<T> current = source;
+        if (current != null && current.positionOf(id) >= 0) {
+            removed.add(id);
+        }
+        materialized.remove(id);
+        ids.remove(id);
+        return entity;
+    }
+
+    void mount(EntitySource<T> source) {
+        this.source = source;
+    }
+
+    /**
+     * Материализует все сущности источника параллельно и возвращает коллекцию всех сущностей.
+     */
+    Collection<T> values() {
+        EntitySource<T> current = source;
+        if (current != null) {
+            IntStream.range(0, current.size()).parallel()
+                    .forEach(position -> get(current.idAt(position)));
+            source = null;
+        }
+        return materialized.values();
+    }
+
+    /**
+     * Обходит сущности с id больше {@code afterId} по возрастанию id, пока {@code action} возвращает {@code true}.
+     * Ещё не материализованные сущности читаются из источника, но в памяти не остаются.
+     */
+    void forEachAfter(long afterId, Predicate<T> action) {
+        EntitySource<T> current = source;
+        int sourceSize = current == null ? 0 : current.size();
+        int position = 0;
+        if (current != null) {
+            int found = current.positionOf(afterId);
+            position = found >= 0 ? found + 1 : -(found + 1);
+        }
+
+        long[] batch = ids.after(afterId, SCAN_BATCH);
+        int next = 0;
+        while (true) {
+            if (next == batch.length && batch.length == SCAN_BATCH) {
+                batch = ids.after(batch[batch.length - 1], SCAN_BATCH);
+                next = 0;
+            }
+            boolean hasMaterialized = next < batch.length;
+            if (!hasMaterialized && position >= sourceSize) {
+                return;
+            }
+            long sourceId = position < sourceSize ? current.idAt(position) : Long.MAX_VALUE;
+            T entity;
+            if (hasMaterialized && batch[next] <= sourceId) {
+                if (batch[next] == sourceId) {
+                    position++;
+                }
+                entity = materialized.get(batch[next++]);
+                if (entity == null) {
+                    continue;
+                }
+            } else {
+                T loaded = materialized.get(sourceId);
+                if (loaded == null && isRemoved(sourceId)) {
+                    position++;
+                    continue;
+                }
+                entity = loaded != null ? loaded : current.load(position);
+                position++;
+            }
+            if (!action.test(entity)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Обходит все сущности по одному разу, не загружая их из источника: материализованные передаются
+     * в {@code loaded}, остальные — источником и позицией в нём в {@code unloaded}.
+     */
+    void forEach(Consumer<T> loaded, ObjIntConsumer<EntitySource<T>> unloaded) {
+        EntitySource<T> current = source;
+        if (current != null) {
+            for (int position = 0; position < current.size(); position++) {
+                long id = current.idAt(position);
+                T entity = materialized.get(id);
+                if (entity != null) {
+                    loaded.accept(entity);
+                } else if (!isRemoved(id)) {
+                    unloaded.accept(current, position);
+                }
+            }
+        }
+        materialized.forEach((id, entity) -> {
+            if (current == null || current.positionOf(id) < 0) {
+                loaded.accept(entity);
+            }
+        });
+    }
+
+    private boolean isRemoved(long id) {
+        return !removed.isEmpty() && removed.contains(id);
+    }
+}
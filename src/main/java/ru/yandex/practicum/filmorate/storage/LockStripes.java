@@ -0,0 +1,66 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Набор блокировок, распределённых по id сущности. Изменения разных сущностей почти никогда не попадают
+ * в одну полосу, поэтому запись масштабируется по ядрам без общей блокировки, а чтение не блокируется вовсе.
+ */
+public class LockStripes {
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    public LockStripes() {
+        this(Runtime.getRuntime().availableProcessors() * 16);
+    }
+
+    public LockStripes(int minStripes) {
+        int stripes = Integer.highestOneBit(Math.max(1, minStripes - 1)) << 1;
+        locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        mask = stripes - 1;
+    }
+
+    public <T> T withLock(long id, Supplier<T> action) {
+        ReentrantLock lock = locks[stripe(id)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Выполняет действие под блокировками обеих сущностей. Полосы захватываются в порядке возрастания индекса,
+     * чтобы встречные изменения одной пары не приводили к взаимной блокировке.
+     */
+    public <T> T withLocks(long firstId, long secondId, Supplier<T> action) {
+        int first = stripe(firstId);
+        int second = stripe(secondId);
+        if (first == second) {
+            return withLock(firstId, action);
+        }
+        ReentrantLock outer = locks[Math.min(first, second)];
+        ReentrantLock inner = locks[Math.max(first, second)];
+        outer.lock();
+        try {
+            inner.lock();
+            try {
+                return action.get();
+            } finally {
+                inner.unlock();
+            }
+        } finally {
+            outer.unlock();
+        }
+    }
+
+    private int stripe(long id) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,131 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongPredicate;
+
+/**
+ * Индекс популярности фильмов, упорядоченный по количеству лайков (по убыванию), затем по id.
+ * Обновляется при каждом изменении лайков, поэтому чтение топ-K стоит O(K), а не сортировку всех фильмов.
+ * Результат для самого частого размера топа кешируется и сбрасывается, только когда изменение
+ * затрагивает фильм, который находится (или оказывается) внутри границы топа.
+ */
+public class PopularityIndex {
+    private static final Comparator<Entry> ORDER = (first, second) -> first.likes() != second.likes()
+            ? Integer.compare(second.likes(), first.likes())
+            : Long.compare(first.filmId(), second.filmId());
+
+    private final NavigableSet<Entry> ranking = new ConcurrentSkipListSet<>(ORDER);
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong epoch = new AtomicLong();
+    private final int cachedSize;
+
+    private volatile CachedTop cachedTop;
+
+    public PopularityIndex(int cachedSize) {
+        this.cachedSize = cachedSize;
+    }
+
+    public void update(long filmId, int likes) {
+        Entry updated = new Entry(filmId, likes);
+        Entry[] previous = new Entry[1];
+        entries.compute(filmId, (id, current) -> {
+            previous[0] = current;
+            ranking.add(updated);
+            if (current != null && !current.equals(updated)) {
+                ranking.remove(current);
+            }
+            return updated;
+        });
+        invalidateIfCrossesBoundary(previous[0], updated);
+    }
+
+    /**
+     * Убирает фильм из индекса, например когда он перестал относиться к срезу.
+     */
+    public void remove(long filmId) {
+        Entry[] previous = new Entry[1];
+        entries.computeIfPresent(filmId, (id, current) -> {
+            previous[0] = current;
+            ranking.remove(current);
+            return null;
+        });
+        if (previous[0] != null) {
+            invalidateIfCrossesBoundary(previous[0], previous[0]);
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean contains(long filmId) {
+        return entries.containsKey(filmId);
+    }
+
+    public int likes(long filmId) {
+        Entry current = entries.get(filmId);
+        return current == null ? 0 : current.likes();
+    }
+
+    public List<Long> top(int count) {
+        if (count != cachedSize) {
+            return collect(count, filmId -> true);
+        }
+        CachedTop cached = cachedTop;
+        long currentEpoch = epoch.get();
+        if (cached != null && cached.epoch() == currentEpoch) {
+            return cached.filmIds();
+        }
+        List<Long> filmIds = collect(count, filmId -> true);
+        Entry boundary = filmIds.size() < count ? null : entries.get(filmIds.get(count - 1));
+        cachedTop = new CachedTop(filmIds, boundary, currentEpoch);
+        return filmIds;
+    }
+
+    /**
+     * Первые {@code count} фильмов рейтинга, прошедших {@code filter}. Рейтинг обходится с начала,
+     * пока не наберётся {@code count} фильмов, результат не кешируется.
+     */
+    public List<Long> top(int count, LongPredicate filter) {
+        return collect(count, filter);
+    }
+
+    private List<Long> collect(int count, LongPredicate filter) {
+        List<Long> result = new ArrayList<>(Math.min(Math.max(count, 0), entries.size()));
+        Set<Long> seen = new HashSet<>();
+        Iterator<Entry> iterator = ranking.iterator();
+        while (result.size() < count && iterator.hasNext()) {
+            long filmId = iterator.next().filmId();
+            if (filter.test(filmId) && seen.add(filmId)) {
+                result.add(filmId);
+            }
+        }
+        return List.copyOf(result);
+    }
+
+    private void invalidateIfCrossesBoundary(Entry previous, Entry updated) {
+        CachedTop cached = cachedTop;
+        if (cached == null || cached.epoch() != epoch.get()
+                || cached.boundary() == null
+                || (previous != null && ORDER.compare(previous, cached.boundary()) <= 0)
+                || ORDER.compare(updated, cached.boundary()) <= 0) {
+            epoch.incrementAndGet();
+        }
+    }
+
+    private record Entry(long filmId, int likes) {
+    }
+
+    private record CachedTop(List<Long> filmIds, Entry boundary, long epoch) {
+    }
+}
@@ -0,0 +1,238 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmGenre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntToLongFunction;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Фильмы, разделённые на независимые секции {@link StorageShards}: у каждой секции своё хранилище в памяти,
+ * и изменяет его только поток секции. Фильм и все его лайки живут в одной секции, поэтому лайк затрагивает
+ * одну секцию, а обратный индекс лайков пользователя собирается из всех. Id выдаются общим счётчиком,
+ * и фильм попадает в хранилище секции уже с id.
+ * <p>
+ * Топ фильмов собирается из топов секций: каждая секция отдаёт свои {@code count} лучших фильмов,
+ * и из них выбираются {@code count} лучших по числу лайков и id. Журнал предзаписи не поддерживается.
+ */
+public class ShardedFilmStorage implements FilmStorage {
+    private static final Comparator<Ranked> POPULARITY = Comparator.comparingInt(Ranked::likes).reversed()
+            .thenComparing(ranked -> ranked.film().getId());
+
+    private final StorageShards shards;
+    private final InMemoryFilmStorage[] partitions;
+    private final AtomicLong idGenerator = new AtomicLong();
+
+    public ShardedFilmStorage(StorageShards shards) {
+        this(shards, false);
+    }
+
+    /**
+     * @param approximateTop топ без фильтров строится приблизительно, и секции не ведут для него общий индекс
+     */
+    public ShardedFilmStorage(StorageShards shards, boolean approximateTop) {
+        this.shards = shards;
+        this.partitions = new InMemoryFilmStorage[shards.count()];
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i] = new InMemoryFilmStorage(StorageJournal.NONE, approximateTop);
+        }
+    }
+
+    @Override
+    public Film create(Film film) {
+        Film created = film.toBuilder().id(idGenerator.incrementAndGet()).version(1L).build();
+        int shard = shards.of(created.getId());
+        return shards.call(shard, () -> {
+            partitions[shard].restore(created);
+            return created;
+        });
+    }
+
+    @Override
+    public List<Film> createAll(List<Film> films) {
+        long firstId = idGenerator.getAndAdd(films.size()) + 1;
+        List<Film> created = IntStream.range(0, films.size())
+                .mapToObj(i -> films.get(i).toBuilder().id(firstId + i).version(1L).build())
+                .toList();
+        List<List<Integer>> positions = partitionPositions(created.size(), i -> created.get(i).getId());
+        shards.callAll(shard -> {
+            for (int position : positions.get(shard)) {
+                partitions[shard].restore(created.get(position));
+            }
+            return null;
+        });
+        return created;
+    }
+
+    @Override
+    public Optional<Film> update(Film film, long expectedVersion) {
+        int shard = shards.of(film.getId());
+        return shards.call(shard, () -> partitions[shard].update(film, expectedVersion));
+    }
+
+    @Override
+    public Collection<Film> getFilms() {
+        List<Film> films = new ArrayList<>();
+        for (InMemoryFilmStorage partition : partitions) {
+            films.addAll(partition.getFilms());
+        }
+        films.sort(Comparator.comparing(Film::getId));
+        return films;
+    }
+
+    /**
+     * Страница собирается из страниц секций: каждая отдаёт до {@code limit} фильмов после {@code afterId}.
+     */
+    @Override
+    public List<Film> getFilms(long afterId, int limit) {
+        List<Film> films = new ArrayList<>();
+        for (InMemoryFilmStorage partition : partitions) {
+            films.addAll(partition.getFilms(afterId, limit));
+        }
+        return films.stream().sorted(Comparator.comparing(Film::getId)).limit(limit).toList();
+    }
+
+    @Override
+    public Optional<Film> findById(Long filmId) {
+        return partitions[shards.of(filmId)].findById(filmId);
+    }
+
+    @Override
+    public List<Film> findAllById(long[] filmIds) {
+        List<Film> found = new ArrayList<>(filmIds.length);
+        for (long filmId : filmIds) {
+            partitions[shards.of(filmId)].findById(filmId).ifPresent(found::add);
+        }
+        return found;
+    }
+
+    @Override
+    public Set<Long> existingIds(Collection<Long> filmIds) {
+        Set<Long> existing = new HashSet<>();
+        for (Long filmId : filmIds) {
+            if (partitions[shards.of(filmId)].findById(filmId).isPresent()) {
+                existing.add(filmId);
+            }
+        }
+        return existing;
+    }
+
+    @Override
+    public List<Film> getTopFilms(int count) {
+        return getTopFilms(count, null, null, null);
+    }
+
+    @Override
+    public List<Film> getTopFilms(int count, FilmGenre genre, MpaRating mpa, Integer year) {
+        return shards.callAll(shard -> partitions[shard].getTopFilms(count, genre, mpa, year)).stream()
+                .flatMap(List::stream)
+                .map(film -> new Ranked(film, film.getMovieRating().size()))
+                .sorted(POPULARITY)
+                .limit(count)
+                .map(Ranked::film)
+                .toList();
+    }
+
+    @Override
+    public void forEachLikeCount(ObjIntConsumer<Long> action) {
+        for (InMemoryFilmStorage partition : partitions) {
+            partition.forEachLikeCount(action);
+        }
+    }
+
+    @Override
+    public boolean addLike(Long filmId, Long userId) {
+        int shard = shards.of(filmId);
+        return shards.call(shard, () -> partitions[shard].addLike(filmId, userId));
+    }
+
+    @Override
+    public boolean deleteLike(Long filmId, Long userId) {
+        int shard = shards.of(filmId);
+        return shards.call(shard, () -> partitions[shard].deleteLike(filmId, userId));
+    }
+
+    /**
+     * Лайки раскладываются по секциям их фильмов и ставятся во всех секциях параллельно.
+     */
+    @Override
+    public boolean[] addLikes(List<Like> likes) {
+        List<List<Integer>> positions = partitionPositions(likes.size(), i -> likes.get(i).filmId());
+        boolean[] added = new boolean[likes.size()];
+        shards.callAll(shard -> {
+            List<Integer> own = positions.get(shard);
+            boolean[] result = partitions[shard].addLikes(own.stream().map(likes::get).toList());
+            for (int i = 0; i < result.length; i++) {
+                added[own.get(i)] = result[i];
+            }
+            return null;
+        });
+        return added;
+    }
+
+    @Override
+    public long[] likedFilms(long userId) {
+        return Arrays.stream(partitions)
+                .flatMapToLong(partition -> Arrays.stream(partition.likedFilms(userId)))
+                .sorted()
+                .toArray();
+    }
+
+    @Override
+    public long[] likedFilms(long userId, long afterId, int limit) {
+        return Arrays.stream(partitions)
+                .flatMapToLong(partition -> Arrays.stream(partition.likedFilms(userId, afterId, limit)))
+                .sorted()
+                .limit(limit)
+                .toArray();
+    }
+
+    @Override
+    public int deleteLikesOf(long userId) {
+        return shards.callAll(shard -> partitions[shard].deleteLikesOf(userId)).stream()
+                .mapToInt(Integer::intValue)
+                .sum();
+    }
+
+    @Override
+    public long count() {
+        return Arrays.stream(partitions).mapToLong(InMemoryFilmStorage::count).sum();
+    }
+
+    @Override
+    public long likeCount() {
+        return Arrays.stream(partitions).mapToLong(InMemoryFilmStorage::likeCount).sum();
+    }
+
+    /**
+     * Позиции элементов пакета, разложенные по секциям их id.
+     */
+    private List<List<Integer>> partitionPositions(int size, IntToLongFunction idAt) {
+        List<List<Integer>> positions = new ArrayList<>(shards.count());
+        for (int shard = 0; shard < shards.count(); shard++) {
+            positions.add(new ArrayList<>());
+        }
+        for (int i = 0; i < size; i++) {
+            positions.get(shards.of(idAt.applyAsLong(i))).add(i);
+        }
+        return positions;
+    }
+
+    /**
+     * Фильм с числом лайков, запомненным на момент слияния топов: лайки могут меняться во время сортировки.
+     */
+    private record Ranked(Film film, int likes) {
+    }
+}
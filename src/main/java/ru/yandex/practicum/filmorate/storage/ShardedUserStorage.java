@@ -0,0 +1,225 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Пользователи, разделённые на секции {@link StorageShards} так же, как {@link ShardedFilmStorage}.
+ * Дружба пользователей одной секции меняется в потоке секции целиком. Дружба пользователей разных секций
+ * меняется в потоке секции с меньшим номером: она проверяет своего пользователя, синхронно просит секцию
+ * с большим номером изменить её сторону дружбы и меняет свою. Секции ждут друг друга только в порядке
+ * возрастания номеров, поэтому встречные изменения одной пары упорядочены и не блокируют друг друга.
+ */
+public class ShardedUserStorage implements UserStorage {
+    private final StorageShards shards;
+    private final InMemoryUserStorage[] partitions;
+    private final AtomicLong idGenerator = new AtomicLong();
+
+    public ShardedUserStorage(StorageShards shards) {
+        this.shards = shards;
+        this.partitions = new InMemoryUserStorage[shards.count()];
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i] = new InMemoryUserStorage(StorageJournal.NONE);
+        }
+    }
+
+    @Override
+    public User create(User user) {
+        User created = user.toBuilder().id(idGenerator.incrementAndGet()).version(1L).build();
+        int shard = shards.of(created.getId());
+        return shards.call(shard, () -> {
+            partitions[shard].restore(created);
+            return created;
+        });
+    }
+
+    @Override
+    public List<User> createAll(List<User> users) {
+        long firstId = idGenerator.getAndAdd(users.size()) + 1;
+        List<User> created = IntStream.range(0, users.size())
+                .mapToObj(i -> users.get(i).toBuilder().id(firstId + i).version(1L).build())
+                .toList();
+        shards.callAll(shard -> {
+            for (User user : created) {
+                if (shards.of(user.getId()) == shard) {
+                    partitions[shard].restore(user);
+                }
+            }
+            return null;
+        });
+        return created;
+    }
+
+    @Override
+    public Optional<User> update(User user, long expectedVersion) {
+        int shard = shards.of(user.getId());
+        return shards.call(shard, () -> partitions[shard].update(user, expectedVersion));
+    }
+
+    @Override
+    public Collection<User> getUsers() {
+        List<User> users = new ArrayList<>();
+        for (InMemoryUserStorage partition : partitions) {
+            users.addAll(partition.getUsers());
+        }
+        users.sort(Comparator.comparing(User::getId));
+        return users;
+    }
+
+    @Override
+    public List<User> getUsers(long afterId, int limit) {
+        List<User> users = new ArrayList<>();
+        for (InMemoryUserStorage partition : partitions) {
+            users.addAll(partition.getUsers(afterId, limit));
+        }
+        return users.stream().sorted(Comparator.comparing(User::getId)).limit(limit).toList();
+    }
+
+    @Override
+    public Optional<User> findById(Long userId) {
+        return partitions[shards.of(userId)].findById(userId);
+    }
+
+    @Override
+    public List<User> findAllById(long[] userIds) {
+        List<User> found = new ArrayList<>(userIds.length);
+        for (long userId : userIds) {
+            partitions[shards.of(userId)].findById(userId).ifPresent(found::add);
+        }
+        return found;
+    }
+
+    @Override
+    public Set<Long> existingIds(Collection<Long> userIds) {
+        Set<Long> existing = new HashSet<>();
+        for (Long userId : userIds) {
+            if (partitions[shards.of(userId)].findById(userId).isPresent()) {
+                existing.add(userId);
+            }
+        }
+        return existing;
+    }
+
+    /**
+     * Снимает дружбы пользователя и удаляет его в потоке его секции, если за это время у него не появились
+     * новые друзья; иначе проход повторяется.
+     */
+    @Override
+    public boolean delete(Long userId) {
+        int shard = shards.of(userId);
+        while (true) {
+            Optional<User> user = partitions[shard].findById(userId);
+            if (user.isEmpty()) {
+                return false;
+            }
+            for (long friendId : user.get().getFriends().toLongArray()) {
+                deleteFriend(userId, friendId);
+            }
+            Boolean deleted = shards.call(shard, () -> {
+                Optional<User> current = partitions[shard].findById(userId);
+                if (current.isPresent() && !current.get().getFriends().isEmpty()) {
+                    return null;
+                }
+                return partitions[shard].delete(userId);
+            });
+            if (deleted != null) {
+                return deleted;
+            }
+        }
+    }
+
+    @Override
+    public boolean addFriend(Long userId, Long friendId) {
+        int userShard = shards.of(userId);
+        int friendShard = shards.of(friendId);
+        if (userShard == friendShard) {
+            return shards.call(userShard, () -> partitions[userShard].addFriend(userId, friendId));
+        }
+        long lowId = userShard < friendShard ? userId : friendId;
+        long highId = userShard < friendShard ? friendId : userId;
+        InMemoryUserStorage low = partitions[Math.min(userShard, friendShard)];
+        InMemoryUserStorage high = partitions[Math.max(userShard, friendShard)];
+        return shards.call(Math.min(userShard, friendShard), () -> {
+            if (low.findById(lowId).isEmpty()) {
+                return false;
+            }
+            Boolean highAdded = shards.call(Math.max(userShard, friendShard),
+                    () -> high.addFriendEdge(highId, lowId));
+            if (highAdded == null) {
+                return false;
+            }
+            return low.addFriendEdge(lowId, highId) | highAdded;
+        });
+    }
+
+    @Override
+    public boolean deleteFriend(Long userId, Long friendId) {
+        int userShard = shards.of(userId);
+        int friendShard = shards.of(friendId);
+        if (userShard == friendShard) {
+            return shards.call(userShard, () -> partitions[userShard].deleteFriend(userId, friendId));
+        }
+        long lowId = userShard < friendShard ? userId : friendId;
+        long highId = userShard < friendShard ? friendId : userId;
+        InMemoryUserStorage low = partitions[Math.min(userShard, friendShard)];
+        InMemoryUserStorage high = partitions[Math.max(userShard, friendShard)];
+        return shards.call(Math.min(userShard, friendShard), () -> {
+            Boolean highRemoved = shards.call(Math.max(userShard, friendShard),
+                    () -> high.removeFriendEdge(highId, lowId));
+            Boolean lowRemoved = low.removeFriendEdge(lowId, highId);
+            return Boolean.TRUE.equals(highRemoved) | Boolean.TRUE.equals(lowRemoved);
+        });
+    }
+
+    /**
+     * Дружбы внутри одной секции ставятся пакетом параллельно во всех секциях, дружбы между секциями —
+     * по одной, как в {@link #addFriend}.
+     */
+    @Override
+    public boolean[] addFriends(List<Friendship> friendships) {
+        boolean[] added = new boolean[friendships.size()];
+        List<List<Integer>> local = new ArrayList<>(shards.count());
+        for (int shard = 0; shard < shards.count(); shard++) {
+            local.add(new ArrayList<>());
+        }
+        for (int i = 0; i < friendships.size(); i++) {
+            Friendship friendship = friendships.get(i);
+            int shard = shards.of(friendship.userId());
+            if (shard == shards.of(friendship.friendId())) {
+                local.get(shard).add(i);
+            } else {
+                added[i] = addFriend(friendship.userId(), friendship.friendId());
+            }
+        }
+        shards.callAll(shard -> {
+            List<Integer> own = local.get(shard);
+            boolean[] result = partitions[shard].addFriends(own.stream().map(friendships::get).toList());
+            for (int i = 0; i < result.length; i++) {
+                added[own.get(i)] = result[i];
+            }
+            return null;
+        });
+        return added;
+    }
+
+    @Override
+    public long count() {
+        return Arrays.stream(partitions).mapToLong(InMemoryUserStorage::count).sum();
+    }
+
+    @Override
+    public long friendEdgeCount() {
+        return Arrays.stream(partitions).mapToLong(InMemoryUserStorage::friendEdgeCount).sum();
+    }
+}
@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+@Configuration
+public class StorageConfiguration {
+    private static final String SHARDED_WITHOUT_CLUSTER =
+            "${filmorate.storage.sharded.enabled:false} and !${filmorate.cluster.enabled:false}";
+
+    @Bean
+    @ConditionalOnProperty(name = "filmorate.storage.wal.enabled", havingValue = "false", matchIfMissing = true)
+    public StorageJournal storageJournal() {
+        return StorageJournal.NONE;
+    }
+
+    /**
+     * Кеш фильмов перед базой данных. Бин назван так же, как параметры, через которые внедряется хранилище:
+     * из нескольких реализаций без {@code @Primary} Spring выбирает одноимённую, поэтому и сервисы, и обёртка
+     * со счётчиками операций получают хранилище с кешем, а само оно — JDBC-хранилище по его классу.
+     */
+    @Bean("filmStorage")
+    @Profile("jdbc")
+    @ConditionalOnProperty(name = "filmorate.cache.enabled", havingValue = "true", matchIfMissing = true)
+    public CachingFilmStorage cachingFilmStorage(JdbcFilmStorage jdbcFilmStorage, MeterRegistry registry,
+                                                 @Value("${filmorate.cache.films.maximum-size:100000}") long size) {
+        CachingFilmStorage storage = new CachingFilmStorage(jdbcFilmStorage, size);
+        CaffeineCacheMetrics.monitor(registry, storage.cache(), "films");
+        return storage;
+    }
+
+    /**
+     * Кеш пользователей перед базой данных; внедряется так же, как {@link #cachingFilmStorage}.
+     */
+    @Bean("userStorage")
+    @Profile("jdbc")
+    @ConditionalOnProperty(name = "filmorate.cache.enabled", havingValue = "true", matchIfMissing = true)
+    public CachingUserStorage cachingUserStorage(JdbcUserStorage jdbcUserStorage, MeterRegistry registry,
+                                                 @Value("${filmorate.cache.users.maximum-size:100000}") long size) {
+        CachingUserStorage storage = new CachingUserStorage(jdbcUserStorage, size);
+        CaffeineCacheMetrics.monitor(registry, storage.cache(), "users");
+        return storage;
+    }
+
+    /**
+     * Потоки секций для секционированных хранилищ в памяти.
+     */
+    @Bean(destroyMethod = "close")
+    @Profile("!jdbc")
+    @ConditionalOnProperty(name = "filmorate.storage.sharded.enabled", havingValue = "true")
+    public StorageShards storageShards(StorageJournal journal,
+                                       @Value("${filmorate.storage.sharded.shards:4}") int shards,
+                                       @Value("${filmorate.cluster.enabled:false}") boolean cluster) {
+        if (journal != StorageJournal.NONE) {
+            throw new IllegalStateException("Секционированное хранилище не поддерживает журнал предзаписи");
+        }
+        if (cluster) {
+            throw new IllegalStateException("Секционированное хранилище нельзя включить вместе с режимом кластера: "
+                    + "выберите filmorate.storage.sharded.enabled или filmorate.cluster.enabled");
+        }
+        return new StorageShards(shards);
+    }
+
+    /**
+     * Секционированные фильмы; внедряются по имени бина так же, как {@link #cachingFilmStorage}.
+     * При включённом кластере бин не регистрируется, чтобы не конфликтовать с хранилищем кластера, —
+     * сочетание режимов отвергает {@link #storageShards}.
+     */
+    @Bean("filmStorage")
+    @Profile("!jdbc")
+    @ConditionalOnExpression(SHARDED_WITHOUT_CLUSTER)
+    public ShardedFilmStorage shardedFilmStorage(StorageShards storageShards,
+                                                 @Value("${filmorate.popularity.approximate.enabled:false}")
+                                                 boolean approximateTop) {
+        return new ShardedFilmStorage(storageShards, approximateTop);
+    }
+
+    @Bean("userStorage")
+    @Profile("!jdbc")
+    @ConditionalOnExpression(SHARDED_WITHOUT_CLUSTER)
+    public ShardedUserStorage shardedUserStorage(StorageShards storageShards) {
+        return new ShardedUserStorage(storageShards);
+    }
+}
@@ -0,0 +1,48 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+/**
+ * Журнал изменений хранилища в памяти. Методы записи вызываются под блокировкой сущности, чтобы порядок записей
+ * совпадал с порядком применения, и возвращают позицию записи. Сущность записывается до изменения хранилища:
+ * если её не удалось закодировать, хранилище остаётся прежним. Дождаться сохранности записи на диске
+ * хранилище должно уже после снятия блокировки через {@link #awaitDurable(long)}.
+ */
+public interface StorageJournal {
+    long NO_RECORD = -1;
+
+    StorageJournal NONE = new StorageJournal() {
+    };
+
+    default long filmSaved(Film film) {
+        return 0;
+    }
+
+    default long likeAdded(long filmId, long userId) {
+        return 0;
+    }
+
+    default long likeDeleted(long filmId, long userId) {
+        return 0;
+    }
+
+    default long userSaved(User user) {
+        return 0;
+    }
+
+    default long friendAdded(long userId, long friendId) {
+        return 0;
+    }
+
+    default long friendDeleted(long userId, long friendId) {
+        return 0;
+    }
+
+    default long userDeleted(long userId) {
+        return 0;
+    }
+
+    default void awaitDurable(long position) {
+    }
+}
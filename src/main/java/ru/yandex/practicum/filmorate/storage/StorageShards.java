@@ -0,0 +1,89 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Секции хранилищ в памяти: сущность принадлежит секции по хешу id, у каждой секции свой поток, и все изменения
+ * секции выполняются только в нём. Секции фильмов и пользователей с одним номером делят поток.
+ * Чтение по id идёт в вызывающем потоке — структуры секций допускают чтение без блокировок, — а запросы по всем
+ * секциям выполняются в их потоках параллельно.
+ */
+public final class StorageShards implements AutoCloseable {
+    private final ExecutorService[] executors;
+    private final Thread[] owners;
+
+    public StorageShards(int count) {
+        executors = new ExecutorService[count];
+        owners = new Thread[count];
+        for (int i = 0; i < count; i++) {
+            int shard = i;
+            executors[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "storage-shard-" + shard);
+                thread.setDaemon(true);
+                owners[shard] = thread;
+                return thread;
+            });
+        }
+    }
+
+    public int count() {
+        return executors.length;
+    }
+
+    int of(long id) {
+        return Math.floorMod(Long.hashCode(id * 0x9E3779B97F4A7C15L), executors.length);
+    }
+
+    /**
+     * Выполняет действие в потоке секции и ждёт результата. Вызов из потока самой секции выполняется сразу.
+     */
+    <T> T call(int shard, Supplier<T> action) {
+        if (Thread.currentThread() == owners[shard]) {
+            return action.get();
+        }
+        return join(CompletableFuture.supplyAsync(action, executors[shard]));
+    }
+
+    /**
+     * Выполняет действие во всех секциях параллельно и возвращает результаты по номерам секций.
+     */
+    <T> List<T> callAll(IntFunction<T> action) {
+        List<CompletableFuture<T>> futures = new ArrayList<>(executors.length);
+        for (int shard = 0; shard < executors.length; shard++) {
+            int current = shard;
+            futures.add(Thread.currentThread() == owners[shard]
+                    ? CompletableFuture.completedFuture(action.apply(current))
+                    : CompletableFuture.supplyAsync(() -> action.apply(current), executors[shard]));
+        }
+        return futures.stream().map(StorageShards::join).toList();
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        for (ExecutorService executor : executors) {
+            executor.shutdown();
+        }
+        for (ExecutorService executor : executors) {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.util.SortedLongSet;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Обратный индекс лайков: пользователь → отсортированные id понравившихся ему фильмов.
+ * Изменяется под блокировкой фильма вместе с его лайками, поэтому лайк одного фильма
+ * не может оказаться в индексе дважды или остаться в нём после удаления. Множество пользователя меняется
+ * внутри {@code compute} и удаляется, когда пустеет, — так удалённые пользователи не оставляют записей.
+ * <p>
+ * После подключения снимка списки пользователей читаются из его раздела лайков и переносятся в память
+ * при первом изменении. Опустевшее множество пользователя из снимка остаётся в памяти, чтобы список
+ * не загрузился из снимка снова.
+ */
+class UserLikesIndex {
+    private static final long[] NONE = new long[0];
+
+    private final Map<Long, SortedLongSet> films = new ConcurrentHashMap<>();
+    private volatile EntitySource<long[]> source;
+
+    void mount(EntitySource<long[]> source) {
+        this.source = source;
+    }
+
+    void add(long userId, long filmId) {
+        films.compute(userId, (id, liked) -> {
+            SortedLongSet updated = liked == null ? load(userId) : liked;
+            updated.add(filmId);
+            return updated;
+        });
+    }
+
+    void addAll(long filmId, long[] userIds) {
+        for (long userId : userIds) {
+            add(userId, filmId);
+        }
+    }
+
+    void remove(long userId, long filmId) {
+        films.compute(userId, (id, liked) -> {
+            SortedLongSet current = liked == null ? load(userId) : liked;
+            current.remove(filmId);
+            return current.isEmpty() && position(userId) < 0 ? null : current;
+        });
+    }
+
+    long[] filmsOf(long userId, long afterId, int limit) {
+        SortedLongSet liked = films.get(userId);
+        if (liked != null) {
+            return liked.after(afterId, limit);
+        }
+        long[] stored = stored(userId);
+        int from = Arrays.binarySearch(stored, afterId);
+        from = from >= 0 ? from + 1 : -(from + 1);
+        return Arrays.copyOfRange(stored, from, Math.min(stored.length, from + Math.max(limit, 0)));
+    }
+
+    long[] filmsOf(long userId) {
+        SortedLongSet liked = films.get(userId);
+        return liked == null ? stored(userId) : liked.toLongArray();
+    }
+
+    /**
+     * Обходит непустые списки пользователей по возрастанию id пользователя, не перенося списки из снимка в память.
+     */
+    void forEach(BiConsumer<Long, long[]> action) {
+        EntitySource<long[]> current = source;
+        long[] loaded = films.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+        int sourceSize = current == null ? 0 : current.size();
+        int position = 0;
+        int next = 0;
+        while (next < loaded.length || position < sourceSize) {
+            long sourceId = position < sourceSize ? current.idAt(position) : Long.MAX_VALUE;
+            long userId = next < loaded.length ? Math.min(loaded[next], sourceId) : sourceId;
+            if (next < loaded.length && loaded[next] == userId) {
+                next++;
+            }
+            if (sourceId == userId) {
+                position++;
+            }
+            SortedLongSet liked = films.get(userId);
+            long[] filmIds = liked != null ? liked.toLongArray()
+                    : sourceId == userId ? current.load(position - 1) : NONE;
+            if (filmIds.length > 0) {
+                action.accept(userId, filmIds);
+            }
+        }
+    }
+
+    private SortedLongSet load(long userId) {
+        SortedLongSet liked = new SortedLongSet();
+        for (long filmId : stored(userId)) {
+            liked.add(filmId);
+        }
+        return liked;
+    }
+
+    private long[] stored(long userId) {
+        int position = position(userId);
+        return position < 0 ? NONE : source.load(position);
+    }
+
+    private int position(long userId) {
+        EntitySource<long[]> current = source;
+        return current == null ? -1 : current.positionOf(userId);
+    }
+}
@@ -1,16 +1,82 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 public interface UserStorage {
     User create(User user);
 
-    User update(User user);
+    /**
+     * Версия, с которой {@link #update(User, long)} обновляет пользователя без сравнения.
+     */
+    long ANY_VERSION = -1;
+
+    /**
+     * Обновляет пользователя без сравнения версий.
+     */
+    default User update(User user) {
+        return update(user, ANY_VERSION).orElseThrow();
+    }
+
+    /**
+     * Обновляет поля пользователя, только если его текущая версия равна {@code expectedVersion},
+     * и увеличивает версию. Друзья пользователя берутся из хранилища, а не из переданного объекта.
+     *
+     * @return обновлённый пользователь или пустой результат, если его уже обновили до другой версии
+     * @throws ru.yandex.practicum.filmorate.exception.NotFoundException если пользователя нет
+     */
+    Optional<User> update(User user, long expectedVersion);
+
+    /**
+     * Создаёт пользователей одним пакетом.
+     *
+     * @return созданные пользователи с id в том же порядке
+     */
+    List<User> createAll(List<User> users);
 
     Collection<User> getUsers();
 
+    /**
+     * Страница пользователей с id больше {@code afterId} по возрастанию id.
+     */
+    List<User> getUsers(long afterId, int limit);
+
     Optional<User> findById(Long userId);
-}
\ No newline at end of file
+
+    /**
+     * Пользователи с указанными id в том же порядке; отсутствующие пропускаются.
+     */
+    List<User> findAllById(long[] userIds);
+
+    Set<Long> existingIds(Collection<Long> userIds);
+
+    /**
+     * Удаляет пользователя и все его дружбы. Лайки пользователя удаляет хранилище фильмов.
+     *
+     * @return {@code false}, если пользователя не было
+     */
+    boolean delete(Long userId);
+
+    boolean addFriend(Long userId, Long friendId);
+
+    boolean deleteFriend(Long userId, Long friendId);
+
+    /**
+     * Добавляет дружбы одним пакетом. Пользователи должны существовать.
+     *
+     * @return для каждой дружбы — изменилось ли что-то в хранилище
+     */
+    boolean[] addFriends(List<Friendship> friendships);
+
+    long count();
+
+    /**
+     * Общее число записей в списках друзей: дружба двух пользователей даёт две записи.
+     */
+    long friendEdgeCount();
+}
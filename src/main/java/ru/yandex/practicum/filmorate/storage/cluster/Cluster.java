@@ -0,0 +1,140 @@
+package ru.yandex.practicum.filmorate.storage.cluster;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.AcceptFilms;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.AcceptUsers;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.ReleaseFilms;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.ReleaseUsers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Маршрутизатор кластера: по кольцу {@link HashRing} находит узел сущности и передаёт ему операцию через
+ * {@link ClusterTransport}. Операции хранилищ выполняются под общей блокировкой чтения состава, а добавление
+ * и вывод узла — под блокировкой записи: пока сущности переезжают между узлами, запросы ждут, а после
+ * переезда идут уже по новому кольцу.
+ */
+@Slf4j
+public class Cluster {
+    private final ClusterTransport transport;
+    private final ReentrantReadWriteLock membership = new ReentrantReadWriteLock();
+    private volatile HashRing ring;
+
+    public Cluster(ClusterTransport transport, HashRing ring) {
+        this.transport = transport;
+        this.ring = ring;
+    }
+
+    public Set<String> nodes() {
+        return ring.nodes();
+    }
+
+    public String owner(long id) {
+        return ring.owner(id);
+    }
+
+    /**
+     * Добавляет узел в кольцо и переносит на него сущности с соседних дуг.
+     */
+    public void join(String nodeId) {
+        membership.writeLock().lock();
+        try {
+            HashRing next = ring.with(nodeId);
+            rebalance(ring, next);
+            ring = next;
+            log.info("Узел {} добавлен в кластер, узлов: {}", nodeId, next.nodes().size());
+        } finally {
+            membership.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Переносит все сущности узла на оставшиеся узлы и убирает его из кольца.
+     */
+    public void leave(String nodeId) {
+        membership.writeLock().lock();
+        try {
+            HashRing next = ring.without(nodeId);
+            if (next.isEmpty()) {
+                throw new IllegalStateException("Нельзя вывести из кластера последний узел " + nodeId);
+            }
+            rebalance(ring, next);
+            ring = next;
+            log.info("Узел {} выведен из кластера, узлов: {}", nodeId, next.nodes().size());
+        } finally {
+            membership.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Каждый узел прежнего кольца отдаёт сущности, которые по новому кольцу принадлежат другим узлам.
+     */
+    private void rebalance(HashRing from, HashRing to) {
+        for (String nodeId : from.nodes()) {
+            List<Film> films = transport.call(nodeId, new ReleaseFilms(to.virtualNodes(), to.nodes()));
+            List<User> users = transport.call(nodeId, new ReleaseUsers(to.virtualNodes(), to.nodes()));
+            byOwner(to, films, Film::getId).forEach((owner, moved) -> transport.call(owner, new AcceptFilms(moved)));
+            byOwner(to, users, User::getId).forEach((owner, moved) -> transport.call(owner, new AcceptUsers(moved)));
+            log.debug("С узла {} перенесено фильмов: {}, пользователей: {}", nodeId, films.size(), users.size());
+        }
+    }
+
+    /**
+     * Выполняет несколько обращений к узлам при одном и том же составе кластера.
+     */
+    <T> T locked(Supplier<T> action) {
+        membership.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            membership.readLock().unlock();
+        }
+    }
+
+    <T> T onOwner(long id, ClusterOperation<T> operation) {
+        return locked(() -> transport.call(ring.owner(id), operation));
+    }
+
+    <T> T onNode(String nodeId, ClusterOperation<T> operation) {
+        return locked(() -> transport.call(nodeId, operation));
+    }
+
+    /**
+     * Выполняет операцию на каждом узле и возвращает результаты в порядке узлов.
+     */
+    <T> List<T> onAll(ClusterOperation<T> operation) {
+        return locked(() -> {
+            List<T> results = new ArrayList<>(ring.nodes().size());
+            for (String nodeId : ring.nodes()) {
+                results.add(transport.call(nodeId, operation));
+            }
+            return results;
+        });
+    }
+
+    /**
+     * Раскладывает элементы по узлам-владельцам их id, сохраняя порядок внутри узла.
+     * Вызывается внутри {@link #locked}, чтобы кольцо не сменилось до обращения к узлам.
+     */
+    <T> Map<String, List<T>> byOwner(Collection<T> items, ToLongFunction<T> idOf) {
+        return byOwner(ring, items, idOf);
+    }
+
+    private static <T> Map<String, List<T>> byOwner(HashRing ring, Collection<T> items, ToLongFunction<T> idOf) {
+        Map<String, List<T>> grouped = new LinkedHashMap<>();
+        for (T item : items) {
+            grouped.computeIfAbsent(ring.owner(idOf.applyAsLong(item)), owner -> new ArrayList<>()).add(item);
+        }
+        return grouped;
+    }
+}
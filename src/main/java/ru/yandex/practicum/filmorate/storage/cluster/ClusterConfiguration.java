@@ -0,0 +1,49 @@
+package ru.yandex.practicum.filmorate.storage.cluster;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import ru.yandex.practicum.filmorate.storage.StorageJournal;
+
+import java.util.List;
+
+/**
+ * Режим кластера: фильмы и пользователи распределены по узлам {@code filmorate.cluster.nodes}, запущенным
+ * в этой же JVM. Хранилища внедряются по имени бина так же, как кеш перед базой данных.
+ */
+@Configuration
+@Profile("!jdbc")
+@ConditionalOnProperty(name = "filmorate.cluster.enabled", havingValue = "true")
+public class ClusterConfiguration {
+
+    @Bean
+    public LocalClusterTransport clusterTransport(@Value("${filmorate.cluster.nodes}") List<String> nodes,
+                                                  @Value("${filmorate.popularity.approximate.enabled:false}")
+                                                  boolean approximateTop) {
+        LocalClusterTransport transport = new LocalClusterTransport(approximateTop);
+        nodes.forEach(transport::start);
+        return transport;
+    }
+
+    @Bean
+    public Cluster cluster(LocalClusterTransport clusterTransport, StorageJournal journal,
+                           @Value("${filmorate.cluster.nodes}") List<String> nodes,
+                           @Value("${filmorate.cluster.virtual-nodes:128}") int virtualNodes) {
+        if (journal != StorageJournal.NONE) {
+            throw new IllegalStateException("Кластер не поддерживает журнал предзаписи");
+        }
+        return new Cluster(clusterTransport, new HashRing(virtualNodes, nodes));
+    }
+
+    @Bean("filmStorage")
+    public ClusterFilmStorage clusterFilmStorage(Cluster cluster) {
+        return new ClusterFilmStorage(cluster);
+    }
+
+    @Bean("userStorage")
+    public ClusterUserStorage clusterUserStorage(Cluster cluster) {
+        return new ClusterUserStorage(cluster);
+    }
+}
@@ -0,0 +1,227 @@
+package ru.yandex.practicum.filmorate.storage.cluster;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmGenre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.AcceptFilms;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.AddLike;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.AddLikes;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.AllFilms;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.DeleteLike;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.DeleteLikesOf;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.ExistingFilms;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.FilmCount;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.FilmPage;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.FindFilm;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.FindFilms;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.LikeCounts;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.LikedFilms;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.TopFilms;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.TotalLikes;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.UpdateFilm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Фильмы, распределённые по узлам кластера. Фильм хранится на узле-владельце вместе со своими лайками,
+ * поэтому лайк — одно обращение к одному узлу. Топ фильмов, страницы каталога и лайки пользователя
+ * собираются со всех узлов: каждый отдаёт свою часть, и части сливаются. Id выдаёт маршрутизатор.
+ */
+public class ClusterFilmStorage implements FilmStorage {
+    private static final Comparator<Ranked> POPULARITY = Comparator.comparingInt(Ranked::likes).reversed()
+            .thenComparing(ranked -> ranked.film().getId());
+
+    private final Cluster cluster;
+    private final AtomicLong idGenerator = new AtomicLong();
+
+    public ClusterFilmStorage(Cluster cluster) {
+        this.cluster = cluster;
+    }
+
+    @Override
+    public Film create(Film film) {
+        Film created = film.toBuilder().id(idGenerator.incrementAndGet()).version(1L).build();
+        cluster.onOwner(created.getId(), new AcceptFilms(List.of(created)));
+        return created;
+    }
+
+    @Override
+    public List<Film> createAll(List<Film> films) {
+        long firstId = idGenerator.getAndAdd(films.size()) + 1;
+        List<Film> created = IntStream.range(0, films.size())
+                .mapToObj(i -> films.get(i).toBuilder().id(firstId + i).version(1L).build())
+                .toList();
+        cluster.locked(() -> {
+            cluster.byOwner(created, Film::getId).forEach((owner, own) -> cluster.onNode(owner, new AcceptFilms(own)));
+            return null;
+        });
+        return created;
+    }
+
+    @Override
+    public Optional<Film> update(Film film, long expectedVersion) {
+        return cluster.onOwner(film.getId(), new UpdateFilm(film, expectedVersion));
+    }
+
+    @Override
+    public Collection<Film> getFilms() {
+        List<Film> films = new ArrayList<>();
+        cluster.onAll(new AllFilms()).forEach(films::addAll);
+        films.sort(Comparator.comparing(Film::getId));
+        return films;
+    }
+
+    @Override
+    public List<Film> getFilms(long afterId, int limit) {
+        return cluster.onAll(new FilmPage(afterId, limit)).stream()
+                .flatMap(List::stream)
+                .sorted(Comparator.comparing(Film::getId))
+                .limit(limit)
+                .toList();
+    }
+
+    @Override
+    public Optional<Film> findById(Long filmId) {
+        return cluster.onOwner(filmId, new FindFilm(filmId));
+    }
+
+    /**
+     * Id раскладываются по узлам, и каждый узел получает одно обращение со всеми своими id.
+     */
+    @Override
+    public List<Film> findAllById(long[] filmIds) {
+        Map<Long, Film> found = new HashMap<>();
+        cluster.locked(() -> {
+            cluster.byOwner(Arrays.stream(filmIds).boxed().toList(), Long::longValue)
+                    .forEach((owner, ids) -> cluster.onNode(owner,
+                            new FindFilms(ids.stream().mapToLong(Long::longValue).toArray()))
+                            .forEach(film -> found.put(film.getId(), film)));
+            return null;
+        });
+        List<Film> ordered = new ArrayList<>(found.size());
+        for (long filmId : filmIds) {
+            Film film = found.get(filmId);
+            if (film != null) {
+                ordered.add(film);
+            }
+        }
+        return ordered;
+    }
+
+    @Override
+    public Set<Long> existingIds(Collection<Long> filmIds) {
+        Set<Long> existing = new HashSet<>();
+        cluster.locked(() -> {
+            cluster.byOwner(filmIds, Long::longValue)
+                    .forEach((owner, ids) -> existing.addAll(cluster.onNode(owner, new ExistingFilms(ids))));
+            return null;
+        });
+        return existing;
+    }
+
+    @Override
+    public List<Film> getTopFilms(int count) {
+        return getTopFilms(count, null, null, null);
+    }
+
+    /**
+     * Каждый узел отдаёт свои {@code count} лучших фильмов, и из них выбираются {@code count} лучших.
+     */
+    @Override
+    public List<Film> getTopFilms(int count, FilmGenre genre, MpaRating mpa, Integer year) {
+        return cluster.onAll(new TopFilms(count, genre, mpa, year)).stream()
+                .flatMap(List::stream)
+                .map(film -> new Ranked(film, film.getMovieRating().size()))
+                .sorted(POPULARITY)
+                .limit(count)
+                .map(Ranked::film)
+                .toList();
+    }
+
+    @Override
+    public void forEachLikeCount(ObjIntConsumer<Long> action) {
+        cluster.onAll(new LikeCounts())
+                .forEach(counts -> counts.forEach(count -> action.accept(count.filmId(), count.likes())));
+    }
+
+    @Override
+    public boolean addLike(Long filmId, Long userId) {
+        return cluster.onOwner(filmId, new AddLike(filmId, userId));
+    }
+
+    @Override
+    public boolean deleteLike(Long filmId, Long userId) {
+        return cluster.onOwner(filmId, new DeleteLike(filmId, userId));
+    }
+
+    @Override
+    public boolean[] addLikes(List<Like> likes) {
+        boolean[] added = new boolean[likes.size()];
+        List<Integer> positions = IntStream.range(0, likes.size()).boxed().toList();
+        cluster.locked(() -> {
+            cluster.byOwner(positions, i -> likes.get(i).filmId()).forEach((owner, own) -> {
+                List<Like> ownLikes = own.stream().map(likes::get).toList();
+                boolean[] result = cluster.onNode(owner, new AddLikes(ownLikes));
+                for (int i = 0; i < result.length; i++) {
+                    added[own.get(i)] = result[i];
+                }
+            });
+            return null;
+        });
+        return added;
+    }
+
+    @Override
+    public long[] likedFilms(long userId) {
+        return cluster.onAll(new LikedFilms(userId, Long.MIN_VALUE, Integer.MAX_VALUE)).stream()
+                .flatMapToLong(Arrays::stream)
+                .sorted()
+                .toArray();
+    }
+
+    @Override
+    public long[] likedFilms(long userId, long afterId, int limit) {
+        return cluster.onAll(new LikedFilms(userId, afterId, limit)).stream()
+                .flatMapToLong(Arrays::stream)
+                .sorted()
+                .limit(limit)
+                .toArray();
+    }
+
+    @Override
+    public int deleteLikesOf(long userId) {
+        return cluster.onAll(new DeleteLikesOf(userId)).stream()
+                .mapToInt(Integer::intValue)
+                .sum();
+    }
+
+    @Override
+    public long count() {
+        return cluster.onAll(new FilmCount()).stream().mapToLong(Long::longValue).sum();
+    }
+
+    @Override
+    public long likeCount() {
+        return cluster.onAll(new TotalLikes()).stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * Фильм с числом лайков, запомненным на момент слияния топов.
+     */
+    private record Ranked(Film film, int likes) {
+    }
+}
@@ -0,0 +1,87 @@
+package ru.yandex.practicum.filmorate.storage.cluster;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.StorageJournal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Узел кластера: своя часть фильмов и пользователей в хранилищах в памяти. Узел не хранит кольцо —
+ * при изменении состава кластера {@link Cluster} присылает новое кольцо, и узел отдаёт сущности,
+ * которые по нему принадлежат другим узлам.
+ */
+public class ClusterNode {
+    private final String id;
+    private final InMemoryFilmStorage films;
+    private final InMemoryUserStorage users = new InMemoryUserStorage(StorageJournal.NONE);
+
+    public ClusterNode(String id) {
+        this(id, false);
+    }
+
+    /**
+     * @param approximateTop топ без фильтров строится приблизительно, и узел не ведёт для него общий индекс
+     */
+    public ClusterNode(String id, boolean approximateTop) {
+        this.id = id;
+        this.films = new InMemoryFilmStorage(StorageJournal.NONE, approximateTop);
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public InMemoryFilmStorage films() {
+        return films;
+    }
+
+    public InMemoryUserStorage users() {
+        return users;
+    }
+
+    /**
+     * Убирает с узла фильмы, которые по кольцу {@code ring} принадлежат другим узлам, и возвращает их вместе с лайками.
+     */
+    public List<Film> releaseFilms(HashRing ring) {
+        List<Long> released = new ArrayList<>();
+        films.forEachFilm(film -> {
+            if (!ring.owner(film.getId()).equals(id)) {
+                released.add(film.getId());
+            }
+        });
+        List<Film> moved = new ArrayList<>(released.size());
+        for (long filmId : released) {
+            films.remove(filmId).ifPresent(moved::add);
+        }
+        return moved;
+    }
+
+    /**
+     * Убирает с узла пользователей, которые по кольцу {@code ring} принадлежат другим узлам, и возвращает их вместе с друзьями.
+     */
+    public List<User> releaseUsers(HashRing ring) {
+        List<Long> released = new ArrayList<>();
+        users.forEachUser(user -> {
+            if (!ring.owner(user.getId()).equals(id)) {
+                released.add(user.getId());
+            }
+        });
+        List<User> moved = new ArrayList<>(released.size());
+        for (long userId : released) {
+            users.remove(userId).ifPresent(moved::add);
+        }
+        return moved;
+    }
+
+    public void acceptFilms(List<Film> moved) {
+        moved.forEach(films::restore);
+    }
+
+    public void acceptUsers(List<User> moved) {
+        moved.forEach(users::restore);
+    }
+}
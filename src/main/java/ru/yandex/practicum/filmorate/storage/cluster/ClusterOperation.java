@@ -0,0 +1,284 @@
+package ru.yandex.practicum.filmorate.storage.cluster;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmGenre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Операция над узлом кластера. Операция — только данные: id, сущности, параметры запроса и состав кольца,
+ * поэтому сетевой транспорт может закодировать её по типу и полям, передать узлу и там выполнить через
+ * {@link #applyTo}. Результат — тоже данные: сущности, id, числа или флаги.
+ *
+ * @param <T> тип результата
+ */
+public sealed interface ClusterOperation<T> {
+
+    /**
+     * Выполняет операцию над хранилищами узла, которому её доставили.
+     */
+    T applyTo(ClusterNode node);
+
+    record AcceptFilms(List<Film> films) implements ClusterOperation<Void> {
+        @Override
+        public Void applyTo(ClusterNode node) {
+            node.acceptFilms(films);
+            return null;
+        }
+    }
+
+    /**
+     * Отдаёт фильмы, которые по кольцу из {@code nodes} с {@code virtualNodes} точками на узел принадлежат
+     * другим узлам.
+     */
+    record ReleaseFilms(int virtualNodes, Set<String> nodes) implements ClusterOperation<List<Film>> {
+        @Override
+        public List<Film> applyTo(ClusterNode node) {
+            return node.releaseFilms(new HashRing(virtualNodes, nodes));
+        }
+    }
+
+    record UpdateFilm(Film film, long expectedVersion) implements ClusterOperation<Optional<Film>> {
+        @Override
+        public Optional<Film> applyTo(ClusterNode node) {
+            return node.films().update(film, expectedVersion);
+        }
+    }
+
+    record FindFilm(long filmId) implements ClusterOperation<Optional<Film>> {
+        @Override
+        public Optional<Film> applyTo(ClusterNode node) {
+            return node.films().findById(filmId);
+        }
+    }
+
+    record FindFilms(long[] filmIds) implements ClusterOperation<List<Film>> {
+        @Override
+        public List<Film> applyTo(ClusterNode node) {
+            return node.films().findAllById(filmIds);
+        }
+    }
+
+    record ExistingFilms(List<Long> filmIds) implements ClusterOperation<Set<Long>> {
+        @Override
+        public Set<Long> applyTo(ClusterNode node) {
+            return node.films().existingIds(filmIds);
+        }
+    }
+
+    record AllFilms() implements ClusterOperation<List<Film>> {
+        @Override
+        public List<Film> applyTo(ClusterNode node) {
+            return new ArrayList<>(node.films().getFilms());
+        }
+    }
+
+    record FilmPage(long afterId, int limit) implements ClusterOperation<List<Film>> {
+        @Override
+        public List<Film> applyTo(ClusterNode node) {
+            return node.films().getFilms(afterId, limit);
+        }
+    }
+
+    record TopFilms(int count, FilmGenre genre, MpaRating mpa, Integer year) implements ClusterOperation<List<Film>> {
+        @Override
+        public List<Film> applyTo(ClusterNode node) {
+            return node.films().getTopFilms(count, genre, mpa, year);
+        }
+    }
+
+    record LikeCounts() implements ClusterOperation<List<FilmLikes>> {
+        @Override
+        public List<FilmLikes> applyTo(ClusterNode node) {
+            List<FilmLikes> counts = new ArrayList<>();
+            node.films().forEachLikeCount((filmId, likes) -> counts.add(new FilmLikes(filmId, likes)));
+            return counts;
+        }
+    }
+
+    /**
+     * Число лайков фильма — ответ на {@link LikeCounts}.
+     */
+    record FilmLikes(long filmId, int likes) {
+    }
+
+    record AddLike(long filmId, long userId) implements ClusterOperation<Boolean> {
+        @Override
+        public Boolean applyTo(ClusterNode node) {
+            return node.films().addLike(filmId, userId);
+        }
+    }
+
+    record DeleteLike(long filmId, long userId) implements ClusterOperation<Boolean> {
+        @Override
+        public Boolean applyTo(ClusterNode node) {
+            return node.films().deleteLike(filmId, userId);
+        }
+    }
+
+    record AddLikes(List<Like> likes) implements ClusterOperation<boolean[]> {
+        @Override
+        public boolean[] applyTo(ClusterNode node) {
+            return node.films().addLikes(likes);
+        }
+    }
+
+    /**
+     * Id понравившихся пользователю фильмов узла после {@code afterId}, не больше {@code limit};
+     * без ограничения — при {@code limit}, равном {@link Integer#MAX_VALUE}.
+     */
+    record LikedFilms(long userId, long afterId, int limit) implements ClusterOperation<long[]> {
+        @Override
+        public long[] applyTo(ClusterNode node) {
+            return limit == Integer.MAX_VALUE
+                    ? node.films().likedFilms(userId)
+                    : node.films().likedFilms(userId, afterId, limit);
+        }
+    }
+
+    record DeleteLikesOf(long userId) implements ClusterOperation<Integer> {
+        @Override
+        public Integer applyTo(ClusterNode node) {
+            return node.films().deleteLikesOf(userId);
+        }
+    }
+
+    record FilmCount() implements ClusterOperation<Long> {
+        @Override
+        public Long applyTo(ClusterNode node) {
+            return node.films().count();
+        }
+    }
+
+    record TotalLikes() implements ClusterOperation<Long> {
+        @Override
+        public Long applyTo(ClusterNode node) {
+            return node.films().likeCount();
+        }
+    }
+
+    record AcceptUsers(List<User> users) implements ClusterOperation<Void> {
+        @Override
+        public Void applyTo(ClusterNode node) {
+            node.acceptUsers(users);
+            return null;
+        }
+    }
+
+    /**
+     * Отдаёт пользователей, которые по кольцу из {@code nodes} с {@code virtualNodes} точками на узел принадлежат
+     * другим узлам.
+     */
+    record ReleaseUsers(int virtualNodes, Set<String> nodes) implements ClusterOperation<List<User>> {
+        @Override
+        public List<User> applyTo(ClusterNode node) {
+            return node.releaseUsers(new HashRing(virtualNodes, nodes));
+        }
+    }
+
+    record UpdateUser(User user, long expectedVersion) implements ClusterOperation<Optional<User>> {
+        @Override
+        public Optional<User> applyTo(ClusterNode node) {
+            return node.users().update(user, expectedVersion);
+        }
+    }
+
+    record FindUser(long userId) implements ClusterOperation<Optional<User>> {
+        @Override
+        public Optional<User> applyTo(ClusterNode node) {
+            return node.users().findById(userId);
+        }
+    }
+
+    record FindUsers(long[] userIds) implements ClusterOperation<List<User>> {
+        @Override
+        public List<User> applyTo(ClusterNode node) {
+            return node.users().findAllById(userIds);
+        }
+    }
+
+    record ExistingUsers(List<Long> userIds) implements ClusterOperation<Set<Long>> {
+        @Override
+        public Set<Long> applyTo(ClusterNode node) {
+            return node.users().existingIds(userIds);
+        }
+    }
+
+    record AllUsers() implements ClusterOperation<List<User>> {
+        @Override
+        public List<User> applyTo(ClusterNode node) {
+            return new ArrayList<>(node.users().getUsers());
+        }
+    }
+
+    record UserPage(long afterId, int limit) implements ClusterOperation<List<User>> {
+        @Override
+        public List<User> applyTo(ClusterNode node) {
+            return node.users().getUsers(afterId, limit);
+        }
+    }
+
+    /**
+     * Дружба пользователей одного узла — обе стороны меняются одним обращением.
+     */
+    record AddFriend(long userId, long friendId) implements ClusterOperation<Boolean> {
+        @Override
+        public Boolean applyTo(ClusterNode node) {
+            return node.users().addFriend(userId, friendId);
+        }
+    }
+
+    record DeleteFriend(long userId, long friendId) implements ClusterOperation<Boolean> {
+        @Override
+        public Boolean applyTo(ClusterNode node) {
+            return node.users().deleteFriend(userId, friendId);
+        }
+    }
+
+    /**
+     * Одна сторона дружбы пользователей разных узлов; {@code null} в ответе — пользователя на узле нет.
+     */
+    record AddFriendEdge(long userId, long friendId) implements ClusterOperation<Boolean> {
+        @Override
+        public Boolean applyTo(ClusterNode node) {
+            return node.users().addFriendEdge(userId, friendId);
+        }
+    }
+
+    record RemoveFriendEdge(long userId, long friendId) implements ClusterOperation<Boolean> {
+        @Override
+        public Boolean applyTo(ClusterNode node) {
+            return node.users().removeFriendEdge(userId, friendId);
+        }
+    }
+
+    /**
+     * Удаляет пользователя без друзей; {@code null} в ответе — друзья у него ещё есть.
+     */
+    record DeleteIfFriendless(long userId) implements ClusterOperation<Boolean> {
+        @Override
+        public Boolean applyTo(ClusterNode node) {
+            return node.users().deleteIfFriendless(userId);
+        }
+    }
+
+    record UserCount() implements ClusterOperation<Long> {
+        @Override
+        public Long applyTo(ClusterNode node) {
+            return node.users().count();
+        }
+    }
+
+    record FriendEdgeCount() implements ClusterOperation<Long> {
+        @Override
+        public Long applyTo(ClusterNode node) {
+            return node.users().friendEdgeCount();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.storage.cluster;
+
+/**
+ * Доставка операций до узлов кластера. {@link LocalClusterTransport} выполняет их на узлах в той же JVM;
+ * сетевой транспорт кодирует {@link ClusterOperation} по типу и полям, выполняет её на узле и возвращает
+ * закодированный результат или исключение.
+ */
+public interface ClusterTransport {
+    /**
+     * Выполняет операцию на узле и возвращает её результат.
+     *
+     * @throws IllegalStateException если узел недоступен
+     */
+    <T> T call(String nodeId, ClusterOperation<T> operation);
+}
@@ -0,0 +1,209 @@
+package ru.yandex.practicum.filmorate.storage.cluster;
+
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.LockStripes;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.AcceptUsers;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.AddFriend;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.AddFriendEdge;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.AllUsers;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.DeleteFriend;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.DeleteIfFriendless;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.ExistingUsers;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.FindUser;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.FindUsers;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.FriendEdgeCount;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.RemoveFriendEdge;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.UpdateUser;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.UserCount;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterOperation.UserPage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Пользователи, распределённые по узлам кластера. Каждая сторона дружбы хранится на узле своего пользователя:
+ * дружба пользователей одного узла меняется одним обращением, а дружба пользователей разных узлов —
+ * двумя, по стороне на узел, под блокировкой пары в маршрутизаторе, чтобы встречные изменения одной пары
+ * не оставили дружбу односторонней. Друзья и общие друзья читаются одним обращением к каждому узлу,
+ * на котором они лежат.
+ */
+public class ClusterUserStorage implements UserStorage {
+    private final Cluster cluster;
+    private final LockStripes pairLocks = new LockStripes();
+    private final AtomicLong idGenerator = new AtomicLong();
+
+    public ClusterUserStorage(Cluster cluster) {
+        this.cluster = cluster;
+    }
+
+    @Override
+    public User create(User user) {
+        User created = user.toBuilder().id(idGenerator.incrementAndGet()).version(1L).build();
+        cluster.onOwner(created.getId(), new AcceptUsers(List.of(created)));
+        return created;
+    }
+
+    @Override
+    public List<User> createAll(List<User> users) {
+        long firstId = idGenerator.getAndAdd(users.size()) + 1;
+        List<User> created = IntStream.range(0, users.size())
+                .mapToObj(i -> users.get(i).toBuilder().id(firstId + i).version(1L).build())
+                .toList();
+        cluster.locked(() -> {
+            cluster.byOwner(created, User::getId).forEach((owner, own) -> cluster.onNode(owner, new AcceptUsers(own)));
+            return null;
+        });
+        return created;
+    }
+
+    @Override
+    public Optional<User> update(User user, long expectedVersion) {
+        return cluster.onOwner(user.getId(), new UpdateUser(user, expectedVersion));
+    }
+
+    @Override
+    public Collection<User> getUsers() {
+        List<User> users = new ArrayList<>();
+        cluster.onAll(new AllUsers()).forEach(users::addAll);
+        users.sort(Comparator.comparing(User::getId));
+        return users;
+    }
+
+    @Override
+    public List<User> getUsers(long afterId, int limit) {
+        return cluster.onAll(new UserPage(afterId, limit)).stream()
+                .flatMap(List::stream)
+                .sorted(Comparator.comparing(User::getId))
+                .limit(limit)
+                .toList();
+    }
+
+    @Override
+    public Optional<User> findById(Long userId) {
+        return cluster.onOwner(userId, new FindUser(userId));
+    }
+
+    /**
+     * Id раскладываются по узлам, и каждый узел получает одно обращение со всеми своими id.
+     */
+    @Override
+    public List<User> findAllById(long[] userIds) {
+        Map<Long, User> found = new HashMap<>();
+        cluster.locked(() -> {
+            cluster.byOwner(Arrays.stream(userIds).boxed().toList(), Long::longValue)
+                    .forEach((owner, ids) -> cluster.onNode(owner,
+                            new FindUsers(ids.stream().mapToLong(Long::longValue).toArray()))
+                            .forEach(user -> found.put(user.getId(), user)));
+            return null;
+        });
+        List<User> ordered = new ArrayList<>(found.size());
+        for (long userId : userIds) {
+            User user = found.get(userId);
+            if (user != null) {
+                ordered.add(user);
+            }
+        }
+        return ordered;
+    }
+
+    @Override
+    public Set<Long> existingIds(Collection<Long> userIds) {
+        Set<Long> existing = new HashSet<>();
+        cluster.locked(() -> {
+            cluster.byOwner(userIds, Long::longValue)
+                    .forEach((owner, ids) -> existing.addAll(cluster.onNode(owner, new ExistingUsers(ids))));
+            return null;
+        });
+        return existing;
+    }
+
+    /**
+     * Снимает дружбы пользователя и удаляет его на его узле, если за это время у него не появились новые друзья;
+     * иначе проход повторяется.
+     */
+    @Override
+    public boolean delete(Long userId) {
+        while (true) {
+            Optional<User> user = findById(userId);
+            if (user.isEmpty()) {
+                return false;
+            }
+            for (long friendId : user.get().getFriends().toLongArray()) {
+                deleteFriend(userId, friendId);
+            }
+            Boolean deleted = cluster.onOwner(userId, new DeleteIfFriendless(userId));
+            if (deleted != null) {
+                return deleted;
+            }
+        }
+    }
+
+    @Override
+    public boolean addFriend(Long userId, Long friendId) {
+        return pairLocks.withLock(Math.min(userId, friendId), () -> cluster.locked(() -> {
+            String userNode = cluster.owner(userId);
+            String friendNode = cluster.owner(friendId);
+            if (userNode.equals(friendNode)) {
+                return cluster.onNode(userNode, new AddFriend(userId, friendId));
+            }
+            if (cluster.onNode(userNode, new FindUser(userId)).isEmpty()) {
+                return false;
+            }
+            Boolean friendAdded = cluster.onNode(friendNode, new AddFriendEdge(friendId, userId));
+            if (friendAdded == null) {
+                return false;
+            }
+            Boolean userAdded = cluster.onNode(userNode, new AddFriendEdge(userId, friendId));
+            if (userAdded == null) {
+                cluster.onNode(friendNode, new RemoveFriendEdge(friendId, userId));
+                return false;
+            }
+            return userAdded || friendAdded;
+        }));
+    }
+
+    @Override
+    public boolean deleteFriend(Long userId, Long friendId) {
+        return pairLocks.withLock(Math.min(userId, friendId), () -> cluster.locked(() -> {
+            String userNode = cluster.owner(userId);
+            String friendNode = cluster.owner(friendId);
+            if (userNode.equals(friendNode)) {
+                return cluster.onNode(userNode, new DeleteFriend(userId, friendId));
+            }
+            Boolean friendRemoved = cluster.onNode(friendNode, new RemoveFriendEdge(friendId, userId));
+            Boolean userRemoved = cluster.onNode(userNode, new RemoveFriendEdge(userId, friendId));
+            return Boolean.TRUE.equals(userRemoved) || Boolean.TRUE.equals(friendRemoved);
+        }));
+    }
+
+    @Override
+    public boolean[] addFriends(List<Friendship> friendships) {
+        boolean[] added = new boolean[friendships.size()];
+        for (int i = 0; i < friendships.size(); i++) {
+            added[i] = addFriend(friendships.get(i).userId(), friendships.get(i).friendId());
+        }
+        return added;
+    }
+
+    @Override
+    public long count() {
+        return cluster.onAll(new UserCount()).stream().mapToLong(Long::longValue).sum();
+    }
+
+    @Override
+    public long friendEdgeCount() {
+        return cluster.onAll(new FriendEdgeCount()).stream().mapToLong(Long::longValue).sum();
+    }
+}
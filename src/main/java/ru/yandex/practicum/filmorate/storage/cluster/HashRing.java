@@ -0,0 +1,92 @@
+package ru.yandex.practicum.filmorate.storage.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Кольцо согласованного хеширования: у каждого узла {@code virtualNodes} точек на кольце, и сущность
+ * принадлежит узлу первой точки после хеша её id. При добавлении или удалении узла переезжают только
+ * сущности, попавшие на дуги этого узла, — в среднем доля {@code 1 / число узлов}.
+ * Кольцо неизменяемо: изменение состава возвращает новое кольцо.
+ */
+public final class HashRing {
+    private final int virtualNodes;
+    private final NavigableMap<Long, String> points;
+    private final Set<String> nodes;
+
+    public HashRing(int virtualNodes, Collection<String> nodes) {
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("Число виртуальных узлов должно быть положительным");
+        }
+        this.virtualNodes = virtualNodes;
+        this.nodes = Collections.unmodifiableSet(new TreeSet<>(nodes));
+        TreeMap<Long, String> ring = new TreeMap<>();
+        for (String node : this.nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.putIfAbsent(mix(hash(node + "#" + i)), node);
+            }
+        }
+        this.points = Collections.unmodifiableNavigableMap(ring);
+    }
+
+    public HashRing with(String node) {
+        Set<String> next = new TreeSet<>(nodes);
+        next.add(node);
+        return new HashRing(virtualNodes, next);
+    }
+
+    public HashRing without(String node) {
+        Set<String> next = new TreeSet<>(nodes);
+        next.remove(node);
+        return new HashRing(virtualNodes, next);
+    }
+
+    public int virtualNodes() {
+        return virtualNodes;
+    }
+
+    public Set<String> nodes() {
+        return nodes;
+    }
+
+    public boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+
+    /**
+     * Узел, которому принадлежит сущность с этим id.
+     */
+    public String owner(long id) {
+        if (points.isEmpty()) {
+            throw new IllegalStateException("В кластере нет узлов");
+        }
+        Map.Entry<Long, String> point = points.ceilingEntry(mix(id));
+        return point != null ? point.getValue() : points.firstEntry().getValue();
+    }
+
+    private static long hash(String value) {
+        long hash = 0xCBF29CE484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xFF)) * 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Финальное перемешивание MurmurHash3: последовательные id расходятся по всему кольцу.
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,55 @@
+package ru.yandex.practicum.filmorate.storage.cluster;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Узлы кластера в одной JVM: операция выполняется на узле в вызывающем потоке. Подходит для проверки
+ * распределения и перебалансировки без сети.
+ */
+public class LocalClusterTransport implements ClusterTransport {
+    private final Map<String, ClusterNode> nodes = new ConcurrentHashMap<>();
+    private final boolean approximateTop;
+
+    public LocalClusterTransport() {
+        this(false);
+    }
+
+    /**
+     * @param approximateTop топ без фильтров строится приблизительно, и узлы не ведут для него общий индекс
+     */
+    public LocalClusterTransport(boolean approximateTop) {
+        this.approximateTop = approximateTop;
+    }
+
+    /**
+     * Запускает пустой узел; в кольцо его добавляет {@link Cluster#join(String)}.
+     */
+    public ClusterNode start(String nodeId) {
+        ClusterNode node = new ClusterNode(nodeId, approximateTop);
+        if (nodes.putIfAbsent(nodeId, node) != null) {
+            throw new IllegalStateException("Узел " + nodeId + " уже запущен");
+        }
+        return node;
+    }
+
+    /**
+     * Останавливает узел; данные с него нужно сначала перенести через {@link Cluster#leave(String)}.
+     */
+    public void stop(String nodeId) {
+        nodes.remove(nodeId);
+    }
+
+    public ClusterNode node(String nodeId) {
+        ClusterNode node = nodes.get(nodeId);
+        if (node == null) {
+            throw new IllegalStateException("Узел " + nodeId + " недоступен");
+        }
+        return node;
+    }
+
+    @Override
+    public <T> T call(String nodeId, ClusterOperation<T> operation) {
+        return operation.applyTo(node(nodeId));
+    }
+}
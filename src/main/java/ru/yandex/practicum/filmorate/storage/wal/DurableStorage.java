@@ -0,0 +1,169 @@
+package ru.yandex.practicum.filmorate.storage.wal;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.StorageJournal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Связывает хранилища в памяти с журналом предзаписи: при старте загружает последний снимок и воспроизводит
+ * хвост журнала, затем открывает журнал на запись и периодически снимает сжатые снимки.
+ */
+@Slf4j
+@Component
+@Profile("!jdbc")
+@ConditionalOnProperty(name = "filmorate.storage.wal.enabled", havingValue = "true")
+public class DurableStorage {
+    private final WriteAheadLog wal;
+    private final InMemoryFilmStorage filmStorage;
+    private final InMemoryUserStorage userStorage;
+    private final SnapshotStore snapshots;
+    private final Duration snapshotInterval;
+    private ScheduledExecutorService scheduler;
+
+    public DurableStorage(WriteAheadLog wal,
+                          InMemoryFilmStorage filmStorage,
+                          InMemoryUserStorage userStorage,
+                          @Value("${filmorate.storage.wal.directory:data/wal}") Path directory,
+                          @Value("${filmorate.storage.wal.snapshot-interval:10m}") Duration snapshotInterval) {
+        this.wal = wal;
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.snapshots = new SnapshotStore(directory);
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    @PostConstruct
+    public void start() {
+        recover();
+        wal.open();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "wal-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = snapshotInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::snapshotQuietly, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        snapshotQuietly();
+        wal.close();
+    }
+
+    /**
+     * Отображает в память последний снимок и воспроизводит поверх него оставшиеся сегменты журнала.
+     * Сущности снимка материализуются в хранилищах лениво, поэтому время старта почти не зависит от его размера.
+     * Записи журнала применяются идемпотентно, поэтому снимок может быть «нечётким» —
+     * снятым одновременно с изменениями.
+     */
+    public Recovery recover() {
+        long started = System.nanoTime();
+        try {
+            long fromSegment = 0;
+            long films = 0;
+            long users = 0;
+            var latest = snapshots.latest();
+            if (latest.isPresent()) {
+                fromSegment = latest.get();
+                MappedSnapshot snapshot = snapshots.open(fromSegment);
+                filmStorage.mount(snapshot.films(), snapshot.likes());
+                userStorage.mount(snapshot.users());
+                films = snapshot.films().size();
+                users = snapshot.users().size();
+            }
+            long replayed = wal.replay(fromSegment, new Replay());
+            Recovery recovery = new Recovery(films, users, replayed,
+                    Duration.ofNanos(System.nanoTime() - started));
+            log.info("Хранилище восстановлено: {}", recovery);
+            return recovery;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось восстановить хранилище", e);
+        }
+    }
+
+    /**
+     * Переключает журнал на новый сегмент, снимает снимок и удаляет покрытые им сегменты.
+     */
+    public void snapshot() throws IOException {
+        long segment = wal.rotate();
+        snapshots.write(segment, filmStorage, userStorage);
+        wal.deleteSegmentsBefore(segment);
+        log.info("Снят снимок хранилища, журнал продолжается с сегмента {}", segment);
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            log.error("Не удалось снять снимок хранилища", e);
+        }
+    }
+
+    public record Recovery(long films, long users, long replayedRecords, Duration duration) {
+    }
+
+    private class Replay implements StorageJournal {
+        @Override
+        public long filmSaved(Film film) {
+            filmStorage.restore(film);
+            return 0;
+        }
+
+        @Override
+        public long likeAdded(long filmId, long userId) {
+            filmStorage.addLike(filmId, userId);
+            return 0;
+        }
+
+        @Override
+        public long likeDeleted(long filmId, long userId) {
+            filmStorage.deleteLike(filmId, userId);
+            return 0;
+        }
+
+        @Override
+        public long userSaved(User user) {
+            userStorage.restore(user);
+            return 0;
+        }
+
+        @Override
+        public long friendAdded(long userId, long friendId) {
+            userStorage.addFriend(userId, friendId);
+            return 0;
+        }
+
+        @Override
+        public long friendDeleted(long userId, long friendId) {
+            userStorage.deleteFriend(userId, friendId);
+            return 0;
+        }
+
+        @Override
+        public long userDeleted(long userId) {
+            userStorage.delete(userId);
+            return 0;
+        }
+    }
+}
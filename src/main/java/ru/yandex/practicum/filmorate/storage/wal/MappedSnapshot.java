@@ -0,0 +1,207 @@
+package ru.yandex.practicum.filmorate.storage.wal;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.EntitySource;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.zip.CRC32;
+
+import static ru.yandex.practicum.filmorate.storage.wal.SnapshotStore.DATA_CHUNK;
+import static ru.yandex.practicum.filmorate.storage.wal.SnapshotStore.HEADER_SIZE;
+import static ru.yandex.practicum.filmorate.storage.wal.SnapshotStore.INDEX_ENTRY_SIZE;
+
+/**
+ * Снимок, отображённый в память через {@link FileChannel#map}. При открытии проверяется только заголовок
+ * и индексы; записи сущностей читаются и проверяются по CRC32 при первом обращении к ним.
+ */
+final class MappedSnapshot {
+    private final Section<Film> films;
+    private final Section<User> users;
+    private final Section<long[]> likes;
+
+    private MappedSnapshot(Section<Film> films, Section<User> users, Section<long[]> likes) {
+        this.films = films;
+        this.users = users;
+        this.likes = likes;
+    }
+
+    static MappedSnapshot open(Path path, long segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Неверный формат снимка " + path);
+            }
+            ByteBuffer header = map(channel, 0, HEADER_SIZE);
+            if (header.getInt() != SnapshotStore.MAGIC) {
+                throw new IOException("Неверный формат снимка " + path);
+            }
+            int version = header.getInt();
+            if (version != SnapshotStore.VERSION) {
+                throw new IOException("Неподдерживаемая версия снимка " + path + ": " + version);
+            }
+            if (header.getLong() != segment) {
+                throw new IOException("Снимок " + path + " относится к другому сегменту журнала");
+            }
+            long filmCount = header.getLong();
+            long userCount = header.getLong();
+            long filmIndexOffset = header.getLong();
+            long userIndexOffset = header.getLong();
+            int indexChecksum = header.getInt();
+            long likeCount = header.getLong();
+
+            ByteBuffer filmIndex = map(channel, filmIndexOffset, filmCount * INDEX_ENTRY_SIZE);
+            ByteBuffer userIndex = map(channel, userIndexOffset, userCount * INDEX_ENTRY_SIZE);
+            ByteBuffer likeIndex = map(channel, userIndexOffset + userCount * INDEX_ENTRY_SIZE,
+                    likeCount * INDEX_ENTRY_SIZE);
+            CRC32 crc = new CRC32();
+            crc.update(filmIndex.duplicate());
+            crc.update(userIndex.duplicate());
+            crc.update(likeIndex.duplicate());
+            if ((int) crc.getValue() != indexChecksum) {
+                throw new IOException("Контрольная сумма индекса снимка " + path + " не совпадает");
+            }
+
+            long dataSize = filmIndexOffset - HEADER_SIZE;
+            ByteBuffer[] chunks = new ByteBuffer[(int) ((dataSize + DATA_CHUNK - 1) / DATA_CHUNK)];
+            for (int i = 0; i < chunks.length; i++) {
+                long offset = i * DATA_CHUNK;
+                chunks[i] = map(channel, HEADER_SIZE + offset, Math.min(DATA_CHUNK, dataSize - offset));
+            }
+            return new MappedSnapshot(
+                    new Section<>(path, filmIndex, chunks, in -> {
+                        Film film = WalCodec.readFilm(in);
+                        readIds(in, film.getMovieRating());
+                        return film;
+                    }),
+                    new Section<>(path, userIndex, chunks, in -> {
+                        User user = WalCodec.readUser(in);
+                        readIds(in, user.getFriends());
+                        return user;
+                    }),
+                    new Section<>(path, likeIndex, chunks, in -> {
+                        long[] filmIds = new long[in.readInt()];
+                        for (int i = 0; i < filmIds.length; i++) {
+                            filmIds[i] = in.readLong();
+                        }
+                        return filmIds;
+                    }));
+        }
+    }
+
+    EntitySource<Film> films() {
+        return films;
+    }
+
+    EntitySource<User> users() {
+        return users;
+    }
+
+    /**
+     * Лайки по пользователям: id пользователя → отсортированные id понравившихся фильмов.
+     */
+    EntitySource<long[]> likes() {
+        return likes;
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long offset, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Раздел снимка слишком велик для отображения: " + size + " байт");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+    }
+
+    private static void readIds(DataInputStream in, Collection<Long> target) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            target.add(in.readLong());
+        }
+    }
+
+    @FunctionalInterface
+    private interface RecordReader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    private static final class Section<T> implements EntitySource<T> {
+        private final Path path;
+        private final ByteBuffer index;
+        private final ByteBuffer[] chunks;
+        private final RecordReader<T> reader;
+        private final int size;
+
+        Section(Path path, ByteBuffer index, ByteBuffer[] chunks, RecordReader<T> reader) {
+            this.path = path;
+            this.index = index;
+            this.chunks = chunks;
+            this.reader = reader;
+            this.size = index.capacity() / INDEX_ENTRY_SIZE;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public long idAt(int position) {
+            return index.getLong(position * INDEX_ENTRY_SIZE);
+        }
+
+        @Override
+        public int edgesAt(int position) {
+            return index.getInt(position * INDEX_ENTRY_SIZE + 2 * Long.BYTES);
+        }
+
+        @Override
+        public long summaryAt(int position) {
+            return index.getLong(position * INDEX_ENTRY_SIZE + 2 * Long.BYTES + 2 * Integer.BYTES);
+        }
+
+        @Override
+        public int positionOf(long id) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                long current = idAt(middle);
+                if (current < id) {
+                    low = middle + 1;
+                } else if (current > id) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -(low + 1);
+        }
+
+        @Override
+        public T load(int position) {
+            int entry = position * INDEX_ENTRY_SIZE;
+            long offset = index.getLong(entry + Long.BYTES);
+            int checksum = index.getInt(entry + 2 * Long.BYTES + Integer.BYTES);
+            ByteBuffer chunk = chunks[(int) (offset / DATA_CHUNK)];
+            int start = (int) (offset % DATA_CHUNK);
+            byte[] body = new byte[chunk.getInt(start)];
+            chunk.get(start + Integer.BYTES, body);
+            if (WalCodec.checksum(body) != checksum) {
+                throw new UncheckedIOException(new IOException(
+                        "Повреждена запись " + idAt(position) + " в снимке " + path));
+            }
+            try {
+                return reader.read(new DataInputStream(new ByteArrayInputStream(body)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package ru.yandex.practicum.filmorate.storage.wal;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmFacets;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.util.SortedLongSet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Снимки хранилищ в индексированном формате, пригодном для отображения в память.
+ * Имя файла {@code snapshot-N.bin} содержит номер сегмента журнала, с которого нужно продолжить воспроизведение.
+ * <p>
+ * Формат: заголовок, записи сущностей ({@code [длина][тело]}, тело — сущность и отсортированные id рёбер),
+ * записи лайков по пользователям (отсортированные id понравившихся фильмов), затем индекс фильмов,
+ * индекс пользователей и индекс лайков. Элемент индекса — {@code id, смещение, число рёбер, CRC32 записи, сводка},
+ * где сводка фильма — его срезы {@link FilmFacets}; элементы отсортированы по id.
+ * Записи не пересекают границ блоков по {@link #DATA_CHUNK} байт, поэтому каждый блок отображается отдельным буфером.
+ * Файл пишется во временный и атомарно переименовывается, поэтому на диске не бывает недописанных снимков.
+ */
+class SnapshotStore {
+    static final int MAGIC = 0x464D534E;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int INDEX_ENTRY_SIZE = 32;
+    static final long DATA_CHUNK = 1L << 30;
+
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private final Path directory;
+
+    SnapshotStore(Path directory) {
+        this.directory = directory;
+    }
+
+    void write(long segment, InMemoryFilmStorage films, InMemoryUserStorage users) throws IOException {
+        Files.createDirectories(directory);
+        Path target = path(segment);
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        Path filmIndex = target.resolveSibling(target.getFileName() + ".films.tmp");
+        Path userIndex = target.resolveSibling(target.getFileName() + ".users.tmp");
+        Path likeIndex = target.resolveSibling(target.getFileName() + ".likes.tmp");
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(HEADER_SIZE);
+            DataWriter data = new DataWriter(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+            CRC32 indexChecksum = new CRC32();
+            long filmCount;
+            long userCount;
+            long likeCount;
+            try (IndexWriter index = new IndexWriter(filmIndex, indexChecksum)) {
+                films.forEachFilm(film -> data.append(film.getId(), FilmFacets.of(film), index, out -> {
+                    WalCodec.writeFilm(out, film);
+                    return writeIds(out, film.getMovieRating());
+                }));
+                filmCount = index.count;
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            try (IndexWriter index = new IndexWriter(userIndex, indexChecksum)) {
+                users.forEachUser(user -> data.append(user.getId(), 0, index, out -> {
+                    WalCodec.writeUser(out, user);
+                    return writeIds(out, user.getFriends());
+                }));
+                userCount = index.count;
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            try (IndexWriter index = new IndexWriter(likeIndex, indexChecksum)) {
+                films.forEachUserLikes((userId, filmIds) -> data.append(userId, 0, index, out -> {
+                    out.writeInt(filmIds.length);
+                    for (long filmId : filmIds) {
+                        out.writeLong(filmId);
+                    }
+                    return filmIds.length;
+                }));
+                likeCount = index.count;
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            data.out.flush();
+
+            long filmIndexOffset = HEADER_SIZE + data.size;
+            long userIndexOffset = filmIndexOffset + filmCount * INDEX_ENTRY_SIZE;
+            transfer(filmIndex, channel, filmIndexOffset);
+            transfer(userIndex, channel, userIndexOffset);
+            transfer(likeIndex, channel, userIndexOffset + userCount * INDEX_ENTRY_SIZE);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                    .putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putLong(segment)
+                    .putLong(filmCount)
+                    .putLong(userCount)
+                    .putLong(filmIndexOffset)
+                    .putLong(userIndexOffset)
+                    .putInt((int) indexChecksum.getValue())
+                    .putLong(likeCount);
+            header.clear();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        } finally {
+            Files.deleteIfExists(filmIndex);
+            Files.deleteIfExists(userIndex);
+            Files.deleteIfExists(likeIndex);
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        deleteBefore(segment);
+    }
+
+    Optional<Long> latest() throws IOException {
+        return snapshots().stream()
+                .map(SnapshotStore::segmentNumber)
+                .max(Long::compare);
+    }
+
+    MappedSnapshot open(long segment) throws IOException {
+        return MappedSnapshot.open(path(segment), segment);
+    }
+
+    private void deleteBefore(long segment) throws IOException {
+        for (Path snapshot : snapshots()) {
+            if (segmentNumber(snapshot) < segment) {
+                Files.deleteIfExists(snapshot);
+            }
+        }
+    }
+
+    private List<Path> snapshots() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .toList();
+        }
+    }
+
+    private Path path(long segment) {
+        return directory.resolve(String.format("%s%020d%s", PREFIX, segment, SUFFIX));
+    }
+
+    private static long segmentNumber(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private static void transfer(Path source, FileChannel target, long position) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            long size = in.size();
+            long transferred = 0;
+            while (transferred < size) {
+                transferred += target.transferFrom(in, position + transferred, size - transferred);
+            }
+        }
+    }
+
+    private static int writeIds(DataOutputStream out, Collection<Long> ids) throws IOException {
+        long[] values = ids instanceof SortedLongSet sorted
+                ? sorted.toLongArray()
+                : ids.stream().mapToLong(Long::longValue).sorted().toArray();
+        out.writeInt(values.length);
+        for (long value : values) {
+            out.writeLong(value);
+        }
+        return values.length;
+    }
+
+    @FunctionalInterface
+    private interface RecordWriter {
+        /**
+         * @return количество записанных рёбер
+         */
+        int write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Пишет записи сущностей, выравнивая их так, чтобы ни одна не пересекала границу блока.
+     */
+    private static final class DataWriter {
+        private final OutputStream out;
+        private final ExposedByteArrayOutputStream record = new ExposedByteArrayOutputStream();
+        private final DataOutputStream recordOut = new DataOutputStream(record);
+        private final DataOutputStream lengthOut;
+        private final CRC32 checksum = new CRC32();
+        private long size;
+
+        DataWriter(OutputStream out) {
+            this.out = out;
+            this.lengthOut = new DataOutputStream(out);
+        }
+
+        void append(long id, long summary, IndexWriter index, RecordWriter writer) {
+            try {
+                record.reset();
+                int edges = writer.write(recordOut);
+                long required = Integer.BYTES + record.size();
+                if (required > DATA_CHUNK) {
+                    throw new IOException("Запись " + id + " слишком велика для снимка");
+                }
+                long remaining = DATA_CHUNK - size % DATA_CHUNK;
+                if (required > remaining) {
+                    out.write(new byte[(int) remaining]);
+                    size += remaining;
+                }
+                checksum.reset();
+                checksum.update(record.buffer(), 0, record.size());
+                index.add(id, size, edges, (int) checksum.getValue(), summary);
+                lengthOut.writeInt(record.size());
+                out.write(record.buffer(), 0, record.size());
+                size += required;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static final class IndexWriter implements AutoCloseable {
+        private final DataOutputStream out;
+        private long count;
+
+        IndexWriter(Path path, CRC32 checksum) throws IOException {
+            out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE), checksum));
+        }
+
+        void add(long id, long offset, int edges, int checksum, long summary) throws IOException {
+            out.writeLong(id);
+            out.writeLong(offset);
+            out.writeInt(edges);
+            out.writeInt(checksum);
+            out.writeLong(summary);
+            count++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    private static final class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+        byte[] buffer() {
+            return buf;
+        }
+    }
+}
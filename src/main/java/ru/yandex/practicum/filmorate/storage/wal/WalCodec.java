@@ -0,0 +1,234 @@
+package ru.yandex.practicum.filmorate.storage.wal;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmGenre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.StorageJournal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Двоичный формат записей журнала: {@code [длина тела][CRC32 тела][тип][данные]}.
+ * Сущности кодируются без имён полей, даты — числом дней от эпохи, жанры — битовой маской,
+ * строки — длиной в четыре байта и байтами UTF-8.
+ */
+final class WalCodec {
+    static final int HEADER_SIZE = Integer.BYTES * 2;
+    /**
+     * Наибольшая длина тела записи. Более длинная запись при чтении считается повреждённым хвостом журнала,
+     * поэтому при кодировании она отклоняется до изменения хранилища.
+     */
+    static final int MAX_BODY_SIZE = 1 << 26;
+
+    private static final int NULL_GENRES = -1;
+    private static final long NULL_DATE = Long.MIN_VALUE;
+
+    private WalCodec() {
+    }
+
+    static byte[] film(Film film) {
+        return frame(WalRecordType.FILM_SAVED, out -> writeFilm(out, film));
+    }
+
+    static byte[] user(User user) {
+        return frame(WalRecordType.USER_SAVED, out -> writeUser(out, user));
+    }
+
+    static byte[] edge(WalRecordType type, long from, long to) {
+        return frame(type, out -> {
+            out.writeLong(from);
+            out.writeLong(to);
+        });
+    }
+
+    static byte[] id(WalRecordType type, long id) {
+        return frame(type, out -> out.writeLong(id));
+    }
+
+    /**
+     * Читает следующую запись и передаёт её в {@code target}.
+     *
+     * @return {@code false}, если поток закончился или хвост записи повреждён (незавершённая запись при сбое)
+     */
+    static boolean replayNext(DataInputStream in, StorageJournal target) throws IOException {
+        byte[] body;
+        try {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length <= 0 || length > MAX_BODY_SIZE) {
+                return false;
+            }
+            body = new byte[length];
+            in.readFully(body);
+            if (checksum(body) != checksum) {
+                return false;
+            }
+        } catch (EOFException e) {
+            return false;
+        }
+
+        DataInputStream record = new DataInputStream(new ByteArrayInputStream(body));
+        switch (WalRecordType.of(record.readByte())) {
+            case FILM_SAVED -> target.filmSaved(readFilm(record));
+            case USER_SAVED -> target.userSaved(readUser(record));
+            case LIKE_ADDED -> target.likeAdded(record.readLong(), record.readLong());
+            case LIKE_DELETED -> target.likeDeleted(record.readLong(), record.readLong());
+            case FRIEND_ADDED -> target.friendAdded(record.readLong(), record.readLong());
+            case FRIEND_DELETED -> target.friendDeleted(record.readLong(), record.readLong());
+            case USER_DELETED -> target.userDeleted(record.readLong());
+        }
+        return true;
+    }
+
+    static void writeFilm(DataOutput out, Film film) throws IOException {
+        out.writeLong(film.getId());
+        writeString(out, film.getName());
+        writeString(out, film.getDescription());
+        writeDate(out, film.getReleaseDate());
+        out.writeInt(film.getDuration());
+        out.writeInt(genreMask(film.getGenres()));
+        out.writeByte(film.getMpaRating() == null ? -1 : film.getMpaRating().ordinal());
+        out.writeLong(film.getVersion());
+    }
+
+    static Film readFilm(DataInput in) throws IOException {
+        long id = in.readLong();
+        String name = readString(in);
+        String description = readString(in);
+        LocalDate releaseDate = readDate(in);
+        int duration = in.readInt();
+        Set<FilmGenre> genres = genres(in.readInt());
+        byte mpa = in.readByte();
+        long version = in.readLong();
+        return Film.builder()
+                .id(id)
+                .version(version)
+                .name(name)
+                .description(description)
+                .releaseDate(releaseDate)
+                .duration(duration)
+                .genres(genres)
+                .mpaRating(mpa < 0 ? null : MpaRating.values()[mpa])
+                .build();
+    }
+
+    static void writeUser(DataOutput out, User user) throws IOException {
+        out.writeLong(user.getId());
+        writeString(out, user.getEmail());
+        writeString(out, user.getLogin());
+        writeString(out, user.getName());
+        writeDate(out, user.getBirthday());
+        out.writeLong(user.getVersion());
+    }
+
+    static User readUser(DataInput in) throws IOException {
+        User user = User.builder()
+                .id(in.readLong())
+                .email(readString(in))
+                .login(readString(in))
+                .name(readString(in))
+                .birthday(readDate(in))
+                .build();
+        user.setVersion(in.readLong());
+        return user;
+    }
+
+    static int checksum(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] frame(WalRecordType type, BodyWriter writer) {
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(body);
+            out.writeByte(type.code);
+            writer.write(out);
+            byte[] bytes = body.toByteArray();
+            if (bytes.length > MAX_BODY_SIZE) {
+                throw new IllegalArgumentException("Запись журнала длиной " + bytes.length
+                        + " байт превышает предел в " + MAX_BODY_SIZE + " байт");
+            }
+
+            ByteArrayOutputStream framed = new ByteArrayOutputStream(HEADER_SIZE + bytes.length);
+            DataOutputStream header = new DataOutputStream(framed);
+            header.writeInt(bytes.length);
+            header.writeInt(checksum(bytes));
+            header.write(bytes);
+            return framed.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeDate(DataOutput out, LocalDate date) throws IOException {
+        out.writeLong(date == null ? NULL_DATE : date.toEpochDay());
+    }
+
+    private static LocalDate readDate(DataInput in) throws IOException {
+        long epochDay = in.readLong();
+        return epochDay == NULL_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    private static int genreMask(Set<FilmGenre> genres) {
+        if (genres == null) {
+            return NULL_GENRES;
+        }
+        int mask = 0;
+        for (FilmGenre genre : genres) {
+            mask |= 1 << genre.ordinal();
+        }
+        return mask;
+    }
+
+    private static Set<FilmGenre> genres(int mask) {
+        if (mask == NULL_GENRES) {
+            return null;
+        }
+        Set<FilmGenre> genres = EnumSet.noneOf(FilmGenre.class);
+        for (FilmGenre genre : FilmGenre.values()) {
+            if ((mask & (1 << genre.ordinal())) != 0) {
+                genres.add(genre);
+            }
+        }
+        return genres;
+    }
+
+    @FunctionalInterface
+    private interface BodyWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.storage.wal;
+
+enum WalRecordType {
+    FILM_SAVED(1),
+    LIKE_ADDED(2),
+    LIKE_DELETED(3),
+    USER_SAVED(4),
+    FRIEND_ADDED(5),
+    FRIEND_DELETED(6),
+    USER_DELETED(7);
+
+    private static final WalRecordType[] BY_CODE = new WalRecordType[8];
+
+    static {
+        for (WalRecordType type : values()) {
+            BY_CODE[type.code] = type;
+        }
+    }
+
+    final byte code;
+
+    WalRecordType(int code) {
+        this.code = (byte) code;
+    }
+
+    static WalRecordType of(byte code) {
+        if (code <= 0 || code >= BY_CODE.length || BY_CODE[code] == null) {
+            throw new IllegalArgumentException("Неизвестный тип записи журнала: " + code);
+        }
+        return BY_CODE[code];
+    }
+}
@@ -0,0 +1,380 @@
+package ru.yandex.practicum.filmorate.storage.wal;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.StorageJournal;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Журнал предзаписи (WAL) для хранилищ в памяти. Записи добавляются в общий буфер, а отдельный поток
+ * пишет накопленный буфер в текущий сегмент через {@link FileChannel} и делает один {@code force} на всю пачку
+ * (групповая фиксация). Запросы ждут только момента, когда их запись попала в зафиксированную пачку.
+ * <p>
+ * Журнал разбит на сегменты {@code wal-N.log}: при снятии снимка начинается новый сегмент,
+ * а сегменты, полностью покрытые снимком, удаляются.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.storage.wal.enabled", havingValue = "true")
+public class WriteAheadLog implements StorageJournal, Closeable {
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final boolean fsync;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition workAvailable = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+    private final ReentrantLock ioLock = new ReentrantLock();
+
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private ByteBuffer writing = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private long appendedSequence;
+    private long durableSequence;
+    private long flushCount;
+    private boolean open;
+    private boolean closed;
+    private IOException failure;
+
+    private FileChannel channel;
+    private long segment;
+    private Thread flusher;
+
+    public WriteAheadLog(@Value("${filmorate.storage.wal.directory:data/wal}") Path directory,
+                         @Value("${filmorate.storage.wal.fsync:true}") boolean fsync) {
+        this.directory = directory;
+        this.fsync = fsync;
+    }
+
+    /**
+     * Начинает приём записей в новый сегмент. До вызова записи игнорируются — это позволяет
+     * восстанавливать хранилища обычными методами, не дублируя журнал.
+     */
+    public void open() {
+        ioLock.lock();
+        lock.lock();
+        try {
+            Files.createDirectories(directory);
+            segment = segments().stream().mapToLong(WriteAheadLog::segmentNumber).max().orElse(0) + 1;
+            channel = openSegment(segment);
+            open = true;
+            flusher = new Thread(this::flushLoop, "wal-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+            log.info("Журнал предзаписи открыт: {}", segmentPath(segment));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+            ioLock.unlock();
+        }
+    }
+
+    @Override
+    public long filmSaved(Film film) {
+        return append(WalCodec.film(film));
+    }
+
+    @Override
+    public long likeAdded(long filmId, long userId) {
+        return append(WalCodec.edge(WalRecordType.LIKE_ADDED, filmId, userId));
+    }
+
+    @Override
+    public long likeDeleted(long filmId, long userId) {
+        return append(WalCodec.edge(WalRecordType.LIKE_DELETED, filmId, userId));
+    }
+
+    @Override
+    public long userSaved(User user) {
+        return append(WalCodec.user(user));
+    }
+
+    @Override
+    public long friendAdded(long userId, long friendId) {
+        return append(WalCodec.edge(WalRecordType.FRIEND_ADDED, userId, friendId));
+    }
+
+    @Override
+    public long friendDeleted(long userId, long friendId) {
+        return append(WalCodec.edge(WalRecordType.FRIEND_DELETED, userId, friendId));
+    }
+
+    @Override
+    public long userDeleted(long userId) {
+        return append(WalCodec.id(WalRecordType.USER_DELETED, userId));
+    }
+
+    @Override
+    public void awaitDurable(long position) {
+        if (position <= 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            while (durableSequence < position) {
+                if (failure != null) {
+                    throw new UncheckedIOException("Не удалось записать журнал", failure);
+                }
+                flushed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Фиксирует всё накопленное и переключает запись на новый сегмент.
+     *
+     * @return номер нового сегмента — с него нужно воспроизводить журнал поверх снимка, снятого после переключения
+     */
+    public long rotate() {
+        ioLock.lock();
+        try {
+            FileChannel previous;
+            long target;
+            lock.lock();
+            try {
+                ensureOpen();
+                swapBuffers();
+                target = appendedSequence;
+                previous = channel;
+                segment++;
+                channel = openSegment(segment);
+            } finally {
+                lock.unlock();
+            }
+            write(previous);
+            previous.close();
+            markDurable(target, null);
+            return segment;
+        } catch (IOException e) {
+            markDurable(durableSequence, e);
+            throw new UncheckedIOException(e);
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    /**
+     * Воспроизводит сегменты начиная с {@code fromSegment} в порядке записи.
+     *
+     * @return количество применённых записей
+     */
+    public long replay(long fromSegment, StorageJournal target) throws IOException {
+        long records = 0;
+        for (Path path : segments()) {
+            if (segmentNumber(path) < fromSegment) {
+                continue;
+            }
+            try (InputStream file = Files.newInputStream(path);
+                 DataInputStream in = new DataInputStream(new BufferedInputStream(file, INITIAL_BUFFER_SIZE))) {
+                while (WalCodec.replayNext(in, target)) {
+                    records++;
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Удаляет сегменты, полностью покрытые снимком.
+     */
+    public void deleteSegmentsBefore(long segmentNumber) throws IOException {
+        for (Path path : segments()) {
+            if (segmentNumber(path) < segmentNumber) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    public long flushCount() {
+        lock.lock();
+        try {
+            return flushCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        Thread thread;
+        lock.lock();
+        try {
+            if (!open || closed) {
+                return;
+            }
+            closed = true;
+            thread = flusher;
+            workAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            thread.join();
+            channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.warn("Ошибка при закрытии журнала", e);
+        }
+    }
+
+    private long append(byte[] record) {
+        lock.lock();
+        try {
+            if (!open) {
+                return 0;
+            }
+            if (closed) {
+                throw new IllegalStateException("Журнал предзаписи закрыт");
+            }
+            if (pending.remaining() < record.length) {
+                pending = grow(pending, record.length);
+            }
+            pending.put(record);
+            workAvailable.signal();
+            return ++appendedSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            lock.lock();
+            try {
+                while (pending.position() == 0 && !closed) {
+                    workAvailable.awaitUninterruptibly();
+                }
+                if (pending.position() == 0) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            ioLock.lock();
+            try {
+                FileChannel target;
+                long sequence;
+                lock.lock();
+                try {
+                    swapBuffers();
+                    sequence = appendedSequence;
+                    target = channel;
+                } finally {
+                    lock.unlock();
+                }
+                write(target);
+                markDurable(sequence, null);
+            } catch (IOException e) {
+                log.error("Не удалось записать журнал предзаписи", e);
+                markDurable(durableSequence, e);
+            } finally {
+                ioLock.unlock();
+            }
+        }
+    }
+
+    private void swapBuffers() {
+        ByteBuffer filled = pending;
+        pending = writing;
+        writing = filled;
+    }
+
+    private void write(FileChannel target) throws IOException {
+        if (writing.position() == 0) {
+            return;
+        }
+        writing.flip();
+        try {
+            while (writing.hasRemaining()) {
+                target.write(writing);
+            }
+            if (fsync) {
+                target.force(false);
+            }
+        } finally {
+            writing.clear();
+        }
+    }
+
+    private void markDurable(long sequence, IOException error) {
+        lock.lock();
+        try {
+            durableSequence = Math.max(durableSequence, sequence);
+            flushCount++;
+            if (error != null) {
+                failure = error;
+            }
+            flushed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void ensureOpen() {
+        if (!open || closed) {
+            throw new IllegalStateException("Журнал предзаписи не открыт");
+        }
+    }
+
+    private FileChannel openSegment(long number) throws IOException {
+        return FileChannel.open(segmentPath(number),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    private List<Path> segments() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long segmentNumber(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int required) {
+        int capacity = Math.max(buffer.capacity() * 2, buffer.position() + required);
+        ByteBuffer grown = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+}
@@ -0,0 +1,80 @@
+package ru.yandex.practicum.filmorate.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Count-Min Sketch: приблизительные счётчики для любого числа id в памяти, не зависящей от их числа.
+ * Оценка никогда не меньше настоящего значения и с вероятностью {@code 1 - delta} превышает его не больше чем
+ * на {@code epsilon * total()}. Ширина — {@code e / epsilon}, округлённая вверх до степени двойки, глубина —
+ * {@code ln(1 / delta)} строк.
+ * <p>
+ * Счётчики атомарные, поэтому в один набросок можно писать из любых потоков без блокировок. Строки хешируются
+ * фиксированными затравками, и наброски одного размера складываются {@link #merge}: так объединяются наброски
+ * потоков, секций или узлов. Уменьшение допустимо, пока настоящие значения не уходят в минус.
+ */
+public class CountMinSketch {
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+
+    private final int width;
+    private final int depth;
+    private final AtomicLongArray counters;
+    private final LongAdder total = new LongAdder();
+
+    public CountMinSketch(double epsilon, double delta) {
+        if (epsilon <= 0 || epsilon >= 1 || delta <= 0 || delta >= 1) {
+            throw new IllegalArgumentException("Погрешность и вероятность ошибки должны быть в интервале (0, 1)");
+        }
+        this.width = Integer.highestOneBit((int) Math.ceil(Math.E / epsilon) - 1) << 1;
+        this.depth = (int) Math.ceil(Math.log(1 / delta));
+        this.counters = new AtomicLongArray(width * depth);
+    }
+
+    public void add(long item, long count) {
+        for (int row = 0; row < depth; row++) {
+            counters.addAndGet(row * width + column(item, row), count);
+        }
+        total.add(count);
+    }
+
+    public long estimate(long item) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(row * width + column(item, row)));
+        }
+        return estimate;
+    }
+
+    /**
+     * Добавляет к этому наброску счётчики другого наброска того же размера.
+     */
+    public void merge(CountMinSketch other) {
+        if (other.width != width || other.depth != depth) {
+            throw new IllegalArgumentException("Складывать можно только наброски одного размера: " + width + "x" + depth
+                    + " и " + other.width + "x" + other.depth);
+        }
+        for (int i = 0; i < counters.length(); i++) {
+            counters.addAndGet(i, other.counters.get(i));
+        }
+        total.add(other.total());
+    }
+
+    /**
+     * Сумма всех изменений: граница ошибки оценки — {@code epsilon} от неё.
+     */
+    public long total() {
+        return total.sum();
+    }
+
+    public long bytes() {
+        return (long) counters.length() * Long.BYTES;
+    }
+
+    private int column(long item, int row) {
+        long hash = (item + SEED * (row + 1)) * 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return (int) hash & (width - 1);
+    }
+}
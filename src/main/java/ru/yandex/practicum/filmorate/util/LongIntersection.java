@@ -0,0 +1,147 @@
+package ru.yandex.practicum.filmorate.util;
+
+import java.util.Arrays;
+
+/**
+ * Пересечение отсортированного массива с блоками {@link SortedLongSet}. Способ выбирается по размерам:
+ * <ul>
+ *     <li>галоп — когда большее множество хотя бы в {@value #GALLOP_RATIO} раз больше: каждое значение меньшего
+ *     ищется экспоненциальным шагом от предыдущей найденной позиции, так что обход стоит {@code O(m log(n / m))};</li>
+ *     <li>битовая карта — когда значения меньшего множества плотные (не больше 64 возможных id на значение):
+ *     меньшее раскладывается в биты, большее проверяется без ветвлений по сравнению;</li>
+ *     <li>слияние — в остальных случаях, шаги по обоим массивам считаются без условных переходов.</li>
+ * </ul>
+ */
+final class LongIntersection {
+    static final int GALLOP_RATIO = 16;
+
+    private LongIntersection() {
+    }
+
+    static long[] intersect(long[] probe, long[][] chunks, int[] chunkSizes, int chunkCount, int size) {
+        if (probe.length == 0 || size == 0) {
+            return new long[0];
+        }
+        long[] result = new long[probe.length];
+        int count;
+        if (size >= (long) probe.length * GALLOP_RATIO) {
+            count = gallop(probe, chunks, chunkSizes, chunkCount, result);
+        } else if ((probe[probe.length - 1] - probe[0]) >>> 6 < probe.length) {
+            count = bitmap(probe, chunks, chunkSizes, chunkCount, result);
+        } else {
+            count = merge(probe, chunks, chunkSizes, chunkCount, result);
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    private static int merge(long[] probe, long[][] chunks, int[] chunkSizes, int chunkCount, long[] result) {
+        int count = 0;
+        int next = 0;
+        for (int chunk = SortedLongSet.chunkFor(chunks, chunkCount, probe[0]);
+             chunk < chunkCount && next < probe.length; chunk++) {
+            long[] values = chunks[chunk];
+            int end = chunkSizes[chunk];
+            int index = 0;
+            while (index < end && next < probe.length) {
+                long value = values[index];
+                long wanted = probe[next];
+                result[count] = value;
+                count += value == wanted ? 1 : 0;
+                index += value <= wanted ? 1 : 0;
+                next += value >= wanted ? 1 : 0;
+            }
+        }
+        return count;
+    }
+
+    private static int bitmap(long[] probe, long[][] chunks, int[] chunkSizes, int chunkCount, long[] result) {
+        long base = probe[0];
+        long span = probe[probe.length - 1] - base;
+        long[] bits = new long[(int) (span >>> 6) + 1];
+        for (long value : probe) {
+            long offset = value - base;
+            bits[(int) (offset >>> 6)] |= 1L << offset;
+        }
+
+        int count = 0;
+        for (int chunk = SortedLongSet.chunkFor(chunks, chunkCount, base); chunk < chunkCount; chunk++) {
+            long[] values = chunks[chunk];
+            if (values[0] - base > span) {
+                break;
+            }
+            for (int i = 0, end = chunkSizes[chunk]; i < end; i++) {
+                long offset = values[i] - base;
+                if (Long.compareUnsigned(offset, span) <= 0 && (bits[(int) (offset >>> 6)] & 1L << offset) != 0) {
+                    result[count++] = values[i];
+                }
+            }
+        }
+        return count;
+    }
+
+    private static int gallop(long[] probe, long[][] chunks, int[] chunkSizes, int chunkCount, long[] result) {
+        int count = 0;
+        int chunk = SortedLongSet.chunkFor(chunks, chunkCount, probe[0]);
+        int index = 0;
+        for (long value : probe) {
+            if (chunk + 1 < chunkCount && chunks[chunk + 1][0] <= value) {
+                chunk = lastChunkStartingAtOrBefore(chunks, chunk + 1, chunkCount, value);
+                index = 0;
+            }
+            index = lowerBound(chunks[chunk], index, chunkSizes[chunk], value);
+            if (index < chunkSizes[chunk] && chunks[chunk][index] == value) {
+                result[count++] = value;
+                index++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Последний блок, начинающийся не позже {@code value}, при условии что блок {@code from} таков.
+     */
+    private static int lastChunkStartingAtOrBefore(long[][] chunks, int from, int chunkCount, long value) {
+        int low = from;
+        int step = 1;
+        while (low + step < chunkCount && chunks[low + step][0] <= value) {
+            low += step;
+            step <<= 1;
+        }
+        int high = Math.min(low + step, chunkCount) - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (chunks[middle][0] <= value) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Первая позиция в {@code [from, to)} со значением не меньше {@code value}.
+     */
+    private static int lowerBound(long[] values, int from, int to, long value) {
+        if (from >= to || values[from] >= value) {
+            return from;
+        }
+        int low = from;
+        int step = 1;
+        while (low + step < to && values[low + step] < value) {
+            low += step;
+            step <<= 1;
+        }
+        int high = Math.min(low + step, to);
+        low++;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,315 @@
+package ru.yandex.practicum.filmorate.util;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Компактное потокобезопасное множество id без упаковки в {@link Long}.
+ * Значения хранятся в отсортированных блоках {@code long[]} ограниченного размера: ребро графа (лайк или дружба)
+ * занимает около 8 байт вместо ~50 у {@code HashSet<Long>}, а вставка сдвигает не весь массив, а только один блок.
+ * Проверка принадлежности выполняется оптимистичным чтением без блокировки, итерация идёт по снимку.
+ */
+public class SortedLongSet extends AbstractSet<Long> {
+    static final int CHUNK_CAPACITY = 1024;
+    private static final int INITIAL_CHUNK_CAPACITY = 4;
+    private static final long[][] NO_CHUNKS = new long[0][];
+    private static final int[] NO_SIZES = new int[0];
+
+    private final StampedLock lock = new StampedLock();
+
+    private long[][] chunks = NO_CHUNKS;
+    private int[] chunkSizes = NO_SIZES;
+    private int chunkCount;
+    private volatile int size;
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(Object value) {
+        return value instanceof Long longValue && contains(longValue.longValue());
+    }
+
+    public boolean contains(long value) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                boolean found = find(chunks, chunkSizes, chunkCount, value);
+                if (lock.validate(stamp)) {
+                    return found;
+                }
+            } catch (RuntimeException ignored) {
+                // массивы поменялись во время оптимистичного чтения — повторим под блокировкой
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return find(chunks, chunkSizes, chunkCount, value);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean add(Long value) {
+        return add(value.longValue());
+    }
+
+    public boolean add(long value) {
+        long stamp = lock.writeLock();
+        try {
+            return insert(value);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean remove(Object value) {
+        return value instanceof Long longValue && remove(longValue.longValue());
+    }
+
+    public boolean remove(long value) {
+        long stamp = lock.writeLock();
+        try {
+            return delete(value);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            chunks = NO_CHUNKS;
+            chunkSizes = NO_SIZES;
+            chunkCount = 0;
+            size = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Возвращает отсортированную копию значений.
+     */
+    public long[] toLongArray() {
+        long stamp = lock.readLock();
+        try {
+            long[] result = new long[size];
+            int offset = 0;
+            for (int i = 0; i < chunkCount; i++) {
+                System.arraycopy(chunks[i], 0, result, offset, chunkSizes[i]);
+                offset += chunkSizes[i];
+            }
+            return result;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Возвращает по возрастанию не более {@code limit} значений, больших {@code value}.
+     */
+    public long[] after(long value, int limit) {
+        long stamp = lock.readLock();
+        try {
+            if (chunkCount == 0) {
+                return new long[0];
+            }
+            int chunk = chunkFor(chunks, chunkCount, value);
+            int index = Arrays.binarySearch(chunks[chunk], 0, chunkSizes[chunk], value);
+            index = index >= 0 ? index + 1 : -(index + 1);
+            long[] result = new long[Math.min(limit, size)];
+            int count = 0;
+            while (count < result.length && chunk < chunkCount) {
+                int copied = Math.min(result.length - count, chunkSizes[chunk] - index);
+                System.arraycopy(chunks[chunk], index, result, count, copied);
+                count += copied;
+                chunk++;
+                index = 0;
+            }
+            return count == result.length ? result : Arrays.copyOf(result, count);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Возвращает отсортированное пересечение с другим множеством. Меньшее множество копируется,
+     * большее читается на месте под блокировкой чтения; способ пересечения выбирается по размерам, см. {@link LongIntersection}.
+     */
+    public long[] intersect(SortedLongSet other) {
+        if (other == this) {
+            return toLongArray();
+        }
+        SortedLongSet larger = other.size > size ? other : this;
+        long[] probe = (larger == this ? other : this).toLongArray();
+        if (probe.length == 0) {
+            return probe;
+        }
+        long stamp = larger.lock.readLock();
+        try {
+            return LongIntersection.intersect(probe, larger.chunks, larger.chunkSizes, larger.chunkCount, larger.size);
+        } finally {
+            larger.lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Iterator<Long> iterator() {
+        long[] snapshot = toLongArray();
+        return new Iterator<>() {
+            private int next;
+            private boolean canRemove;
+
+            @Override
+            public boolean hasNext() {
+                return next < snapshot.length;
+            }
+
+            @Override
+            public Long next() {
+                if (next >= snapshot.length) {
+                    throw new NoSuchElementException();
+                }
+                canRemove = true;
+                return snapshot[next++];
+            }
+
+            @Override
+            public void remove() {
+                if (!canRemove) {
+                    throw new IllegalStateException();
+                }
+                canRemove = false;
+                SortedLongSet.this.remove(snapshot[next - 1]);
+            }
+        };
+    }
+
+    private static boolean find(long[][] chunks, int[] chunkSizes, int chunkCount, long value) {
+        if (chunkCount == 0) {
+            return false;
+        }
+        int chunk = chunkFor(chunks, chunkCount, value);
+        return Arrays.binarySearch(chunks[chunk], 0, chunkSizes[chunk], value) >= 0;
+    }
+
+    static int chunkFor(long[][] chunks, int chunkCount, long value) {
+        int low = 0;
+        int high = chunkCount - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (chunks[middle][0] <= value) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private boolean insert(long value) {
+        if (chunkCount == 0) {
+            chunks = new long[][]{new long[INITIAL_CHUNK_CAPACITY]};
+            chunkSizes = new int[1];
+            chunkCount = 1;
+        }
+        int chunk = chunkFor(chunks, chunkCount, value);
+        int chunkSize = chunkSizes[chunk];
+        int position = Arrays.binarySearch(chunks[chunk], 0, chunkSize, value);
+        if (position >= 0) {
+            return false;
+        }
+        position = -position - 1;
+
+        if (chunkSize == CHUNK_CAPACITY) {
+            if (chunk == chunkCount - 1 && position == chunkSize) {
+                // последовательные id: открываем новый блок, а не делим заполненный пополам
+                insertChunk(chunk + 1, new long[INITIAL_CHUNK_CAPACITY], 0);
+                chunk++;
+                position = 0;
+            } else {
+                split(chunk);
+                if (position > chunkSizes[chunk]) {
+                    position -= chunkSizes[chunk];
+                    chunk++;
+                }
+            }
+            chunkSize = chunkSizes[chunk];
+        }
+
+        long[] values = chunks[chunk];
+        if (chunkSize == values.length) {
+            values = Arrays.copyOf(values, Math.min(CHUNK_CAPACITY, chunkSize + (chunkSize >> 1) + 1));
+            chunks[chunk] = values;
+        }
+        System.arraycopy(values, position, values, position + 1, chunkSize - position);
+        values[position] = value;
+        chunkSizes[chunk] = chunkSize + 1;
+        size++;
+        return true;
+    }
+
+    private boolean delete(long value) {
+        if (chunkCount == 0) {
+            return false;
+        }
+        int chunk = chunkFor(chunks, chunkCount, value);
+        long[] values = chunks[chunk];
+        int chunkSize = chunkSizes[chunk];
+        int position = Arrays.binarySearch(values, 0, chunkSize, value);
+        if (position < 0) {
+            return false;
+        }
+        System.arraycopy(values, position + 1, values, position, chunkSize - position - 1);
+        chunkSizes[chunk] = chunkSize - 1;
+        size--;
+
+        if (chunkSizes[chunk] == 0) {
+            removeChunk(chunk);
+        } else if (values.length > INITIAL_CHUNK_CAPACITY && chunkSizes[chunk] < values.length / 4) {
+            chunks[chunk] = Arrays.copyOf(values, Math.max(INITIAL_CHUNK_CAPACITY, chunkSizes[chunk] * 2));
+        }
+        return true;
+    }
+
+    private void split(int chunk) {
+        long[] values = chunks[chunk];
+        int half = CHUNK_CAPACITY / 2;
+        long[] upper = Arrays.copyOfRange(values, half, CHUNK_CAPACITY + half / 2);
+        insertChunk(chunk + 1, upper, CHUNK_CAPACITY - half);
+        chunkSizes[chunk] = half;
+    }
+
+    private void insertChunk(int index, long[] values, int valuesSize) {
+        if (chunkCount == chunks.length) {
+            int capacity = Math.max(2, chunkCount + (chunkCount >> 1));
+            chunks = Arrays.copyOf(chunks, capacity);
+            chunkSizes = Arrays.copyOf(chunkSizes, capacity);
+        }
+        System.arraycopy(chunks, index, chunks, index + 1, chunkCount - index);
+        System.arraycopy(chunkSizes, index, chunkSizes, index + 1, chunkCount - index);
+        chunks[index] = values;
+        chunkSizes[index] = valuesSize;
+        chunkCount++;
+    }
+
+    private void removeChunk(int index) {
+        if (chunkCount == 1) {
+            chunks[0] = new long[INITIAL_CHUNK_CAPACITY];
+            return;
+        }
+        System.arraycopy(chunks, index + 1, chunks, index, chunkCount - index - 1);
+        System.arraycopy(chunkSizes, index + 1, chunkSizes, index, chunkCount - index - 1);
+        chunkCount--;
+        chunks[chunkCount] = null;
+    }
+}
@@ -0,0 +1,149 @@
+package ru.yandex.practicum.filmorate.util;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Самые частые id потока по алгоритму Space-Saving: отслеживается не больше {@code capacity} id, и новый id
+ * вытесняет id с наименьшим счётчиком, наследуя его значение как погрешность. Счётчик отслеживаемого id
+ * не меньше настоящего значения и превышает его не больше чем на {@code total / capacity}, поэтому любой id
+ * с частотой выше {@code total / capacity} гарантированно отслеживается.
+ * <p>
+ * Сводки складываются {@link #merge} по правилу объединяемых сводок: id, которого нет в заполненной сводке,
+ * получает её минимальный счётчик как верхнюю оценку. Сводка не потокобезопасна: её защищает владелец.
+ */
+public class SpaceSaving {
+    /**
+     * Оценка памяти на отслеживаемый id: узел {@code HashMap} с ключом {@code Long}, запись {@link Counter}
+     * и узел {@code TreeMap} под {@code TreeSet}.
+     */
+    public static final int BYTES_PER_COUNTER = 128;
+
+    private static final Comparator<Counter> ORDER = Comparator.comparingLong(Counter::count)
+            .thenComparingLong(Counter::item);
+
+    private final int capacity;
+    private final Map<Long, Counter> counters = new HashMap<>();
+    private final NavigableSet<Counter> ranking = new TreeSet<>(ORDER);
+
+    public SpaceSaving(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Размер сводки должен быть положительным");
+        }
+        this.capacity = capacity;
+    }
+
+    public void add(long item, long count) {
+        Counter current = counters.get(item);
+        if (current != null) {
+            replace(current, new Counter(item, current.count() + count, current.error()));
+        } else if (counters.size() < capacity) {
+            put(new Counter(item, count, 0));
+        } else {
+            Counter evicted = ranking.pollFirst();
+            counters.remove(evicted.item());
+            put(new Counter(item, evicted.count() + count, evicted.count()));
+        }
+    }
+
+    /**
+     * Уменьшает счётчик отслеживаемого id; уменьшение неотслеживаемого id теряется, и его оценка остаётся сверху.
+     */
+    public void subtract(long item, long count) {
+        Counter current = counters.get(item);
+        if (current == null) {
+            return;
+        }
+        if (current.count() <= count) {
+            ranking.remove(current);
+            counters.remove(item);
+        } else {
+            replace(current, new Counter(item, current.count() - count, Math.min(current.error(),
+                    current.count() - count)));
+        }
+    }
+
+    public boolean contains(long item) {
+        return counters.containsKey(item);
+    }
+
+    /**
+     * Верхняя оценка частоты id: для неотслеживаемого id в заполненной сводке — наименьший счётчик.
+     */
+    public long estimate(long item) {
+        Counter current = counters.get(item);
+        if (current != null) {
+            return current.count();
+        }
+        return counters.size() < capacity || ranking.isEmpty() ? 0 : ranking.first().count();
+    }
+
+    /**
+     * Отслеживаемые id по убыванию счётчика, при равенстве — по возрастанию id.
+     */
+    public List<Counter> counters() {
+        return ranking.stream()
+                .sorted(Comparator.comparingLong(Counter::count).reversed().thenComparingLong(Counter::item))
+                .toList();
+    }
+
+    /**
+     * Добавляет другую сводку: счётчики общих id складываются, id из одной сводки получают верхнюю оценку
+     * по другой, и остаются {@code capacity} id с наибольшими счётчиками.
+     */
+    public void merge(SpaceSaving other) {
+        Map<Long, Counter> merged = new HashMap<>();
+        for (Counter counter : counters.values()) {
+            Counter theirs = other.counters.get(counter.item());
+            long otherCount = theirs != null ? theirs.count() : other.estimate(counter.item());
+            long otherError = theirs != null ? theirs.error() : otherCount;
+            merged.put(counter.item(), new Counter(counter.item(), counter.count() + otherCount,
+                    counter.error() + otherError));
+        }
+        for (Counter theirs : other.counters.values()) {
+            if (!merged.containsKey(theirs.item())) {
+                long ownCount = estimate(theirs.item());
+                merged.put(theirs.item(), new Counter(theirs.item(), theirs.count() + ownCount,
+                        theirs.error() + ownCount));
+            }
+        }
+        counters.clear();
+        ranking.clear();
+        merged.values().stream()
+                .sorted(ORDER.reversed())
+                .limit(capacity)
+                .forEach(this::put);
+    }
+
+    public int size() {
+        return counters.size();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public long bytes() {
+        return (long) counters.size() * BYTES_PER_COUNTER;
+    }
+
+    private void replace(Counter previous, Counter updated) {
+        ranking.remove(previous);
+        put(updated);
+    }
+
+    private void put(Counter counter) {
+        counters.put(counter.item(), counter);
+        ranking.add(counter);
+    }
+
+    /**
+     * Отслеживаемый id: {@code count} — верхняя оценка частоты, {@code error} — на сколько она может её превышать.
+     */
+    public record Counter(long item, long count, long error) {
+    }
+}
@@ -0,0 +1,111 @@
+package ru.yandex.practicum.filmorate.util;
+
+import java.util.Arrays;
+
+/**
+ * Счётчик изменений в скользящих окнах последнего часа, суток и недели. Изменения складываются в кольца
+ * поминутных (60) и почасовых (168) корзин, а суммы окон поддерживаются на ходу: добавление стоит O(1),
+ * а сдвиг времени вычитает из сумм только вышедшие из окна корзины. Окно часа точно до минуты,
+ * окна суток и недели — до часа: текущий неполный час плюс 23 или 167 предыдущих.
+ * <p>
+ * Время — номер минуты от начала эпохи. Счётчик не потокобезопасен: его защищает владелец.
+ */
+public class TrendCounter {
+    public static final int MINUTE_BUCKETS = 60;
+    public static final int HOUR_BUCKETS = 168;
+    private static final int DAY_HOURS = 24;
+
+    private final int[] minutes = new int[MINUTE_BUCKETS];
+    private final int[] hours = new int[HOUR_BUCKETS];
+    private long minute;
+    private int lastHour;
+    private int lastDay;
+    private int lastWeek;
+
+    public TrendCounter(long minute) {
+        this.minute = minute;
+    }
+
+    /**
+     * Сдвигает счётчик к минуте {@code now} и учитывает изменение в её корзинах. Опоздавшее изменение
+     * с минутой раньше текущей попадает в текущие корзины.
+     */
+    public void add(long now, int delta) {
+        roll(now);
+        minutes[Math.floorMod(minute, MINUTE_BUCKETS)] += delta;
+        hours[Math.floorMod(minute / MINUTE_BUCKETS, HOUR_BUCKETS)] += delta;
+        lastHour += delta;
+        lastDay += delta;
+        lastWeek += delta;
+    }
+
+    /**
+     * Сдвигает окна к минуте {@code now}, обнуляя вышедшие из них корзины.
+     *
+     * @return изменилась ли сумма хотя бы одного окна
+     */
+    public boolean roll(long now) {
+        if (now <= minute) {
+            return false;
+        }
+        int hourBefore = lastHour;
+        int dayBefore = lastDay;
+        int weekBefore = lastWeek;
+        rollMinutes(now);
+        rollHours(minute / MINUTE_BUCKETS, now / MINUTE_BUCKETS);
+        minute = now;
+        return hourBefore != lastHour || dayBefore != lastDay || weekBefore != lastWeek;
+    }
+
+    private void rollMinutes(long now) {
+        if (now - minute >= MINUTE_BUCKETS) {
+            Arrays.fill(minutes, 0);
+            lastHour = 0;
+            return;
+        }
+        for (long next = minute + 1; next <= now; next++) {
+            int bucket = Math.floorMod(next, MINUTE_BUCKETS);
+            lastHour -= minutes[bucket];
+            minutes[bucket] = 0;
+        }
+    }
+
+    /**
+     * Каждый новый час выводит из окна суток час, начавшийся сутки назад, а из окна недели — корзину,
+     * которую он занимает в кольце.
+     */
+    private void rollHours(long from, long to) {
+        if (to - from >= HOUR_BUCKETS) {
+            Arrays.fill(hours, 0);
+            lastDay = 0;
+            lastWeek = 0;
+            return;
+        }
+        for (long next = from + 1; next <= to; next++) {
+            lastDay -= hours[Math.floorMod(next - DAY_HOURS, HOUR_BUCKETS)];
+            int bucket = Math.floorMod(next, HOUR_BUCKETS);
+            lastWeek -= hours[bucket];
+            hours[bucket] = 0;
+        }
+    }
+
+    public int lastHour() {
+        return lastHour;
+    }
+
+    public int lastDay() {
+        return lastDay;
+    }
+
+    public int lastWeek() {
+        return lastWeek;
+    }
+
+    /**
+     * Все корзины пусты: счётчик можно выбросить, ничего не потеряв.
+     */
+    public boolean isEmpty() {
+        return Arrays.stream(hours).allMatch(count -> count == 0)
+                && Arrays.stream(minutes).allMatch(count -> count == 0);
+    }
+}
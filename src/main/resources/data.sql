@@ -0,0 +1,14 @@
+MERGE INTO mpa_ratings (id, name, description) KEY (id) VALUES
+    (1, 'G', 'У фильма нет возрастных ограничений'),
+    (2, 'PG', 'Детям рекомендуется смотреть фильм с родителями'),
+    (3, 'PG_13', 'Детям до 13 лет просмотр не желателен'),
+    (4, 'R', 'Лицам до 17 лет просматривать фильм можно только в присутствии взрослого'),
+    (5, 'NC_17', 'Лицам до 18 лет просмотр запрещён');
+
+MERGE INTO genres (id, name) KEY (id) VALUES
+    (1, 'COMEDY'),
+    (2, 'DRAMA'),
+    (3, 'CARTOON'),
+    (4, 'THRILLER'),
+    (5, 'DOCUMENTARY'),
+    (6, 'ACTION');
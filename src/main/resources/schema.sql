@@ -0,0 +1,57 @@
+CREATE TABLE IF NOT EXISTS mpa_ratings (
+    id          INT PRIMARY KEY,
+    name        VARCHAR(16) NOT NULL UNIQUE,
+    description VARCHAR(255)
+);
+
+CREATE TABLE IF NOT EXISTS genres (
+    id   INT PRIMARY KEY,
+    name VARCHAR(32) NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS films (
+    id            BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name          VARCHAR(255) NOT NULL,
+    description   VARCHAR(200),
+    release_date  DATE,
+    duration      INT,
+    mpa_rating_id INT REFERENCES mpa_ratings (id),
+    like_count    INT NOT NULL DEFAULT 0,
+    version       BIGINT NOT NULL DEFAULT 1
+);
+
+CREATE INDEX IF NOT EXISTS films_popularity_idx ON films (like_count DESC, id);
+CREATE INDEX IF NOT EXISTS films_mpa_popularity_idx ON films (mpa_rating_id, like_count DESC, id);
+CREATE INDEX IF NOT EXISTS films_release_date_idx ON films (release_date);
+
+CREATE TABLE IF NOT EXISTS film_genres (
+    film_id  BIGINT NOT NULL REFERENCES films (id) ON DELETE CASCADE,
+    genre_id INT    NOT NULL REFERENCES genres (id),
+    PRIMARY KEY (film_id, genre_id)
+);
+
+CREATE INDEX IF NOT EXISTS film_genres_genre_idx ON film_genres (genre_id, film_id);
+
+CREATE TABLE IF NOT EXISTS users (
+    id       BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    email    VARCHAR(255) NOT NULL,
+    login    VARCHAR(255) NOT NULL,
+    name     VARCHAR(255),
+    birthday DATE,
+    version  BIGINT NOT NULL DEFAULT 1
+);
+
+CREATE TABLE IF NOT EXISTS likes (
+    film_id BIGINT NOT NULL REFERENCES films (id) ON DELETE CASCADE,
+    user_id BIGINT NOT NULL REFERENCES users (id) ON DELETE CASCADE,
+    PRIMARY KEY (film_id, user_id)
+);
+
+CREATE INDEX IF NOT EXISTS likes_user_idx ON likes (user_id);
+
+CREATE TABLE IF NOT EXISTS friends (
+    user_id   BIGINT      NOT NULL REFERENCES users (id) ON DELETE CASCADE,
+    friend_id BIGINT      NOT NULL REFERENCES users (id) ON DELETE CASCADE,
+    status    VARCHAR(16) NOT NULL,
+    PRIMARY KEY (user_id, friend_id)
+);
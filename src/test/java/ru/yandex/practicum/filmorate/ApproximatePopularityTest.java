@@ -0,0 +1,165 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {"filmorate.popularity.approximate.enabled=true",
+        "filmorate.popularity.approximate.capacity=64", "filmorate.popularity.approximate.shards=4"})
+@AutoConfigureMockMvc
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+class ApproximatePopularityTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private FilmStorage filmStorage;
+
+    @Test
+    void shouldServePopularFilmsFromApproximateTopAndFollowLikeChanges() throws Exception {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            users.add(createUser("approximateLiker" + i));
+        }
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            films.add(createFilm("Approximate " + i));
+        }
+        for (int i = 0; i < users.size(); i++) {
+            for (int j = 0; j <= i; j++) {
+                mockMvc.perform(put("/films/{id}/like/{userId}", films.get(j + 1).getId(), users.get(i).getId()))
+                        .andExpect(status().isOk());
+            }
+        }
+
+        mockMvc.perform(get("/films/popular").param("count", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].id").value(films.get(1).getId()))
+                .andExpect(jsonPath("$[1].id").value(films.get(2).getId()))
+                .andExpect(jsonPath("$[2].id").value(films.get(3).getId()));
+
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(delete("/films/{id}/like/{userId}", films.get(1).getId(), users.get(i).getId()))
+                    .andExpect(status().isOk());
+        }
+        mockMvc.perform(get("/films/popular").param("count", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(films.get(2).getId()))
+                .andExpect(jsonPath("$[1].id").value(films.get(3).getId()));
+    }
+
+    @Test
+    void shouldPadWithFilmsWithoutLikesAndKeepFilteredTopExact() throws Exception {
+        User user = createUser("approximatePadding");
+        Film liked = createFilm("Approximate padded");
+        mockMvc.perform(put("/films/{id}/like/{userId}", liked.getId(), user.getId()))
+                .andExpect(status().isOk());
+        int films = filmStorage.getFilms().size();
+
+        mockMvc.perform(get("/films/popular").param("count", "64"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(Math.min(films, 64)));
+        mockMvc.perform(get("/films/popular").param("count", "65"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/films/popular").param("count", "-1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+        assertTrue(filmStorage.getTopFilms(64, null, MpaRating.PG, 2001).stream()
+                .anyMatch(film -> film.getId().equals(liked.getId())));
+        assertThrows(IllegalStateException.class, () -> filmStorage.getTopFilms(1));
+    }
+
+    @Test
+    void shouldSeedFromStorageRecoveredFromWriteAheadLog(@TempDir Path directory) {
+        long filmId;
+        try (ConfigurableApplicationContext context = start(directory)) {
+            FilmService films = context.getBean(FilmService.class);
+            User user = context.getBean(UserService.class).create(User.builder()
+                    .email("durable@mail.com")
+                    .login("durable")
+                    .birthday(LocalDate.of(1990, 1, 1))
+                    .build());
+            filmId = films.create(Film.builder()
+                    .name("Durable")
+                    .description("Recovered before the approximate top is seeded")
+                    .releaseDate(LocalDate.of(2001, 1, 1))
+                    .duration(100)
+                    .mpaRating(MpaRating.PG)
+                    .build()).getId();
+            films.addLike(filmId, user.getId());
+        }
+
+        try (ConfigurableApplicationContext context = start(directory)) {
+            assertEquals(List.of(filmId),
+                    context.getBean(FilmService.class).getTopFilms(10).stream().map(Film::getId).toList());
+        }
+    }
+
+    private static ConfigurableApplicationContext start(Path directory) {
+        return new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--filmorate.popularity.approximate.enabled=true",
+                        "--filmorate.storage.wal.enabled=true",
+                        "--filmorate.storage.wal.directory=" + directory,
+                        "--filmorate.storage.wal.fsync=false");
+    }
+
+    private User createUser(String login) throws Exception {
+        User user = User.builder()
+                .email(login + "@mail.com")
+                .login(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+        return objectMapper.readValue(mockMvc.perform(post("/users")
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(user)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(), User.class);
+    }
+
+    private Film createFilm(String name) throws Exception {
+        Film film = Film.builder()
+                .name(name)
+                .description("Ranked by the approximate top")
+                .releaseDate(LocalDate.of(2001, 1, 1))
+                .duration(100)
+                .mpaRating(MpaRating.PG)
+                .build();
+        return objectMapper.readValue(mockMvc.perform(post("/films")
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(film)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(), Film.class);
+    }
+}
@@ -0,0 +1,166 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.exception.OverloadedException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.IngestPipeline;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {"filmorate.ingest.async.enabled=true", "filmorate.ingest.async.shards=2"})
+@AutoConfigureMockMvc
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+class AsyncIngestTest {
+    private static final String TOKEN_HEADER = "X-Write-Token";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private FilmService filmService;
+
+    @Autowired
+    private UserService userService;
+
+    @Test
+    void shouldAcceptLikesAndFriendshipsAndReadOwnWrites() throws Exception {
+        User user = createUser("async");
+        User friend = createUser("asyncFriend");
+        Film film = createFilm();
+
+        String liked = mockMvc.perform(put("/films/{id}/like/{userId}", film.getId(), user.getId()))
+                .andExpect(status().isAccepted())
+                .andExpect(header().exists(TOKEN_HEADER))
+                .andReturn().getResponse().getHeader(TOKEN_HEADER);
+        mockMvc.perform(get("/films/{id}", film.getId()).header(TOKEN_HEADER, liked))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.movieRating.length()").value(1));
+        mockMvc.perform(put("/films/{id}/like/{userId}", film.getId(), user.getId()))
+                .andExpect(status().isAccepted());
+
+        String befriended = mockMvc.perform(put("/users/{id}/friends/{friendId}", user.getId(), friend.getId()))
+                .andExpect(status().isAccepted())
+                .andReturn().getResponse().getHeader(TOKEN_HEADER);
+        String unliked = mockMvc.perform(delete("/films/{id}/like/{userId}", film.getId(), user.getId()))
+                .andExpect(status().isAccepted())
+                .andReturn().getResponse().getHeader(TOKEN_HEADER);
+        mockMvc.perform(get("/users/{id}/friends", user.getId()).header(TOKEN_HEADER, befriended))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(friend.getId()));
+        mockMvc.perform(get("/films/{id}", film.getId()).header(TOKEN_HEADER, unliked))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.movieRating.length()").value(0));
+    }
+
+    @Test
+    void shouldRejectMutationsOfMissingEntitiesSynchronously() throws Exception {
+        User user = createUser("asyncMissing");
+
+        mockMvc.perform(put("/films/{id}/like/{userId}", 9_999, user.getId()))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(put("/users/{id}/friends/{friendId}", user.getId(), user.getId()))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/users/{id}", user.getId()).header(TOKEN_HEADER, "broken"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldApplyEveryLikeAcceptedWhileStopping() throws Exception {
+        Film film = createFilm();
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            userIds.add(userService.create(User.builder()
+                    .email("stopping" + i + "@mail.com")
+                    .login("stopping" + i)
+                    .birthday(LocalDate.of(1990, 1, 1))
+                    .build()).getId());
+        }
+        IngestPipeline pipeline = new IngestPipeline(filmService, userService, new SimpleMeterRegistry(), 2, 4096, 64);
+        pipeline.start();
+
+        int threads = 4;
+        Set<Long> accepted = ConcurrentHashMap.newKeySet();
+        CountDownLatch started = new CountDownLatch(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int t = 0; t < threads; t++) {
+                int offset = t;
+                executor.submit(() -> {
+                    started.countDown();
+                    for (int i = offset; i < userIds.size(); i += threads) {
+                        try {
+                            pipeline.likeAdded(film.getId(), userIds.get(i));
+                            accepted.add(userIds.get(i));
+                        } catch (OverloadedException e) {
+                            return;
+                        }
+                    }
+                });
+            }
+            started.await();
+            pipeline.stop();
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        assertTrue(filmService.findById(film.getId()).getMovieRating().containsAll(accepted));
+    }
+
+    private User createUser(String login) throws Exception {
+        User user = User.builder()
+                .email(login + "@mail.com")
+                .login(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+        return objectMapper.readValue(mockMvc.perform(post("/users")
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(user)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(), User.class);
+    }
+
+    private Film createFilm() throws Exception {
+        Film film = Film.builder()
+                .name("Async")
+                .description("Liked through the ingest pipeline")
+                .releaseDate(LocalDate.of(2001, 1, 1))
+                .duration(100)
+                .mpaRating(MpaRating.PG)
+                .build();
+        return objectMapper.readValue(mockMvc.perform(post("/films")
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(film)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(), Film.class);
+    }
+}
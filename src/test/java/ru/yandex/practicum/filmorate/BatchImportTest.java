@@ -0,0 +1,115 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+class BatchImportTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void shouldImportBatchesAndReportEveryItem() throws Exception {
+        List<User> users = List.of(user("alpha"), user("bad login"), user("beta"));
+        BatchResult[] createdUsers = postBatch("/users/batch", "application/json", objectMapper.writeValueAsString(users));
+        long alpha = createdUsers[0].id();
+        long beta = createdUsers[2].id();
+
+        String films = List.of(film("Batch one"), film(""), film("Batch two")).stream()
+                .map(this::json)
+                .collect(Collectors.joining("\n"));
+        BatchResult[] createdFilms = postBatch("/films/batch", "application/x-ndjson", films);
+        long one = createdFilms[0].id();
+        long two = createdFilms[2].id();
+
+        List<Like> likes = List.of(new Like(one, alpha), new Like(one, beta), new Like(one, alpha),
+                new Like(two, beta), new Like(two, -1L));
+        BatchResult[] likeResults = postBatch("/films/likes/batch", "application/json", objectMapper.writeValueAsString(likes));
+
+        List<Friendship> friendships = List.of(new Friendship(alpha, beta), new Friendship(alpha, alpha));
+        BatchResult[] friendResults = postBatch("/users/friends/batch", "application/json",
+                objectMapper.writeValueAsString(friendships));
+
+        mockMvc.perform(get("/films/{id}", one))
+                .andExpect(jsonPath("$.movieRating", containsInAnyOrder((int) alpha, (int) beta)));
+        mockMvc.perform(get("/users/{id}/friends", beta))
+                .andExpect(jsonPath("$[0].id").value(alpha));
+        mockMvc.perform(get("/films/{id}", two))
+                .andExpect(jsonPath("$.movieRating", containsInAnyOrder((int) beta)));
+
+        assertResults(createdUsers, true, false, true);
+        assertResults(createdFilms, true, false, true);
+        assertResults(likeResults, true, true, false, true, false);
+        assertResults(friendResults, true, false);
+    }
+
+    private BatchResult[] postBatch(String path, String contentType, String body) throws Exception {
+        String content = mockMvc.perform(post(path)
+                        .contentType(contentType)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        return objectMapper.readValue(content, BatchResult[].class);
+    }
+
+    private static void assertResults(BatchResult[] results, boolean... ok) {
+        assertEquals(ok.length, results.length);
+        for (int i = 0; i < ok.length; i++) {
+            assertEquals(i, results[i].index());
+            assertEquals(ok[i], results[i].error() == null, String.valueOf(results[i]));
+        }
+    }
+
+    private String json(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static User user(String login) {
+        return User.builder()
+                .email(login.replace(' ', '.') + "@mail.com")
+                .login(login)
+                .birthday(LocalDate.of(1995, 5, 5))
+                .build();
+    }
+
+    private static Film film(String name) {
+        return Film.builder()
+                .name(name)
+                .description("Imported")
+                .releaseDate(LocalDate.of(2001, 9, 1))
+                .duration(120)
+                .build();
+    }
+}
@@ -0,0 +1,178 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.StorageJournal;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.cluster.Cluster;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterFilmStorage;
+import ru.yandex.practicum.filmorate.storage.cluster.ClusterUserStorage;
+import ru.yandex.practicum.filmorate.storage.cluster.HashRing;
+import ru.yandex.practicum.filmorate.storage.cluster.LocalClusterTransport;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClusterTest {
+    private static final int USERS = 200;
+    private static final int FILMS = 300;
+    private static final List<String> NODES = List.of("node-1", "node-2", "node-3");
+
+    private LocalClusterTransport transport;
+    private Cluster cluster;
+    private ClusterFilmStorage films;
+    private ClusterUserStorage users;
+    private InMemoryFilmStorage expectedFilms;
+    private InMemoryUserStorage expectedUsers;
+
+    @BeforeEach
+    void setUp() {
+        transport = new LocalClusterTransport();
+        NODES.forEach(transport::start);
+        cluster = new Cluster(transport, new HashRing(64, NODES));
+        films = new ClusterFilmStorage(cluster);
+        users = new ClusterUserStorage(cluster);
+        expectedFilms = new InMemoryFilmStorage(StorageJournal.NONE);
+        expectedUsers = new InMemoryUserStorage(StorageJournal.NONE);
+
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < USERS; i++) {
+            users.create(user(i));
+            expectedUsers.create(user(i));
+        }
+        for (int i = 0; i < FILMS; i++) {
+            films.create(film(i));
+            expectedFilms.create(film(i));
+        }
+        for (int i = 0; i < 3_000; i++) {
+            long filmId = 1 + (long) Math.sqrt(random.nextInt(FILMS * FILMS));
+            long userId = 1 + random.nextInt(USERS);
+            assertEquals(expectedFilms.addLike(filmId, userId), films.addLike(filmId, userId));
+        }
+        for (int i = 0; i < 1_000; i++) {
+            long userId = 1 + random.nextInt(USERS);
+            long friendId = 1 + random.nextInt(USERS);
+            if (userId != friendId) {
+                assertEquals(expectedUsers.addFriend(userId, friendId), users.addFriend(userId, friendId));
+            }
+        }
+    }
+
+    @Test
+    void shouldSpreadEntitiesAndMatchSingleNodeResults() {
+        for (String node : NODES) {
+            assertTrue(transport.node(node).films().count() > 0, "На узле " + node + " нет фильмов");
+            assertTrue(transport.node(node).users().count() > 0, "На узле " + node + " нет пользователей");
+        }
+        assertMatchesSingleNode();
+
+        for (long userId = 1; userId <= 20; userId++) {
+            assertEquals(expectedUsers.deleteFriend(userId, userId + 1), users.deleteFriend(userId, userId + 1));
+        }
+        assertTrue(users.delete(7L));
+        expectedUsers.delete(7L);
+        films.deleteLikesOf(7);
+        expectedFilms.deleteLikesOf(7);
+        assertFalse(users.findById(7L).isPresent());
+        assertMatchesSingleNode();
+    }
+
+    @Test
+    void shouldMoveOnlyEntitiesOfJoiningAndLeavingNodes() {
+        Map<Long, String> owners = new HashMap<>();
+        for (long id = 1; id <= FILMS; id++) {
+            owners.put(id, cluster.owner(id));
+        }
+
+        transport.start("node-4");
+        cluster.join("node-4");
+        int moved = 0;
+        for (long id = 1; id <= FILMS; id++) {
+            if (!owners.get(id).equals(cluster.owner(id))) {
+                assertEquals("node-4", cluster.owner(id));
+                moved++;
+            }
+        }
+        assertTrue(moved > 0 && moved < FILMS / 2, "Перенесено фильмов: " + moved);
+        assertPlacedByRing();
+        assertMatchesSingleNode();
+
+        cluster.leave("node-1");
+        transport.stop("node-1");
+        for (long id = 1; id <= FILMS; id++) {
+            if (!owners.get(id).equals("node-1")) {
+                assertTrue(List.of(owners.get(id), "node-4").contains(cluster.owner(id)));
+            }
+        }
+        assertPlacedByRing();
+        assertMatchesSingleNode();
+    }
+
+    private void assertPlacedByRing() {
+        for (String node : cluster.nodes()) {
+            transport.node(node).films().forEachFilm(film -> assertEquals(node, cluster.owner(film.getId())));
+            transport.node(node).users().forEachUser(user -> assertEquals(node, cluster.owner(user.getId())));
+        }
+    }
+
+    private void assertMatchesSingleNode() {
+        assertEquals(expectedFilms.count(), films.count());
+        assertEquals(expectedFilms.likeCount(), films.likeCount());
+        assertEquals(expectedUsers.count(), users.count());
+        assertEquals(expectedUsers.friendEdgeCount(), users.friendEdgeCount());
+        assertEquals(ids(expectedFilms.getTopFilms(25)), ids(films.getTopFilms(25)));
+        assertEquals(ids(expectedFilms.getTopFilms(5, null, MpaRating.R, null)),
+                ids(films.getTopFilms(5, null, MpaRating.R, null)));
+        for (User expected : expectedUsers.getUsers()) {
+            User user = users.findById(expected.getId()).orElseThrow();
+            assertEquals(ids(friends(expectedUsers, expected)), ids(friends(users, user)));
+            assertArrayEquals(expectedFilms.likedFilms(expected.getId()), films.likedFilms(expected.getId()));
+            User other = expectedUsers.findById(expected.getId() % USERS + 1).orElse(expected);
+            assertEquals(ids(expectedUsers.findAllById(expected.getFriends().intersect(other.getFriends()))),
+                    ids(users.findAllById(user.getFriends().intersect(
+                            users.findById(other.getId()).orElseThrow().getFriends()))));
+        }
+    }
+
+    private static List<User> friends(UserStorage storage, User user) {
+        return storage.findAllById(user.getFriends().toLongArray());
+    }
+
+    private static List<Long> ids(List<?> entities) {
+        return entities.stream()
+                .map(entity -> entity instanceof Film film ? film.getId() : ((User) entity).getId())
+                .toList();
+    }
+
+    private static User user(int i) {
+        return User.builder()
+                .email("cluster" + i + "@mail.com")
+                .login("cluster" + i)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+
+    private static Film film(int i) {
+        return Film.builder()
+                .name("Cluster " + i)
+                .description("Partitioned by consistent hashing")
+                .releaseDate(LocalDate.of(1990 + i % 30, 1, 1))
+                .duration(100)
+                .mpaRating(MpaRating.values()[i % MpaRating.values().length])
+                .build();
+    }
+}
@@ -1,6 +1,7 @@
 package ru.yandex.practicum.filmorate;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -8,15 +9,33 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.FilmGenre;
 import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.hamcrest.Matchers.hasItem;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -30,6 +49,12 @@ class FilmServiceTest {
 	@Autowired
 	private ObjectMapper objectMapper;
 
+	@Autowired
+	private FilmService filmService;
+
+	@Autowired
+	private UserService userService;
+
 	private Film film;
 
 	@BeforeEach
@@ -147,4 +172,434 @@ class FilmServiceTest {
 				.andExpect(jsonPath("$.releaseDate").value(createdFilm.getReleaseDate().toString()))
 				.andExpect(jsonPath("$.duration").value(createdFilm.getDuration()));
 	}
-}
\ No newline at end of file
+
+	@Test
+	void shouldReturnPopularFilmsOrderedByLikes() throws Exception {
+		User user = User.builder()
+				.email("fan@mail.com")
+				.login("fan")
+				.birthday(LocalDate.of(1990, 1, 1))
+				.build();
+		User createdUser = objectMapper.readValue(mockMvc.perform(post("/users")
+						.contentType("application/json")
+						.content(objectMapper.writeValueAsString(user)))
+				.andReturn().getResponse().getContentAsString(), User.class);
+		Film first = createFilm();
+		Film second = createFilm();
+
+		mockMvc.perform(get("/films/popular"))
+				.andExpect(status().isOk());
+		mockMvc.perform(put("/films/{id}/like/{userId}", second.getId(), createdUser.getId()))
+				.andExpect(status().isOk());
+
+		mockMvc.perform(get("/films/popular"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$[0].id").value(second.getId()));
+
+		mockMvc.perform(delete("/films/{id}/like/{userId}", second.getId(), createdUser.getId()))
+				.andExpect(status().isOk());
+		mockMvc.perform(put("/films/{id}/like/{userId}", first.getId(), createdUser.getId()))
+				.andExpect(status().isOk());
+
+		mockMvc.perform(get("/films/popular").param("count", "1"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(1))
+				.andExpect(jsonPath("$[0].id").value(first.getId()));
+	}
+
+	@Test
+	void shouldRecommendFilmsLikedByUsersWithSimilarTaste() throws Exception {
+		User me = createUser("me");
+		User similar = createUser("similar");
+		User other = createUser("other");
+		Film[] films = new Film[5];
+		for (int i = 0; i < films.length; i++) {
+			films[i] = createFilm();
+		}
+		like(me, films[0], films[1]);
+		like(similar, films[0], films[1], films[2], films[3]);
+		like(other, films[0], films[4]);
+
+		mockMvc.perform(get("/users/{id}/recommended-films", me.getId()))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(3))
+				.andExpect(jsonPath("$[0].id").value(films[2].getId()))
+				.andExpect(jsonPath("$[1].id").value(films[3].getId()))
+				.andExpect(jsonPath("$[2].id").value(films[4].getId()));
+
+		mockMvc.perform(delete("/films/{id}/like/{userId}", films[1].getId(), similar.getId()))
+				.andExpect(status().isOk());
+		like(other, films[1]);
+		mockMvc.perform(get("/users/{id}/recommended-films", me.getId()).param("limit", "1"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(1))
+				.andExpect(jsonPath("$[0].id").value(films[4].getId()));
+		mockMvc.perform(get("/users/{id}/recommended-films", 9999))
+				.andExpect(status().isNotFound());
+
+		// лайки не должны влиять на топ популярных в других тестах
+		unlike(me, films[0], films[1]);
+		unlike(similar, films[0], films[2], films[3]);
+		unlike(other, films[0], films[1], films[4]);
+	}
+
+	@Test
+	void shouldNotKeepLikesRacingWithUserDeletion() throws Exception {
+		Film[] films = new Film[50];
+		for (int i = 0; i < films.length; i++) {
+			films[i] = createFilm();
+		}
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			for (int round = 0; round < 5; round++) {
+				long userId = createUser("deleted-racer" + round).getId();
+				CountDownLatch started = new CountDownLatch(1);
+				Future<?> liking = executor.submit(() -> {
+					started.countDown();
+					for (Film liked : films) {
+						try {
+							filmService.addLike(liked.getId(), userId);
+						} catch (NotFoundException e) {
+							// пользователь уже удалён
+						}
+					}
+				});
+				started.await();
+				userService.delete(userId);
+				liking.get();
+
+				for (Film liked : films) {
+					assertFalse(filmService.findById(liked.getId()).getMovieRating().contains(userId));
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void shouldPageLikedFilmsAndDropLikesOfDeletedUser() throws Exception {
+		User reader = createUser("reader");
+		User friend = createUser("reader-friend");
+		Film[] films = {createFilm(), createFilm(), createFilm()};
+		like(reader, films[2], films[0], films[1]);
+		like(friend, films[1]);
+		mockMvc.perform(put("/users/{id}/friends/{friendId}", reader.getId(), friend.getId()))
+				.andExpect(status().isOk());
+
+		mockMvc.perform(get("/users/{id}/likes", reader.getId()).param("limit", "2"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(2))
+				.andExpect(jsonPath("$[0].id").value(films[0].getId()))
+				.andExpect(jsonPath("$[1].id").value(films[1].getId()));
+		mockMvc.perform(get("/users/{id}/likes", reader.getId())
+						.param("limit", "2")
+						.param("after", String.valueOf(films[1].getId())))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(1))
+				.andExpect(jsonPath("$[0].id").value(films[2].getId()));
+		mockMvc.perform(get("/users/{id}/likes", reader.getId()).param("limit", "0"))
+				.andExpect(status().isBadRequest());
+
+		mockMvc.perform(delete("/users/{id}", reader.getId()))
+				.andExpect(status().isOk());
+
+		mockMvc.perform(get("/users/{id}", reader.getId()))
+				.andExpect(status().isNotFound());
+		mockMvc.perform(get("/users/{id}/likes", reader.getId()))
+				.andExpect(status().isNotFound());
+		mockMvc.perform(get("/films/{id}", films[0].getId()))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.movieRating.length()").value(0));
+		mockMvc.perform(get("/films/{id}", films[1].getId()))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.movieRating.length()").value(1));
+		mockMvc.perform(get("/users/{id}/friends", friend.getId()))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(0));
+
+		// лайки не должны влиять на топ популярных в других тестах
+		unlike(friend, films[1]);
+	}
+
+	@Test
+	void shouldRankPopularFilmsWithinGenreMpaAndYear() throws Exception {
+		User first = createUser("facet-first");
+		User second = createUser("facet-second");
+		Film cartoon = createFilm(film.toBuilder().genres(Set.of(FilmGenre.CARTOON)).mpaRating(MpaRating.G)
+				.releaseDate(LocalDate.of(1961, 5, 1)).build());
+		Film adultCartoon = createFilm(film.toBuilder().genres(Set.of(FilmGenre.CARTOON, FilmGenre.ACTION))
+				.mpaRating(MpaRating.NC_17).releaseDate(LocalDate.of(1961, 9, 1)).build());
+		Film action = createFilm(film.toBuilder().genres(Set.of(FilmGenre.ACTION)).mpaRating(MpaRating.NC_17)
+				.releaseDate(LocalDate.of(1962, 1, 1)).build());
+		like(first, cartoon, adultCartoon);
+		like(second, adultCartoon);
+
+		mockMvc.perform(get("/films/popular").param("year", "1961"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(2))
+				.andExpect(jsonPath("$[0].id").value(adultCartoon.getId()))
+				.andExpect(jsonPath("$[1].id").value(cartoon.getId()));
+		mockMvc.perform(get("/films/popular").param("genreId", "3").param("mpa", "G").param("year", "1961"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(1))
+				.andExpect(jsonPath("$[0].id").value(cartoon.getId()));
+
+		mockMvc.perform(put("/films")
+						.contentType("application/json")
+						.content(objectMapper.writeValueAsString(adultCartoon.toBuilder()
+								.releaseDate(LocalDate.of(1962, 3, 1)).build())))
+				.andExpect(status().isOk());
+		mockMvc.perform(get("/films/popular").param("year", "1961"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(1))
+				.andExpect(jsonPath("$[0].id").value(cartoon.getId()));
+		mockMvc.perform(get("/films/popular").param("genreId", "6").param("year", "1962"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(2))
+				.andExpect(jsonPath("$[0].id").value(adultCartoon.getId()))
+				.andExpect(jsonPath("$[1].id").value(action.getId()));
+		mockMvc.perform(get("/films/popular").param("year", "1900"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(0));
+		mockMvc.perform(get("/films/popular").param("genreId", "99"))
+				.andExpect(status().isNotFound());
+
+		// лайки не должны влиять на топ популярных в других тестах
+		unlike(first, cartoon, adultCartoon);
+		unlike(second, adultCartoon);
+	}
+
+	@Test
+	void shouldSearchFilmsByWordsAndPrefixesRankedWithLikes() throws Exception {
+		User fan = createUser("search-fan");
+		Film solaris = createFilm(film.toBuilder().name("Солярис")
+				.description("Психолог прилетает на станцию над океаном").build());
+		Film quiet = createFilm(film.toBuilder().name("Ёжик в тумане")
+				.description("Ёжик идёт к медвежонку считать звёзды").build());
+		Film loud = createFilm(film.toBuilder().name("Ежик и туман: Hedgehog returns")
+				.description("Sequel").build());
+		like(fan, loud);
+
+		mockMvc.perform(get("/films/search").param("query", "СОЛЯРИС"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(1))
+				.andExpect(jsonPath("$[0].id").value(solaris.getId()));
+		mockMvc.perform(get("/films/search").param("query", "ежик туман"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(2))
+				.andExpect(jsonPath("$[0].id").value(loud.getId()))
+				.andExpect(jsonPath("$[1].id").value(quiet.getId()));
+		mockMvc.perform(get("/films/search").param("query", "медвеж").param("by", "title"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(0));
+		mockMvc.perform(get("/films/search").param("query", "медвеж").param("by", "description"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$[0].id").value(quiet.getId()));
+
+		mockMvc.perform(put("/films")
+						.contentType("application/json")
+						.content(objectMapper.writeValueAsString(solaris.toBuilder().name("Сталкер").build())))
+				.andExpect(status().isOk());
+		mockMvc.perform(get("/films/search").param("query", "солярис"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(0));
+		mockMvc.perform(get("/films/search").param("query", "сталк океан"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$[0].id").value(solaris.getId()));
+
+		mockMvc.perform(get("/films/search").param("query", " "))
+				.andExpect(status().isBadRequest());
+		mockMvc.perform(get("/films/search").param("query", "ежик").param("by", "genre"))
+				.andExpect(status().isBadRequest());
+
+		// лайки не должны влиять на топ популярных в других тестах
+		unlike(fan, loud);
+	}
+
+	@Test
+	void shouldAnswerNotModifiedUntilFilmOrItsLikesChange() throws Exception {
+		User viewer = createUser("viewer");
+		Film created = createFilm();
+
+		String etag = mockMvc.perform(get("/films/{id}", created.getId()))
+				.andExpect(status().isOk())
+				.andExpect(header().exists("ETag"))
+				.andReturn().getResponse().getHeader("ETag");
+		mockMvc.perform(get("/films/{id}", created.getId()).header("If-None-Match", etag))
+				.andExpect(status().isNotModified())
+				.andExpect(content().string(""));
+		String popular = mockMvc.perform(get("/films/popular").param("count", "3"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getHeader("ETag");
+
+		like(viewer, created);
+
+		String liked = mockMvc.perform(get("/films/{id}", created.getId()).header("If-None-Match", etag))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.movieRating.length()").value(1))
+				.andReturn().getResponse().getHeader("ETag");
+		assertNotEquals(etag, liked);
+		mockMvc.perform(get("/films/popular").param("count", "3").header("If-None-Match", popular))
+				.andExpect(status().isOk());
+
+		created.setName("Interstellar: director's cut");
+		mockMvc.perform(put("/films")
+						.contentType("application/json")
+						.content(objectMapper.writeValueAsString(created)))
+				.andExpect(status().isOk());
+		mockMvc.perform(get("/films/{id}", created.getId()).header("If-None-Match", liked))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.name").value("Interstellar: director's cut"));
+
+		unlike(viewer, created);
+	}
+
+	@Test
+	void shouldRejectUpdatesOfStaleFilmVersion() throws Exception {
+		User viewer = createUser("critic");
+		Film created = createFilm();
+		assertEquals(1L, created.getVersion());
+		like(viewer, created);
+
+		created.setName("Interstellar: IMAX");
+		mockMvc.perform(put("/films")
+						.header("If-Match", "\"1\"")
+						.contentType("application/json")
+						.content(objectMapper.writeValueAsString(created)))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.version").value(2))
+				.andExpect(jsonPath("$.movieRating.length()").value(1));
+
+		created.setName("Interstellar: stale");
+		mockMvc.perform(put("/films")
+						.header("If-Match", "1")
+						.contentType("application/json")
+						.content(objectMapper.writeValueAsString(created)))
+				.andExpect(status().isConflict());
+		mockMvc.perform(put("/films")
+						.contentType("application/json")
+						.content(objectMapper.writeValueAsString(created)))
+				.andExpect(status().isConflict());
+		mockMvc.perform(put("/films")
+						.header("If-Match", "latest")
+						.contentType("application/json")
+						.content(objectMapper.writeValueAsString(created)))
+				.andExpect(status().isBadRequest());
+		mockMvc.perform(get("/films/{id}", created.getId()))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.name").value("Interstellar: IMAX"))
+				.andExpect(jsonPath("$.version").value(2));
+
+		created.setVersion(null);
+		mockMvc.perform(put("/films")
+						.contentType("application/json")
+						.content(objectMapper.writeValueAsString(created)))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.version").value(3));
+
+		unlike(viewer, created);
+	}
+
+	@Test
+	void shouldKeepStoredLikesWhenUpdateBodyCarriesOthers() throws Exception {
+		User viewer = createUser("roundTrip");
+		Film created = createFilm();
+		like(viewer, created);
+		ObjectNode edited = (ObjectNode) objectMapper.readTree(mockMvc.perform(get("/films/{id}", created.getId()))
+				.andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8));
+		unlike(viewer, created);
+
+		edited.put("name", "Interstellar: edited");
+		edited.putArray("movieRating").add(viewer.getId()).add(999_999);
+		mockMvc.perform(put("/films")
+						.contentType("application/json")
+						.content(edited.toString()))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.name").value("Interstellar: edited"))
+				.andExpect(jsonPath("$.movieRating.length()").value(0));
+		mockMvc.perform(get("/films/{id}", created.getId()))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.movieRating.length()").value(0));
+		assertTrue(filmService.getLikedFilms(viewer.getId(), 0, 10).isEmpty());
+	}
+
+	@Test
+	void shouldRankTrendingFilmsByRecentLikes() throws Exception {
+		Film rising = createFilm();
+		Film steady = createFilm();
+		User first = createUser("trendFirst");
+		User second = createUser("trendSecond");
+		User third = createUser("trendThird");
+		like(first, rising, steady);
+		like(second, rising, steady);
+		like(third, rising);
+
+		List<Long> trending = trendingIds("1h");
+		assertTrue(trending.indexOf(rising.getId()) >= 0);
+		assertTrue(trending.indexOf(rising.getId()) < trending.indexOf(steady.getId()));
+		assertEquals(trending, trendingIds("7d"));
+
+		unlike(first, rising);
+		unlike(second, rising);
+		unlike(third, rising);
+		assertFalse(trendingIds("24h").contains(rising.getId()));
+		assertTrue(trendingIds("24h").contains(steady.getId()));
+
+		mockMvc.perform(get("/films/trending").param("window", "2h"))
+				.andExpect(status().isBadRequest());
+		unlike(first, steady);
+		unlike(second, steady);
+	}
+
+	private List<Long> trendingIds(String window) throws Exception {
+		String content = mockMvc.perform(get("/films/trending").param("window", window).param("count", "100"))
+				.andExpect(status().isOk())
+				.andReturn()
+				.getResponse()
+				.getContentAsString(StandardCharsets.UTF_8);
+		return Arrays.stream(objectMapper.readValue(content, Film[].class)).map(Film::getId).toList();
+	}
+
+	private User createUser(String login) throws Exception {
+		User user = User.builder()
+				.email(login + "@mail.com")
+				.login(login)
+				.birthday(LocalDate.of(1990, 1, 1))
+				.build();
+		return objectMapper.readValue(mockMvc.perform(post("/users")
+						.contentType("application/json")
+						.content(objectMapper.writeValueAsString(user)))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString(), User.class);
+	}
+
+	private void like(User user, Film... films) throws Exception {
+		for (Film liked : films) {
+			mockMvc.perform(put("/films/{id}/like/{userId}", liked.getId(), user.getId()))
+					.andExpect(status().isOk());
+		}
+	}
+
+	private void unlike(User user, Film... films) throws Exception {
+		for (Film liked : films) {
+			mockMvc.perform(delete("/films/{id}/like/{userId}", liked.getId(), user.getId()))
+					.andExpect(status().isOk());
+		}
+	}
+
+	private Film createFilm() throws Exception {
+		return createFilm(film);
+	}
+
+	private Film createFilm(Film film) throws Exception {
+		String content = mockMvc.perform(post("/films")
+						.contentType("application/json")
+						.content(objectMapper.writeValueAsString(film)))
+				.andExpect(status().isOk())
+				.andReturn()
+				.getResponse()
+				.getContentAsString(StandardCharsets.UTF_8);
+		return objectMapper.readValue(content, Film.class);
+	}
+}
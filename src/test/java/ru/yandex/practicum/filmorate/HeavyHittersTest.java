@@ -0,0 +1,125 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.util.CountMinSketch;
+import ru.yandex.practicum.filmorate.util.SpaceSaving;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HeavyHittersTest {
+    private static final int ITEMS = 10_000;
+    private static final int STREAM = 200_000;
+
+    @Test
+    void sketchShouldOverestimateWithinEpsilonOfTotal() {
+        long[] stream = zipfStream(new SplittableRandom(7));
+        long[] exact = new long[ITEMS + 1];
+        CountMinSketch sketch = new CountMinSketch(0.001, 0.01);
+        for (long item : stream) {
+            sketch.add(item, 1);
+            exact[(int) item]++;
+        }
+
+        int outside = 0;
+        for (int item = 1; item <= ITEMS; item++) {
+            long estimate = sketch.estimate(item);
+            assertTrue(estimate >= exact[item], "Оценка меньше настоящего значения для " + item);
+            if (estimate - exact[item] > 0.001 * sketch.total()) {
+                outside++;
+            }
+        }
+        assertTrue(outside <= ITEMS * 0.01, "Вне границы ошибки: " + outside);
+    }
+
+    @Test
+    void summaryShouldTrackEveryItemAboveTotalOverCapacity() {
+        long[] stream = zipfStream(new SplittableRandom(11));
+        long[] exact = new long[ITEMS + 1];
+        SpaceSaving summary = new SpaceSaving(100);
+        for (long item : stream) {
+            summary.add(item, 1);
+            exact[(int) item]++;
+        }
+
+        for (SpaceSaving.Counter counter : summary.counters()) {
+            long actual = exact[(int) counter.item()];
+            assertTrue(counter.count() >= actual && counter.count() - counter.error() <= actual,
+                    "Счётчик вне границ для " + counter.item());
+        }
+        for (int item = 1; item <= ITEMS; item++) {
+            if (exact[item] > STREAM / 100) {
+                assertTrue(summary.estimate(item) >= exact[item], "Частый id не отслеживается: " + item);
+            }
+        }
+        assertEquals(top(exact, 10), Arrays.toString(summary.counters().stream().limit(10)
+                .mapToLong(SpaceSaving.Counter::item).toArray()));
+    }
+
+    @Test
+    void mergedPartsShouldMatchWholeStream() {
+        long[] stream = zipfStream(new SplittableRandom(13));
+        CountMinSketch whole = new CountMinSketch(0.001, 0.01);
+        CountMinSketch[] sketches = new CountMinSketch[4];
+        SpaceSaving[] summaries = new SpaceSaving[4];
+        for (int i = 0; i < 4; i++) {
+            sketches[i] = new CountMinSketch(0.001, 0.01);
+            summaries[i] = new SpaceSaving(200);
+        }
+        long[] exact = new long[ITEMS + 1];
+        for (int i = 0; i < stream.length; i++) {
+            whole.add(stream[i], 1);
+            sketches[i % 4].add(stream[i], 1);
+            summaries[i % 4].add(stream[i], 1);
+            exact[(int) stream[i]]++;
+        }
+        for (int i = 1; i < 4; i++) {
+            sketches[0].merge(sketches[i]);
+            summaries[0].merge(summaries[i]);
+        }
+
+        assertEquals(whole.total(), sketches[0].total());
+        for (int item = 1; item <= ITEMS; item++) {
+            assertEquals(whole.estimate(item), sketches[0].estimate(item), "Оценка после сложения для " + item);
+        }
+        for (SpaceSaving.Counter counter : summaries[0].counters()) {
+            long actual = exact[(int) counter.item()];
+            assertTrue(counter.count() >= actual && counter.count() - counter.error() <= actual,
+                    "Счётчик после сложения вне границ для " + counter.item());
+        }
+        assertEquals(top(exact, 10), Arrays.toString(summaries[0].counters().stream().limit(10)
+                .mapToLong(SpaceSaving.Counter::item).toArray()));
+        assertThrows(IllegalArgumentException.class, () -> whole.merge(new CountMinSketch(0.01, 0.01)));
+    }
+
+    /**
+     * Поток id от 1 до {@link #ITEMS} с распределением Ципфа (показатель 1.1).
+     */
+    private static long[] zipfStream(SplittableRandom random) {
+        double[] cumulative = new double[ITEMS];
+        double sum = 0;
+        for (int i = 0; i < ITEMS; i++) {
+            sum += 1 / Math.pow(i + 1, 1.1);
+            cumulative[i] = sum;
+        }
+        long[] stream = new long[STREAM];
+        for (int i = 0; i < STREAM; i++) {
+            int position = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            stream[i] = 1 + (position >= 0 ? position : -position - 1);
+        }
+        return stream;
+    }
+
+    private static String top(long[] exact, int count) {
+        return Arrays.toString(IntStream.rangeClosed(1, ITEMS).boxed()
+                .sorted((a, b) -> exact[a] != exact[b] ? Long.compare(exact[b], exact[a]) : Integer.compare(a, b))
+                .limit(count)
+                .mapToLong(Integer::longValue)
+                .toArray());
+    }
+}
@@ -0,0 +1,167 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.StorageJournal;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InMemoryStorageConcurrencyTest {
+    private static final int THREADS = 16;
+    private static final int OPERATIONS_PER_THREAD = 2_000;
+
+    private InMemoryFilmStorage filmStorage;
+    private InMemoryUserStorage userStorage;
+
+    @BeforeEach
+    void setUp() {
+        filmStorage = new InMemoryFilmStorage(StorageJournal.NONE);
+        userStorage = new InMemoryUserStorage(StorageJournal.NONE);
+    }
+
+    @Test
+    void shouldNotLoseLikesUnderConcurrentWritersAndUpdates() throws Exception {
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            films.add(filmStorage.create(film("Film " + i)));
+        }
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                Film film = films.get(i % films.size());
+                long userId = (long) thread * OPERATIONS_PER_THREAD + i;
+                assertTrue(filmStorage.addLike(film.getId(), userId));
+                if (i % 100 == 0) {
+                    filmStorage.update(film.toBuilder().name("Updated " + i).build());
+                }
+            }
+        });
+
+        int expectedPerFilm = THREADS * OPERATIONS_PER_THREAD / films.size();
+        for (Film film : films) {
+            assertEquals(expectedPerFilm, filmStorage.findById(film.getId()).orElseThrow().getMovieRating().size());
+        }
+        filmStorage.getTopFilms(films.size())
+                .forEach(film -> assertEquals(expectedPerFilm, film.getMovieRating().size()));
+    }
+
+    @Test
+    void shouldKeepPopularityIndexConsistentWithLikeSets() throws Exception {
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            films.add(filmStorage.create(film("Film " + i)));
+        }
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                Film film = films.get((thread + i) % films.size());
+                long userId = i % 50;
+                if ((thread + i) % 3 == 0) {
+                    filmStorage.deleteLike(film.getId(), userId);
+                } else {
+                    filmStorage.addLike(film.getId(), userId);
+                }
+                filmStorage.getTopFilms(10);
+            }
+        });
+
+        List<Film> top = filmStorage.getTopFilms(films.size());
+        assertEquals(films.size(), top.size());
+        for (int i = 1; i < top.size(); i++) {
+            assertTrue(top.get(i - 1).getMovieRating().size() >= top.get(i).getMovieRating().size());
+        }
+        assertEquals(top.subList(0, 10), filmStorage.getTopFilms(10));
+    }
+
+    @Test
+    void shouldApplyFriendshipToBothUsersAtomically() throws Exception {
+        int usersCount = 64;
+        for (long id = 1; id <= usersCount; id++) {
+            userStorage.create(user(id));
+        }
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                long userId = 1 + (thread * 7L + i) % usersCount;
+                long friendId = 1 + (thread * 13L + i * 3L) % usersCount;
+                if (userId == friendId) {
+                    continue;
+                }
+                if (i % 4 == 0) {
+                    userStorage.deleteFriend(friendId, userId);
+                } else {
+                    userStorage.addFriend(userId, friendId);
+                }
+                if (i % 250 == 0) {
+                    userStorage.update(user(userId));
+                }
+            }
+        });
+
+        for (User user : userStorage.getUsers()) {
+            for (Long friendId : user.getFriends()) {
+                User friend = userStorage.findById(friendId).orElseThrow();
+                assertTrue(friend.getFriends().contains(user.getId()),
+                        "Дружба " + user.getId() + " -> " + friendId + " не взаимна");
+            }
+        }
+    }
+
+    private void runConcurrently(ThreadTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                int threadNumber = thread;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run(threadNumber);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Film film(String name) {
+        return Film.builder()
+                .name(name)
+                .description("Stress test")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .build();
+    }
+
+    private static User user(long id) {
+        return User.builder()
+                .id(id)
+                .email("user" + id + "@mail.com")
+                .login("user" + id)
+                .birthday(LocalDate.of(2000, 1, 1))
+                .build();
+    }
+
+    @FunctionalInterface
+    private interface ThreadTask {
+        void run(int thread);
+    }
+}
@@ -0,0 +1,312 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmGenre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.CachingFilmStorage;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.JdbcFilmStorage;
+import ru.yandex.practicum.filmorate.storage.JdbcUserStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:filmorate;DB_CLOSE_DELAY=-1")
+@AutoConfigureMockMvc
+@ActiveProfiles("jdbc")
+class JdbcStorageTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private List<FilmStorage> filmStorages;
+
+    @Autowired
+    private List<UserStorage> userStorages;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Test
+    void shouldRankFilmsByStoredLikeCount() throws Exception {
+        assertTrue(filmStorages.stream().anyMatch(JdbcFilmStorage.class::isInstance));
+        User first = createUser("first");
+        User second = createUser("second");
+        Film quiet = createFilm("Quiet");
+        Film popular = createFilm("Popular");
+
+        mockMvc.perform(put("/films/{id}/like/{userId}", popular.getId(), first.getId()))
+                .andExpect(status().isOk());
+        mockMvc.perform(put("/films/{id}/like/{userId}", popular.getId(), second.getId()))
+                .andExpect(status().isOk());
+        mockMvc.perform(put("/films/{id}/like/{userId}", quiet.getId(), first.getId()))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/films/popular").param("count", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(popular.getId()))
+                .andExpect(jsonPath("$[0].movieRating.length()").value(2))
+                .andExpect(jsonPath("$[0].genres[0]").value("DRAMA"))
+                .andExpect(jsonPath("$[1].id").value(quiet.getId()));
+
+        mockMvc.perform(delete("/films/{id}/like/{userId}", popular.getId(), first.getId()))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/films/{id}/like/{userId}", popular.getId(), second.getId()))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/films/popular").param("count", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(quiet.getId()));
+    }
+
+    @Test
+    void shouldStoreFriendshipOnBothSides() throws Exception {
+        User user = createUser("user");
+        User friend = createUser("friend");
+        User common = createUser("common");
+
+        mockMvc.perform(put("/users/{id}/friends/{friendId}", user.getId(), common.getId()))
+                .andExpect(status().isOk());
+        mockMvc.perform(put("/users/{id}/friends/{friendId}", friend.getId(), common.getId()))
+                .andExpect(status().isOk());
+        mockMvc.perform(put("/users/{id}/friends/{friendId}", user.getId(), friend.getId()))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/users/{id}/friends", common.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", containsInAnyOrder(
+                        user.getId().intValue(), friend.getId().intValue())));
+        mockMvc.perform(get("/users/{id}/friends/common/{otherId}", user.getId(), friend.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(common.getId()));
+
+        mockMvc.perform(delete("/users/{id}/friends/{friendId}", common.getId(), user.getId()))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/users/{id}/friends", user.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(friend.getId()));
+    }
+
+    @Test
+    void shouldImportFilmsAndLikesInBatches() throws Exception {
+        User user = createUser("importer");
+        List<Film> films = List.of(
+                Film.builder().name("Imported one").description("Batch").releaseDate(LocalDate.of(2001, 1, 1))
+                        .duration(90).genres(Set.of(FilmGenre.COMEDY, FilmGenre.DRAMA)).mpaRating(MpaRating.G).build(),
+                Film.builder().name("Imported two").description("Batch").releaseDate(LocalDate.of(2002, 2, 2))
+                        .duration(95).build());
+
+        String content = mockMvc.perform(post("/films/batch")
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(films)))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        BatchResult[] created = objectMapper.readValue(content, BatchResult[].class);
+
+        List<Like> likes = List.of(new Like(created[0].id(), user.getId()), new Like(created[0].id(), user.getId()));
+        mockMvc.perform(post("/films/likes/batch")
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(likes)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].error").doesNotExist())
+                .andExpect(jsonPath("$[1].error").exists());
+
+        mockMvc.perform(get("/films/{id}", created[0].id()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.genres", containsInAnyOrder("COMEDY", "DRAMA")))
+                .andExpect(jsonPath("$.movieRating.length()").value(1));
+        mockMvc.perform(get("/films/{id}", created[1].id()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Imported two"));
+        mockMvc.perform(get("/films/popular").param("genreId", "1").param("mpa", "G").param("year", "2001"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(created[0].id()));
+        mockMvc.perform(get("/films/popular").param("mpa", "G").param("year", "2002"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+
+        mockMvc.perform(delete("/films/{id}/like/{userId}", created[0].id(), user.getId()))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void shouldServeRepeatedReadsFromCacheAndDropChangedFilms() throws Exception {
+        assertTrue(filmStorages.stream().anyMatch(CachingFilmStorage.class::isInstance));
+        User user = createUser("reader");
+        Film film = createFilm("Cached");
+        double hits = cacheHits();
+
+        mockMvc.perform(get("/films/{id}", film.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Cached"));
+        mockMvc.perform(put("/films/{id}/like/{userId}", film.getId(), user.getId()))
+                .andExpect(status().isOk());
+        assertTrue(cacheHits() > hits);
+        mockMvc.perform(get("/films/{id}", film.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.movieRating.length()").value(1));
+
+        film.setName("Renamed");
+        mockMvc.perform(put("/films")
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(film)))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/films/{id}", film.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Renamed"));
+
+        mockMvc.perform(delete("/users/{id}", user.getId()))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/films/{id}", film.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.movieRating.length()").value(0));
+    }
+
+    @Test
+    void shouldUpdateUserOnlyFromCurrentVersionAndKeepFriends() throws Exception {
+        User user = createUser("versioned");
+        User friend = createUser("versionedFriend");
+        mockMvc.perform(put("/users/{id}/friends/{friendId}", user.getId(), friend.getId()))
+                .andExpect(status().isOk());
+
+        user.setName("First edit");
+        mockMvc.perform(put("/users")
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(user)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").value(2))
+                .andExpect(jsonPath("$.friends.length()").value(1));
+
+        user.setName("Lost edit");
+        mockMvc.perform(put("/users")
+                        .header("If-Match", "\"1\"")
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(user)))
+                .andExpect(status().isConflict());
+        mockMvc.perform(get("/users/{id}", user.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("First edit"))
+                .andExpect(jsonPath("$.version").value(2));
+    }
+
+    @Test
+    void shouldReportMissingEntityOnUpdateAsNotFound() throws Exception {
+        FilmStorage films = filmStorages.stream().filter(JdbcFilmStorage.class::isInstance).findFirst().orElseThrow();
+        UserStorage users = userStorages.stream().filter(JdbcUserStorage.class::isInstance).findFirst().orElseThrow();
+        Film film = createFilm("Deleted");
+        User user = createUser("deleted");
+        mockMvc.perform(delete("/users/{id}", user.getId()))
+                .andExpect(status().isOk());
+
+        assertThrows(NotFoundException.class,
+                () -> films.update(film.toBuilder().id(999_999L).build(), FilmStorage.ANY_VERSION));
+        assertThrows(NotFoundException.class, () -> users.update(user, UserStorage.ANY_VERSION));
+    }
+
+    @Test
+    void shouldAcceptOnlyOneOfConcurrentIdenticalLikes() throws Exception {
+        FilmStorage storage = filmStorages.stream().filter(JdbcFilmStorage.class::isInstance).findFirst().orElseThrow();
+        Film film = createFilm("Contended");
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 20; round++) {
+                long userId = createUser("contender" + round).getId();
+                CyclicBarrier start = new CyclicBarrier(threads);
+                List<Future<Boolean>> results = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    results.add(executor.submit(() -> {
+                        start.await();
+                        return storage.addLike(film.getId(), userId);
+                    }));
+                }
+                int added = 0;
+                for (Future<Boolean> result : results) {
+                    added += result.get() ? 1 : 0;
+                }
+                assertEquals(1, added);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        mockMvc.perform(get("/films/popular").param("count", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(film.getId()))
+                .andExpect(jsonPath("$[0].movieRating.length()").value(20));
+    }
+
+    private double cacheHits() {
+        return registry.get("cache.gets").tag("cache", "films").tag("result", "hit").functionCounter().count();
+    }
+
+    private User createUser(String login) throws Exception {
+        User user = User.builder()
+                .email(login + "@mail.com")
+                .login(login)
+                .birthday(LocalDate.of(1995, 5, 5))
+                .build();
+        String content = mockMvc.perform(post("/users")
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(user)))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        return objectMapper.readValue(content, User.class);
+    }
+
+    private Film createFilm(String name) throws Exception {
+        Film film = Film.builder()
+                .name(name)
+                .description("Stored in H2")
+                .releaseDate(LocalDate.of(2010, 7, 16))
+                .duration(148)
+                .genres(Set.of(FilmGenre.DRAMA))
+                .mpaRating(MpaRating.PG_13)
+                .build();
+        String content = mockMvc.perform(post("/films")
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(film)))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        return objectMapper.readValue(content, Film.class);
+    }
+}
@@ -0,0 +1,77 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+class MetricsTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void shouldExposeServiceTimersStorageCountersAndGauges() throws Exception {
+        User user = objectMapper.readValue(mockMvc.perform(post("/users")
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(User.builder()
+                                .email("metrics@mail.com")
+                                .login("metrics")
+                                .birthday(LocalDate.of(1990, 1, 1))
+                                .build())))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(), User.class);
+        Film film = objectMapper.readValue(mockMvc.perform(post("/films")
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(Film.builder()
+                                .name("Metrics")
+                                .description("Measured")
+                                .releaseDate(LocalDate.of(2000, 1, 1))
+                                .duration(100)
+                                .build())))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(), Film.class);
+
+        mockMvc.perform(put("/films/{id}/like/{userId}", film.getId(), user.getId()))
+                .andExpect(status().isOk());
+        mockMvc.perform(put("/films/{id}/like/{userId}", film.getId(), user.getId()));
+        mockMvc.perform(get("/films/popular"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("filmorate_service_seconds_bucket{")))
+                .andExpect(content().string(containsString("method=\"getTopFilms\"")))
+                .andExpect(content().string(containsString(
+                        "filmorate_storage_operations_total{operation=\"addLike\",result=\"ok\",storage=\"films\",} 1.0")))
+                .andExpect(content().string(containsString(
+                        "filmorate_storage_operations_total{operation=\"addLike\",result=\"rejected\",storage=\"films\",} 1.0")));
+        mockMvc.perform(get("/actuator/metrics/filmorate.likes"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.measurements[0].value").value(1.0));
+        mockMvc.perform(get("/actuator/metrics/filmorate.films"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.measurements[0].value").value(1.0));
+    }
+}
@@ -0,0 +1,152 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {"filmorate.storage.sharded.enabled=true", "filmorate.storage.sharded.shards=4"})
+@AutoConfigureMockMvc
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+class ShardedStorageTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ApplicationContext context;
+
+    @Test
+    void shouldKeepFriendshipsAcrossShardsConsistent() throws Exception {
+        User first = createUser("shardedFirst");
+        User second = createUser("shardedSecond");
+        List<User> friends = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            User friend = createUser("shardedFriend" + i);
+            friends.add(friend);
+            mockMvc.perform(put("/users/{id}/friends/{friendId}", first.getId(), friend.getId()))
+                    .andExpect(status().isOk());
+            mockMvc.perform(put("/users/{id}/friends/{friendId}", friend.getId(), second.getId()))
+                    .andExpect(status().isOk());
+        }
+
+        mockMvc.perform(get("/users/{id}/friends/common/{otherId}", first.getId(), second.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(8))
+                .andExpect(jsonPath("$[0].id").value(friends.get(0).getId()));
+        mockMvc.perform(get("/users/{id}/friends", friends.get(3).getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2));
+
+        mockMvc.perform(delete("/users/{id}/friends/{friendId}", second.getId(), friends.get(0).getId()))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/users/{id}", friends.get(1).getId()))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/users/{id}/friends/common/{otherId}", first.getId(), second.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(6))
+                .andExpect(jsonPath("$[0].id").value(friends.get(2).getId()));
+        mockMvc.perform(get("/users/{id}/friends", first.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(7));
+    }
+
+    @Test
+    void shouldMergePopularFilmsAndLikesFromAllShards() throws Exception {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            users.add(createUser("shardedLiker" + i));
+        }
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            films.add(createFilm("Sharded " + i));
+        }
+        for (int i = 0; i < users.size(); i++) {
+            for (int j = 0; j <= i; j++) {
+                mockMvc.perform(put("/films/{id}/like/{userId}", films.get(j + 1).getId(), users.get(i).getId()))
+                        .andExpect(status().isOk());
+            }
+        }
+
+        mockMvc.perform(get("/films/popular").param("count", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].id").value(films.get(1).getId()))
+                .andExpect(jsonPath("$[1].id").value(films.get(2).getId()))
+                .andExpect(jsonPath("$[2].id").value(films.get(3).getId()));
+        mockMvc.perform(get("/users/{id}/likes", users.get(3).getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(4))
+                .andExpect(jsonPath("$[0].id").value(films.get(1).getId()))
+                .andExpect(jsonPath("$[3].id").value(films.get(4).getId()));
+    }
+
+    @Test
+    void shouldNotCreateUnshardedStorages() {
+        assertTrue(context.getBeansOfType(InMemoryFilmStorage.class).isEmpty());
+        assertTrue(context.getBeansOfType(InMemoryUserStorage.class).isEmpty());
+    }
+
+    @Test
+    void shouldRejectShardedStorageTogetherWithCluster() {
+        SpringApplicationBuilder application = new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(WebApplicationType.NONE);
+        Exception e = assertThrows(Exception.class, () -> application.run(
+                "--filmorate.storage.sharded.enabled=true",
+                "--filmorate.cluster.enabled=true",
+                "--filmorate.cluster.nodes=node-1,node-2"));
+        assertTrue(NestedExceptionUtils.getMostSpecificCause(e).getMessage().contains("режимом кластера"));
+    }
+
+    private User createUser(String login) throws Exception {
+        User user = User.builder()
+                .email(login + "@mail.com")
+                .login(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+        return objectMapper.readValue(mockMvc.perform(post("/users")
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(user)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(), User.class);
+    }
+
+    private Film createFilm(String name) throws Exception {
+        Film film = Film.builder()
+                .name(name)
+                .description("Stored in a sharded partition")
+                .releaseDate(LocalDate.of(2001, 1, 1))
+                .duration(100)
+                .mpaRating(MpaRating.PG)
+                .build();
+        return objectMapper.readValue(mockMvc.perform(post("/films")
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(film)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(), Film.class);
+    }
+}
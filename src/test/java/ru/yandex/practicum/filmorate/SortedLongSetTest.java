@@ -0,0 +1,80 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.util.SortedLongSet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SortedLongSetTest {
+
+    @Test
+    void shouldBehaveLikeTreeSetUnderRandomMutations() {
+        Random random = new Random(7);
+        SortedLongSet set = new SortedLongSet();
+        TreeSet<Long> expected = new TreeSet<>();
+
+        for (int i = 0; i < 200_000; i++) {
+            long value = random.nextInt(20_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(value), set.remove(value));
+            } else {
+                assertEquals(expected.add(value), set.add(value));
+            }
+            if (i % 10_000 == 0) {
+                assertEquals(expected, set);
+            }
+        }
+
+        assertEquals(expected.size(), set.size());
+        assertArrayEquals(expected.stream().mapToLong(Long::longValue).toArray(), set.toLongArray());
+        expected.forEach(value -> assertTrue(set.contains(value)));
+    }
+
+    @Test
+    void shouldKeepOrderForSequentialIdsAndIteratorRemoval() {
+        SortedLongSet set = new SortedLongSet();
+        for (long id = 5_000; id > 0; id--) {
+            set.add(id);
+        }
+        set.removeIf(id -> id % 2 == 0);
+
+        List<Long> values = new ArrayList<>(set);
+        assertEquals(2_500, values.size());
+        for (int i = 0; i < values.size(); i++) {
+            assertEquals(2L * i + 1, values.get(i));
+        }
+    }
+
+    @Test
+    void shouldIntersectByMergeBitmapAndGallop() {
+        Random random = new Random(11);
+        // сопоставимые разреженные множества, плотные множества и маленькое против большого
+        long[][] shapes = {{5_000, 5_000, 1_000_000}, {3_000, 4_000, 6_000}, {50, 100_000, 200_000}};
+        for (long[] shape : shapes) {
+            SortedLongSet first = new SortedLongSet();
+            SortedLongSet second = new SortedLongSet();
+            TreeSet<Long> expected = new TreeSet<>();
+            while (first.size() < shape[0]) {
+                first.add(1 + random.nextLong(shape[2]));
+            }
+            while (second.size() < shape[1]) {
+                second.add(1 + random.nextLong(shape[2]));
+            }
+            expected.addAll(first);
+            expected.retainAll(second);
+            long[] common = expected.stream().mapToLong(Long::longValue).toArray();
+
+            assertArrayEquals(common, first.intersect(second));
+            assertArrayEquals(common, second.intersect(first));
+            assertArrayEquals(first.toLongArray(), first.intersect(first));
+        }
+        assertArrayEquals(new long[0], new SortedLongSet().intersect(new SortedLongSet()));
+    }
+}
@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.util.TrendCounter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrendCounterTest {
+
+    @Test
+    void shouldMatchWindowSumsRecomputedFromAllChanges() {
+        Random random = new Random(11);
+        long start = 28_000_000;
+        TrendCounter counter = new TrendCounter(start);
+        List<long[]> changes = new ArrayList<>();
+
+        long now = start;
+        for (int i = 0; i < 10_000; i++) {
+            int step = random.nextInt(10);
+            now += step == 0 ? random.nextInt(3_000) : step == 1 ? 0 : random.nextInt(5);
+            if (random.nextInt(4) == 0) {
+                counter.roll(now);
+            } else {
+                int delta = random.nextInt(5) == 0 ? -1 : 1;
+                counter.add(now, delta);
+                changes.add(new long[]{now, delta});
+            }
+            assertEquals(sum(changes, now, 1, 60), counter.lastHour(), "Час на минуте " + now);
+            assertEquals(sum(changes, now, 60, 24), counter.lastDay(), "Сутки на минуте " + now);
+            assertEquals(sum(changes, now, 60, 168), counter.lastWeek(), "Неделя на минуте " + now);
+        }
+    }
+
+    @Test
+    void shouldBecomeEmptyOnceAllChangesLeaveTheWeek() {
+        TrendCounter counter = new TrendCounter(0);
+        counter.add(5, 1);
+        counter.add(70, 1);
+        counter.add(70, -1);
+
+        counter.roll(61);
+        assertEquals(0, counter.lastHour());
+        assertEquals(1, counter.lastDay());
+        counter.roll(60 * 24 + 1);
+        assertEquals(0, counter.lastDay());
+        assertEquals(1, counter.lastWeek());
+        counter.roll(60 * 168 + 1);
+        assertEquals(0, counter.lastWeek());
+        assertTrue(counter.isEmpty());
+    }
+
+    /**
+     * Сумма изменений, попавших в последние {@code buckets} корзин длиной {@code bucketMinutes}.
+     */
+    private static int sum(List<long[]> changes, long now, int bucketMinutes, int buckets) {
+        long current = now / bucketMinutes;
+        int total = 0;
+        for (long[] change : changes) {
+            if (current - change[0] / bucketMinutes < buckets) {
+                total += (int) change[1];
+            }
+        }
+        return total;
+    }
+}
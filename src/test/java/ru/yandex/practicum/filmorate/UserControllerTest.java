@@ -1,6 +1,8 @@
 package ru.yandex.practicum.filmorate;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -8,12 +10,24 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -26,6 +40,9 @@ public class UserControllerTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private UserStorage userStorage;
+
     private User user;
 
     @BeforeEach
@@ -196,4 +213,167 @@ public class UserControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.length()").value(0));
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldRevalidateFriendsAfterFriendshipOrFriendProfileChanges() throws Exception {
+        long[] ids = new long[3];
+        for (int i = 0; i < ids.length; i++) {
+            User created = user.toBuilder().email("etag" + i + "@mail.com").login("etag" + i).build();
+            String content = mockMvc.perform(post("/users")
+                            .contentType("application/json")
+                            .content(objectMapper.writeValueAsString(created)))
+                    .andExpect(status().isOk())
+                    .andReturn()
+                    .getResponse()
+                    .getContentAsString();
+            ids[i] = objectMapper.readValue(content, User.class).getId();
+        }
+        mockMvc.perform(put("/users/{id}/friends/{friendId}", ids[0], ids[1]))
+                .andExpect(status().isOk());
+
+        String etag = mockMvc.perform(get("/users/{id}/friends", ids[0]))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(get("/users/{id}/friends", ids[0]).header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(put("/users/{id}/friends/{friendId}", ids[0], ids[2]))
+                .andExpect(status().isOk());
+        etag = mockMvc.perform(get("/users/{id}/friends", ids[0]).header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andReturn().getResponse().getHeader("ETag");
+
+        User renamed = user.toBuilder().id(ids[1]).email("etag1@mail.com").login("etag1").name("Renamed").build();
+        mockMvc.perform(put("/users")
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(renamed)))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/users/{id}/friends", ids[0]).header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.id == %d)].name".formatted(ids[1])).value("Renamed"));
+    }
+
+    @Test
+    void shouldIgnoreFriendsInUpdateBody() throws Exception {
+        User created = objectMapper.readValue(mockMvc.perform(post("/users")
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(user.toBuilder().login("loner").build())))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(), User.class);
+        ObjectNode edited = objectMapper.valueToTree(created);
+        edited.put("name", "Still alone");
+        edited.putArray("friends").add(999_999);
+
+        mockMvc.perform(put("/users")
+                        .contentType("application/json")
+                        .content(edited.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Still alone"))
+                .andExpect(jsonPath("$.friends.length()").value(0));
+        mockMvc.perform(get("/users/{id}/friends", created.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    void shouldNotRecreateDeletedUserOnUpdate() {
+        long users = userStorage.count();
+        User missing = user.toBuilder().id(999_999L).build();
+
+        assertThrows(NotFoundException.class, () -> userStorage.update(missing, UserStorage.ANY_VERSION));
+        assertTrue(userStorage.findById(999_999L).isEmpty());
+        assertEquals(users, userStorage.count());
+    }
+
+    @Test
+    void shouldNotConfirmMissingUserWithEtag() throws Exception {
+        mockMvc.perform(get("/users/{id}/friends", 999_999).header("If-None-Match", "*"))
+                .andExpect(status().isNotFound())
+                .andExpect(header().doesNotExist("ETag"));
+    }
+
+    @Test
+    void shouldPageAndStreamUsersById() throws Exception {
+        long[] ids = new long[3];
+        for (int i = 0; i < ids.length; i++) {
+            User created = user.toBuilder().email("page" + i + "@mail.com").login("page" + i).build();
+            String content = mockMvc.perform(post("/users")
+                            .contentType("application/json")
+                            .content(objectMapper.writeValueAsString(created)))
+                    .andExpect(status().isOk())
+                    .andReturn()
+                    .getResponse()
+                    .getContentAsString();
+            ids[i] = objectMapper.readValue(content, User.class).getId();
+        }
+
+        mockMvc.perform(get("/users").param("after", String.valueOf(ids[0] - 1)).param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(ids[0]))
+                .andExpect(jsonPath("$[1].id").value(ids[1]));
+        mockMvc.perform(get("/users").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+
+        MvcResult result = mockMvc.perform(get("/users")
+                        .param("after", String.valueOf(ids[0]))
+                        .accept("application/x-ndjson"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String[] lines = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString()
+                .split("\n");
+        assertEquals(ids[1], objectMapper.readValue(lines[0], User.class).getId());
+        assertEquals(ids[2], objectMapper.readValue(lines[1], User.class).getId());
+    }
+
+    @Test
+    void shouldRecommendFriendsOfFriendsAndRefreshCachedHub() throws Exception {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 503; i++) {
+            users.add(user.toBuilder().email("hub" + i + "@mail.com").login("hub" + i).build());
+        }
+        List<BatchResult> created = objectMapper.readValue(mockMvc.perform(post("/users/batch")
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(users)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(), new TypeReference<>() {
+        });
+        long hub = created.get(0).id();
+        long first = created.get(1).id();
+        long second = created.get(2).id();
+        List<Friendship> friendships = new ArrayList<>();
+        for (int i = 3; i < created.size(); i++) {
+            friendships.add(new Friendship(hub, created.get(i).id()));
+        }
+        friendships.add(new Friendship(first, created.get(3).id()));
+        friendships.add(new Friendship(first, created.get(4).id()));
+        friendships.add(new Friendship(second, created.get(5).id()));
+        mockMvc.perform(post("/users/friends/batch")
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(friendships)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/users/{id}/recommendations", hub))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(first))
+                .andExpect(jsonPath("$[1].id").value(second));
+
+        mockMvc.perform(put("/users/{id}/friends/{friendId}", second, created.get(6).id()))
+                .andExpect(status().isOk());
+        mockMvc.perform(put("/users/{id}/friends/{friendId}", second, created.get(7).id()))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/users/{id}/recommendations", hub).param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(second));
+        mockMvc.perform(get("/users/{id}/recommendations", hub).param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.threads.virtual.enabled=true")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+class VirtualThreadsTest {
+    private static final String THREAD_HEADER = "X-Virtual-Thread";
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    void shouldServeRequestsOnVirtualThreads() {
+        User user = User.builder()
+                .email("virtual@mail.com")
+                .login("virtual")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+
+        ResponseEntity<User> created = restTemplate.postForEntity("/users", user, User.class);
+        assertEquals(HttpStatus.OK, created.getStatusCode());
+        assertEquals("true", created.getHeaders().getFirst(THREAD_HEADER));
+
+        ResponseEntity<User> found = restTemplate.getForEntity("/users/{id}", User.class, created.getBody().getId());
+        assertEquals(HttpStatus.OK, found.getStatusCode());
+        assertEquals("virtual", found.getBody().getLogin());
+        assertEquals("true", found.getHeaders().getFirst(THREAD_HEADER));
+    }
+
+    @TestConfiguration
+    static class ThreadKindFilter {
+        @Bean
+        Filter threadKindFilter() {
+            return (request, response, chain) -> {
+                ((HttpServletResponse) response).setHeader(THREAD_HEADER,
+                        String.valueOf(Thread.currentThread().isVirtual()));
+                chain.doFilter(request, response);
+            };
+        }
+    }
+}
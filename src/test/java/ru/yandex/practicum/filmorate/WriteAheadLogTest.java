@@ -0,0 +1,246 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmGenre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.wal.DurableStorage;
+import ru.yandex.practicum.filmorate.storage.wal.WriteAheadLog;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldRecoverSnapshotAndLogTail() throws Exception {
+        Node node = new Node(directory);
+        node.durable.start();
+        User first = node.users.create(user("first"));
+        User second = node.users.create(user("second"));
+        Film film = node.films.create(film("Before snapshot"));
+        node.films.addLike(film.getId(), first.getId());
+        node.users.addFriend(first.getId(), second.getId());
+
+        node.durable.snapshot();
+
+        Film tail = node.films.create(film("After snapshot"));
+        node.films.addLike(tail.getId(), second.getId());
+        node.films.addLike(film.getId(), second.getId());
+        node.films.deleteLike(film.getId(), first.getId());
+        node.films.update(film.toBuilder().name("Renamed").build());
+        node.users.deleteFriend(second.getId(), first.getId());
+        node.wal.close();
+
+        Node restarted = new Node(directory);
+        DurableStorage.Recovery recovery = restarted.durable.recover();
+
+        assertEquals(1, recovery.films());
+        assertEquals(2, recovery.users());
+        Film restored = restarted.films.findById(film.getId()).orElseThrow();
+        assertEquals("Renamed", restored.getName());
+        assertEquals(2L, restored.getVersion());
+        assertEquals(1L, restarted.users.findById(first.getId()).orElseThrow().getVersion());
+        assertEquals(Set.of(second.getId()), restored.getMovieRating());
+        assertEquals(Set.of(FilmGenre.COMEDY), restored.getGenres());
+        assertEquals(MpaRating.PG, restored.getMpaRating());
+        assertEquals(List.of(film.getId(), tail.getId()),
+                restarted.films.getTopFilms(2).stream().map(Film::getId).toList());
+        assertTrue(restarted.users.findById(first.getId()).orElseThrow().getFriends().isEmpty());
+
+        Film next = restarted.films.create(film("Next"));
+        assertEquals(tail.getId() + 1, next.getId());
+    }
+
+    @Test
+    void shouldCarryUnloadedEntitiesIntoNextSnapshot() throws Exception {
+        Node node = new Node(directory);
+        node.durable.start();
+        User first = node.users.create(user("first"));
+        User second = node.users.create(user("second"));
+        Film liked = node.films.create(film("Liked"));
+        Film untouched = node.films.create(film("Untouched"));
+        node.films.addLike(liked.getId(), first.getId());
+        node.films.addLike(liked.getId(), second.getId());
+        node.users.addFriend(first.getId(), second.getId());
+        node.durable.stop();
+
+        Node mounted = new Node(directory);
+        mounted.durable.start();
+        assertEquals(List.of(liked.getId(), untouched.getId()),
+                mounted.films.getTopFilms(2).stream().map(Film::getId).toList());
+        mounted.films.deleteLike(liked.getId(), first.getId());
+        mounted.durable.stop();
+
+        Node restarted = new Node(directory);
+        restarted.durable.recover();
+
+        assertEquals(Set.of(second.getId()), restarted.films.findById(liked.getId()).orElseThrow().getMovieRating());
+        assertEquals("Untouched", restarted.films.findById(untouched.getId()).orElseThrow().getName());
+        assertEquals(Set.of(first.getId()), restarted.users.findById(second.getId()).orElseThrow().getFriends());
+        assertEquals(2, restarted.films.getFilms().size());
+    }
+
+    @Test
+    void shouldReplayAndSnapshotDeletedUser() throws Exception {
+        Node node = new Node(directory);
+        node.durable.start();
+        User deleted = node.users.create(user("deleted"));
+        User kept = node.users.create(user("kept"));
+        Film film = node.films.create(film("Liked"));
+        node.films.addLike(film.getId(), deleted.getId());
+        node.films.addLike(film.getId(), kept.getId());
+        node.users.addFriend(deleted.getId(), kept.getId());
+        node.durable.stop();
+
+        Node mounted = new Node(directory);
+        mounted.durable.start();
+        assertEquals(1, mounted.films.deleteLikesOf(deleted.getId()));
+        assertTrue(mounted.users.delete(deleted.getId()));
+        assertTrue(mounted.users.findById(deleted.getId()).isEmpty());
+        mounted.wal.close();
+
+        Node replayed = new Node(directory);
+        replayed.durable.start();
+        assertTrue(replayed.users.findById(deleted.getId()).isEmpty());
+        assertEquals(Set.of(kept.getId()), replayed.films.findById(film.getId()).orElseThrow().getMovieRating());
+        assertTrue(replayed.users.findById(kept.getId()).orElseThrow().getFriends().isEmpty());
+        replayed.durable.stop();
+
+        Node restarted = new Node(directory);
+        DurableStorage.Recovery recovery = restarted.durable.recover();
+        assertEquals(1, recovery.users());
+        assertEquals(0, restarted.films.likedFilms(deleted.getId()).length);
+    }
+
+    @Test
+    void shouldServeFacetTopsAndLikedFilmsFromSnapshotIndex() throws Exception {
+        Node node = new Node(directory);
+        node.durable.start();
+        User first = node.users.create(user("first"));
+        User second = node.users.create(user("second"));
+        Film comedy = node.films.create(film("Comedy"));
+        Film drama = node.films.create(film("Drama").toBuilder()
+                .genres(Set.of(FilmGenre.DRAMA))
+                .mpaRating(MpaRating.R)
+                .releaseDate(LocalDate.of(2010, 5, 1))
+                .build());
+        node.films.addLike(comedy.getId(), first.getId());
+        node.films.addLike(drama.getId(), first.getId());
+        node.films.addLike(drama.getId(), second.getId());
+        node.durable.stop();
+
+        Node restarted = new Node(directory);
+        restarted.durable.recover();
+
+        assertEquals(List.of(drama.getId()), restarted.films.getTopFilms(10, FilmGenre.DRAMA, MpaRating.R, 2010)
+                .stream().map(Film::getId).toList());
+        assertEquals(List.of(comedy.getId()), restarted.films.getTopFilms(10, FilmGenre.COMEDY, null, 1999)
+                .stream().map(Film::getId).toList());
+        assertTrue(restarted.films.getTopFilms(10, FilmGenre.DRAMA, MpaRating.PG, null).isEmpty());
+        assertArrayEquals(new long[]{comedy.getId(), drama.getId()}, restarted.films.likedFilms(first.getId()));
+        Map<Long, Integer> likes = new HashMap<>();
+        restarted.films.forEachLikeCount(likes::put);
+        assertEquals(Map.of(comedy.getId(), 1, drama.getId(), 2), likes);
+
+        restarted.films.deleteLike(comedy.getId(), first.getId());
+        assertArrayEquals(new long[]{drama.getId()}, restarted.films.likedFilms(first.getId()));
+        assertArrayEquals(new long[]{drama.getId()}, restarted.films.likedFilms(second.getId()));
+    }
+
+    @Test
+    void shouldIgnoreTornRecordAtLogTail() throws Exception {
+        Node node = new Node(directory);
+        node.durable.start();
+        User user = node.users.create(user("user"));
+        Film film = node.films.create(film("Film"));
+        node.films.addLike(film.getId(), user.getId());
+        node.wal.close();
+
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(path -> path.getFileName().toString().startsWith("wal-")).findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        Node restarted = new Node(directory);
+        restarted.durable.recover();
+
+        assertTrue(restarted.films.findById(film.getId()).orElseThrow().getMovieRating().isEmpty());
+        assertTrue(restarted.users.findById(user.getId()).isPresent());
+    }
+
+    @Test
+    void shouldRecoverStringsLongerThanModifiedUtfLimit() throws Exception {
+        String name = "ж".repeat(50_000);
+        Node node = new Node(directory);
+        node.durable.start();
+        Film logged = node.films.create(film(name));
+        User user = node.users.create(user("long").toBuilder().name(name).build());
+        node.durable.snapshot();
+        Film tail = node.films.create(film(name + "!"));
+        node.wal.close();
+
+        Node restarted = new Node(directory);
+        restarted.durable.recover();
+
+        assertEquals(name, restarted.films.findById(logged.getId()).orElseThrow().getName());
+        assertEquals(name, restarted.users.findById(user.getId()).orElseThrow().getName());
+        assertEquals(name + "!", restarted.films.findById(tail.getId()).orElseThrow().getName());
+    }
+
+    private static Film film(String name) {
+        return Film.builder()
+                .name(name)
+                .description("Durable")
+                .releaseDate(LocalDate.of(1999, 3, 31))
+                .duration(136)
+                .genres(Set.of(FilmGenre.COMEDY))
+                .mpaRating(MpaRating.PG)
+                .build();
+    }
+
+    private static User user(String login) {
+        return User.builder()
+                .email(login + "@mail.com")
+                .login(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+
+    private static class Node {
+        final WriteAheadLog wal;
+        final InMemoryFilmStorage films;
+        final InMemoryUserStorage users;
+        final DurableStorage durable;
+
+        Node(Path directory) {
+            wal = new WriteAheadLog(directory, true);
+            films = new InMemoryFilmStorage(wal);
+            users = new InMemoryUserStorage(wal);
+            durable = new DurableStorage(wal, films, users, directory, Duration.ofHours(1));
+        }
+    }
+}
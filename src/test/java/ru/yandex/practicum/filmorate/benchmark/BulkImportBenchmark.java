@@ -0,0 +1,101 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import ru.yandex.practicum.filmorate.controller.NdjsonStreamer;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.EntityVersions;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.StorageJournal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * Скорость пакетного импорта из NDJSON: разбор, валидация и запись в хранилища в памяти без HTTP.
+ * <p>
+ * Запуск: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=ru.yandex.practicum.filmorate.benchmark.BulkImportBenchmark -Dexec.args="100000"}
+ */
+public class BulkImportBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int items = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+        NdjsonStreamer ndjson = new NdjsonStreamer(objectMapper);
+        Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+        EntityVersions versions = new EntityVersions();
+        InMemoryUserStorage userStorage = new InMemoryUserStorage(StorageJournal.NONE);
+        InMemoryFilmStorage filmStorage = new InMemoryFilmStorage(StorageJournal.NONE);
+        UserService userService = new UserService(userStorage, filmStorage, validator, versions);
+        FilmService filmService = new FilmService(userService, filmStorage, validator, versions);
+
+        for (int round = 0; round < 3; round++) {
+            long base = (long) round * items;
+            byte[] users = ndjson(objectMapper, items, i -> User.builder()
+                    .email("user" + i + "@mail.com")
+                    .login("user" + i)
+                    .birthday(LocalDate.of(1990, 1, 1))
+                    .build());
+            byte[] films = ndjson(objectMapper, items, i -> Film.builder()
+                    .name("Film " + i)
+                    .description("Imported film " + i)
+                    .releaseDate(LocalDate.of(2000, 1, 1))
+                    .duration(90)
+                    .build());
+            byte[] likes = ndjson(objectMapper, items, i -> new Like(
+                    base + 1 + ThreadLocalRandom.current().nextInt(items),
+                    base + 1 + ThreadLocalRandom.current().nextInt(items)));
+            byte[] friendships = ndjson(objectMapper, items, i -> new Friendship(
+                    base + 1 + i, base + 1 + (i + 1 + ThreadLocalRandom.current().nextInt(items - 1)) % items));
+
+            System.out.printf("Раунд %d:%n", round + 1);
+            measure("пользователи", items, () -> userService.createAll(ndjson.read(input(users), User.class)));
+            measure("фильмы", items, () -> filmService.createAll(ndjson.read(input(films), Film.class)));
+            measure("лайки", items, () -> filmService.addLikes(ndjson.read(input(likes), Like.class)));
+            measure("дружбы", items, () -> userService.addFriends(ndjson.read(input(friendships), Friendship.class)));
+        }
+    }
+
+    private static void measure(String name, int items, Import task) throws IOException {
+        long started = System.nanoTime();
+        List<BatchResult> results = task.run();
+        double seconds = (System.nanoTime() - started) / 1e9;
+        long failed = results.stream().filter(result -> result.error() != null).count();
+        System.out.printf("  %-13s %,d за %.2f с — %,.0f элементов/с, ошибок: %,d%n",
+                name, items, seconds, items / seconds, failed);
+    }
+
+    private static byte[] ndjson(ObjectMapper objectMapper, int items, Function<Integer, Object> factory)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < items; i++) {
+            out.write(objectMapper.writeValueAsBytes(factory.apply(i)));
+            out.write('\n');
+        }
+        return out.toByteArray();
+    }
+
+    private static ByteArrayInputStream input(byte[] bytes) {
+        return new ByteArrayInputStream(bytes);
+    }
+
+    @FunctionalInterface
+    private interface Import {
+        List<BatchResult> run() throws IOException;
+    }
+}
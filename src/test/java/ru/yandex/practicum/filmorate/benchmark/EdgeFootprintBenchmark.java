@@ -0,0 +1,61 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import ru.yandex.practicum.filmorate.util.SortedLongSet;
+
+import java.lang.ref.Reference;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Замер памяти на одно ребро (лайк или дружбу) для разных реализаций множеств id.
+ * <p>
+ * Запуск: {@code MAVEN_OPTS=-Xmx3g mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=ru.yandex.practicum.filmorate.benchmark.EdgeFootprintBenchmark -Dexec.args="10000000 100000"}
+ * <p>
+ * Аргументы: общее число рёбер и число множеств (фильмов или пользователей), по которым они распределяются.
+ */
+public class EdgeFootprintBenchmark {
+    private static final long SEED = 42;
+
+    public static void main(String[] args) {
+        int edges = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int sets = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+
+        System.out.printf("Рёбер: %,d, множеств: %,d%n", edges, sets);
+        measure("HashSet<Long>", HashSet::new, edges, sets);
+        measure("ConcurrentHashMap.newKeySet()", ConcurrentHashMap::newKeySet, edges, sets);
+        measure("SortedLongSet", SortedLongSet::new, edges, sets);
+    }
+
+    private static void measure(String name, Supplier<Set<Long>> factory, int edges, int sets) {
+        long before = usedMemory();
+        @SuppressWarnings("unchecked")
+        Set<Long>[] holder = new Set[sets];
+        for (int i = 0; i < sets; i++) {
+            holder[i] = factory.get();
+        }
+        Random random = new Random(SEED);
+        int added = 0;
+        while (added < edges) {
+            // id в диапазоне больше кэша Long.valueOf, чтобы учитывать реальную упаковку
+            if (holder[random.nextInt(sets)].add(1_000L + random.nextInt(edges))) {
+                added++;
+            }
+        }
+        long after = usedMemory();
+        System.out.printf("%-32s %,14d байт, %6.1f байт на ребро%n",
+                name, after - before, (after - before) / (double) edges);
+        Reference.reachabilityFence(holder);
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,145 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import ru.yandex.practicum.filmorate.storage.PopularityIndex;
+import ru.yandex.practicum.filmorate.util.CountMinSketch;
+import ru.yandex.practicum.filmorate.util.SpaceSaving;
+
+import java.lang.ref.Reference;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Точность и память приблизительного топа (Count-Min Sketch и Space-Saving) против точного
+ * {@link PopularityIndex} на синтетическом потоке лайков с распределением Ципфа.
+ * <p>
+ * Запуск: {@code MAVEN_OPTS=-Xmx2g mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=ru.yandex.practicum.filmorate.benchmark.HeavyHittersReport -Dexec.args="10000000 1000000 1.0"}
+ * <p>
+ * Аргументы: число лайков, число фильмов и показатель распределения. Поток делится на четыре части, как между
+ * секциями хранилища, и сводки частей складываются; для каждой пары {@code epsilon}/{@code capacity} выводятся
+ * память, доля настоящего топа-10 и топа-100 в приблизительном и ошибка оценок лайков в нём.
+ */
+public class HeavyHittersReport {
+    private static final long SEED = 42;
+    private static final int PARTS = 4;
+    private static final double DELTA = 0.01;
+    private static final double[] EPSILONS = {0.001, 0.0001, 0.00001};
+    private static final int[] CAPACITIES = {256, 1024, 4096};
+
+    public static void main(String[] args) {
+        int likes = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int films = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        double skew = args.length > 2 ? Double.parseDouble(args[2]) : 1.0;
+        ZipfStream stream = new ZipfStream(films, skew);
+
+        System.out.printf("Лайков: %,d, фильмов: %,d, показатель Ципфа: %.2f%n", likes, films, skew);
+        long before = usedMemory();
+        PopularityIndex exact = new PopularityIndex(10);
+        long start = System.nanoTime();
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int i = 0; i < likes; i++) {
+            long filmId = stream.next(random);
+            exact.update(filmId, exact.likes(filmId) + 1);
+        }
+        long exactNanos = System.nanoTime() - start;
+        long exactBytes = usedMemory() - before;
+        System.out.printf("%-26s %,14d байт, фильмов в индексе %,d, %5.0f нс на лайк%n",
+                "Точный PopularityIndex", exactBytes, exact.size(), exactNanos / (double) likes);
+
+        List<Long> exactTop = exact.top(100);
+        System.out.printf("%-26s %12s %12s %8s %9s %9s %8s %8s%n", "epsilon / capacity", "оценка байт",
+                "замер байт", "нс/лайк", "точн.@10", "точн.@100", "ср.ошиб.", "макс.ош.");
+        for (int c = 0; c < EPSILONS.length; c++) {
+            report(stream, likes, exact, exactTop, EPSILONS[c], CAPACITIES[c]);
+        }
+        Reference.reachabilityFence(exact);
+    }
+
+    private static void report(ZipfStream stream, int likes, PopularityIndex exact, List<Long> exactTop,
+                               double epsilon, int capacity) {
+        long before = usedMemory();
+        CountMinSketch[] sketches = new CountMinSketch[PARTS];
+        SpaceSaving[] summaries = new SpaceSaving[PARTS];
+        for (int i = 0; i < PARTS; i++) {
+            sketches[i] = new CountMinSketch(epsilon, DELTA);
+            summaries[i] = new SpaceSaving(capacity);
+        }
+        long start = System.nanoTime();
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int i = 0; i < likes; i++) {
+            long filmId = stream.next(random);
+            sketches[i % PARTS].add(filmId, 1);
+            summaries[i % PARTS].add(filmId, 1);
+        }
+        long nanos = System.nanoTime() - start;
+        for (int i = 1; i < PARTS; i++) {
+            sketches[0].merge(sketches[i]);
+            summaries[0].merge(summaries[i]);
+        }
+        long measured = usedMemory() - before;
+        long reported = sketches[0].bytes() + summaries[0].bytes();
+
+        CountMinSketch sketch = sketches[0];
+        List<SpaceSaving.Counter> top = summaries[0].counters().stream()
+                .map(counter -> new SpaceSaving.Counter(counter.item(),
+                        Math.min(counter.count(), sketch.estimate(counter.item())), counter.error()))
+                .sorted(Comparator.comparingLong(SpaceSaving.Counter::count).reversed()
+                        .thenComparingLong(SpaceSaving.Counter::item))
+                .limit(100)
+                .toList();
+        double maxError = 0;
+        double sumError = 0;
+        for (SpaceSaving.Counter counter : top) {
+            int actual = exact.likes(counter.item());
+            double error = (counter.count() - actual) / (double) Math.max(1, actual);
+            maxError = Math.max(maxError, error);
+            sumError += error;
+        }
+        System.out.printf("%-26s %,12d %,12d %8.0f %9.2f %9.2f %8.4f %8.4f%n",
+                epsilon + " / " + capacity, reported, measured, nanos / (double) likes,
+                precision(exactTop, top, 10), precision(exactTop, top, 100),
+                sumError / Math.max(1, top.size()), maxError);
+        Reference.reachabilityFence(summaries);
+    }
+
+    private static double precision(List<Long> exactTop, List<SpaceSaving.Counter> top, int count) {
+        Set<Long> expected = new HashSet<>(exactTop.subList(0, Math.min(count, exactTop.size())));
+        long found = top.stream().limit(count).filter(counter -> expected.contains(counter.item())).count();
+        return found / (double) Math.max(1, expected.size());
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Id фильмов от 1 до {@code films} с вероятностью, обратной степени ранга.
+     */
+    private static final class ZipfStream {
+        private final double[] cumulative;
+        private final double sum;
+
+        ZipfStream(int films, double skew) {
+            cumulative = new double[films];
+            double total = 0;
+            for (int i = 0; i < films; i++) {
+                total += 1 / Math.pow(i + 1, skew);
+                cumulative[i] = total;
+            }
+            sum = total;
+        }
+
+        long next(SplittableRandom random) {
+            int position = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            return 1 + (position >= 0 ? position : -position - 1);
+        }
+    }
+}
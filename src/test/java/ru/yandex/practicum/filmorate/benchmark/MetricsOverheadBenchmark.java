@@ -0,0 +1,129 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Накладные расходы таймеров сервисов и счётчиков хранилищ: пропускная способность горячих методов сервисов
+ * с {@code filmorate.metrics.enabled=true} и {@code false}. Режимы сравниваются в отдельных запусках JVM,
+ * чтобы профиль JIT-компилятора от одного режима не влиял на другой.
+ * <p>
+ * Запуск: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=ru.yandex.practicum.filmorate.benchmark.MetricsOverheadBenchmark -Dexec.args="4 10 true"}
+ * <p>
+ * Аргументы: число потоков, длительность замера в секундах и включены ли метрики.
+ * Нагрузка: 40% топа популярных, 30% списка друзей, 20% общих друзей, 10% лайков.
+ */
+public class MetricsOverheadBenchmark {
+    private static final int FILMS = 10_000;
+    private static final int USERS = 10_000;
+    private static final int FRIENDS_PER_USER = 20;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        boolean enabled = args.length <= 2 || Boolean.parseBoolean(args[2]);
+
+        try (ConfigurableApplicationContext context = start(enabled)) {
+            FilmService films = context.getBean(FilmService.class);
+            UserService users = context.getBean(UserService.class);
+            populate(films, users);
+            measure(films, users, threads, seconds);
+            for (int round = 1; round <= 3; round++) {
+                double rate = measure(films, users, threads, seconds);
+                System.out.printf("Метрики %-9s %d потоков, замер %d — %,.0f операций/с%n",
+                        enabled ? "включены," : "выключены,", threads, round, rate);
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext start(boolean metrics) {
+        return new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--filmorate.metrics.enabled=" + metrics,
+                        "--logging.level.root=WARN",
+                        "--logging.level.ru.yandex.practicum.filmorate=WARN");
+    }
+
+    private static void populate(FilmService films, UserService users) {
+        for (int i = 0; i < USERS; i++) {
+            users.create(User.builder()
+                    .email("user" + i + "@mail.com")
+                    .login("user" + i)
+                    .birthday(LocalDate.of(1990, 1, 1))
+                    .build());
+        }
+        for (int i = 0; i < FILMS; i++) {
+            films.create(Film.builder()
+                    .name("Film " + i)
+                    .description("Benchmark film " + i)
+                    .releaseDate(LocalDate.of(2000, 1, 1))
+                    .duration(90)
+                    .build());
+        }
+        Random random = new Random(42);
+        for (long userId = 1; userId <= USERS; userId++) {
+            for (int i = 0; i < FRIENDS_PER_USER / 2; i++) {
+                long friendId = 1 + random.nextInt(USERS);
+                if (friendId != userId) {
+                    users.addFriend(userId, friendId);
+                }
+            }
+        }
+    }
+
+    private static double measure(FilmService films, UserService users, int threads, int seconds) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        try {
+            List<Future<Long>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    long operations = 0;
+                    while ((operations & 255) != 0 || System.nanoTime() < deadline) {
+                        long userId = 1 + random.nextInt(USERS);
+                        int kind = random.nextInt(10);
+                        if (kind < 4) {
+                            films.getTopFilms(10);
+                        } else if (kind < 7) {
+                            users.getFriends(userId);
+                        } else if (kind < 9) {
+                            users.commonFriends(userId, 1L + random.nextInt(USERS));
+                        } else {
+                            try {
+                                films.addLike(1L + random.nextInt(FILMS), userId);
+                            } catch (IllegalArgumentException e) {
+                                // повторный лайк
+                            }
+                        }
+                        operations++;
+                    }
+                    return operations;
+                }));
+            }
+            long total = 0;
+            for (Future<Long> future : futures) {
+                total += future.get();
+            }
+            return total / (double) seconds;
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
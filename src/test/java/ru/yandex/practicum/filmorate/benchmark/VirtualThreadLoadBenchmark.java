@@ -0,0 +1,174 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import jakarta.servlet.Filter;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Пропускная способность и p99 задержки HTTP-слоя при высокой конкурентности на пуле платформенных потоков Tomcat
+ * и на виртуальных потоках. Хранилище в памяти не блокируется на вводе-выводе, поэтому ожидание внешнего хранилища
+ * имитируется фильтром, который задерживает каждый запрос на заданное время.
+ * <p>
+ * Запуск: {@code MAVEN_OPTS=-Xmx2g mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=ru.yandex.practicum.filmorate.benchmark.VirtualThreadLoadBenchmark -Dexec.args="2000 100000 20"}
+ * <p>
+ * Аргументы: число одновременных клиентов, число запросов в замере и задержка ввода-вывода в миллисекундах.
+ * Нагрузка: 70% чтений фильма, 20% топа популярных, 10% лайков.
+ */
+public class VirtualThreadLoadBenchmark {
+    private static final int FILMS = 1_000;
+    private static final int USERS = 10_000;
+
+    private static volatile long ioLatencyMillis;
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        ioLatencyMillis = args.length > 2 ? Long.parseLong(args[2]) : 20;
+
+        for (boolean virtual : new boolean[]{false, true}) {
+            try (ConfigurableApplicationContext context = start(virtual)) {
+                populate(context);
+                int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+                run(port, clients, requests / 5);
+                Result result = run(port, clients, requests);
+                System.out.printf("%-12s %,d клиентов, %,d запросов за %.2f с — %,.0f запросов/с, "
+                                + "p50 %.1f мс, p99 %.1f мс, ошибок: %d%n",
+                        virtual ? "Виртуальные" : "Платформенные", clients, requests, result.seconds(),
+                        requests / result.seconds(), result.percentile(0.50), result.percentile(0.99),
+                        result.errors());
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext start(boolean virtual) {
+        return new SpringApplicationBuilder(FilmorateApplication.class, IoLatency.class)
+                .run("--server.port=0",
+                        "--spring.threads.virtual.enabled=" + virtual,
+                        "--logging.level.root=WARN",
+                        "--logging.level.org.zalando.logbook=OFF",
+                        "--logging.level.ru.yandex.practicum.filmorate=WARN");
+    }
+
+    private static void populate(ConfigurableApplicationContext context) {
+        UserService users = context.getBean(UserService.class);
+        FilmService films = context.getBean(FilmService.class);
+        for (int i = 0; i < USERS; i++) {
+            users.create(User.builder()
+                    .email("user" + i + "@mail.com")
+                    .login("user" + i)
+                    .birthday(LocalDate.of(1990, 1, 1))
+                    .build());
+        }
+        for (int i = 0; i < FILMS; i++) {
+            films.create(Film.builder()
+                    .name("Film " + i)
+                    .description("Benchmark film " + i)
+                    .releaseDate(LocalDate.of(2000, 1, 1))
+                    .duration(90)
+                    .build());
+        }
+    }
+
+    private static Result run(int port, int clients, int requests) throws Exception {
+        long[] latencies = new long[requests];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        String base = "http://localhost:" + port;
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient client = HttpClient.newBuilder()
+                     .executor(executor)
+                     .connectTimeout(Duration.ofSeconds(10))
+                     .build()) {
+            long started = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>(clients);
+            for (int c = 0; c < clients; c++) {
+                futures.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    int index;
+                    while ((index = next.getAndIncrement()) < requests) {
+                        HttpRequest request = nextRequest(base, random);
+                        long sent = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() >= 500) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+                        latencies[index] = System.nanoTime() - sent;
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            double seconds = (System.nanoTime() - started) / 1e9;
+            Arrays.sort(latencies);
+            return new Result(seconds, latencies, errors.get());
+        }
+    }
+
+    private static HttpRequest nextRequest(String base, ThreadLocalRandom random) {
+        int kind = random.nextInt(10);
+        long filmId = 1L + random.nextInt(FILMS);
+        if (kind < 7) {
+            return HttpRequest.newBuilder(URI.create(base + "/films/" + filmId)).GET().build();
+        }
+        if (kind < 9) {
+            return HttpRequest.newBuilder(URI.create(base + "/films/popular?count=10")).GET().build();
+        }
+        long userId = 1L + random.nextInt(USERS);
+        return HttpRequest.newBuilder(URI.create(base + "/films/" + filmId + "/like/" + userId))
+                .PUT(HttpRequest.BodyPublishers.noBody())
+                .build();
+    }
+
+    private record Result(double seconds, long[] sortedLatencies, int errors) {
+        double percentile(double quantile) {
+            int index = Math.min(sortedLatencies.length - 1, (int) Math.ceil(quantile * sortedLatencies.length) - 1);
+            return sortedLatencies[Math.max(0, index)] / 1e6;
+        }
+    }
+
+    @Configuration
+    static class IoLatency {
+        @Bean
+        Filter ioLatencyFilter() {
+            return (request, response, chain) -> {
+                try {
+                    Thread.sleep(ioLatencyMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                chain.doFilter(request, response);
+            };
+        }
+    }
+}
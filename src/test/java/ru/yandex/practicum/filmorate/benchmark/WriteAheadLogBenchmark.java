@@ -0,0 +1,133 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.wal.DurableStorage;
+import ru.yandex.practicum.filmorate.storage.wal.WriteAheadLog;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Пропускная способность журнала предзаписи с групповой фиксацией, время подключения снимка,
+ * время восстановления после перезапуска и время первого запроса к лениво загружаемому снимку.
+ * <p>
+ * Запуск: {@code MAVEN_OPTS=-Xmx3g mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=ru.yandex.practicum.filmorate.benchmark.WriteAheadLogBenchmark -Dexec.args="64 200000 2000000"}
+ * <p>
+ * Аргументы: число потоков-писателей, число лайков в замере пропускной способности
+ * и число лайков в наборе данных для замера восстановления.
+ */
+public class WriteAheadLogBenchmark {
+    private static final int FILMS = 10_000;
+    private static final int USERS = 100_000;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int throughputLikes = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        int datasetLikes = args.length > 2 ? Integer.parseInt(args[2]) : 2_000_000;
+
+        Path directory = Files.createTempDirectory("filmorate-wal-benchmark");
+        Node node = new Node(directory);
+        node.durable.start();
+        populate(node);
+
+        long flushesBefore = node.wal.flushCount();
+        long started = System.nanoTime();
+        addLikes(node, threads, throughputLikes);
+        double seconds = (System.nanoTime() - started) / 1e9;
+        long flushes = node.wal.flushCount() - flushesBefore;
+        System.out.printf("Журнал: %d потоков, %,d лайков за %.2f с — %,.0f записей/с, %,d fsync, %.1f записей на fsync%n",
+                threads, throughputLikes, seconds, throughputLikes / seconds, flushes,
+                throughputLikes / (double) Math.max(1, flushes));
+
+        addLikes(node, threads, datasetLikes - throughputLikes);
+        started = System.nanoTime();
+        node.durable.snapshot();
+        System.out.printf("Снимок: %.2f с%n", (System.nanoTime() - started) / 1e9);
+
+        DurableStorage.Recovery mounted = new Node(directory).durable.recover();
+        System.out.printf("Подключение снимка без хвоста: %,d фильмов, %,d пользователей за %d мс%n",
+                mounted.films(), mounted.users(), mounted.duration().toMillis());
+
+        int tail = datasetLikes / 10;
+        addLikes(node, threads, tail);
+        node.wal.close();
+
+        Node restarted = new Node(directory);
+        DurableStorage.Recovery recovery = restarted.durable.recover();
+        System.out.printf("Восстановление: %,d фильмов, %,d пользователей, %,d записей хвоста за %d мс%n",
+                recovery.films(), recovery.users(), recovery.replayedRecords(), recovery.duration().toMillis());
+
+        started = System.nanoTime();
+        restarted.films.getTopFilms(10);
+        restarted.films.findById(ThreadLocalRandom.current().nextLong(1, FILMS + 1)).orElseThrow();
+        System.out.printf("Первый запрос после восстановления: %.1f мс%n", (System.nanoTime() - started) / 1e6);
+    }
+
+    private static void populate(Node node) {
+        for (int i = 0; i < USERS; i++) {
+            node.users.create(User.builder()
+                    .email("user" + i + "@mail.com")
+                    .login("user" + i)
+                    .birthday(LocalDate.of(1990, 1, 1))
+                    .build());
+        }
+        for (int i = 0; i < FILMS; i++) {
+            node.films.create(Film.builder()
+                    .name("Film " + i)
+                    .description("Benchmark film " + i)
+                    .releaseDate(LocalDate.of(2000, 1, 1))
+                    .duration(90)
+                    .build());
+        }
+    }
+
+    private static void addLikes(Node node, int threads, int likes) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            int perThread = likes / threads;
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    int added = 0;
+                    while (added < perThread) {
+                        if (node.films.addLike(1L + random.nextInt(FILMS), 1L + random.nextInt(USERS))) {
+                            added++;
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static class Node {
+        final WriteAheadLog wal;
+        final InMemoryFilmStorage films;
+        final InMemoryUserStorage users;
+        final DurableStorage durable;
+
+        Node(Path directory) {
+            wal = new WriteAheadLog(directory, true);
+            films = new InMemoryFilmStorage(wal);
+            users = new InMemoryUserStorage(wal);
+            durable = new DurableStorage(wal, films, users, directory, Duration.ofHours(1));
+        }
+    }
+}
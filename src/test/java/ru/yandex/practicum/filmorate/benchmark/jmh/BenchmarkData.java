@@ -0,0 +1,173 @@
+package ru.yandex.practicum.filmorate.benchmark.jmh;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.slf4j.LoggerFactory;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmGenre;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.EntityVersions;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.StorageJournal;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Набор данных для JMH-бенчмарков: хранилища в памяти без журнала и сервисы поверх них, собранные без Spring,
+ * чтобы замер не включал прокси и метрики. Размер задаётся числом рёбер — лайков или дружб;
+ * фильмов и пользователей столько, чтобы на сущность приходилось в среднем 10 и 20 рёбер соответственно.
+ */
+final class BenchmarkData {
+    private static final int CHUNK = 10_000;
+    private static final long SEED = 42;
+
+    final InMemoryFilmStorage filmStorage = new InMemoryFilmStorage(StorageJournal.NONE);
+    final InMemoryUserStorage userStorage = new InMemoryUserStorage(StorageJournal.NONE);
+    final EntityVersions versions = new EntityVersions();
+    final UserService userService;
+    final FilmService filmService;
+    final int films;
+    final int users;
+
+    private BenchmarkData(int films, int users) {
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+        Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+        userService = new UserService(userStorage, filmStorage, validator, versions);
+        filmService = new FilmService(userService, filmStorage, validator, versions);
+        this.films = films;
+        this.users = users;
+        createUsers();
+        createFilms();
+    }
+
+    /**
+     * Фильмы с {@code likes} лайками, распределёнными случайно между пользователями.
+     */
+    static BenchmarkData withLikes(int likes) {
+        BenchmarkData data = new BenchmarkData(Math.max(100, likes / 10), Math.max(1_000, likes / 20));
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<Like> chunk = new ArrayList<>(CHUNK);
+        long added = 0;
+        while (added < likes) {
+            chunk.add(new Like(data.randomFilm(random), data.randomUser(random)));
+            if (chunk.size() == CHUNK || added + chunk.size() == likes) {
+                for (boolean ok : data.filmStorage.addLikes(chunk)) {
+                    added += ok ? 1 : 0;
+                }
+                chunk.clear();
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Пользователи с {@code edges} направленными рёбрами дружбы, то есть {@code edges / 2} взаимными дружбами.
+     */
+    static BenchmarkData withFriends(int edges) {
+        BenchmarkData data = new BenchmarkData(100, Math.max(100, edges / 20));
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<Friendship> chunk = new ArrayList<>(CHUNK);
+        long added = 0;
+        while (added < edges / 2) {
+            long userId = data.randomUser(random);
+            long friendId = data.randomUser(random);
+            if (userId != friendId) {
+                chunk.add(new Friendship(userId, friendId));
+            }
+            if (chunk.size() == CHUNK || added + chunk.size() == edges / 2) {
+                for (boolean ok : data.userStorage.addFriends(chunk)) {
+                    added += ok ? 1 : 0;
+                }
+                chunk.clear();
+            }
+        }
+        return data;
+    }
+
+    /**
+     * {@code users} пользователей и {@code likes} лайков со скошенной популярностью: доля лайков фильма убывает
+     * с его номером как в распределении Ципфа, так что у первых фильмов сотни тысяч лайков, а у хвоста единицы.
+     */
+    static BenchmarkData withSkewedLikes(int users, int films, long likes) {
+        BenchmarkData data = new BenchmarkData(films, users);
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<Like> chunk = new ArrayList<>(CHUNK);
+        long added = 0;
+        while (added < likes) {
+            long filmId = 1 + (long) (films * Math.pow(random.nextDouble(), 3));
+            chunk.add(new Like(filmId, data.randomUser(random)));
+            if (chunk.size() == CHUNK || added + chunk.size() == likes) {
+                for (boolean ok : data.filmStorage.addLikes(chunk)) {
+                    added += ok ? 1 : 0;
+                }
+                chunk.clear();
+            }
+        }
+        return data;
+    }
+
+    long randomFilm(SplittableRandom random) {
+        return 1 + random.nextInt(films);
+    }
+
+    long randomUser(SplittableRandom random) {
+        return 1 + random.nextInt(users);
+    }
+
+    /**
+     * Фильм с одним жанром, рейтингом и годом выхода из 50 лет, которые перебираются по номеру.
+     */
+    static Film film(int number) {
+        return Film.builder()
+                .name("Film " + number)
+                .description("Benchmark film " + number)
+                .releaseDate(LocalDate.of(1970 + number % 50, 1, 1))
+                .duration(90)
+                .genres(Set.of(FilmGenre.values()[number % FilmGenre.values().length]))
+                .mpaRating(MpaRating.values()[number % MpaRating.values().length])
+                .build();
+    }
+
+    static User user(int number) {
+        return User.builder()
+                .email("user" + number + "@mail.com")
+                .login("user" + number)
+                .name("User " + number)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+
+    private void createUsers() {
+        List<User> chunk = new ArrayList<>(CHUNK);
+        for (int i = 0; i < users; i++) {
+            chunk.add(user(i));
+            if (chunk.size() == CHUNK || i == users - 1) {
+                userStorage.createAll(chunk);
+                chunk.clear();
+            }
+        }
+    }
+
+    private void createFilms() {
+        List<Film> chunk = new ArrayList<>(CHUNK);
+        for (int i = 0; i < films; i++) {
+            chunk.add(film(i));
+            if (chunk.size() == CHUNK || i == films - 1) {
+                filmStorage.createAll(chunk);
+                chunk.clear();
+            }
+        }
+    }
+}
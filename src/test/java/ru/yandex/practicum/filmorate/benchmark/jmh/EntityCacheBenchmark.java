@@ -0,0 +1,137 @@
+package ru.yandex.practicum.filmorate.benchmark.jmh;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.CachingFilmStorage;
+import ru.yandex.practicum.filmorate.storage.JdbcFilmStorage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Чтение фильма по id из H2 в памяти напрямую и через кеш. Id запрашиваются по закону Ципфа с показателем
+ * {@code skew}: несколько фильмов читаются постоянно, а длинный хвост — изредка. Кеш прогревается одним
+ * проходом по выборке, доля попаданий в него печатается после каждой итерации.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntityCacheBenchmark {
+    private static final int SAMPLES = 1 << 20;
+
+    @Param({"100000"})
+    int films;
+
+    @Param({"1000", "10000"})
+    long cacheSize;
+
+    @Param({"0.99"})
+    double skew;
+
+    HikariDataSource dataSource;
+    JdbcFilmStorage jdbc;
+    CachingFilmStorage cached;
+    long[] ids;
+    CacheStats stats;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:cache-benchmark;DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql"), new ClassPathResource("data.sql"))
+                .execute(dataSource);
+        jdbc = new JdbcFilmStorage(new NamedParameterJdbcTemplate(dataSource));
+        List<Film> chunk = new ArrayList<>(10_000);
+        for (int i = 0; i < films; i++) {
+            chunk.add(BenchmarkData.film(i));
+            if (chunk.size() == 10_000 || i == films - 1) {
+                jdbc.createAll(chunk);
+                chunk.clear();
+            }
+        }
+        ids = zipfIds(films, skew, new SplittableRandom(42));
+        cached = new CachingFilmStorage(jdbc, cacheSize);
+        for (long id : ids) {
+            cached.findById(id);
+        }
+        stats = cached.cache().stats();
+    }
+
+    @TearDown(Level.Iteration)
+    public void printHitRate() {
+        CacheStats current = cached.cache().stats();
+        CacheStats iteration = current.minus(stats);
+        stats = current;
+        if (iteration.requestCount() > 0) {
+            System.out.printf("hit rate %.3f, evictions %d%n", iteration.hitRate(), iteration.evictionCount());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int position = new SplittableRandom().nextInt(SAMPLES);
+
+        long next(long[] ids) {
+            position = (position + 1) & (SAMPLES - 1);
+            return ids[position];
+        }
+    }
+
+    @Benchmark
+    public Optional<Film> uncached(Cursor cursor) {
+        return jdbc.findById(cursor.next(ids));
+    }
+
+    @Benchmark
+    public Optional<Film> cached(Cursor cursor) {
+        return cached.findById(cursor.next(ids));
+    }
+
+    /**
+     * Выборка id от 1 до {@code films}: вероятность i-го фильма пропорциональна {@code 1 / i^skew}.
+     */
+    private static long[] zipfIds(int films, double skew, SplittableRandom random) {
+        double[] cumulative = new double[films];
+        double sum = 0;
+        for (int i = 0; i < films; i++) {
+            sum += 1 / Math.pow(i + 1, skew);
+            cumulative[i] = sum;
+        }
+        long[] sample = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            int position = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            sample[i] = 1 + (position >= 0 ? position : -position - 1);
+        }
+        return sample;
+    }
+}
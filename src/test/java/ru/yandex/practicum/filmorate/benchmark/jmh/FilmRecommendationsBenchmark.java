@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate.benchmark.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Рекомендации фильмов случайным пользователям через {@code FilmService}. Режим выборки времени
+ * даёт распределение задержек, в отчёте JMH — перцентили, в том числе {@code p0.99}.
+ * <p>
+ * Целевой размер — 1 млн пользователей и 50 млн лайков; такому набору нужно около 8 ГБ кучи:
+ * {@code mvn -P benchmark test -Djmh.include=FilmRecommendationsBenchmark -Djmh.args="-p users=1000000 -p likes=50000000"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class FilmRecommendationsBenchmark {
+
+    @Param({"100000", "1000000"})
+    int users;
+
+    @Param({"5000000", "50000000"})
+    long likes;
+
+    BenchmarkData data;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = BenchmarkData.withSkewedLikes(users, 100_000, likes);
+    }
+
+    @State(Scope.Thread)
+    public static class Users {
+        final SplittableRandom random = new SplittableRandom();
+    }
+
+    @Benchmark
+    public List<Film> recommendedFilms(Users users) {
+        return data.filmService.getRecommendedFilms(data.randomUser(users.random), 10);
+    }
+}
@@ -0,0 +1,63 @@
+package ru.yandex.practicum.filmorate.benchmark.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Список друзей, общие друзья и рекомендации друзей случайных пользователей через {@code UserService}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FriendsBenchmark {
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    int edges;
+
+    BenchmarkData data;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = BenchmarkData.withFriends(edges);
+    }
+
+    @State(Scope.Thread)
+    public static class Users {
+        final SplittableRandom random = new SplittableRandom();
+    }
+
+    @Benchmark
+    public List<User> getFriends(Users users) {
+        return data.userService.getFriends(data.randomUser(users.random));
+    }
+
+    @Benchmark
+    public List<User> commonFriends(Users users) {
+        long userId = data.randomUser(users.random);
+        long friendId = data.randomUser(users.random);
+        return data.userService.commonFriends(userId, userId == friendId ? friendId % data.users + 1 : friendId);
+    }
+
+    @Benchmark
+    public List<User> recommendations(Users users) {
+        return data.userService.getRecommendations(data.randomUser(users.random), 10);
+    }
+}
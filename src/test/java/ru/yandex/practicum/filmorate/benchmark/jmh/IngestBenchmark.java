@@ -0,0 +1,92 @@
+package ru.yandex.practicum.filmorate.benchmark.jmh;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.service.IngestPipeline;
+
+import java.time.Duration;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Лайки «вирусного» фильма: доля {@code hotShare} лайков всех потоков приходится на один фильм, остальные —
+ * на случайные. Синхронный режим ставит и снимает лайк в потоке запроса, асинхронный кладёт оба изменения
+ * в очередь и каждые {@link #AWAIT_EVERY} пар дожидается применения своих изменений по токену, так что замер
+ * показывает устойчивую пропускную способность, а не скорость заполнения буфера.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Threads(8)
+public class IngestBenchmark {
+    private static final int AWAIT_EVERY = 64;
+    private static final long HOT_FILM = 1;
+
+    @Param({"0.1", "0.9"})
+    double hotShare;
+
+    BenchmarkData data;
+    IngestPipeline pipeline;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = BenchmarkData.withLikes(100_000);
+        pipeline = new IngestPipeline(data.filmService, data.userService, new SimpleMeterRegistry(),
+                4, 65_536, 1_024);
+        pipeline.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        pipeline.stop();
+    }
+
+    @State(Scope.Thread)
+    public static class Liker {
+        final SplittableRandom random = new SplittableRandom();
+        Long userId;
+        int pairs;
+
+        @Setup(Level.Trial)
+        public void setUp(IngestBenchmark benchmark) {
+            userId = benchmark.data.userService.create(BenchmarkData.user(-1)).getId();
+        }
+
+        long nextFilm(IngestBenchmark benchmark) {
+            return random.nextDouble() < benchmark.hotShare ? HOT_FILM : benchmark.data.randomFilm(random);
+        }
+    }
+
+    @Benchmark
+    public void synchronous(Liker liker) {
+        long filmId = liker.nextFilm(this);
+        data.filmService.addLike(filmId, liker.userId);
+        data.filmService.deleteLike(filmId, liker.userId);
+    }
+
+    @Benchmark
+    public void pipelined(Liker liker) {
+        long filmId = liker.nextFilm(this);
+        pipeline.likeAdded(filmId, liker.userId);
+        String token = pipeline.likeDeleted(filmId, liker.userId);
+        if (++liker.pairs % AWAIT_EVERY == 0) {
+            pipeline.awaitApplied(token, Duration.ofSeconds(10));
+        }
+    }
+}
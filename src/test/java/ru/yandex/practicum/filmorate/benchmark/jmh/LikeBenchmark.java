@@ -0,0 +1,59 @@
+package ru.yandex.practicum.filmorate.benchmark.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Лайк и его отмена через {@code FilmService}: за вызов ставится и снимается один лайк, поэтому число лайков
+ * в хранилище не растёт от итерации к итерации. У каждого потока свой пользователь без лайков,
+ * так что повторных лайков не бывает, а потоки конкурируют только за блокировки фильмов и индекс популярности.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LikeBenchmark {
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    int edges;
+
+    BenchmarkData data;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = BenchmarkData.withLikes(edges);
+    }
+
+    @State(Scope.Thread)
+    public static class Liker {
+        final SplittableRandom random = new SplittableRandom();
+        Long userId;
+
+        @Setup(Level.Trial)
+        public void setUp(LikeBenchmark benchmark) {
+            userId = benchmark.data.userService.create(BenchmarkData.user(-1)).getId();
+        }
+    }
+
+    @Benchmark
+    public void likeAndUnlike(Liker liker) {
+        Long filmId = data.randomFilm(liker.random);
+        data.filmService.addLike(filmId, liker.userId);
+        data.filmService.deleteLike(filmId, liker.userId);
+    }
+}
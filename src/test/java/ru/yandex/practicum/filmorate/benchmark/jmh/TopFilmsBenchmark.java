@@ -0,0 +1,62 @@
+package ru.yandex.practicum.filmorate.benchmark.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmGenre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Топ популярных фильмов из хранилища в памяти при разном числе лайков: весь каталог, один срез и пересечение срезов.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TopFilmsBenchmark {
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    int edges;
+
+    BenchmarkData data;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = BenchmarkData.withLikes(edges);
+    }
+
+    @Benchmark
+    public List<Film> top10() {
+        return data.filmStorage.getTopFilms(10);
+    }
+
+    @Benchmark
+    public List<Film> top100() {
+        return data.filmStorage.getTopFilms(100);
+    }
+
+    @Benchmark
+    public List<Film> top10ByGenre() {
+        return data.filmStorage.getTopFilms(10, FilmGenre.DRAMA, null, null);
+    }
+
+    @Benchmark
+    public List<Film> top10ByMpaAndYear() {
+        return data.filmStorage.getTopFilms(10, null, MpaRating.R, 1973);
+    }
+}